@@ -0,0 +1,232 @@
+package com.example.featureflag.sdk;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client-side port of the service's BucketingEngine.
+ * <p>
+ * Must produce bit-for-bit identical results; the parity vectors shared with the
+ * service tests enforce this. Has no dependencies so the SDK stays small.
+ */
+public final class Bucketing {
+    
+    public static final int MAX_BASIS_POINTS = 10_000;
+    
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    
+    public enum Mode {
+        LEGACY,
+        UNIFORM
+    }
+    
+    /**
+     * Precomputed per-flag hashing state
+     */
+    public record Seed(long uniformSeed, long h1, long h2, long tailLo, long tailHi,
+                       int tailLength, int prefixLength) {
+    }
+    
+    private Bucketing() {
+    }
+    
+    /**
+     * Check whether a user falls inside a rollout expressed in basis points
+     */
+    public static boolean isInRollout(Seed seed, String userId, int rolloutBasisPoints, Mode mode) {
+        if (rolloutBasisPoints >= MAX_BASIS_POINTS) {
+            return true;
+        }
+        if (rolloutBasisPoints <= 0) {
+            return false;
+        }
+        if (mode == Mode.LEGACY) {
+            int legacyBucket = legacyBucket(seed, userId);
+            if (rolloutBasisPoints % 100 == 0) {
+                return legacyBucket * 100 < rolloutBasisPoints;
+            }
+            return legacyBucket * 100 + (int) Long.remainderUnsigned(uniformHash(seed, userId), 100) < rolloutBasisPoints;
+        }
+        return uniformBucket(seed, userId) < rolloutBasisPoints;
+    }
+    
+    /**
+     * Precompute the hashing state for a flag
+     */
+    public static Seed computeSeed(String flagName) {
+        byte[] name = flagName.getBytes(StandardCharsets.UTF_8);
+        long[] nameState = absorb(name, name.length);
+        long uniformSeed = finish(nameState[0], nameState[1], nameState[2], nameState[3], name.length);
+        
+        byte[] prefix = (flagName + ":").getBytes(StandardCharsets.UTF_8);
+        long[] prefixState = absorb(prefix, prefix.length);
+        int tailLength = prefix.length & 15;
+        
+        return new Seed(uniformSeed, prefixState[0], prefixState[1], prefixState[2], prefixState[3],
+                tailLength, prefix.length);
+    }
+    
+    public static int uniformBucket(Seed seed, String userId) {
+        return (int) (((uniformHash(seed, userId) >>> 32) * MAX_BASIS_POINTS) >>> 32);
+    }
+    
+    public static int legacyBucket(Seed seed, String userId) {
+        return Math.abs((int) (legacyHash(seed, userId) % 100));
+    }
+    
+    static long uniformHash(Seed seed, String userId) {
+        long h = seed.uniformSeed();
+        int length = userId.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long k = userId.charAt(i)
+                    | (long) userId.charAt(i + 1) << 16
+                    | (long) userId.charAt(i + 2) << 32
+                    | (long) userId.charAt(i + 3) << 48;
+            h ^= mixK1(k);
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        long k = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            k |= (long) userId.charAt(i) << shift;
+        }
+        h ^= mixK2(k);
+        return fmix64(h ^ length);
+    }
+    
+    /**
+     * Streaming murmur3_128 of {@code flagName + ":" + userId} in UTF-8, resumed from
+     * the precomputed prefix state
+     */
+    static long legacyHash(Seed seed, String userId) {
+        long h1 = seed.h1();
+        long h2 = seed.h2();
+        long lo = seed.tailLo();
+        long hi = seed.tailHi();
+        int buffered = seed.tailLength();
+        long total = seed.prefixLength();
+        
+        int length = userId.length();
+        for (int i = 0; i < length; i++) {
+            char c = userId.charAt(i);
+            int encoded;
+            int encodedLength;
+            if (c < 0x80) {
+                encoded = c;
+                encodedLength = 1;
+            } else if (c < 0x800) {
+                encoded = (0xc0 | c >>> 6) | (0x80 | c & 0x3f) << 8;
+                encodedLength = 2;
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < length ? userId.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    encoded = (0xf0 | codePoint >>> 18)
+                            | (0x80 | codePoint >>> 12 & 0x3f) << 8
+                            | (0x80 | codePoint >>> 6 & 0x3f) << 16
+                            | (0x80 | codePoint & 0x3f) << 24;
+                    encodedLength = 4;
+                    i++;
+                } else {
+                    encoded = '?';
+                    encodedLength = 1;
+                }
+            } else {
+                encoded = (0xe0 | c >>> 12) | (0x80 | c >>> 6 & 0x3f) << 8 | (0x80 | c & 0x3f) << 16;
+                encodedLength = 3;
+            }
+            
+            for (int b = 0; b < encodedLength; b++) {
+                long value = (encoded >>> (b << 3)) & 0xffL;
+                if (buffered < 8) {
+                    lo |= value << (buffered << 3);
+                } else {
+                    hi |= value << ((buffered - 8) << 3);
+                }
+                total++;
+                if (++buffered == 16) {
+                    h1 ^= mixK1(lo);
+                    h1 = Long.rotateLeft(h1, 27);
+                    h1 += h2;
+                    h1 = h1 * 5 + 0x52dce729;
+                    h2 ^= mixK2(hi);
+                    h2 = Long.rotateLeft(h2, 31);
+                    h2 += h1;
+                    h2 = h2 * 5 + 0x38495ab5;
+                    lo = 0;
+                    hi = 0;
+                    buffered = 0;
+                }
+            }
+        }
+        
+        return finish(h1, h2, lo, hi, total);
+    }
+    
+    /**
+     * murmur3_128 block processing over whole 16-byte blocks; returns {h1, h2, tailLo, tailHi}
+     */
+    private static long[] absorb(byte[] bytes, int length) {
+        long h1 = 0;
+        long h2 = 0;
+        int offset = 0;
+        for (; offset + 16 <= length; offset += 16) {
+            h1 ^= mixK1(littleEndianLong(bytes, offset, 8));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(littleEndianLong(bytes, offset + 8, 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tailLength = length - offset;
+        long tailLo = littleEndianLong(bytes, offset, Math.min(tailLength, 8));
+        long tailHi = tailLength > 8 ? littleEndianLong(bytes, offset + 8, tailLength - 8) : 0;
+        return new long[] {h1, h2, tailLo, tailHi};
+    }
+    
+    private static long finish(long h1, long h2, long lo, long hi, long total) {
+        h1 ^= mixK1(lo);
+        h2 ^= mixK2(hi);
+        h1 ^= total;
+        h2 ^= total;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+    
+    private static long littleEndianLong(byte[] bytes, int offset, int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value |= (bytes[offset + i] & 0xffL) << (i << 3);
+        }
+        return value;
+    }
+    
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+    
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+    
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
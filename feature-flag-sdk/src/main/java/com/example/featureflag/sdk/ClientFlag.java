@@ -0,0 +1,50 @@
+package com.example.featureflag.sdk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Flag definition as served by {@code GET /flags/snapshot}, compiled for local evaluation.
+ * A flag with targeting rules, variants, prerequisites or a rollout schedule is kept but
+ * marked {@code serverOnly}: the SDK cannot reproduce the service's answer for it yet.
+ */
+record ClientFlag(String flagName, boolean enabled, int rolloutBasisPoints, int version, Bucketing.Seed seed,
+                  boolean serverOnly) {
+    
+    static ClientFlag compile(Payload payload) {
+        int rolloutBasisPoints = payload.rolloutBasisPoints() != null
+                ? payload.rolloutBasisPoints()
+                : payload.rolloutPercentage() != null ? payload.rolloutPercentage() * 100 : 0;
+        boolean serverOnly = isSet(payload.rules()) || isSet(payload.variants())
+                || isSet(payload.prerequisites()) || isSet(payload.rolloutSchedule());
+        return new ClientFlag(payload.flagName(), Boolean.TRUE.equals(payload.enabled()), rolloutBasisPoints,
+                payload.version() != null ? payload.version() : 0, Bucketing.computeSeed(payload.flagName()),
+                serverOnly);
+    }
+    
+    /**
+     * Result for a user, or {@code defaultValue} when the flag needs the service to evaluate
+     */
+    boolean evaluate(String userId, Bucketing.Mode mode, boolean defaultValue) {
+        if (serverOnly) {
+            return defaultValue;
+        }
+        return enabled && Bucketing.isInRollout(seed, userId, rolloutBasisPoints, mode);
+    }
+    
+    private static boolean isSet(List<JsonNode> values) {
+        return values != null && !values.isEmpty();
+    }
+    
+    /**
+     * Wire format. Rules, variants, prerequisites and schedules are parsed only to tell
+     * whether a flag uses them; other fields are ignored.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Payload(String flagName, Boolean enabled, Integer rolloutPercentage, Integer rolloutBasisPoints,
+                   Integer version, List<JsonNode> rules, List<JsonNode> variants, List<JsonNode> prerequisites,
+                   List<JsonNode> rolloutSchedule) {
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.featureflag.sdk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feature flag client that evaluates flags locally.
+ * <p>
+ * The full flag set is pulled from the service's revisioned sync endpoint, kept in memory
+ * and refreshed in the background with conditional delta requests: an unchanged flag set
+ * costs the service a counter read, a change only the flags that changed. Evaluations
+ * never make a network call and keep working (on the last known flags) while the service
+ * is unreachable.
+ *
+ * <pre>{@code
+ * try (FeatureFlagClient client = FeatureFlagClient.builder(URI.create("http://flags:8080")).build()) {
+ *     client.start();
+ *     if (client.isEnabled("new_checkout", userId)) { ... }
+ * }
+ * }</pre>
+ */
+public final class FeatureFlagClient implements AutoCloseable {
+    
+    static final String BUCKETING_MODE_HEADER = "X-Bucketing-Mode";
+    
+    private static final System.Logger log = System.getLogger(FeatureFlagClient.class.getName());
+    
+    private final URI snapshotUri;
+    private final Duration pollInterval;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService scheduler;
+    
+    private volatile State state = new State(Collections.emptyMap(), Bucketing.Mode.LEGACY, null, null);
+    
+    private FeatureFlagClient(Builder builder) {
+        this.snapshotUri = builder.baseUri.resolve("/flags/snapshot");
+        this.pollInterval = builder.pollInterval;
+        this.requestTimeout = builder.requestTimeout;
+        this.httpClient = builder.httpClient != null
+                ? builder.httpClient
+                : HttpClient.newBuilder().connectTimeout(builder.requestTimeout).build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "feature-flag-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public static Builder builder(URI baseUri) {
+        return new Builder(baseUri);
+    }
+    
+    /**
+     * Perform the initial sync and schedule background refreshes.
+     * A failed initial sync is logged; evaluations return defaults until a sync succeeds.
+     */
+    public void start() {
+        refreshQuietly();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly,
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Evaluate a flag for a user, returning false for unknown flags and flags the SDK
+     * cannot evaluate locally
+     */
+    public boolean isEnabled(String flagName, String userId) {
+        return isEnabled(flagName, userId, false);
+    }
+    
+    /**
+     * Evaluate a flag for a user, returning the default for unknown flags and for flags
+     * that use targeting rules, variants, prerequisites or a rollout schedule, which the
+     * SDK cannot evaluate locally yet
+     */
+    public boolean isEnabled(String flagName, String userId, boolean defaultValue) {
+        State current = state;
+        ClientFlag flag = current.flags().get(flagName);
+        if (flag == null) {
+            return defaultValue;
+        }
+        return flag.evaluate(userId, current.mode(), defaultValue);
+    }
+    
+    /**
+     * Whether at least one sync has succeeded
+     */
+    public boolean isInitialized() {
+        return state.etag() != null;
+    }
+    
+    /**
+     * Fetch what changed since the last sync, or the full flag set on the first one
+     */
+    public void refresh() throws IOException, InterruptedException {
+        State current = state;
+        URI uri = current.revision() != null
+                ? URI.create(snapshotUri + "?sinceRevision=" + current.revision())
+                : snapshotUri;
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET();
+        if (current.etag() != null) {
+            request.header("If-None-Match", current.etag());
+        }
+        
+        HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 304) {
+            return;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Unexpected status " + response.statusCode() + " from " + uri);
+        }
+        
+        SnapshotPayload snapshot = objectMapper.readValue(response.body(), SnapshotPayload.class);
+        List<ClientFlag.Payload> payloads = snapshot.flags() != null ? snapshot.flags() : List.of();
+        Map<String, ClientFlag> flags = Boolean.TRUE.equals(snapshot.full())
+                ? new HashMap<>(payloads.size() * 2)
+                : new HashMap<>(current.flags());
+        if (snapshot.deletedFlags() != null) {
+            snapshot.deletedFlags().forEach(flags::remove);
+        }
+        // Only changed flags are sent after the first sync, so each one is compiled afresh
+        for (ClientFlag.Payload payload : payloads) {
+            flags.put(payload.flagName(), ClientFlag.compile(payload));
+        }
+        Bucketing.Mode mode = response.headers().firstValue(BUCKETING_MODE_HEADER)
+                .map(Bucketing.Mode::valueOf)
+                .orElse(current.mode());
+        String etag = response.headers().firstValue("ETag").orElse("");
+        
+        state = new State(Collections.unmodifiableMap(flags), mode, etag, snapshot.revision());
+        log.log(System.Logger.Level.DEBUG, "Synced {0} changed flags from {1}, {2} known",
+                payloads.size(), uri, flags.size());
+    }
+    
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+    
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.log(System.Logger.Level.WARNING, "Flag sync from " + snapshotUri + " failed, keeping "
+                    + state.flags().size() + " known flags", e);
+        }
+    }
+    
+    private record State(Map<String, ClientFlag> flags, Bucketing.Mode mode, String etag, Long revision) {
+    }
+    
+    /**
+     * Wire format of {@code GET /flags/snapshot}: every flag when full, otherwise the
+     * flags changed and deleted since the requested revision
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record SnapshotPayload(Long revision, Boolean full, List<ClientFlag.Payload> flags, List<String> deletedFlags) {
+    }
+    
+    public static final class Builder {
+        
+        private final URI baseUri;
+        private Duration pollInterval = Duration.ofSeconds(30);
+        private Duration requestTimeout = Duration.ofSeconds(5);
+        private HttpClient httpClient;
+        
+        private Builder(URI baseUri) {
+            this.baseUri = Objects.requireNonNull(baseUri, "baseUri");
+        }
+        
+        public Builder pollInterval(Duration pollInterval) {
+            this.pollInterval = Objects.requireNonNull(pollInterval, "pollInterval");
+            return this;
+        }
+        
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = Objects.requireNonNull(requestTimeout, "requestTimeout");
+            return this;
+        }
+        
+        public Builder httpClient(HttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+        
+        public FeatureFlagClient build() {
+            return new FeatureFlagClient(this);
+        }
+    }
+}
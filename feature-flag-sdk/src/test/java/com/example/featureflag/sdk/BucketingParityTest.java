@@ -0,0 +1,78 @@
+package com.example.featureflag.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Proves the SDK evaluates exactly like the service, using vectors generated from
+ * the service's BucketingEngine (see src/test/resources/bucketing in the service)
+ */
+class BucketingParityTest {
+    
+    private static final int[] BASIS_POINTS = {1, 2550, 5000, 9999};
+    
+    @Test
+    void hashesAndDecisionsMatchService() throws IOException {
+        List<String> vectors = readVectors();
+        assertTrue(vectors.size() > 400, "parity vectors missing");
+        
+        for (String line : vectors) {
+            String[] columns = line.split("\t", -1);
+            Bucketing.Seed seed = Bucketing.computeSeed(unescape(columns[0]));
+            String userId = unescape(columns[1]);
+            
+            assertEquals(Long.parseUnsignedLong(columns[2], 16), Bucketing.legacyHash(seed, userId), line);
+            assertEquals(Long.parseUnsignedLong(columns[3], 16), Bucketing.uniformHash(seed, userId), line);
+            for (int i = 0; i < BASIS_POINTS.length; i++) {
+                assertEquals(columns[4].charAt(i) == '1',
+                        Bucketing.isInRollout(seed, userId, BASIS_POINTS[i], Bucketing.Mode.LEGACY), line);
+                assertEquals(columns[5].charAt(i) == '1',
+                        Bucketing.isInRollout(seed, userId, BASIS_POINTS[i], Bucketing.Mode.UNIFORM), line);
+            }
+        }
+    }
+    
+    @Test
+    void wholePercentRolloutsMatchLegacyBucket() throws IOException {
+        for (String line : readVectors()) {
+            String[] columns = line.split("\t", -1);
+            Bucketing.Seed seed = Bucketing.computeSeed(unescape(columns[0]));
+            String userId = unescape(columns[1]);
+            int expectedBucket = Math.abs((int) (Long.parseUnsignedLong(columns[2], 16) % 100));
+            
+            for (int percentage = 0; percentage <= 100; percentage += 5) {
+                assertEquals(expectedBucket < percentage,
+                        Bucketing.isInRollout(seed, userId, percentage * 100, Bucketing.Mode.LEGACY), line);
+            }
+        }
+    }
+    
+    private List<String> readVectors() throws IOException {
+        InputStream stream = getClass().getResourceAsStream("/bucketing/parity-vectors.tsv");
+        assertNotNull(stream, "parity-vectors.tsv not on the test classpath");
+        try (var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.startsWith("#")).toList();
+        }
+    }
+    
+    private static String unescape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            if (value.startsWith("\\u", i)) {
+                builder.append((char) Integer.parseInt(value.substring(i + 2, i + 6), 16));
+                i += 5;
+            } else {
+                builder.append(value.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.featureflag.sdk;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureFlagClientTest {
+    
+    private HttpServer server;
+    private final AtomicReference<String> body = new AtomicReference<>("{\"revision\":0,\"full\":true,\"flags\":[]}");
+    private final AtomicReference<String> etag = new AtomicReference<>("\"1\"");
+    private final AtomicReference<String> lastQuery = new AtomicReference<>();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private FeatureFlagClient client;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/flags/snapshot", exchange -> {
+            lastQuery.set(exchange.getRequestURI().getQuery());
+            exchange.getResponseHeaders().add(FeatureFlagClient.BUCKETING_MODE_HEADER, "LEGACY");
+            exchange.getResponseHeaders().add("ETag", etag.get());
+            if (etag.get().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        server.start();
+        client = FeatureFlagClient.builder(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .pollInterval(Duration.ofHours(1))
+                .build();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+    
+    @Test
+    void evaluatesLocallyAfterSync() throws Exception {
+        body.set("""
+                {"revision":5,"full":true,"flags":[
+                 {"flagName":"on","enabled":true,"rolloutPercentage":100,"version":1,"description":"x"},
+                 {"flagName":"off","enabled":false,"rolloutPercentage":100,"version":1},
+                 {"flagName":"half","enabled":true,"rolloutPercentage":50,"rolloutBasisPoints":5000,"version":3}]}
+                """);
+        
+        client.refresh();
+        
+        assertTrue(client.isInitialized());
+        assertTrue(client.isEnabled("on", "user1"));
+        assertFalse(client.isEnabled("off", "user1"));
+        assertTrue(client.isEnabled("unknown", "user1", true));
+        Bucketing.Seed seed = Bucketing.computeSeed("half");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Bucketing.legacyBucket(seed, "user" + i) < 50, client.isEnabled("half", "user" + i));
+        }
+    }
+    
+    @Test
+    void flagsTheSdkCannotEvaluateReturnTheDefault() throws Exception {
+        body.set("""
+                {"revision":7,"full":true,"flags":[
+                 {"flagName":"targeted","enabled":true,"rolloutPercentage":100,"version":1,
+                  "rules":[{"conditions":[{"attribute":"plan","operator":"IN","values":["pro"]}],"rolloutBasisPoints":0}]},
+                 {"flagName":"variants","enabled":true,"rolloutPercentage":100,"version":1,
+                  "variants":[{"key":"a","weight":50},{"key":"b","weight":50}]},
+                 {"flagName":"prerequisite","enabled":true,"rolloutPercentage":100,"version":1,"prerequisites":["targeted"]},
+                 {"flagName":"scheduled","enabled":true,"rolloutPercentage":100,"version":1,
+                  "rolloutSchedule":[{"startAt":"2026-01-01T00:00:00Z","rolloutBasisPoints":0}]},
+                 {"flagName":"plain","enabled":true,"rolloutPercentage":100,"version":1,
+                  "rules":[],"variants":null,"prerequisites":[],"rolloutSchedule":null}]}
+                """);
+        
+        client.refresh();
+        
+        for (String flagName : new String[] {"targeted", "variants", "prerequisite", "scheduled"}) {
+            assertFalse(client.isEnabled(flagName, "user1"), flagName);
+            assertTrue(client.isEnabled(flagName, "user1", true), flagName);
+        }
+        assertTrue(client.isEnabled("plain", "user1"));
+    }
+    
+    @Test
+    void conditionalRefreshKeepsFlagsOnNotModified() throws Exception {
+        body.set(full(1, "{\"flagName\":\"on\",\"enabled\":true,\"rolloutPercentage\":100,\"version\":1}"));
+        client.refresh();
+        client.refresh();
+        
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, notModifiedResponses.get());
+        assertTrue(client.isEnabled("on", "user1"));
+    }
+    
+    @Test
+    void refreshAppliesDeltasSinceTheLastRevision() throws Exception {
+        body.set(full(1,
+                "{\"flagName\":\"on\",\"enabled\":true,\"rolloutPercentage\":100,\"version\":1}",
+                "{\"flagName\":\"gone\",\"enabled\":true,\"rolloutPercentage\":100,\"version\":1}",
+                "{\"flagName\":\"kept\",\"enabled\":true,\"rolloutPercentage\":100,\"version\":1}"));
+        client.refresh();
+        assertNull(lastQuery.get());
+        
+        body.set("""
+                {"revision":3,"full":false,"deletedFlags":["gone"],
+                 "flags":[{"flagName":"on","enabled":false,"rolloutPercentage":100,"version":2}]}
+                """);
+        etag.set("\"3\"");
+        client.refresh();
+        
+        assertEquals("sinceRevision=1", lastQuery.get());
+        assertFalse(client.isEnabled("on", "user1"));
+        assertFalse(client.isEnabled("gone", "user1"));
+        assertTrue(client.isEnabled("kept", "user1"));
+        
+        etag.set("\"4\"");
+        client.refresh();
+        assertEquals("sinceRevision=3", lastQuery.get());
+    }
+    
+    @Test
+    void keepsLastKnownFlagsWhenServiceIsDown() throws Exception {
+        body.set(full(1, "{\"flagName\":\"on\",\"enabled\":true,\"rolloutPercentage\":100,\"version\":1}"));
+        client.start();
+        server.stop(0);
+        
+        assertThrows(IOException.class, client::refresh);
+        assertTrue(client.isEnabled("on", "user1"));
+    }
+    
+    private static String full(long revision, String... flags) {
+        return "{\"revision\":" + revision + ",\"full\":true,\"flags\":[" + String.join(",", flags) + "]}";
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.featureflag.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result file against a stored baseline.
+ * <p>
+ * Prints throughput (ops/s) and normalized allocation (B/op) side by side and exits
+ * with status 1 when failOnRegression is set and any benchmark lost more than
+ * maxRegression of its baseline throughput.
+ * <p>
+ * Usage: {@code BaselineComparison <baseline.json> <result.json> [maxRegression] [failOnRegression]}
+ */
+public final class BaselineComparison {
+    
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    
+    private BaselineComparison() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> [maxRegression] [failOnRegression]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[0]);
+        File resultFile = new File(args[1]);
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 0.15;
+        boolean failOnRegression = args.length > 3 && Boolean.parseBoolean(args[3]);
+        
+        if (!resultFile.isFile()) {
+            System.err.println("No benchmark results at " + resultFile);
+            System.exit(2);
+        }
+        if (!baselineFile.isFile()) {
+            System.out.println("No baseline at " + baselineFile + "; copy " + resultFile + " there to create one");
+            return;
+        }
+        
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Result> baseline = read(objectMapper.readTree(baselineFile));
+        Map<String, Result> current = read(objectMapper.readTree(resultFile));
+        
+        int regressions = 0;
+        System.out.printf("%-75s %14s %14s %8s %12s %12s%n",
+                "Benchmark", "base ops/s", "ops/s", "delta", "base B/op", "B/op");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-75s %14s %14.0f %8s %12s %12.1f%n",
+                        entry.getKey(), "-", now.opsPerSecond(), "new", "-", now.bytesPerOp());
+                continue;
+            }
+            double delta = (now.opsPerSecond() - before.opsPerSecond()) / before.opsPerSecond();
+            boolean regressed = delta < -maxRegression;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-75s %14.0f %14.0f %+7.1f%% %12.1f %12.1f%s%n",
+                    entry.getKey(), before.opsPerSecond(), now.opsPerSecond(), delta * 100,
+                    before.bytesPerOp(), now.bytesPerOp(), regressed ? "  REGRESSION" : "");
+        }
+        
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, maxRegression * 100);
+            if (failOnRegression) {
+                System.exit(1);
+            }
+        }
+    }
+    
+    private static Map<String, Result> read(JsonNode results) {
+        Map<String, Result> byKey = new LinkedHashMap<>();
+        for (JsonNode run : results) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            for (Map.Entry<String, JsonNode> param : run.path("params").properties()) {
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            
+            double bytesPerOp = Double.NaN;
+            for (Map.Entry<String, JsonNode> metric : run.path("secondaryMetrics").properties()) {
+                // Older JMH versions prefix profiler metrics with a middle dot
+                if (metric.getKey().replace("·", "").equals(ALLOCATION_METRIC)) {
+                    bytesPerOp = metric.getValue().path("score").asDouble();
+                }
+            }
+            
+            String shortKey = key.toString().replace("com.example.featureflag.", "");
+            byKey.put(shortKey, new Result(run.path("primaryMetric").path("score").asDouble(), bytesPerOp));
+        }
+        return byKey;
+    }
+    
+    private record Result(double opsPerSecond, double bytesPerOp) {
+    }
+}
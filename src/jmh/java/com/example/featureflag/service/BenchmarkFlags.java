@@ -0,0 +1,39 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+
+import java.time.Instant;
+
+/**
+ * Shared fixtures for benchmarks
+ */
+final class BenchmarkFlags {
+    
+    private BenchmarkFlags() {
+    }
+    
+    static FeatureFlag flag(String flagName, int rolloutPercentage) {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        return FeatureFlag.builder()
+                .flagName(flagName)
+                .enabled(true)
+                .rolloutPercentage(rolloutPercentage)
+                .rolloutBasisPoints(rolloutPercentage * 100)
+                .description("Benchmark flag for " + flagName)
+                .version(7)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+    
+    /**
+     * Realistic user IDs; the count must be a power of two so callers can mask the index
+     */
+    static String[] userIds(int count) {
+        String[] userIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            userIds[i] = "user-" + Integer.toHexString(i * 0x9E3779B1) + "-" + i;
+        }
+        return userIds;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of cached flag values: the Jackson JSON encoding {@link CacheService}
+ * used to write, against {@link BinaryFlagCodec}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializationBenchmark {
+    
+    private static final long SOFT_EXPIRY_MILLIS = 1_704_067_440_000L;
+    
+    private ObjectMapper objectMapper;
+    private FeatureFlag flag;
+    private String json;
+    private BinaryFlagCodec binaryCodec;
+    private byte[] binary;
+    
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        flag = BenchmarkFlags.flag("checkout_redesign", 50);
+        json = objectMapper.writeValueAsString(flag);
+        binaryCodec = new BinaryFlagCodec();
+        binary = binaryCodec.encode(flag, SOFT_EXPIRY_MILLIS);
+    }
+    
+    @Benchmark
+    public String jsonSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(flag);
+    }
+    
+    @Benchmark
+    public FeatureFlag jsonDeserialize() throws JsonProcessingException {
+        return objectMapper.readValue(json, FeatureFlag.class);
+    }
+    
+    @Benchmark
+    public FeatureFlag jsonRoundTrip() throws JsonProcessingException {
+        return objectMapper.readValue(objectMapper.writeValueAsString(flag), FeatureFlag.class);
+    }
+    
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binaryCodec.encode(flag, SOFT_EXPIRY_MILLIS);
+    }
+    
+    @Benchmark
+    public FlagCodec.CachedFlag binaryDeserialize() throws IOException {
+        return binaryCodec.decode(binary);
+    }
+    
+    @Benchmark
+    public FlagCodec.CachedFlag binaryRoundTrip() throws IOException {
+        return binaryCodec.decode(binaryCodec.encode(flag, SOFT_EXPIRY_MILLIS));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.FlagEvaluationResponse;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.repository.InMemoryFeatureFlagRepository;
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@link FeatureFlagService#evaluateFlag} path against jedis-mock and an
+ * in-memory repository, served from the compiled snapshot, the local cache or Redis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateFlagPathBenchmark {
+    
+    private static final String FLAG_NAME = "checkout_redesign";
+    
+    @Param({"snapshot", "local", "redis"})
+    private String tier;
+    
+    private RedisServer redisServer;
+    private CacheService cacheService;
+    private FeatureFlagService service;
+    private String[] userIds;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        redisServer = RedisServer.newRedisServer().start();
+        
+        cacheService = new CacheService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cacheService, "redisHost", redisServer.getHost());
+        ReflectionTestUtils.setField(cacheService, "redisPort", redisServer.getBindPort());
+        ReflectionTestUtils.setField(cacheService, "cacheTtlSeconds", 300);
+        // A local cache size of 0 forces every read through Redis
+        ReflectionTestUtils.setField(cacheService, "localMaxSize", "redis".equals(tier) ? 0L : 10000L);
+        ReflectionTestUtils.setField(cacheService, "localTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cacheService, "invalidationChannel", "flag-invalidations");
+        ReflectionTestUtils.setField(cacheService, "negativeTtlSeconds", 30);
+        ReflectionTestUtils.setField(cacheService, "negativeMaxSize", 10000L);
+        ReflectionTestUtils.setField(cacheService, "codecName", "binary");
+        ReflectionTestUtils.setField(cacheService, "redisTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(cacheService, "poolMaxWaitMs", 100L);
+        ReflectionTestUtils.setField(cacheService, "circuitBreakerEnabled", true);
+        ReflectionTestUtils.setField(cacheService, "circuitBreakerFailureRate", 0.5);
+        ReflectionTestUtils.setField(cacheService, "circuitBreakerSlowCallMs", 250L);
+        ReflectionTestUtils.setField(cacheService, "circuitBreakerWindowSize", 20);
+        ReflectionTestUtils.setField(cacheService, "circuitBreakerOpenMs", 5000L);
+        cacheService.init();
+        
+        InMemoryFeatureFlagRepository repository = new InMemoryFeatureFlagRepository();
+        repository.save(BenchmarkFlags.flag(FLAG_NAME, 50));
+        
+        FlagSnapshotManager snapshotManager = "snapshot".equals(tier)
+                ? new FlagSnapshotManager(repository, cacheService, new SegmentHandles())
+                : new UncachedSnapshotManager();
+        service = new FeatureFlagService(repository, cacheService, new BucketingEngine(), snapshotManager,
+                new FlagChangeBroadcaster(), new FlagLoader(repository, cacheService, new SimpleMeterRegistry()),
+                new FlagEvaluationMetrics(new SimpleMeterRegistry()),
+                new ExposurePipeline(events -> { }, new SimpleMeterRegistry()), new FlagUsageCounters(null));
+        userIds = BenchmarkFlags.userIds(1024);
+        service.evaluateFlag(FLAG_NAME, userIds[0]);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cacheService.destroy();
+        redisServer.stop();
+    }
+    
+    @Benchmark
+    public FlagEvaluationResponse evaluateFlag(UserCursor cursor) {
+        return service.evaluateFlag(FLAG_NAME, userIds[cursor.next++ & (userIds.length - 1)]);
+    }
+    
+    @State(Scope.Thread)
+    public static class UserCursor {
+        int next;
+    }
+    
+    /**
+     * Snapshot manager whose current snapshot stays empty, so every evaluation goes
+     * through the cache tiers. The compiled flag is memoized to keep seed computation
+     * out of the measurement.
+     */
+    static class UncachedSnapshotManager extends FlagSnapshotManager {
+        
+        private FlagSnapshot compiled;
+        
+        UncachedSnapshotManager() {
+            super(null, null, new SegmentHandles());
+        }
+        
+        @Override
+        public synchronized FlagSnapshot apply(FeatureFlag flag) {
+            if (compiled == null || compiled.version(0) != flag.getVersion()) {
+                compiled = FlagSnapshot.of(List.of(flag), new SegmentHandles());
+            }
+            return compiled;
+        }
+    }
+}
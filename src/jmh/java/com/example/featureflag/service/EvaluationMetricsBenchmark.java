@@ -0,0 +1,75 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.FlagEvaluationResponse;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluation metrics on the snapshot path: a no-op registry against a Prometheus
+ * registry publishing percentiles and histograms, as configured in application.yml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationMetricsBenchmark {
+    
+    private static final String FLAG_NAME = "checkout_redesign";
+    
+    @Param({"noop", "prometheus"})
+    private String registry;
+    
+    private FeatureFlagService service;
+    private String[] userIds;
+    
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = "noop".equals(registry) ? new CompositeMeterRegistry() : prometheusRegistry();
+        FlagSnapshotManager snapshotManager = new FlagSnapshotManager(null, null, new SegmentHandles());
+        snapshotManager.apply(BenchmarkFlags.flag(FLAG_NAME, 50));
+        service = new FeatureFlagService(null, null, new BucketingEngine(), snapshotManager, null, null,
+                new FlagEvaluationMetrics(meterRegistry), new ExposurePipeline(events -> { }, meterRegistry),
+                new FlagUsageCounters(null));
+        userIds = BenchmarkFlags.userIds(1024);
+    }
+    
+    @Benchmark
+    public FlagEvaluationResponse evaluateFlag(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return service.evaluateFlag(FLAG_NAME, userIds[cursor.next++ & (userIds.length - 1)]);
+    }
+    
+    private static MeterRegistry prometheusRegistry() {
+        PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        prometheus.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.95, 0.99)
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        });
+        return prometheus;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.FlagEvaluationResponse;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of exposure logging on the snapshot evaluation path. The sink discards events, so
+ * this measures the request-side offer plus, on hosts with fewer free cores than threads,
+ * the drainer's deduplication and batching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExposurePipelineBenchmark {
+    
+    private static final String FLAG_NAME = "checkout_redesign";
+    
+    @Param({"off", "on"})
+    private String exposures;
+    
+    private ExposurePipeline pipeline;
+    private FeatureFlagService service;
+    private String[] userIds;
+    
+    @Setup
+    public void setUp() {
+        CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+        pipeline = new ExposurePipeline(events -> { }, meterRegistry);
+        ReflectionTestUtils.setField(pipeline, "enabled", "on".equals(exposures));
+        pipeline.start();
+        FlagSnapshotManager snapshotManager = new FlagSnapshotManager(null, null, new SegmentHandles());
+        snapshotManager.apply(BenchmarkFlags.flag(FLAG_NAME, 50));
+        service = new FeatureFlagService(null, null, new BucketingEngine(), snapshotManager, null, null,
+                new FlagEvaluationMetrics(meterRegistry), pipeline, new FlagUsageCounters(null));
+        userIds = BenchmarkFlags.userIds(1024);
+    }
+    
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+    
+    @Benchmark
+    public FlagEvaluationResponse evaluateFlag(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return service.evaluateFlag(FLAG_NAME, userIds[cursor.next++ & (userIds.length - 1)]);
+    }
+}
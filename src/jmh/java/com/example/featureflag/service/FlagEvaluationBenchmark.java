@@ -0,0 +1,67 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.FeatureFlagResponse;
+import com.example.featureflag.model.FeatureFlag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pure evaluation of a compiled flag and mapping cost, with no cache or repository involved
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlagEvaluationBenchmark {
+    
+    private FeatureFlagService service;
+    private FeatureFlag flag;
+    private String[] userIds;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        service = new FeatureFlagService(null, null, new BucketingEngine(), null, null, null, null, null, null);
+        flag = BenchmarkFlags.flag("checkout_redesign", 50);
+        userIds = BenchmarkFlags.userIds(1024);
+    }
+    
+    @Benchmark
+    public boolean evaluateFlagForUser(Rollout rollout) {
+        return service.evaluateFlagForUser(rollout.snapshot, 0, userIds[next++ & (userIds.length - 1)]);
+    }
+    
+    @Benchmark
+    public FeatureFlagResponse mapToResponse() {
+        return service.mapToResponse(flag);
+    }
+    
+    @State(Scope.Thread)
+    public static class Rollout {
+        
+        @Param({"0", "50", "100"})
+        private int rolloutPercentage;
+        
+        FlagSnapshot snapshot;
+        
+        @Setup
+        public void setUp() {
+            snapshot = FlagSnapshot.of(List.of(BenchmarkFlags.flag("checkout_redesign", rolloutPercentage)),
+                    new SegmentHandles());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a flag at the top of a prerequisite chain {@code depth} levels deep. Every
+ * flag in the chain is rolled out to 99%, so each level pays for its own bucketing hash
+ * (a full rollout would skip it) and nearly every user passes the whole chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrerequisiteChainBenchmark {
+    
+    @Param({"0", "1", "5"})
+    private int depth;
+    
+    private FeatureFlagService service;
+    private FlagSnapshot snapshot;
+    private int position;
+    private String[] userIds;
+    
+    @Setup
+    public void setUp() {
+        List<FeatureFlag> chain = new ArrayList<>();
+        for (int level = 0; level <= depth; level++) {
+            FeatureFlag flag = BenchmarkFlags.flag("chain_" + level, 99);
+            flag.setPrerequisites(level < depth ? List.of("chain_" + (level + 1)) : List.of());
+            chain.add(flag);
+        }
+        service = new FeatureFlagService(null, null, new BucketingEngine(), null, null, null, null, null, null);
+        snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(chain);
+        position = snapshot.indexOf("chain_0");
+        userIds = BenchmarkFlags.userIds(1024);
+    }
+    
+    @Benchmark
+    public boolean evaluate(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return service.evaluateFlagForUser(snapshot, position, userIds[cursor.next++ & (userIds.length - 1)], Map.of());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.RolloutStep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flag evaluation with a rollout schedule in the middle of a ramp, against the same flag
+ * with a fixed rollout. {@code steps} is the number of schedule steps; 0 means no schedule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RolloutScheduleBenchmark {
+    
+    @Param({"0", "2", "24"})
+    private int steps;
+    
+    private FeatureFlagService service;
+    private FlagSnapshot snapshot;
+    private int position;
+    private String[] userIds;
+    
+    @Setup
+    public void setUp() {
+        // Hourly steps with linear ramps in between, centred on now
+        Instant start = Instant.now().minusSeconds((steps - 1) * 1800L);
+        List<RolloutStep> schedule = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            schedule.add(new RolloutStep(start.plusSeconds(i * 3600L), (i + 1) * 10000 / steps, i > 0));
+        }
+        FeatureFlag flag = BenchmarkFlags.flag("ramped_flag", 50);
+        flag.setRolloutSchedule(schedule);
+        service = new FeatureFlagService(null, null, new BucketingEngine(), null, null, null, null, null, null);
+        snapshot = FlagSnapshot.empty(new SegmentHandles()).with(flag);
+        position = snapshot.indexOf("ramped_flag");
+        userIds = BenchmarkFlags.userIds(1024);
+    }
+    
+    @Benchmark
+    public boolean evaluate(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return service.evaluateFlagForUser(snapshot, position, userIds[cursor.next++ & (userIds.length - 1)], Map.of());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.SegmentKeyType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Segment lookups against a million members. Numeric IDs are drawn from a range of
+ * 50 million so the bitmap mixes array and bitset containers; string IDs look like
+ * UUID-ish account keys. Misses are IDs of the same shape that are not members.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentMembershipBenchmark {
+    
+    private static final int MEMBERS = 1_000_000;
+    private static final int QUERIES = 4096;
+    
+    @Param({"NUMERIC", "STRING"})
+    private SegmentKeyType keyType;
+    
+    private SegmentMembership membership;
+    private String[] hits;
+    private String[] misses;
+    
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        hits = new String[QUERIES];
+        misses = new String[QUERIES];
+        if (keyType == SegmentKeyType.NUMERIC) {
+            long[] ids = new long[MEMBERS];
+            for (int i = 0; i < MEMBERS; i++) {
+                // Even IDs only, so odd ones are guaranteed misses
+                ids[i] = random.nextLong(25_000_000) * 2;
+            }
+            membership = NumericSegmentSet.of(ids, MEMBERS);
+            for (int i = 0; i < QUERIES; i++) {
+                hits[i] = Long.toString(ids[random.nextInt(MEMBERS)]);
+                misses[i] = Long.toString(random.nextLong(25_000_000) * 2 + 1);
+            }
+        } else {
+            List<String> ids = new ArrayList<>(MEMBERS);
+            for (int i = 0; i < MEMBERS; i++) {
+                ids.add("acct-" + Long.toHexString(random.nextLong()));
+            }
+            membership = StringSegmentSet.of(ids);
+            for (int i = 0; i < QUERIES; i++) {
+                hits[i] = ids.get(random.nextInt(MEMBERS));
+                misses[i] = "user-" + Long.toHexString(random.nextLong());
+            }
+        }
+        System.out.printf("%n%s segment: %d members, %d bytes (%.2f bytes/member)%n", keyType,
+                membership.size(), membership.memoryBytes(), (double) membership.memoryBytes() / membership.size());
+    }
+    
+    @Benchmark
+    public boolean containsMember(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return membership.contains(hits[cursor.next++ & (QUERIES - 1)]);
+    }
+    
+    @Benchmark
+    public boolean containsNonMember(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return membership.contains(misses[cursor.next++ & (QUERIES - 1)]);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of compiled targeting rules as the rule count grows. Every user matches only the
+ * last rule, so each evaluation walks the whole list: the worst case per rule count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetingRulesBenchmark {
+    
+    @Param({"0", "1", "4", "16", "64"})
+    private int ruleCount;
+    
+    private FlagSnapshot snapshot;
+    private FeatureFlagService service;
+    private String[] userIds;
+    private Map<String, String> attributes;
+    
+    @Setup
+    public void setUp() {
+        List<TargetingRule> rules = new ArrayList<>();
+        for (int i = 0; i < ruleCount - 1; i++) {
+            rules.add(TargetingRule.builder()
+                    .conditions(List.of(
+                            new TargetingCondition("country", TargetingOperator.IN, List.of("C" + i, "D" + i)),
+                            new TargetingCondition("appVersion", TargetingOperator.SEMVER_GTE, List.of(i + ".0"))))
+                    .rolloutBasisPoints(0)
+                    .build());
+        }
+        if (ruleCount > 0) {
+            rules.add(TargetingRule.builder()
+                    .conditions(List.of(
+                            new TargetingCondition("plan", TargetingOperator.IN, List.of("enterprise")),
+                            new TargetingCondition("appVersion", TargetingOperator.SEMVER_GTE, List.of("5.2"))))
+                    .rolloutBasisPoints(5000)
+                    .build());
+        }
+        FeatureFlag flag = BenchmarkFlags.flag("checkout_redesign", 50);
+        flag.setRules(rules);
+        snapshot = FlagSnapshot.of(List.of(flag), new SegmentHandles());
+        service = new FeatureFlagService(null, null, new BucketingEngine(), null, null, null, null, null, null);
+        userIds = BenchmarkFlags.userIds(1024);
+        attributes = Map.of("country", "US", "plan", "enterprise", "appVersion", "5.10.3");
+    }
+    
+    @Benchmark
+    public boolean evaluateFlagForUser(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return service.evaluateFlagForUser(snapshot, 0, userIds[cursor.next++ & (userIds.length - 1)], attributes);
+    }
+}
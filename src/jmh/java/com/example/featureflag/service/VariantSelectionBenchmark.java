@@ -0,0 +1,64 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FlagVariant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Variant selection as the variant count grows. Weights are reshuffled a few times before
+ * measuring, so every variant owns several fragmented bucket ranges like a long-running
+ * experiment would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariantSelectionBenchmark {
+    
+    @Param({"2", "3", "10", "50"})
+    private int variantCount;
+    
+    private FlagVariants variants;
+    private BucketingEngine.Seed seed;
+    private String[] userIds;
+    
+    @Setup
+    public void setUp() {
+        List<FlagVariant> allocated = null;
+        for (int round = 0; round < 4; round++) {
+            List<FlagVariant> requested = new ArrayList<>();
+            int remaining = BucketingEngine.MAX_BASIS_POINTS;
+            for (int i = 0; i < variantCount; i++) {
+                // Alternate which half of the variants is heavier each round
+                int weight = i == variantCount - 1 ? remaining
+                        : BucketingEngine.MAX_BASIS_POINTS / variantCount + ((i + round) % 2 == 0 ? 1 : -1) * round;
+                requested.add(FlagVariant.builder().key("variant-" + i).weight(weight).build());
+                remaining -= weight;
+            }
+            allocated = FlagVariants.allocate("checkout_experiment", allocated, requested);
+        }
+        variants = FlagVariants.compile(allocated);
+        seed = BucketingEngine.computeSeed("checkout_experiment");
+        userIds = BenchmarkFlags.userIds(1024);
+    }
+    
+    @Benchmark
+    public int variantFor(EvaluateFlagPathBenchmark.UserCursor cursor) {
+        return variants.variantFor(seed, userIds[cursor.next++ & (userIds.length - 1)]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.featureflag.loadtest;
+
+import java.util.Random;
+
+/**
+ * Picks key indexes in {@code [0, size)} for generated requests
+ */
+interface KeyDistribution {
+    
+    int next(Random random);
+    
+    /**
+     * {@code uniform}, or {@code zipfian} with the given exponent
+     */
+    static KeyDistribution of(String name, int size, double exponent) {
+        return switch (name) {
+            case "uniform" -> new Uniform(size);
+            case "zipfian" -> new Zipfian(size, exponent);
+            default -> throw new IllegalArgumentException("Unknown key distribution: " + name);
+        };
+    }
+    
+    record Uniform(int size) implements KeyDistribution {
+        
+        @Override
+        public int next(Random random) {
+            return random.nextInt(size);
+        }
+    }
+    
+    /**
+     * Zipfian over {@code size} keys, index 0 being the most popular, drawn in constant
+     * time with the method of Gray et al., "Quickly Generating Billion-Record Synthetic
+     * Databases" (also used by YCSB). The exponent must lie in (0, 1).
+     */
+    final class Zipfian implements KeyDistribution {
+        
+        private final int size;
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+        
+        Zipfian(int size, double theta) {
+            if (!(theta > 0 && theta < 1)) {
+                throw new IllegalArgumentException("Zipfian exponent must be in (0, 1): " + theta);
+            }
+            this.size = size;
+            this.theta = theta;
+            this.zetaN = zeta(size, theta);
+            this.alpha = 1 / (1 - theta);
+            this.eta = (1 - Math.pow(2.0 / size, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+        
+        @Override
+        public int next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, size - 1);
+            }
+            return Math.min((int) (size * Math.pow(eta * u - eta + 1, alpha)), size - 1);
+        }
+        
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.featureflag.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and throughput of a measured load-test phase, and its check against a budget.
+ * <p>
+ * Writes {@code response-time.hgrm} and {@code service-time.hgrm} (HdrHistogram percentile
+ * distributions in milliseconds, readable by the HdrHistogram plotter) and {@code summary.json}.
+ */
+final class LatencyReport {
+    
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99, 100};
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    private final double targetRate;
+    private final OpenModelLoadGenerator.Result result;
+    
+    LatencyReport(double targetRate, OpenModelLoadGenerator.Result result) {
+        this.targetRate = targetRate;
+        this.result = result;
+    }
+    
+    double throughput() {
+        return result.completed() / (result.elapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+    
+    double errorRate() {
+        return result.sent() == 0 ? 0 : result.errors() / (double) result.sent();
+    }
+    
+    /**
+     * Corrected response time at the given percentile, in milliseconds
+     */
+    double responseTimeMs(double percentile) {
+        return result.responseTime().getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+    
+    void print(PrintStream out) {
+        out.printf("Target rate %.0f req/s, achieved %.0f req/s; %d sent, %d errors (%.3f%%)%n",
+                targetRate, throughput(), result.sent(), result.errors(), errorRate() * 100);
+        out.printf("%-10s %18s %18s%n", "percentile", "response time ms", "service time ms");
+        for (double percentile : PERCENTILES) {
+            out.printf("%-10s %18.3f %18.3f%n", label(percentile), responseTimeMs(percentile),
+                    result.serviceTime().getValueAtPercentile(percentile) / NANOS_PER_MILLI);
+        }
+    }
+    
+    void write(Path directory, ObjectMapper objectMapper) throws IOException {
+        writeDistribution(result.responseTime(), directory.resolve("response-time.hgrm"));
+        writeDistribution(result.serviceTime(), directory.resolve("service-time.hgrm"));
+        
+        ObjectNode summary = objectMapper.createObjectNode();
+        summary.put("targetRate", targetRate);
+        summary.put("throughput", throughput());
+        summary.put("sent", result.sent());
+        summary.put("errors", result.errors());
+        ObjectNode responseTime = summary.putObject("responseTimeMs");
+        ObjectNode serviceTime = summary.putObject("serviceTimeMs");
+        for (double percentile : PERCENTILES) {
+            responseTime.put(label(percentile), responseTimeMs(percentile));
+            serviceTime.put(label(percentile),
+                    result.serviceTime().getValueAtPercentile(percentile) / NANOS_PER_MILLI);
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(directory.resolve("summary.json").toFile(), summary);
+    }
+    
+    /**
+     * Budget lines this report exceeds; empty when it is within budget.
+     * <p>
+     * The budget holds {@code responseTimeMs} limits keyed by percentile, {@code maxErrorRate}
+     * and {@code minThroughputRatio}, the share of the target rate that must be served.
+     */
+    List<String> violations(JsonNode budget) {
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> limit : budget.path("responseTimeMs").properties()) {
+            double actual = responseTimeMs(Double.parseDouble(limit.getKey()));
+            if (actual > limit.getValue().asDouble()) {
+                violations.add(String.format("p%s response time %.3f ms exceeds %.3f ms",
+                        limit.getKey(), actual, limit.getValue().asDouble()));
+            }
+        }
+        if (budget.has("maxErrorRate") && errorRate() > budget.get("maxErrorRate").asDouble()) {
+            violations.add(String.format("error rate %.4f exceeds %.4f",
+                    errorRate(), budget.get("maxErrorRate").asDouble()));
+        }
+        if (budget.has("minThroughputRatio") && throughput() < targetRate * budget.get("minThroughputRatio").asDouble()) {
+            violations.add(String.format("throughput %.0f req/s is below %.0f%% of the %.0f req/s target",
+                    throughput(), budget.get("minThroughputRatio").asDouble() * 100, targetRate));
+        }
+        return violations;
+    }
+    
+    private static void writeDistribution(Histogram histogram, Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+    
+    private static String label(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.featureflag.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end load test of {@code GET /flags/{flagName}/evaluate}.
+ * <p>
+ * Boots the service against in-process stand-ins, creates flags through the API and drives
+ * constant-arrival-rate traffic: a warmup phase that is discarded, then a measured phase
+ * reported as HDR histograms. The report is checked against a latency budget and the
+ * process exits with status 1 when the budget is exceeded, unless failOnBudget is false.
+ * <p>
+ * Settings are {@code loadtest.*} system properties; the {@code loadtest} Maven profile
+ * passes them through with their defaults.
+ */
+public final class LoadTest {
+    
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    
+    /**
+     * Users that carry plan=enterprise: one in this many
+     */
+    private static final int ENTERPRISE_USER_STRIDE = 10;
+    
+    private LoadTest() {
+    }
+    
+    public static void main(String[] args) {
+        int status;
+        try {
+            status = run(Settings.fromSystemProperties());
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 2;
+        }
+        // The HTTP client, the service and the Redis stand-in leave non-daemon threads behind
+        System.exit(status);
+    }
+    
+    private static int run(Settings settings) throws Exception {
+        Files.createDirectories(settings.reportDir());
+        ObjectMapper objectMapper = new ObjectMapper();
+        
+        try (StandInEnvironment environment = StandInEnvironment.start(settings.reportDir())) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(REQUEST_TIMEOUT)
+                    .build();
+            List<String> flags = createFlags(client, objectMapper, environment.baseUrl(), settings.flags());
+            OpenModelLoadGenerator generator = new OpenModelLoadGenerator(client,
+                    evaluations(environment.baseUrl(), flags, settings), settings.rate());
+            
+            System.out.printf("Warming up: %.0f req/s for %ds over %d flags and %d users (%s)%n",
+                    settings.rate(), settings.warmup().toSeconds(), settings.flags(), settings.users(),
+                    settings.distribution());
+            generator.run(settings.warmup());
+            System.out.printf("Measuring: %.0f req/s for %ds%n", settings.rate(), settings.duration().toSeconds());
+            LatencyReport report = new LatencyReport(settings.rate(), generator.run(settings.duration()));
+            
+            report.print(System.out);
+            report.write(settings.reportDir(), objectMapper);
+            System.out.println("Histograms and summary written to " + settings.reportDir());
+            return checkBudget(report, settings, objectMapper);
+        }
+    }
+    
+    /**
+     * Flags with a spread of rollouts; every fourth one also targets enterprise users
+     */
+    private static List<String> createFlags(HttpClient client, ObjectMapper objectMapper, String baseUrl, int count)
+            throws IOException, InterruptedException {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = String.format("loadtest_flag_%05d", i);
+            ObjectNode flag = objectMapper.createObjectNode()
+                    .put("flagName", names[i])
+                    .put("enabled", true)
+                    .put("rolloutPercentage", i * 37 % 101)
+                    .put("description", "Load test flag");
+            if (i % 4 == 0) {
+                ObjectNode rule = flag.putArray("rules").addObject()
+                        .put("description", "Enterprise users")
+                        .put("rolloutBasisPoints", 10000);
+                rule.putArray("conditions").addObject()
+                        .put("attribute", "plan")
+                        .put("operator", "IN")
+                        .putArray("values").add("enterprise");
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/flags"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(flag)))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Creating " + names[i] + " failed with "
+                        + response.statusCode() + ": " + response.body());
+            }
+        }
+        return List.of(names);
+    }
+    
+    /**
+     * Evaluation requests with flag and user keys drawn from the configured distribution.
+     * Only the generator thread calls the supplier, so it keeps one Random.
+     */
+    private static Supplier<HttpRequest> evaluations(String baseUrl, List<String> flags, Settings settings) {
+        String[] prefixes = flags.stream()
+                .map(flag -> baseUrl + "/flags/" + flag + "/evaluate?userId=user-")
+                .toArray(String[]::new);
+        KeyDistribution flagKeys = KeyDistribution.of(settings.distribution(), flags.size(), settings.zipfExponent());
+        KeyDistribution userKeys = KeyDistribution.of(settings.distribution(), settings.users(), settings.zipfExponent());
+        Random random = new Random();
+        return () -> {
+            int user = userKeys.next(random);
+            String plan = user % ENTERPRISE_USER_STRIDE == 0 ? "enterprise" : "free";
+            return HttpRequest.newBuilder(URI.create(prefixes[flagKeys.next(random)] + user + "&plan=" + plan))
+                    .timeout(REQUEST_TIMEOUT)
+                    .GET()
+                    .build();
+        };
+    }
+    
+    private static int checkBudget(LatencyReport report, Settings settings, ObjectMapper objectMapper)
+            throws IOException {
+        if (!Files.isRegularFile(settings.budget())) {
+            System.out.println("No latency budget at " + settings.budget());
+            return 0;
+        }
+        JsonNode budget = objectMapper.readTree(settings.budget().toFile());
+        if (budget.has("rate") && budget.get("rate").asDouble() != settings.rate()) {
+            System.out.printf("Note: the budget was set for %.0f req/s, this run used %.0f req/s%n",
+                    budget.get("rate").asDouble(), settings.rate());
+        }
+        
+        List<String> violations = report.violations(budget);
+        if (violations.isEmpty()) {
+            System.out.println("Within latency budget " + settings.budget());
+            return 0;
+        }
+        violations.forEach(violation -> System.out.println("OVER BUDGET: " + violation));
+        return settings.failOnBudget() ? 1 : 0;
+    }
+    
+    private record Settings(double rate, Duration warmup, Duration duration, int flags, int users,
+                            String distribution, double zipfExponent, Path budget, Path reportDir,
+                            boolean failOnBudget) {
+        
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Double.parseDouble(System.getProperty("loadtest.rate", "250")),
+                    Duration.ofSeconds(Long.getLong("loadtest.warmup", 15)),
+                    Duration.ofSeconds(Long.getLong("loadtest.duration", 60)),
+                    Integer.getInteger("loadtest.flags", 200),
+                    Integer.getInteger("loadtest.users", 100_000),
+                    System.getProperty("loadtest.distribution", "zipfian"),
+                    Double.parseDouble(System.getProperty("loadtest.zipfExponent", "0.99")),
+                    Path.of(System.getProperty("loadtest.budget", "benchmarks/latency-budget.json")),
+                    Path.of(System.getProperty("loadtest.reportDir", "target/loadtest")),
+                    Boolean.parseBoolean(System.getProperty("loadtest.failOnBudget", "true")));
+        }
+    }
+}
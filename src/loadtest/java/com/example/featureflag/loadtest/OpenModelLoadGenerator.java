@@ -0,0 +1,97 @@
+package com.example.featureflag.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-model load: requests start on a fixed schedule whether or not earlier ones have
+ * finished, so a slow server builds a queue instead of slowing the load down.
+ * <p>
+ * Response time is measured from each request's intended start rather than from when it
+ * was sent. A stall then shows up in every request scheduled behind it, which corrects for
+ * coordinated omission. Service time, measured from the actual send, is kept alongside it;
+ * the gap between the two is time spent queued behind the stall.
+ */
+final class OpenModelLoadGenerator {
+    
+    /**
+     * Requests still running this long after the phase ends are counted as errors
+     */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+    
+    private final HttpClient client;
+    private final Supplier<HttpRequest> requests;
+    private final long intervalNanos;
+    
+    OpenModelLoadGenerator(HttpClient client, Supplier<HttpRequest> requests, double ratePerSecond) {
+        this.client = client;
+        this.requests = requests;
+        this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+    }
+    
+    /**
+     * Send requests at the configured rate for the given duration and wait for them to finish
+     */
+    Result run(Duration duration) {
+        Recorder responseTime = new Recorder(3);
+        Recorder serviceTime = new Recorder(3);
+        LongAdder errors = new LongAdder();
+        AtomicLong outstanding = new AtomicLong();
+        AtomicLong lastCompletion = new AtomicLong();
+        
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long sent = 0;
+        for (long intended = start; intended < end; intended = start + sent * intervalNanos) {
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            long scheduled = intended;
+            long sentAt = now;
+            outstanding.incrementAndGet();
+            client.sendAsync(requests.get(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        long completedAt = System.nanoTime();
+                        if (failure == null && response.statusCode() == 200) {
+                            responseTime.recordValue(completedAt - scheduled);
+                            serviceTime.recordValue(completedAt - sentAt);
+                        } else {
+                            errors.increment();
+                        }
+                        lastCompletion.accumulateAndGet(completedAt, Math::max);
+                        outstanding.decrementAndGet();
+                    });
+            sent++;
+        }
+        
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        long abandoned = outstanding.get();
+        long elapsed = Math.max(lastCompletion.get(), end) - start;
+        return new Result(responseTime.getIntervalHistogram(), serviceTime.getIntervalHistogram(),
+                sent, errors.sum() + abandoned, elapsed);
+    }
+    
+    /**
+     * Outcome of one phase; histograms are in nanoseconds and hold successful requests only
+     */
+    record Result(Histogram responseTime, Histogram serviceTime, long sent, long errors, long elapsedNanos) {
+        
+        long completed() {
+            return responseTime.getTotalCount();
+        }
+    }
+}
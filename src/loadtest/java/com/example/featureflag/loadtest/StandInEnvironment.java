@@ -0,0 +1,63 @@
+package com.example.featureflag.loadtest;
+
+import com.example.featureflag.FeatureFlagServiceApplication;
+import com.github.fppt.jedismock.RedisServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The service booted in-process against local stand-ins: the in-memory storage backend,
+ * which keeps flags, segments and usage totals without DynamoDB, and a jedis-mock Redis
+ * server.
+ * <p>
+ * Exposures go to files under the report directory, and no flag snapshot file carries
+ * over between runs. Service logging is cut to warnings so the console does not become the bottleneck
+ * being measured.
+ */
+@Slf4j
+final class StandInEnvironment implements AutoCloseable {
+    
+    private final RedisServer redisServer;
+    private final ConfigurableApplicationContext context;
+    private final String baseUrl;
+    
+    private StandInEnvironment(RedisServer redisServer, ConfigurableApplicationContext context) {
+        this.redisServer = redisServer;
+        this.context = context;
+        this.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+    
+    static StandInEnvironment start(Path reportDirectory) throws IOException {
+        RedisServer redisServer = RedisServer.newRedisServer().start();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FeatureFlagServiceApplication.class)
+                // Command-line arguments, so they take precedence over application.yml
+                .run(
+                        "--spring.profiles.active=loadtest",
+                        "--spring.main.banner-mode=off",
+                        "--server.port=0",
+                        "--flags.storage.backend=memory",
+                        "--flags.snapshot.file=",
+                        "--spring.redis.host=" + redisServer.getHost(),
+                        "--spring.redis.port=" + redisServer.getBindPort(),
+                        "--flags.exposure.enabled=true",
+                        "--flags.exposure.file.directory=" + reportDirectory.resolve("exposures"),
+                        "--logging.level.com.example.featureflag=WARN");
+        StandInEnvironment environment = new StandInEnvironment(redisServer, context);
+        log.info("Service under test listening at {}", environment.baseUrl());
+        return environment;
+    }
+    
+    String baseUrl() {
+        return baseUrl;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        context.close();
+        redisServer.stop();
+    }
+}
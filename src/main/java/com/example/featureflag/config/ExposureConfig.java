@@ -0,0 +1,44 @@
+package com.example.featureflag.config;
+
+import com.example.featureflag.repository.ExposureEventRepository;
+import com.example.featureflag.service.ExposureSink;
+import com.example.featureflag.service.FileExposureSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Selects where exposure events are written: rolling local files or the exposure store of
+ * the {@code flags.storage.backend}
+ */
+@Configuration
+public class ExposureConfig {
+    
+    @Value("${flags.exposure.sink:file}")
+    private String sinkType;
+    
+    @Value("${flags.exposure.file.directory:exposures}")
+    private String directory;
+    
+    @Value("${flags.exposure.file.format:ndjson}")
+    private String format;
+    
+    @Value("${flags.exposure.file.max-file-bytes:67108864}")
+    private long maxFileBytes;
+    
+    @Value("${flags.exposure.file.max-files:16}")
+    private int maxFiles;
+    
+    @Bean
+    public ExposureSink exposureSink(ExposureEventRepository exposureEventRepository) {
+        return switch (sinkType) {
+            case "file" -> new FileExposureSink(Path.of(directory),
+                    FileExposureSink.Format.valueOf(format.toUpperCase()), maxFileBytes, maxFiles);
+            // dynamodb is the name from before the store followed the storage backend
+            case "storage", "dynamodb" -> exposureEventRepository::writeBatch;
+            default -> throw new IllegalStateException("Unknown flags.exposure.sink: " + sinkType);
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.featureflag.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables background jobs such as the flag snapshot refresh
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
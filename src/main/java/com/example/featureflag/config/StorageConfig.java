@@ -0,0 +1,93 @@
+package com.example.featureflag.config;
+
+import com.example.featureflag.repository.DynamoDbExposureEventRepository;
+import com.example.featureflag.repository.DynamoDbFeatureFlagRepository;
+import com.example.featureflag.repository.DynamoDbFlagUsageRepository;
+import com.example.featureflag.repository.DynamoDbSegmentRepository;
+import com.example.featureflag.repository.ExposureEventRepository;
+import com.example.featureflag.repository.FeatureFlagRepository;
+import com.example.featureflag.repository.FileExposureEventRepository;
+import com.example.featureflag.repository.FlagUsageRepository;
+import com.example.featureflag.repository.InMemoryExposureEventRepository;
+import com.example.featureflag.repository.InMemoryFeatureFlagRepository;
+import com.example.featureflag.repository.LocalFlagUsageRepository;
+import com.example.featureflag.repository.LocalSegmentRepository;
+import com.example.featureflag.repository.MappedLogFeatureFlagRepository;
+import com.example.featureflag.repository.SegmentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Selects where flags, segments, usage totals and exposure events are stored: DynamoDB,
+ * process memory or memory-mapped logs on local disk. All stores follow the same backend,
+ * so a node on a local backend never calls DynamoDB.
+ */
+@Configuration
+public class StorageConfig {
+    
+    @Value("${flags.storage.backend:dynamodb}")
+    private String backend;
+    
+    @Value("${flags.storage.mmap.directory:data}")
+    private String directory;
+    
+    @Value("${flags.storage.mmap.compaction-garbage-ratio:0.5}")
+    private double compactionGarbageRatio;
+    
+    @Value("${flags.storage.memory.max-exposures:100000}")
+    private int maxExposures;
+    
+    @Value("${flags.exposure.file.max-file-bytes:67108864}")
+    private long maxExposureFileBytes;
+    
+    @Value("${flags.exposure.file.max-files:16}")
+    private int maxExposureFiles;
+    
+    @Bean
+    public FeatureFlagRepository featureFlagRepository(DynamoDbEnhancedClient enhancedClient,
+                                                       DynamoDbClient dynamoDbClient) throws IOException {
+        return switch (backend) {
+            case "dynamodb" -> new DynamoDbFeatureFlagRepository(enhancedClient, dynamoDbClient);
+            case "memory" -> new InMemoryFeatureFlagRepository();
+            case "mmap" -> new MappedLogFeatureFlagRepository(Path.of(directory), compactionGarbageRatio);
+            default -> throw new IllegalStateException("Unknown flags.storage.backend: " + backend);
+        };
+    }
+    
+    @Bean
+    public SegmentRepository segmentRepository(DynamoDbClient dynamoDbClient) throws IOException {
+        return switch (backend) {
+            case "dynamodb" -> new DynamoDbSegmentRepository(dynamoDbClient);
+            case "memory" -> LocalSegmentRepository.inMemory();
+            case "mmap" -> LocalSegmentRepository.mapped(Path.of(directory), compactionGarbageRatio);
+            default -> throw new IllegalStateException("Unknown flags.storage.backend: " + backend);
+        };
+    }
+    
+    @Bean
+    public FlagUsageRepository flagUsageRepository(DynamoDbClient dynamoDbClient) throws IOException {
+        return switch (backend) {
+            case "dynamodb" -> new DynamoDbFlagUsageRepository(dynamoDbClient);
+            case "memory" -> LocalFlagUsageRepository.inMemory();
+            case "mmap" -> LocalFlagUsageRepository.mapped(Path.of(directory), compactionGarbageRatio);
+            default -> throw new IllegalStateException("Unknown flags.storage.backend: " + backend);
+        };
+    }
+    
+    @Bean
+    public ExposureEventRepository exposureEventRepository(DynamoDbClient dynamoDbClient) {
+        return switch (backend) {
+            case "dynamodb" -> new DynamoDbExposureEventRepository(dynamoDbClient);
+            case "memory" -> new InMemoryExposureEventRepository(maxExposures);
+            case "mmap" -> new FileExposureEventRepository(Path.of(directory, "exposures"),
+                    maxExposureFileBytes, maxExposureFiles);
+            default -> throw new IllegalStateException("Unknown flags.storage.backend: " + backend);
+        };
+    }
+}
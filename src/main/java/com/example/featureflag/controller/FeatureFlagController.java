@@ -1,8 +1,12 @@
 package com.example.featureflag.controller;
 
+import com.example.featureflag.dto.BatchEvaluationRequest;
+import com.example.featureflag.dto.BatchEvaluationResponse;
 import com.example.featureflag.dto.CreateFeatureFlagRequest;
 import com.example.featureflag.dto.FeatureFlagResponse;
 import com.example.featureflag.dto.FlagEvaluationResponse;
+import com.example.featureflag.dto.FlagSnapshotResponse;
+import com.example.featureflag.dto.FlagUsageResponse;
 import com.example.featureflag.dto.UpdateFeatureFlagRequest;
 import com.example.featureflag.service.FeatureFlagService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,9 +17,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for feature flag management
@@ -27,6 +37,11 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Feature Flags", description = "Feature flag management API")
 public class FeatureFlagController {
     
+    /**
+     * Tells SDKs which bucketing mode to use for local evaluation
+     */
+    public static final String BUCKETING_MODE_HEADER = "X-Bucketing-Mode";
+    
     private final FeatureFlagService featureFlagService;
     
     @PostMapping
@@ -43,6 +58,78 @@ public class FeatureFlagController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
     
+    @GetMapping
+    @Operation(summary = "List feature flags", description = "Returns every feature flag; supports If-None-Match for cheap polling")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Flags listed"),
+        @ApiResponse(responseCode = "304", description = "Flags unchanged since the given ETag")
+    })
+    public ResponseEntity<List<FeatureFlagResponse>> listFlags(
+            @Parameter(description = "ETag from a previous response")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("GET /flags - Listing flags");
+        String bucketingMode = featureFlagService.getBucketingMode().name();
+        
+        // Read before the scan, so the listing is at least as new as the tag it is served under
+        String etag = revisionEtag(featureFlagService.currentRevision());
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(BUCKETING_MODE_HEADER, bucketingMode)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(BUCKETING_MODE_HEADER, bucketingMode)
+                .body(featureFlagService.listFlags());
+    }
+    
+    @GetMapping("/snapshot")
+    @Operation(summary = "Sync flags by revision", description = "Returns all flags, or only changes since a revision; supports If-None-Match")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Full snapshot or delta"),
+        @ApiResponse(responseCode = "304", description = "No change since the given ETag")
+    })
+    public ResponseEntity<FlagSnapshotResponse> getSnapshot(
+            @Parameter(description = "Revision from a previous response; omit for a full snapshot")
+            @RequestParam(required = false) Long sinceRevision,
+            @Parameter(description = "ETag from a previous response")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("GET /flags/snapshot?sinceRevision={} - Syncing flags", sinceRevision);
+        String bucketingMode = featureFlagService.getBucketingMode().name();
+        
+        // Nothing allocated since the client's revision: answer from the counter alone
+        if (ifNoneMatch != null && ifNoneMatch.equals(revisionEtag(featureFlagService.currentRevision()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(ifNoneMatch)
+                    .header(BUCKETING_MODE_HEADER, bucketingMode)
+                    .build();
+        }
+        
+        FlagSnapshotResponse snapshot = featureFlagService.getSnapshot(sinceRevision);
+        String etag = revisionEtag(snapshot.getRevision());
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(BUCKETING_MODE_HEADER, bucketingMode)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(BUCKETING_MODE_HEADER, bucketingMode)
+                .body(snapshot);
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream flag changes", description = "Server-Sent Events stream of flag changes; reconnect with Last-Event-ID to resume")
+    @ApiResponse(responseCode = "200", description = "Event stream opened")
+    public SseEmitter streamFlagChanges(
+            @Parameter(description = "Id of the last event received before reconnecting")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("GET /flags/stream - Opening change stream");
+        return featureFlagService.streamChanges(lastEventId);
+    }
+    
     @GetMapping("/{flagName}")
     @Operation(summary = "Get a feature flag", description = "Retrieves a feature flag by name")
     @ApiResponses(value = {
@@ -97,9 +184,44 @@ public class FeatureFlagController {
             @Parameter(description = "Name of the feature flag") 
             @PathVariable String flagName,
             @Parameter(description = "User ID for evaluation") 
-            @RequestParam String userId) {
+            @RequestParam String userId,
+            @Parameter(description = "Targeting attributes; every other query parameter, e.g. country=DE&appVersion=5.2.0") 
+            @RequestParam Map<String, String> attributes) {
         log.info("GET /flags/{}/evaluate?userId={} - Evaluating flag", flagName, userId);
-        FlagEvaluationResponse response = featureFlagService.evaluateFlag(flagName, userId);
+        attributes.remove("userId");
+        FlagEvaluationResponse response = featureFlagService.evaluateFlag(flagName, userId, attributes);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/{flagName}/usage")
+    @Operation(summary = "Get flag usage", description = "Evaluation counts across the cluster, to find flags that can be retired")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Usage returned"),
+        @ApiResponse(responseCode = "404", description = "Flag not found")
+    })
+    public ResponseEntity<FlagUsageResponse> getUsage(
+            @Parameter(description = "Name of the feature flag") 
+            @PathVariable String flagName) {
+        log.info("GET /flags/{}/usage - Retrieving usage", flagName);
+        return ResponseEntity.ok(featureFlagService.getUsage(flagName));
+    }
+    
+    @PostMapping("/evaluate:batch")
+    @Operation(summary = "Evaluate feature flags in batch", description = "Evaluates several flags for several users in a single request")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Flags evaluated successfully; unknown flags are listed in missingFlags"),
+        @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    public ResponseEntity<BatchEvaluationResponse> evaluateFlags(
+            @Valid @RequestBody BatchEvaluationRequest request) {
+        log.info("POST /flags/evaluate:batch - Evaluating {} flags for {} users",
+                request.getFlagNames().size(), request.getUserIds().size());
+        BatchEvaluationResponse response = featureFlagService.evaluateFlags(request.getFlagNames(), request.getUserIds(),
+                request.getAttributes() != null ? request.getAttributes() : Map.of());
         return ResponseEntity.ok(response);
     }
+    
+    private static String revisionEtag(long revision) {
+        return "\"" + revision + "\"";
+    }
 }
@@ -1,7 +1,16 @@
 package com.example.featureflag.controller;
 
 import com.example.featureflag.exception.FlagAlreadyExistsException;
+import com.example.featureflag.exception.FlagLoadTimeoutException;
 import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.exception.FlagVersionConflictException;
+import com.example.featureflag.exception.InvalidSegmentException;
+import com.example.featureflag.exception.InvalidTargetingRuleException;
+import com.example.featureflag.exception.InvalidPrerequisiteException;
+import com.example.featureflag.exception.InvalidRolloutScheduleException;
+import com.example.featureflag.exception.InvalidVariantException;
+import com.example.featureflag.exception.SegmentConflictException;
+import com.example.featureflag.exception.SegmentNotFoundException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -45,6 +54,105 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
     }
     
+    @ExceptionHandler(FlagVersionConflictException.class)
+    public ResponseEntity<ErrorResponse> handleFlagVersionConflictException(FlagVersionConflictException ex) {
+        log.warn("Flag version conflict: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+    
+    @ExceptionHandler(FlagLoadTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleFlagLoadTimeoutException(FlagLoadTimeoutException ex) {
+        log.warn("Flag load timed out: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
+    @ExceptionHandler(InvalidTargetingRuleException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidTargetingRuleException(InvalidTargetingRuleException ex) {
+        log.warn("Invalid targeting rule: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.BAD_REQUEST.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
+    @ExceptionHandler(InvalidPrerequisiteException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPrerequisiteException(InvalidPrerequisiteException ex) {
+        log.warn("Invalid prerequisites: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.BAD_REQUEST.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
+    @ExceptionHandler(InvalidRolloutScheduleException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRolloutScheduleException(InvalidRolloutScheduleException ex) {
+        log.warn("Invalid rollout schedule: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.BAD_REQUEST.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
+    @ExceptionHandler(InvalidVariantException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidVariantException(InvalidVariantException ex) {
+        log.warn("Invalid variants: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.BAD_REQUEST.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
+    @ExceptionHandler(SegmentNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleSegmentNotFoundException(SegmentNotFoundException ex) {
+        log.warn("Segment not found: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.NOT_FOUND.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+    
+    @ExceptionHandler(InvalidSegmentException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidSegmentException(InvalidSegmentException ex) {
+        log.warn("Invalid segment: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.BAD_REQUEST.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
+    @ExceptionHandler(SegmentConflictException.class)
+    public ResponseEntity<ErrorResponse> handleSegmentConflictException(SegmentConflictException ex) {
+        log.warn("Segment conflict: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                ex.getMessage(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+    
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorResponse> handleValidationException(MethodArgumentNotValidException ex) {
         log.warn("Validation error: {}", ex.getMessage());
@@ -0,0 +1,85 @@
+package com.example.featureflag.controller;
+
+import com.example.featureflag.dto.SegmentResponse;
+import com.example.featureflag.model.SegmentKeyType;
+import com.example.featureflag.service.SegmentService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * REST controller for user segments referenced by targeting rules
+ */
+@Slf4j
+@RestController
+@RequestMapping("/segments")
+@RequiredArgsConstructor
+@Tag(name = "Segments", description = "User segment management API")
+public class SegmentController {
+    
+    private final SegmentService segmentService;
+    
+    @PutMapping(value = "/{segmentName}", consumes = MediaType.TEXT_PLAIN_VALUE)
+    @Operation(summary = "Upload a segment", description = "Creates or replaces a segment from one user ID per line")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Segment stored and loaded on this node"),
+        @ApiResponse(responseCode = "400", description = "Invalid members"),
+        @ApiResponse(responseCode = "409", description = "Segment changed by a concurrent upload")
+    })
+    public ResponseEntity<SegmentResponse> uploadSegment(
+            @Parameter(description = "Name of the segment") 
+            @PathVariable String segmentName,
+            @Parameter(description = "Description; kept from the previous upload when omitted") 
+            @RequestParam(required = false) String description,
+            @Parameter(description = "NUMERIC or STRING; detected from the members when omitted") 
+            @RequestParam(required = false) SegmentKeyType keyType,
+            Reader members) {
+        log.info("PUT /segments/{} - Uploading segment", segmentName);
+        return ResponseEntity.ok(segmentService.uploadSegment(segmentName, description, keyType, members));
+    }
+    
+    @GetMapping
+    @Operation(summary = "List segments", description = "Returns every segment's metadata")
+    @ApiResponse(responseCode = "200", description = "Segments listed")
+    public ResponseEntity<List<SegmentResponse>> listSegments() {
+        log.info("GET /segments - Listing segments");
+        return ResponseEntity.ok(segmentService.listSegments());
+    }
+    
+    @GetMapping("/{segmentName}")
+    @Operation(summary = "Get a segment", description = "Metadata and this node's memory use for one segment")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Segment found"),
+        @ApiResponse(responseCode = "404", description = "Segment not found")
+    })
+    public ResponseEntity<SegmentResponse> getSegment(
+            @Parameter(description = "Name of the segment") 
+            @PathVariable String segmentName) {
+        log.info("GET /segments/{} - Retrieving segment", segmentName);
+        return ResponseEntity.ok(segmentService.getSegment(segmentName));
+    }
+    
+    @DeleteMapping("/{segmentName}")
+    @Operation(summary = "Delete a segment", description = "Deletes a segment; rules naming it stop matching")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Segment deleted"),
+        @ApiResponse(responseCode = "404", description = "Segment not found")
+    })
+    public ResponseEntity<Void> deleteSegment(
+            @Parameter(description = "Name of the segment") 
+            @PathVariable String segmentName) {
+        log.info("DELETE /segments/{} - Deleting segment", segmentName);
+        segmentService.deleteSegment(segmentName);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.featureflag.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request DTO for evaluating many flags for many users at once
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchEvaluationRequest {
+    
+    @NotEmpty(message = "At least one flag name is required")
+    @Size(max = 100, message = "At most 100 flags can be evaluated per batch")
+    @JsonProperty("flagNames")
+    private List<@NotBlank String> flagNames;
+    
+    @NotEmpty(message = "At least one user ID is required")
+    @Size(max = 1000, message = "At most 1000 users can be evaluated per batch")
+    @JsonProperty("userIds")
+    private List<@NotBlank String> userIds;
+    
+    /**
+     * Optional targeting attributes per user ID
+     */
+    @JsonProperty("attributes")
+    private Map<String, Map<String, String>> attributes;
+}
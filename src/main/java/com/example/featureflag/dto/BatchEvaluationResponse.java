@@ -0,0 +1,33 @@
+package com.example.featureflag.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response DTO for batch flag evaluation.
+ * Results are keyed by flag name, then by user ID.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchEvaluationResponse {
+    
+    @JsonProperty("results")
+    private Map<String, Map<String, Boolean>> results;
+    
+    /**
+     * Variant keys of multivariate flags, keyed like results; null where the flag is off
+     */
+    @JsonProperty("variants")
+    private Map<String, Map<String, String>> variants;
+    
+    @JsonProperty("missingFlags")
+    private List<String> missingFlags;
+}
@@ -1,6 +1,11 @@
 package com.example.featureflag.dto;
 
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingRule;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -10,6 +15,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * Request DTO for creating a new feature flag
  */
@@ -27,12 +34,46 @@ public class CreateFeatureFlagRequest {
     @JsonProperty("enabled")
     private Boolean enabled;
     
-    @NotNull(message = "Rollout percentage is required")
     @Min(value = 0, message = "Rollout percentage must be between 0 and 100")
     @Max(value = 100, message = "Rollout percentage must be between 0 and 100")
     @JsonProperty("rolloutPercentage")
     private Integer rolloutPercentage;
     
+    @Min(value = 0, message = "Rollout basis points must be between 0 and 10000")
+    @Max(value = 10000, message = "Rollout basis points must be between 0 and 10000")
+    @JsonProperty("rolloutBasisPoints")
+    private Integer rolloutBasisPoints;
+    
     @JsonProperty("description")
     private String description;
+    
+    /**
+     * Targeting rules, tried in order; the first match overrides the flag's rollout
+     */
+    @JsonProperty("rules")
+    private List<TargetingRule> rules;
+    
+    /**
+     * Variants served to users in the rollout, with weights adding up to 10000
+     */
+    @JsonProperty("variants")
+    private List<FlagVariant> variants;
+    
+    /**
+     * Flags that must be on for the same user before this one can be
+     */
+    @JsonProperty("prerequisites")
+    private List<String> prerequisites;
+    
+    /**
+     * Steps that raise or lower the rollout at given times, so a ramp needs no further writes
+     */
+    @JsonProperty("rolloutSchedule")
+    private List<RolloutStep> rolloutSchedule;
+    
+    @JsonIgnore
+    @AssertTrue(message = "Either rollout percentage or rollout basis points is required")
+    public boolean isRolloutSpecified() {
+        return rolloutPercentage != null || rolloutBasisPoints != null;
+    }
 }
@@ -1,5 +1,8 @@
 package com.example.featureflag.dto;
 
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingRule;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,6 +10,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
+import java.util.List;
 
 /**
  * Response DTO for feature flag data
@@ -26,9 +30,24 @@ public class FeatureFlagResponse {
     @JsonProperty("rolloutPercentage")
     private Integer rolloutPercentage;
     
+    @JsonProperty("rolloutBasisPoints")
+    private Integer rolloutBasisPoints;
+    
     @JsonProperty("description")
     private String description;
     
+    @JsonProperty("rules")
+    private List<TargetingRule> rules;
+    
+    @JsonProperty("variants")
+    private List<FlagVariant> variants;
+    
+    @JsonProperty("prerequisites")
+    private List<String> prerequisites;
+    
+    @JsonProperty("rolloutSchedule")
+    private List<RolloutStep> rolloutSchedule;
+    
     @JsonProperty("version")
     private Integer version;
     
@@ -37,4 +56,7 @@ public class FeatureFlagResponse {
     
     @JsonProperty("updatedAt")
     private Instant updatedAt;
+    
+    @JsonProperty("revision")
+    private Long revision;
 }
@@ -0,0 +1,53 @@
+package com.example.featureflag.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Change notification pushed on the flag stream
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlagChangeEvent {
+    
+    @JsonProperty("type")
+    private ChangeType type;
+    
+    @JsonProperty("flagName")
+    private String flagName;
+    
+    /**
+     * Version after the change; 0 for deletions
+     */
+    @JsonProperty("version")
+    private Integer version;
+    
+    /**
+     * Global revision of the change; orders changes to a flag even across a delete and
+     * re-create, which restarts the version
+     */
+    @JsonProperty("revision")
+    private Long revision;
+    
+    /**
+     * Flag state after the change; null for deletions
+     */
+    @JsonProperty("flag")
+    private FeatureFlagResponse flag;
+    
+    @JsonProperty("timestamp")
+    private Instant timestamp;
+    
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -23,4 +23,13 @@ public class FlagEvaluationResponse {
     
     @JsonProperty("userId")
     private String userId;
+    
+    /**
+     * Key of the user's variant; null for flags without variants and users the flag is off for
+     */
+    @JsonProperty("variant")
+    private String variant;
+    
+    @JsonProperty("value")
+    private String value;
 }
@@ -0,0 +1,37 @@
+package com.example.featureflag.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response DTO for full or delta flag sync
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlagSnapshotResponse {
+    
+    /**
+     * Revision this response brings the client up to; pass it back as sinceRevision
+     */
+    @JsonProperty("revision")
+    private Long revision;
+    
+    /**
+     * True when flags is the complete set and the client should drop anything else it holds
+     */
+    @JsonProperty("full")
+    private Boolean full;
+    
+    @JsonProperty("flags")
+    private List<FeatureFlagResponse> flags;
+    
+    @JsonProperty("deletedFlags")
+    private List<String> deletedFlags;
+}
@@ -0,0 +1,34 @@
+package com.example.featureflag.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Response DTO for flag usage
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlagUsageResponse {
+    
+    @JsonProperty("flagName")
+    private String flagName;
+    
+    @JsonProperty("evaluations")
+    private Long evaluations;
+    
+    @JsonProperty("enabledCount")
+    private Long enabledCount;
+    
+    @JsonProperty("disabledCount")
+    private Long disabledCount;
+    
+    @JsonProperty("lastEvaluatedAt")
+    private Instant lastEvaluatedAt;
+}
@@ -0,0 +1,53 @@
+package com.example.featureflag.dto;
+
+import com.example.featureflag.model.SegmentKeyType;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Response DTO for user segment metadata
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentResponse {
+    
+    @JsonProperty("segmentName")
+    private String segmentName;
+    
+    @JsonProperty("description")
+    private String description;
+    
+    @JsonProperty("keyType")
+    private SegmentKeyType keyType;
+    
+    @JsonProperty("size")
+    private Long size;
+    
+    @JsonProperty("chunkCount")
+    private Integer chunkCount;
+    
+    @JsonProperty("version")
+    private Integer version;
+    
+    @JsonProperty("updatedAt")
+    private Instant updatedAt;
+    
+    /**
+     * Whether the answering node holds this version in memory
+     */
+    @JsonProperty("loaded")
+    private Boolean loaded;
+    
+    /**
+     * Heap the members take on the answering node; null unless loaded
+     */
+    @JsonProperty("memoryBytes")
+    private Long memoryBytes;
+}
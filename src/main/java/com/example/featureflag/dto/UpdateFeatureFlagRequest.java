@@ -1,5 +1,8 @@
 package com.example.featureflag.dto;
 
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingRule;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -8,6 +11,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * Request DTO for updating an existing feature flag
  */
@@ -25,6 +30,41 @@ public class UpdateFeatureFlagRequest {
     @JsonProperty("rolloutPercentage")
     private Integer rolloutPercentage;
     
+    @Min(value = 0, message = "Rollout basis points must be between 0 and 10000")
+    @Max(value = 10000, message = "Rollout basis points must be between 0 and 10000")
+    @JsonProperty("rolloutBasisPoints")
+    private Integer rolloutBasisPoints;
+    
     @JsonProperty("description")
     private String description;
+    
+    /**
+     * Replacement targeting rules; an empty list removes all rules
+     */
+    @JsonProperty("rules")
+    private List<TargetingRule> rules;
+    
+    /**
+     * Replacement variants, matched to the current ones by key; an empty list removes all variants
+     */
+    @JsonProperty("variants")
+    private List<FlagVariant> variants;
+    
+    /**
+     * Replacement prerequisites; an empty list removes all prerequisites
+     */
+    @JsonProperty("prerequisites")
+    private List<String> prerequisites;
+    
+    /**
+     * Replacement rollout schedule; an empty list removes the schedule
+     */
+    @JsonProperty("rolloutSchedule")
+    private List<RolloutStep> rolloutSchedule;
+    
+    /**
+     * Optional optimistic-concurrency check: the update fails with 409 unless the flag is at this version
+     */
+    @JsonProperty("expectedVersion")
+    private Integer expectedVersion;
 }
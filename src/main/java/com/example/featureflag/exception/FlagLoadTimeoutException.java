@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when waiting on another request's load of the same flag takes too long
+ */
+public class FlagLoadTimeoutException extends RuntimeException {
+    
+    public FlagLoadTimeoutException(String flagName, long timeoutMs) {
+        super(String.format("Timed out after %dms waiting for feature flag: %s", timeoutMs, flagName));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when a conditional update finds a different flag version than expected
+ */
+public class FlagVersionConflictException extends RuntimeException {
+    
+    public FlagVersionConflictException(String flagName, Integer expectedVersion, Integer actualVersion) {
+        super(String.format("Feature flag %s is at version %s, expected %s", flagName, actualVersion, expectedVersion));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when a flag's prerequisites are unknown or would form a cycle
+ */
+public class InvalidPrerequisiteException extends RuntimeException {
+    
+    public InvalidPrerequisiteException(String flagName, String message) {
+        super("Invalid prerequisites for flag " + flagName + ": " + message);
+    }
+}
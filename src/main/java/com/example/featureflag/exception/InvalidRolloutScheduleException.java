@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when a flag's rollout schedule cannot be compiled
+ */
+public class InvalidRolloutScheduleException extends RuntimeException {
+    
+    public InvalidRolloutScheduleException(String message) {
+        super("Invalid rollout schedule: " + message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when an uploaded segment cannot be accepted
+ */
+public class InvalidSegmentException extends RuntimeException {
+    
+    public InvalidSegmentException(String segmentName, String message) {
+        super(String.format("Segment %s: %s", segmentName, message));
+    }
+}
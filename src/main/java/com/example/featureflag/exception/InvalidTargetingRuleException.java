@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when a flag's targeting rules cannot be compiled
+ */
+public class InvalidTargetingRuleException extends RuntimeException {
+    
+    public InvalidTargetingRuleException(int rule, String message) {
+        super(String.format("Targeting rule %d: %s", rule, message));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when a flag's variants cannot be compiled into a bucket table
+ */
+public class InvalidVariantException extends RuntimeException {
+    
+    public InvalidVariantException(String message) {
+        super("Invalid variants: " + message);
+    }
+}
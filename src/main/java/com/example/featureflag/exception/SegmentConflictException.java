@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when another upload of the same segment finished first
+ */
+public class SegmentConflictException extends RuntimeException {
+    
+    public SegmentConflictException(String segmentName) {
+        super(String.format("Segment %s was changed by a concurrent upload", segmentName));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.featureflag.exception;
+
+/**
+ * Exception thrown when a user segment is not found
+ */
+public class SegmentNotFoundException extends RuntimeException {
+    
+    public SegmentNotFoundException(String segmentName) {
+        super(String.format("Segment not found: %s", segmentName));
+    }
+}
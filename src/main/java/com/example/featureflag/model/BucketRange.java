@@ -0,0 +1,21 @@
+package com.example.featureflag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+
+/**
+ * Half-open range {@code [start, end)} of the 0-9999 variant buckets
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class BucketRange {
+    
+    private Integer start;
+    private Integer end;
+}
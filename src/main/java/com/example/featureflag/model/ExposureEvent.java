@@ -0,0 +1,9 @@
+package com.example.featureflag.model;
+
+/**
+ * One evaluation result seen by a user, recorded for experiment analysis. {@code variant}
+ * is the key of the variant served, or null when the flag has none or was off for the user.
+ */
+public record ExposureEvent(String flagName, String userId, boolean enabled, String variant, int version,
+                            long timestamp) {
+}
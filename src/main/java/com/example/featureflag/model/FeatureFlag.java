@@ -6,9 +6,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnoreNulls;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
 
 import java.time.Instant;
+import java.util.List;
 
 /**
  * Feature Flag entity stored in DynamoDB
@@ -23,10 +25,17 @@ public class FeatureFlag {
     private String flagName;
     private Boolean enabled;
     private Integer rolloutPercentage;
+    private Integer rolloutBasisPoints;
     private String description;
     private Integer version;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long revision;
+    private Boolean deleted;
+    private List<TargetingRule> rules;
+    private List<FlagVariant> variants;
+    private List<String> prerequisites;
+    private List<RolloutStep> rolloutSchedule;
     
     @DynamoDbPartitionKey
     @DynamoDbAttribute("flagName")
@@ -44,6 +53,11 @@ public class FeatureFlag {
         return rolloutPercentage;
     }
     
+    @DynamoDbAttribute("rolloutBasisPoints")
+    public Integer getRolloutBasisPoints() {
+        return rolloutBasisPoints;
+    }
+    
     @DynamoDbAttribute("description")
     public String getDescription() {
         return description;
@@ -63,4 +77,55 @@ public class FeatureFlag {
     public Instant getUpdatedAt() {
         return updatedAt;
     }
+    
+    /**
+     * Global revision of the last write to this flag; null on items written before revisions existed
+     */
+    @DynamoDbAttribute("revision")
+    public Long getRevision() {
+        return revision;
+    }
+    
+    /**
+     * True on tombstones left behind by deletes so delta sync can report them
+     */
+    @DynamoDbAttribute("deleted")
+    public Boolean getDeleted() {
+        return deleted;
+    }
+    
+    /**
+     * Ordered targeting rules; flags without rules apply their rollout to every user
+     */
+    @DynamoDbAttribute("rules")
+    @DynamoDbIgnoreNulls
+    public List<TargetingRule> getRules() {
+        return rules;
+    }
+    
+    /**
+     * Variants with their assigned buckets; flags without variants are plain on/off flags
+     */
+    @DynamoDbAttribute("variants")
+    @DynamoDbIgnoreNulls
+    public List<FlagVariant> getVariants() {
+        return variants;
+    }
+    
+    /**
+     * Names of flags that must be on for the same user before this flag can be on
+     */
+    @DynamoDbAttribute("prerequisites")
+    public List<String> getPrerequisites() {
+        return prerequisites;
+    }
+    
+    /**
+     * Steps that change the rollout over time without further writes
+     */
+    @DynamoDbAttribute("rolloutSchedule")
+    @DynamoDbIgnoreNulls
+    public List<RolloutStep> getRolloutSchedule() {
+        return rolloutSchedule;
+    }
 }
@@ -0,0 +1,18 @@
+package com.example.featureflag.model;
+
+import java.time.Instant;
+
+/**
+ * Cluster-wide evaluation totals of one flag; {@code lastEvaluatedAt} is null until the
+ * first flush
+ */
+public record FlagUsage(String flagName, long enabledCount, long disabledCount, Instant lastEvaluatedAt) {
+    
+    public static FlagUsage none(String flagName) {
+        return new FlagUsage(flagName, 0, 0, null);
+    }
+    
+    public long evaluations() {
+        return enabledCount + disabledCount;
+    }
+}
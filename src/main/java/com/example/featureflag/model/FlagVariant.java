@@ -0,0 +1,39 @@
+package com.example.featureflag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+
+import java.util.List;
+
+/**
+ * One arm of a multivariate flag. Users in the flag's rollout are split across the
+ * variants by weight.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class FlagVariant {
+    
+    private String key;
+    
+    /**
+     * Payload handed to the caller, e.g. a string or a JSON document; may be null
+     */
+    private String value;
+    
+    /**
+     * Share of users in basis points; the weights of a flag's variants add up to 10000
+     */
+    private Integer weight;
+    
+    /**
+     * Bucket ranges this variant owns, assigned by the server so weight changes only move
+     * the users they have to
+     */
+    private List<BucketRange> buckets;
+}
@@ -0,0 +1,31 @@
+package com.example.featureflag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+
+import java.time.Instant;
+
+/**
+ * One step of a rollout schedule: from {@code at} on, the flag is rolled out to
+ * {@code rolloutBasisPoints} unless a later step has started
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class RolloutStep {
+    
+    private Instant at;
+    
+    private Integer rolloutBasisPoints;
+    
+    /**
+     * Rise (or fall) linearly from the previous step's rollout to this one, reaching it at
+     * {@code at}, instead of jumping to it
+     */
+    private Boolean ramp;
+}
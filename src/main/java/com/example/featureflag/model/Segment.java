@@ -0,0 +1,12 @@
+package com.example.featureflag.model;
+
+import java.time.Instant;
+
+/**
+ * Metadata of an uploaded user segment. Members are stored separately, split into
+ * chunks under {@code chunkKey}, which is unique per upload so a new upload never
+ * overwrites chunks that nodes may still be loading.
+ */
+public record Segment(String segmentName, String description, SegmentKeyType keyType, long size,
+                      int chunkCount, String chunkKey, int version, Instant updatedAt) {
+}
@@ -0,0 +1,11 @@
+package com.example.featureflag.model;
+
+/**
+ * How a segment's member IDs are held in memory. NUMERIC segments take canonical
+ * non-negative decimal IDs ({@code 42}, not {@code 042}) and are kept as compressed
+ * bitmaps; STRING segments take any ID and are kept as 64-bit fingerprints.
+ */
+public enum SegmentKeyType {
+    NUMERIC,
+    STRING
+}
@@ -0,0 +1,25 @@
+package com.example.featureflag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+
+import java.util.List;
+
+/**
+ * One test on a user attribute, e.g. {@code country IN [DE, FR]}. A user without the
+ * attribute never matches, whatever the operator.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class TargetingCondition {
+    
+    private String attribute;
+    private TargetingOperator operator;
+    private List<String> values;
+}
@@ -0,0 +1,25 @@
+package com.example.featureflag.model;
+
+/**
+ * Comparison applied by a {@link TargetingCondition} to one user attribute.
+ * String operators compare exactly and are case-sensitive; semver operators compare
+ * dot-separated numeric versions ({@code 5.2} equals {@code 5.2.0}), ignoring any
+ * {@code -prerelease} or {@code +build} suffix. Segment operators take segment names
+ * and test membership in uploaded user segments; they never match while a named segment
+ * is not loaded.
+ */
+public enum TargetingOperator {
+    IN,
+    NOT_IN,
+    STARTS_WITH,
+    ENDS_WITH,
+    CONTAINS,
+    MATCHES,
+    SEMVER_EQ,
+    SEMVER_GT,
+    SEMVER_GTE,
+    SEMVER_LT,
+    SEMVER_LTE,
+    IN_SEGMENT,
+    NOT_IN_SEGMENT
+}
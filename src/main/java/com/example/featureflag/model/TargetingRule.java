@@ -0,0 +1,29 @@
+package com.example.featureflag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+
+import java.util.List;
+
+/**
+ * Targeting rule: users matching every condition get this rule's rollout instead of the
+ * flag's. Rules are tried in order and the first match wins.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDbBean
+public class TargetingRule {
+    
+    private String description;
+    private List<TargetingCondition> conditions;
+    
+    /**
+     * Share of matching users the flag is on for, 0-10000; null means all of them
+     */
+    private Integer rolloutBasisPoints;
+}
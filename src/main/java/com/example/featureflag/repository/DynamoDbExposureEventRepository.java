@@ -0,0 +1,103 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.ExposureEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only store of exposure events in their own DynamoDB table, keyed by
+ * {@code flagName} (partition) and {@code exposureKey = <timestamp>#<userId>#<writer>-<sequence>}
+ * (sort). The writer id and sequence keep two exposures of a user in the same millisecond
+ * apart: a duplicate key would overwrite one, or make BatchWriteItem reject the whole batch.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DynamoDbExposureEventRepository implements ExposureEventRepository {
+    
+    /**
+     * DynamoDB limit on items per BatchWriteItem call
+     */
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    
+    private static final int MAX_UNPROCESSED_RETRIES = 3;
+    private static final long UNPROCESSED_BACKOFF_MS = 50;
+    
+    private final DynamoDbClient dynamoDbClient;
+    
+    @Value("${aws.dynamodb.exposure-table-name:feature-flag-exposures}")
+    private String tableName;
+    
+    /**
+     * Random per instance, so nodes never share a key
+     */
+    private final String writerId = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    
+    private final AtomicLong sequence = new AtomicLong();
+    
+    /**
+     * Write events with BatchWriteItem, retrying items DynamoDB left unprocessed
+     */
+    @Override
+    public void writeBatch(List<ExposureEvent> events) {
+        for (int start = 0; start < events.size(); start += MAX_BATCH_WRITE_ITEMS) {
+            List<WriteRequest> writes = new ArrayList<>(MAX_BATCH_WRITE_ITEMS);
+            for (ExposureEvent event : events.subList(start, Math.min(events.size(), start + MAX_BATCH_WRITE_ITEMS))) {
+                writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(toItem(event)).build()).build());
+            }
+            writeWithRetries(Map.of(tableName, writes));
+        }
+        log.debug("Wrote {} exposure events to {}", events.size(), tableName);
+    }
+    
+    private void writeWithRetries(Map<String, List<WriteRequest>> requestItems) {
+        try {
+            for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+                if (attempt > MAX_UNPROCESSED_RETRIES) {
+                    throw new RuntimeException("DynamoDB left " + requestItems.get(tableName).size()
+                            + " exposure events unprocessed");
+                }
+                if (attempt > 0) {
+                    Thread.sleep(UNPROCESSED_BACKOFF_MS << (attempt - 1));
+                }
+                Map<String, List<WriteRequest>> pending = requestItems;
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(request -> request.requestItems(pending));
+                requestItems = response.unprocessedItems();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted writing exposure events", e);
+        } catch (DynamoDbException e) {
+            log.error("Error writing exposure events to {}", tableName, e);
+            throw new RuntimeException("Failed to write exposure events", e);
+        }
+    }
+    
+    private Map<String, AttributeValue> toItem(ExposureEvent event) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("flagName", AttributeValue.fromS(event.flagName()));
+        item.put("exposureKey", AttributeValue.fromS(event.timestamp() + "#" + event.userId()
+                + "#" + writerId + "-" + sequence.incrementAndGet()));
+        item.put("userId", AttributeValue.fromS(event.userId()));
+        item.put("enabled", AttributeValue.fromBool(event.enabled()));
+        if (event.variant() != null) {
+            item.put("variant", AttributeValue.fromS(event.variant()));
+        }
+        item.put("version", AttributeValue.fromN(Integer.toString(event.version())));
+        item.put("timestamp", AttributeValue.fromN(Long.toString(event.timestamp())));
+        return item;
+    }
+}
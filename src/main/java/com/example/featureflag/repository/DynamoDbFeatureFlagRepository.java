@@ -0,0 +1,559 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.FlagAlreadyExistsException;
+import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.exception.FlagVersionConflictException;
+import com.example.featureflag.model.FeatureFlag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.DeleteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Flag storage in a DynamoDB table keyed by {@code flagName}; the global revision counter
+ * is a reserved item in the same table.
+ * <p>
+ * Every create, update and delete is one TransactWriteItems call that moves the counter
+ * and writes the item, so a revision is only taken by a write that lands. The counter
+ * step is conditional on the last value this node saw. When another node moved it first,
+ * the failed transaction returns the counter as stored and the write is retried at the
+ * next value, without a separate read.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DynamoDbFeatureFlagRepository implements FeatureFlagRepository {
+    
+    /**
+     * DynamoDB limit on keys per BatchGetItem call
+     */
+    private static final int MAX_BATCH_GET_KEYS = 100;
+    
+    private static final String REVISION_ATTRIBUTE = "revision";
+    private static final String PURGED_THROUGH_ATTRIBUTE = "purgedThrough";
+    
+    private static final TableSchema<FeatureFlag> SCHEMA = TableSchema.fromBean(FeatureFlag.class);
+    
+    /**
+     * Attempts at a write before giving up on a contended revision counter or flag
+     */
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+    private static final String TRANSACTION_CONFLICT = "TransactionConflict";
+    
+    /**
+     * Matches a live flag: the item exists and is not a tombstone
+     */
+    private static final String LIVE_FLAG_CONDITION =
+            "attribute_exists(#flagName) AND (attribute_not_exists(#deleted) OR #deleted = :false)";
+    
+    /**
+     * Attributes an update never takes from the caller's changes
+     */
+    private static final Set<String> UPDATE_EXCLUDED_ATTRIBUTES =
+            Set.of("flagName", "version", "revision", "createdAt", "deleted");
+    
+    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbClient dynamoDbClient;
+    
+    @Value("${aws.dynamodb.table-name:feature-flags}")
+    private String tableName;
+    
+    private DynamoDbTable<FeatureFlag> table;
+    
+    /**
+     * Highest counter value this node has seen, or -1 before the first read
+     */
+    private final AtomicLong knownRevision = new AtomicLong(-1);
+    
+    @PostConstruct
+    public void init() {
+        this.table = enhancedClient.table(tableName, SCHEMA);
+        log.info("Initialized FeatureFlagRepository with table: {}", tableName);
+    }
+    
+    /**
+     * Save or update a feature flag
+     */
+    @Override
+    public FeatureFlag save(FeatureFlag featureFlag) {
+        try {
+            table.putItem(featureFlag);
+            log.debug("Saved feature flag: {}", featureFlag.getFlagName());
+            return featureFlag;
+        } catch (DynamoDbException e) {
+            log.error("Error saving feature flag: {}", featureFlag.getFlagName(), e);
+            throw new RuntimeException("Failed to save feature flag", e);
+        }
+    }
+    
+    /**
+     * Create a flag at the next revision in one transaction; a tombstone left by a delete
+     * may be overwritten
+     */
+    @Override
+    public FeatureFlag create(FeatureFlag featureFlag) {
+        try {
+            writeAtNextRevision(revision -> {
+                featureFlag.setRevision(revision);
+                return TransactWriteItem.builder()
+                        .put(Put.builder()
+                                .tableName(tableName)
+                                .item(SCHEMA.itemToMap(featureFlag, true))
+                                .conditionExpression("attribute_not_exists(#flagName) OR #deleted = :true")
+                                .expressionAttributeNames(Map.of("#flagName", "flagName", "#deleted", "deleted"))
+                                .expressionAttributeValues(Map.of(":true", AttributeValue.fromBool(true)))
+                                .build())
+                        .build();
+            });
+            log.debug("Created feature flag: {} at revision {}", featureFlag.getFlagName(), featureFlag.getRevision());
+            return featureFlag;
+        } catch (ItemConditionFailedException e) {
+            throw new FlagAlreadyExistsException(featureFlag.getFlagName());
+        } catch (DynamoDbException e) {
+            log.error("Error creating feature flag: {}", featureFlag.getFlagName(), e);
+            throw new RuntimeException("Failed to create feature flag", e);
+        }
+    }
+    
+    /**
+     * Update without a copy of the flag: read it consistently first, then update as below
+     */
+    @Override
+    public FeatureFlag update(String flagName, FeatureFlag changes, Integer expectedVersion) {
+        FeatureFlag current;
+        try {
+            current = table.getItem(r -> r
+                    .key(Key.builder().partitionValue(flagName).build())
+                    .consistentRead(true));
+        } catch (DynamoDbException e) {
+            log.error("Error reading feature flag for update: {}", flagName, e);
+            throw new RuntimeException("Failed to update feature flag", e);
+        }
+        if (current == null || !isLiveFlag(current)) {
+            throw new FlagNotFoundException(flagName);
+        }
+        return update(current, changes, expectedVersion);
+    }
+    
+    /**
+     * One transaction: the counter step and an update that sets the changes and the revision
+     * and adds one to the version, conditional on the item still being {@code current} (same
+     * revision and version). The flag as written is therefore {@code current} with the changes
+     * merged in. When the item moved on, the failed transaction returns it as stored and the
+     * update is retried against that; with {@code expectedVersion} set, a stored version that
+     * differs is a conflict instead.
+     */
+    @Override
+    public FeatureFlag update(FeatureFlag current, FeatureFlag changes, Integer expectedVersion) {
+        String flagName = current.getFlagName();
+        try {
+            FeatureFlag stored = current;
+            for (int attempt = 1; ; attempt++) {
+                if (stored == null || !isLiveFlag(stored)) {
+                    throw new FlagNotFoundException(flagName);
+                }
+                if (expectedVersion != null && !expectedVersion.equals(stored.getVersion())) {
+                    throw new FlagVersionConflictException(flagName, expectedVersion, stored.getVersion());
+                }
+                
+                FeatureFlag base = stored;
+                Map<String, AttributeValue> item = new HashMap<>(SCHEMA.itemToMap(base, true));
+                Map<String, AttributeValue> changed = new HashMap<>();
+                SCHEMA.itemToMap(changes, true).forEach((attribute, value) -> {
+                    if (!UPDATE_EXCLUDED_ATTRIBUTES.contains(attribute)) {
+                        changed.put(attribute, value);
+                    }
+                });
+                item.putAll(changed);
+                FeatureFlag updated = SCHEMA.mapToItem(item);
+                updated.setVersion(base.getVersion() != null ? base.getVersion() + 1 : 1);
+                
+                try {
+                    writeAtNextRevision(revision -> {
+                        updated.setRevision(revision);
+                        return itemUpdate(base, changed, revision);
+                    });
+                    log.debug("Updated feature flag: {} at revision {}", flagName, updated.getRevision());
+                    return updated;
+                } catch (ItemConditionFailedException e) {
+                    stored = e.item.isEmpty() ? null : SCHEMA.mapToItem(e.item);
+                    if (attempt == MAX_WRITE_ATTEMPTS && stored != null && isLiveFlag(stored)) {
+                        throw new FlagVersionConflictException(flagName, base.getVersion(), stored.getVersion());
+                    }
+                    log.debug("Flag {} changed since it was read, updating the stored item", flagName);
+                }
+            }
+        } catch (DynamoDbException e) {
+            log.error("Error updating feature flag: {}", flagName, e);
+            throw new RuntimeException("Failed to update feature flag", e);
+        }
+    }
+    
+    /**
+     * Find a feature flag by name
+     */
+    @Override
+    public Optional<FeatureFlag> findByFlagName(String flagName) {
+        try {
+            Key key = Key.builder()
+                    .partitionValue(flagName)
+                    .build();
+            
+            FeatureFlag flag = table.getItem(key);
+            return Optional.ofNullable(flag).filter(DynamoDbFeatureFlagRepository::isLiveFlag);
+        } catch (DynamoDbException e) {
+            log.error("Error finding feature flag: {}", flagName, e);
+            throw new RuntimeException("Failed to find feature flag", e);
+        }
+    }
+    
+    /**
+     * Find several feature flags with BatchGetItem.
+     * Unknown names are simply absent from the result.
+     */
+    @Override
+    public List<FeatureFlag> findByFlagNames(Collection<String> flagNames) {
+        List<String> names = new ArrayList<>(flagNames);
+        List<FeatureFlag> flags = new ArrayList<>(names.size());
+        
+        try {
+            for (int from = 0; from < names.size(); from += MAX_BATCH_GET_KEYS) {
+                ReadBatch.Builder<FeatureFlag> batch = ReadBatch.builder(FeatureFlag.class)
+                        .mappedTableResource(table);
+                names.subList(from, Math.min(from + MAX_BATCH_GET_KEYS, names.size()))
+                        .forEach(name -> batch.addGetItem(Key.builder().partitionValue(name).build()));
+                
+                // Result pages transparently re-request unprocessed keys
+                enhancedClient.batchGetItem(BatchGetItemEnhancedRequest.builder()
+                                .readBatches(batch.build())
+                                .build())
+                        .resultsForTable(table)
+                        .stream()
+                        .filter(DynamoDbFeatureFlagRepository::isLiveFlag)
+                        .forEach(flags::add);
+            }
+            return flags;
+        } catch (DynamoDbException e) {
+            log.error("Error batch finding {} feature flags", names.size(), e);
+            throw new RuntimeException("Failed to find feature flags", e);
+        }
+    }
+    
+    /**
+     * Scan all feature flags
+     */
+    @Override
+    public List<FeatureFlag> findAll() {
+        try {
+            List<FeatureFlag> flags = new ArrayList<>();
+            table.scan().items().stream()
+                    .filter(DynamoDbFeatureFlagRepository::isLiveFlag)
+                    .forEach(flags::add);
+            return flags;
+        } catch (DynamoDbException e) {
+            log.error("Error scanning feature flags", e);
+            throw new RuntimeException("Failed to scan feature flags", e);
+        }
+    }
+    
+    /**
+     * Scan flags and tombstones written after the given revision.
+     * Items written before revisions existed count as revision 0.
+     */
+    @Override
+    public List<FeatureFlag> findChangedSince(long revision) {
+        try {
+            List<FeatureFlag> flags = new ArrayList<>();
+            table.scan().items().stream()
+                    .filter(flag -> !REVISION_COUNTER_KEY.equals(flag.getFlagName()))
+                    .filter(flag -> FeatureFlagRepository.revisionOf(flag) > revision)
+                    .forEach(flags::add);
+            return flags;
+        } catch (DynamoDbException e) {
+            log.error("Error scanning feature flags changed since revision {}", revision, e);
+            throw new RuntimeException("Failed to scan feature flags", e);
+        }
+    }
+    
+    /**
+     * Delete a feature flag by name, leaving a tombstone at the next revision in one
+     * transaction. Returns the tombstone.
+     */
+    @Override
+    public FeatureFlag deleteByFlagName(String flagName) {
+        FeatureFlag tombstone = FeatureFlag.builder()
+                .flagName(flagName)
+                .deleted(true)
+                .updatedAt(Instant.now())
+                .build();
+        try {
+            writeAtNextRevision(revision -> {
+                tombstone.setRevision(revision);
+                return TransactWriteItem.builder()
+                        .put(Put.builder()
+                                .tableName(tableName)
+                                .item(SCHEMA.itemToMap(tombstone, true))
+                                .conditionExpression(LIVE_FLAG_CONDITION)
+                                .expressionAttributeNames(Map.of("#flagName", "flagName", "#deleted", "deleted"))
+                                .expressionAttributeValues(Map.of(":false", AttributeValue.fromBool(false)))
+                                .build())
+                        .build();
+            });
+            log.debug("Deleted feature flag: {} at revision {}", flagName, tombstone.getRevision());
+            return tombstone;
+        } catch (ItemConditionFailedException e) {
+            throw new FlagNotFoundException(flagName);
+        } catch (DynamoDbException e) {
+            log.error("Error deleting feature flag: {}", flagName, e);
+            throw new RuntimeException("Failed to delete feature flag", e);
+        }
+    }
+    
+    /**
+     * Remove tombstones written before the cutoff and advance the purge horizon past them.
+     * Returns the number of tombstones removed.
+     */
+    @Override
+    public int purgeTombstones(Instant deletedBefore) {
+        try {
+            long purgedThrough = 0;
+            int purged = 0;
+            for (FeatureFlag flag : table.scan().items()) {
+                if (Boolean.TRUE.equals(flag.getDeleted())
+                        && flag.getUpdatedAt() != null && flag.getUpdatedAt().isBefore(deletedBefore)) {
+                    if (deleteTombstone(flag.getFlagName())) {
+                        purgedThrough = Math.max(purgedThrough, FeatureFlagRepository.revisionOf(flag));
+                        purged++;
+                    }
+                }
+            }
+            if (purged > 0) {
+                advancePurgedThrough(purgedThrough);
+            }
+            return purged;
+        } catch (DynamoDbException e) {
+            log.error("Error purging flag tombstones", e);
+            throw new RuntimeException("Failed to purge flag tombstones", e);
+        }
+    }
+    
+    /**
+     * Latest allocated revision and how far tombstones have been purged
+     */
+    @Override
+    public RevisionCounter currentRevision() {
+        try {
+            Map<String, AttributeValue> item = dynamoDbClient.getItem(GetItemRequest.builder()
+                    .tableName(tableName)
+                    .key(counterKey())
+                    .consistentRead(true)
+                    .build()).item();
+            RevisionCounter counter = new RevisionCounter(numberOf(item, REVISION_ATTRIBUTE),
+                    numberOf(item, PURGED_THROUGH_ATTRIBUTE));
+            knownRevision.accumulateAndGet(counter.revision(), Math::max);
+            return counter;
+        } catch (DynamoDbException e) {
+            log.error("Error reading flag revision", e);
+            throw new RuntimeException("Failed to read flag revision", e);
+        }
+    }
+    
+    /**
+     * Write one item together with the step of the revision counter to the next value, and
+     * return that revision. The item write is built per attempt, as the revision may change
+     * between attempts. A failed item condition surfaces as ItemConditionFailedException.
+     */
+    private long writeAtNextRevision(LongFunction<TransactWriteItem> itemWrite) {
+        for (int attempt = 1; ; attempt++) {
+            long expected = knownRevision.get() >= 0 ? knownRevision.get() : currentRevision().revision();
+            long next = expected + 1;
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                        .transactItems(counterStep(expected, next), itemWrite.apply(next))
+                        .build());
+                knownRevision.accumulateAndGet(next, Math::max);
+                return next;
+            } catch (TransactionCanceledException e) {
+                List<CancellationReason> reasons = e.cancellationReasons();
+                CancellationReason counter = reasons.size() > 0 ? reasons.get(0) : null;
+                boolean counterMoved = counter != null && CONDITIONAL_CHECK_FAILED.equals(counter.code());
+                if (counterMoved) {
+                    // The failed step returns the counter as stored, which saves reading it again
+                    knownRevision.set(counter.hasItem() ? numberOf(counter.item(), REVISION_ATTRIBUTE) : -1);
+                }
+                if (reasons.size() > 1 && CONDITIONAL_CHECK_FAILED.equals(reasons.get(1).code())) {
+                    throw new ItemConditionFailedException(reasons.get(1).hasItem() ? reasons.get(1).item() : Map.of());
+                }
+                boolean conflicted = reasons.stream().anyMatch(reason -> TRANSACTION_CONFLICT.equals(reason.code()));
+                if (!(counterMoved || conflicted) || attempt == MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Revision counter moved past {}, retrying the write", expected);
+            }
+        }
+    }
+    
+    private TransactWriteItem counterStep(long expected, long next) {
+        return TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(tableName)
+                        .key(counterKey())
+                        .updateExpression("SET #revision = :next")
+                        .conditionExpression(expected == 0
+                                ? "attribute_not_exists(#revision) OR #revision = :expected"
+                                : "#revision = :expected")
+                        .expressionAttributeNames(Map.of("#revision", REVISION_ATTRIBUTE))
+                        .expressionAttributeValues(Map.of(
+                                ":expected", AttributeValue.fromN(Long.toString(expected)),
+                                ":next", AttributeValue.fromN(Long.toString(next))))
+                        .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                        .build())
+                .build();
+    }
+    
+    /**
+     * Update of a live flag still at the revision and version of {@code base}: set the changed
+     * attributes and the revision, add one to the version
+     */
+    private TransactWriteItem itemUpdate(FeatureFlag base, Map<String, AttributeValue> changed, long revision) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        names.put("#flagName", "flagName");
+        names.put("#deleted", "deleted");
+        names.put("#version", "version");
+        names.put("#revision", REVISION_ATTRIBUTE);
+        values.put(":false", AttributeValue.fromBool(false));
+        values.put(":one", AttributeValue.fromN("1"));
+        values.put(":revision", AttributeValue.fromN(Long.toString(revision)));
+        
+        List<String> assignments = new ArrayList<>();
+        changed.forEach((attribute, value) -> {
+            names.put("#" + attribute, attribute);
+            values.put(":" + attribute, value);
+            assignments.add("#" + attribute + " = :" + attribute);
+        });
+        assignments.add("#revision = :revision");
+        
+        String condition = LIVE_FLAG_CONDITION;
+        if (base.getVersion() != null) {
+            condition += " AND #version = :baseVersion";
+            values.put(":baseVersion", AttributeValue.fromN(base.getVersion().toString()));
+        } else {
+            condition += " AND attribute_not_exists(#version)";
+        }
+        if (base.getRevision() != null) {
+            condition += " AND #revision = :baseRevision";
+            values.put(":baseRevision", AttributeValue.fromN(base.getRevision().toString()));
+        } else {
+            condition += " AND attribute_not_exists(#revision)";
+        }
+        
+        return TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(tableName)
+                        .key(flagKey(base.getFlagName()))
+                        .updateExpression("SET " + String.join(", ", assignments) + " ADD #version :one")
+                        .conditionExpression(condition)
+                        .expressionAttributeNames(names)
+                        .expressionAttributeValues(values)
+                        .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                        .build())
+                .build();
+    }
+    
+    private boolean deleteTombstone(String flagName) {
+        // Conditional so a flag re-created since the scan is left alone
+        try {
+            table.deleteItem(DeleteItemEnhancedRequest.builder()
+                    .key(Key.builder().partitionValue(flagName).build())
+                    .conditionExpression(Expression.builder()
+                            .expression("#deleted = :deleted")
+                            .putExpressionName("#deleted", "deleted")
+                            .putExpressionValue(":deleted", AttributeValue.fromBool(true))
+                            .build())
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+    
+    private void advancePurgedThrough(long revision) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(counterKey())
+                    .updateExpression("SET #purged = :revision")
+                    .conditionExpression("attribute_not_exists(#purged) OR #purged < :revision")
+                    .expressionAttributeNames(Map.of("#purged", PURGED_THROUGH_ATTRIBUTE))
+                    .expressionAttributeValues(Map.of(":revision", AttributeValue.fromN(Long.toString(revision))))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Purge horizon already at or past revision {}", revision);
+        }
+    }
+    
+    private static Map<String, AttributeValue> counterKey() {
+        return flagKey(REVISION_COUNTER_KEY);
+    }
+    
+    private static Map<String, AttributeValue> flagKey(String flagName) {
+        return Map.of("flagName", AttributeValue.fromS(flagName));
+    }
+    
+    private static long numberOf(Map<String, AttributeValue> item, String attribute) {
+        AttributeValue value = item != null ? item.get(attribute) : null;
+        return value != null && value.n() != null ? Long.parseLong(value.n()) : 0;
+    }
+    
+    private static boolean isLiveFlag(FeatureFlag flag) {
+        return !Boolean.TRUE.equals(flag.getDeleted()) && !REVISION_COUNTER_KEY.equals(flag.getFlagName());
+    }
+    
+    /**
+     * The item write of a transaction failed its condition; carries the item as stored,
+     * empty when there is none
+     */
+    private static final class ItemConditionFailedException extends RuntimeException {
+        
+        private final Map<String, AttributeValue> item;
+        
+        ItemConditionFailedException(Map<String, AttributeValue> item) {
+            super(null, null, false, false);
+            this.item = item;
+        }
+    }
+}
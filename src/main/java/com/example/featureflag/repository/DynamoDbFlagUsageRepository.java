@@ -0,0 +1,76 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.FlagUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-flag evaluation totals in their own DynamoDB table keyed by {@code flagName}.
+ * Kept apart from the flags table so counter writes never race flag updates or
+ * resurrect deleted flags.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DynamoDbFlagUsageRepository implements FlagUsageRepository {
+    
+    private final DynamoDbClient dynamoDbClient;
+    
+    @Value("${aws.dynamodb.usage-table-name:feature-flag-usage}")
+    private String tableName;
+    
+    /**
+     * Add evaluation deltas to a flag's totals in one atomic UpdateItem
+     */
+    @Override
+    public void addUsage(String flagName, long enabledDelta, long disabledDelta, Instant evaluatedAt) {
+        try {
+            dynamoDbClient.updateItem(request -> request
+                    .tableName(tableName)
+                    .key(Map.of("flagName", AttributeValue.fromS(flagName)))
+                    .updateExpression("ADD #enabledCount :enabled, #disabledCount :disabled SET #lastEvaluatedAt = :at")
+                    .expressionAttributeNames(Map.of(
+                            "#enabledCount", "enabledCount",
+                            "#disabledCount", "disabledCount",
+                            "#lastEvaluatedAt", "lastEvaluatedAt"))
+                    .expressionAttributeValues(Map.of(
+                            ":enabled", AttributeValue.fromN(Long.toString(enabledDelta)),
+                            ":disabled", AttributeValue.fromN(Long.toString(disabledDelta)),
+                            ":at", AttributeValue.fromS(evaluatedAt.toString()))));
+        } catch (DynamoDbException e) {
+            log.error("Error adding usage for flag: {}", flagName, e);
+            throw new RuntimeException("Failed to add flag usage", e);
+        }
+    }
+    
+    @Override
+    public Optional<FlagUsage> findByFlagName(String flagName) {
+        try {
+            Map<String, AttributeValue> item = dynamoDbClient.getItem(request -> request
+                    .tableName(tableName)
+                    .key(Map.of("flagName", AttributeValue.fromS(flagName)))).item();
+            if (item == null || item.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(new FlagUsage(flagName,
+                    numberOf(item, "enabledCount"),
+                    numberOf(item, "disabledCount"),
+                    item.containsKey("lastEvaluatedAt") ? Instant.parse(item.get("lastEvaluatedAt").s()) : null));
+        } catch (DynamoDbException e) {
+            log.error("Error reading usage for flag: {}", flagName, e);
+            throw new RuntimeException("Failed to read flag usage", e);
+        }
+    }
+    
+    private static long numberOf(Map<String, AttributeValue> item, String attribute) {
+        AttributeValue value = item.get(attribute);
+        return value != null ? Long.parseLong(value.n()) : 0;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.SegmentConflictException;
+import com.example.featureflag.model.Segment;
+import com.example.featureflag.model.SegmentKeyType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * User segments in two DynamoDB tables: one metadata item per segment keyed by
+ * {@code segmentName}, and member chunks keyed by {@code chunkKey} (partition, unique
+ * per upload) and {@code chunk} (sort). An upload writes all of its chunks before the
+ * metadata item points at them, so readers never see a partial segment.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DynamoDbSegmentRepository implements SegmentRepository {
+    
+    /**
+     * DynamoDB limit on items per BatchWriteItem call
+     */
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    
+    private static final int MAX_UNPROCESSED_RETRIES = 3;
+    private static final long UNPROCESSED_BACKOFF_MS = 50;
+    
+    private final DynamoDbClient dynamoDbClient;
+    
+    @Value("${aws.dynamodb.segment-table-name:feature-flag-segments}")
+    private String tableName;
+    
+    @Value("${aws.dynamodb.segment-chunk-table-name:feature-flag-segment-chunks}")
+    private String chunkTableName;
+    
+    /**
+     * Write a segment's chunks, then point its metadata at them; on a conflict the new
+     * chunks are removed again
+     */
+    @Override
+    public void save(Segment segment, List<byte[]> chunks, int previousVersion) {
+        List<WriteRequest> writes = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(Map.of(
+                    "chunkKey", AttributeValue.fromS(segment.chunkKey()),
+                    "chunk", AttributeValue.fromN(Integer.toString(i)),
+                    "members", AttributeValue.fromB(SdkBytes.fromByteArray(chunks.get(i))))).build()).build());
+        }
+        writeAll(writes);
+        
+        PutItemRequest.Builder put = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(toItem(segment));
+        if (previousVersion == 0) {
+            put.conditionExpression("attribute_not_exists(#segmentName)")
+                    .expressionAttributeNames(Map.of("#segmentName", "segmentName"));
+        } else {
+            put.conditionExpression("#version = :previousVersion")
+                    .expressionAttributeNames(Map.of("#version", "version"))
+                    .expressionAttributeValues(Map.of(":previousVersion",
+                            AttributeValue.fromN(Integer.toString(previousVersion))));
+        }
+        try {
+            dynamoDbClient.putItem(put.build());
+            log.debug("Saved segment {} v{} in {} chunks", segment.segmentName(), segment.version(), chunks.size());
+        } catch (ConditionalCheckFailedException e) {
+            deleteChunks(segment.chunkKey());
+            throw new SegmentConflictException(segment.segmentName());
+        } catch (DynamoDbException e) {
+            log.error("Error saving segment: {}", segment.segmentName(), e);
+            throw new RuntimeException("Failed to save segment", e);
+        }
+    }
+    
+    @Override
+    public Optional<Segment> findBySegmentName(String segmentName) {
+        try {
+            Map<String, AttributeValue> item = dynamoDbClient.getItem(request -> request
+                    .tableName(tableName)
+                    .key(Map.of("segmentName", AttributeValue.fromS(segmentName)))
+                    .consistentRead(true)).item();
+            return item == null || item.isEmpty() ? Optional.empty() : Optional.of(fromItem(item));
+        } catch (DynamoDbException e) {
+            log.error("Error finding segment: {}", segmentName, e);
+            throw new RuntimeException("Failed to find segment", e);
+        }
+    }
+    
+    @Override
+    public List<Segment> findAll() {
+        try {
+            List<Segment> segments = new ArrayList<>();
+            dynamoDbClient.scanPaginator(request -> request.tableName(tableName)).items()
+                    .forEach(item -> segments.add(fromItem(item)));
+            return segments;
+        } catch (DynamoDbException e) {
+            log.error("Error scanning segments", e);
+            throw new RuntimeException("Failed to scan segments", e);
+        }
+    }
+    
+    @Override
+    public List<byte[]> findChunks(Segment segment) {
+        try {
+            List<byte[]> chunks = new ArrayList<>(segment.chunkCount());
+            dynamoDbClient.queryPaginator(request -> request
+                    .tableName(chunkTableName)
+                    .keyConditionExpression("#chunkKey = :chunkKey")
+                    .expressionAttributeNames(Map.of("#chunkKey", "chunkKey"))
+                    .expressionAttributeValues(Map.of(":chunkKey", AttributeValue.fromS(segment.chunkKey())))
+                    .consistentRead(true)).items()
+                    .forEach(item -> chunks.add(item.get("members").b().asByteArray()));
+            if (chunks.size() != segment.chunkCount()) {
+                throw new IllegalStateException("Segment " + segment.segmentName() + " has " + chunks.size()
+                        + " of " + segment.chunkCount() + " chunks");
+            }
+            return chunks;
+        } catch (DynamoDbException e) {
+            log.error("Error reading chunks of segment: {}", segment.segmentName(), e);
+            throw new RuntimeException("Failed to read segment chunks", e);
+        }
+    }
+    
+    /**
+     * Delete a segment's metadata and then its chunks
+     */
+    @Override
+    public Optional<Segment> deleteBySegmentName(String segmentName) {
+        try {
+            Map<String, AttributeValue> old = dynamoDbClient.deleteItem(request -> request
+                    .tableName(tableName)
+                    .key(Map.of("segmentName", AttributeValue.fromS(segmentName)))
+                    .returnValues(ReturnValue.ALL_OLD)).attributes();
+            if (old == null || old.isEmpty()) {
+                return Optional.empty();
+            }
+            Segment deleted = fromItem(old);
+            deleteChunks(deleted.chunkKey());
+            return Optional.of(deleted);
+        } catch (DynamoDbException e) {
+            log.error("Error deleting segment: {}", segmentName, e);
+            throw new RuntimeException("Failed to delete segment", e);
+        }
+    }
+    
+    @Override
+    public void deleteChunks(String chunkKey) {
+        List<WriteRequest> deletes = new ArrayList<>();
+        dynamoDbClient.queryPaginator(request -> request
+                .tableName(chunkTableName)
+                .keyConditionExpression("#chunkKey = :chunkKey")
+                .projectionExpression("#chunkKey, #chunk")
+                .expressionAttributeNames(Map.of("#chunkKey", "chunkKey", "#chunk", "chunk"))
+                .expressionAttributeValues(Map.of(":chunkKey", AttributeValue.fromS(chunkKey)))).items()
+                .forEach(key -> deletes.add(WriteRequest.builder()
+                        .deleteRequest(DeleteRequest.builder().key(key).build()).build()));
+        writeAll(deletes);
+    }
+    
+    private void writeAll(List<WriteRequest> writes) {
+        for (int start = 0; start < writes.size(); start += MAX_BATCH_WRITE_ITEMS) {
+            writeWithRetries(Map.of(chunkTableName,
+                    writes.subList(start, Math.min(writes.size(), start + MAX_BATCH_WRITE_ITEMS))));
+        }
+    }
+    
+    private void writeWithRetries(Map<String, List<WriteRequest>> requestItems) {
+        try {
+            for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+                if (attempt > MAX_UNPROCESSED_RETRIES) {
+                    throw new RuntimeException("DynamoDB left " + requestItems.get(chunkTableName).size()
+                            + " segment chunks unprocessed");
+                }
+                if (attempt > 0) {
+                    Thread.sleep(UNPROCESSED_BACKOFF_MS << (attempt - 1));
+                }
+                Map<String, List<WriteRequest>> pending = requestItems;
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(request -> request.requestItems(pending));
+                requestItems = response.unprocessedItems();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted writing segment chunks", e);
+        } catch (DynamoDbException e) {
+            log.error("Error writing segment chunks to {}", chunkTableName, e);
+            throw new RuntimeException("Failed to write segment chunks", e);
+        }
+    }
+    
+    private static Map<String, AttributeValue> toItem(Segment segment) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("segmentName", AttributeValue.fromS(segment.segmentName()));
+        if (segment.description() != null) {
+            item.put("description", AttributeValue.fromS(segment.description()));
+        }
+        item.put("keyType", AttributeValue.fromS(segment.keyType().name()));
+        item.put("size", AttributeValue.fromN(Long.toString(segment.size())));
+        item.put("chunkCount", AttributeValue.fromN(Integer.toString(segment.chunkCount())));
+        item.put("chunkKey", AttributeValue.fromS(segment.chunkKey()));
+        item.put("version", AttributeValue.fromN(Integer.toString(segment.version())));
+        item.put("updatedAt", AttributeValue.fromS(segment.updatedAt().toString()));
+        return item;
+    }
+    
+    private static Segment fromItem(Map<String, AttributeValue> item) {
+        return new Segment(
+                item.get("segmentName").s(),
+                item.containsKey("description") ? item.get("description").s() : null,
+                SegmentKeyType.valueOf(item.get("keyType").s()),
+                Long.parseLong(item.get("size").n()),
+                Integer.parseInt(item.get("chunkCount").n()),
+                item.get("chunkKey").s(),
+                Integer.parseInt(item.get("version").n()),
+                Instant.parse(item.get("updatedAt").s()));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.ExposureEvent;
+
+import java.util.List;
+
+/**
+ * Append-only store of exposure events, written by the {@code storage} exposure sink.
+ * <p>
+ * Backends follow {@code flags.storage.backend}: {@link DynamoDbExposureEventRepository},
+ * {@link InMemoryExposureEventRepository} or {@link FileExposureEventRepository}.
+ */
+public interface ExposureEventRepository {
+    
+    void writeBatch(List<ExposureEvent> events);
+}
@@ -1,92 +1,105 @@
 package com.example.featureflag.repository;
 
 import com.example.featureflag.model.FeatureFlag;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Repository;
-import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
-import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
-import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
 
-import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
- * Repository for FeatureFlag operations with DynamoDB
+ * Storage of feature flags, their delete tombstones and the global revision counter.
+ * Revisions are only taken by the writes that carry them, so a revision is never
+ * skipped and never visible before its write.
+ * <p>
+ * Backends are selected with {@code flags.storage.backend}: {@link DynamoDbFeatureFlagRepository},
+ * {@link InMemoryFeatureFlagRepository} or {@link MappedLogFeatureFlagRepository}. Every
+ * backend returns its own copies, so callers may modify what they read.
  */
-@Slf4j
-@Repository
-@RequiredArgsConstructor
-public class FeatureFlagRepository {
+public interface FeatureFlagRepository {
     
-    private final DynamoDbEnhancedClient enhancedClient;
+    /**
+     * Reserved item holding the global revision counter; never returned as a flag
+     */
+    String REVISION_COUNTER_KEY = "__revision__";
     
-    @Value("${aws.dynamodb.table-name:feature-flags}")
-    private String tableName;
+    /**
+     * Save or update a feature flag unconditionally
+     */
+    FeatureFlag save(FeatureFlag featureFlag);
     
-    private DynamoDbTable<FeatureFlag> table;
+    /**
+     * Create a flag unless a live one exists; a tombstone left by a delete may be overwritten.
+     * The flag takes the next global revision in the same atomic write. Returns the flag as
+     * written.
+     */
+    FeatureFlag create(FeatureFlag featureFlag);
     
-    @PostConstruct
-    public void init() {
-        this.table = enhancedClient.table(tableName, TableSchema.fromBean(FeatureFlag.class));
-        log.info("Initialized FeatureFlagRepository with table: {}", tableName);
-    }
+    /**
+     * Apply the non-null fields of {@code changes}, increment the version and take the next
+     * global revision atomically. With {@code expectedVersion} set, the update only lands if
+     * the stored version still matches. Returns the flag as written.
+     */
+    FeatureFlag update(String flagName, FeatureFlag changes, Integer expectedVersion);
     
     /**
-     * Save or update a feature flag
+     * Same as {@link #update(String, FeatureFlag, Integer)}, given the caller's latest copy of
+     * the flag. A backend that would read the flag before writing it writes against this copy
+     * instead and only falls back to the stored item when the copy turns out to be stale.
      */
-    public FeatureFlag save(FeatureFlag featureFlag) {
-        try {
-            table.putItem(featureFlag);
-            log.debug("Saved feature flag: {}", featureFlag.getFlagName());
-            return featureFlag;
-        } catch (DynamoDbException e) {
-            log.error("Error saving feature flag: {}", featureFlag.getFlagName(), e);
-            throw new RuntimeException("Failed to save feature flag", e);
-        }
+    default FeatureFlag update(FeatureFlag current, FeatureFlag changes, Integer expectedVersion) {
+        return update(current.getFlagName(), changes, expectedVersion);
     }
     
     /**
-     * Find a feature flag by name
+     * Find a live feature flag by name
      */
-    public Optional<FeatureFlag> findByFlagName(String flagName) {
-        try {
-            Key key = Key.builder()
-                    .partitionValue(flagName)
-                    .build();
-            
-            FeatureFlag flag = table.getItem(key);
-            return Optional.ofNullable(flag);
-        } catch (DynamoDbException e) {
-            log.error("Error finding feature flag: {}", flagName, e);
-            throw new RuntimeException("Failed to find feature flag", e);
-        }
-    }
+    Optional<FeatureFlag> findByFlagName(String flagName);
     
     /**
-     * Delete a feature flag by name
+     * Find several live feature flags; unknown names are simply absent from the result
      */
-    public void deleteByFlagName(String flagName) {
-        try {
-            Key key = Key.builder()
-                    .partitionValue(flagName)
-                    .build();
-            
-            table.deleteItem(key);
-            log.debug("Deleted feature flag: {}", flagName);
-        } catch (DynamoDbException e) {
-            log.error("Error deleting feature flag: {}", flagName, e);
-            throw new RuntimeException("Failed to delete feature flag", e);
-        }
-    }
+    List<FeatureFlag> findByFlagNames(Collection<String> flagNames);
+    
+    /**
+     * All live feature flags
+     */
+    List<FeatureFlag> findAll();
+    
+    /**
+     * Flags and tombstones written after the given revision.
+     * Items written before revisions existed count as revision 0.
+     */
+    List<FeatureFlag> findChangedSince(long revision);
+    
+    /**
+     * Delete a live flag, leaving a tombstone at the next global revision in the same
+     * atomic write. Returns the tombstone.
+     */
+    FeatureFlag deleteByFlagName(String flagName);
+    
+    /**
+     * Remove tombstones written before the cutoff and advance the purge horizon past them.
+     * Returns the number of tombstones removed.
+     */
+    int purgeTombstones(Instant deletedBefore);
     
     /**
-     * Check if a feature flag exists
+     * Latest allocated revision and how far tombstones have been purged
      */
-    public boolean existsByFlagName(String flagName) {
+    RevisionCounter currentRevision();
+    
+    default boolean existsByFlagName(String flagName) {
         return findByFlagName(flagName).isPresent();
     }
+    
+    static long revisionOf(FeatureFlag flag) {
+        return flag.getRevision() != null ? flag.getRevision() : 0;
+    }
+    
+    /**
+     * Global revision state
+     */
+    record RevisionCounter(long revision, long purgedThrough) {
+    }
 }
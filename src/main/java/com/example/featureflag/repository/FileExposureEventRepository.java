@@ -0,0 +1,38 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.ExposureEvent;
+import com.example.featureflag.service.FileExposureSink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Exposure events of the {@code mmap} storage backend, appended to rolling binary files
+ * in a directory beside the flag log. Events are write-only, so unlike the other local
+ * stores they need no index; the oldest files are deleted as new ones start.
+ */
+public class FileExposureEventRepository implements ExposureEventRepository, Closeable {
+    
+    private final FileExposureSink files;
+    
+    public FileExposureEventRepository(Path directory, long maxFileBytes, int maxFiles) {
+        this.files = new FileExposureSink(directory, FileExposureSink.Format.BINARY, maxFileBytes, maxFiles);
+    }
+    
+    @Override
+    public void writeBatch(List<ExposureEvent> events) {
+        try {
+            files.write(events);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write exposure events", e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        files.close();
+    }
+}
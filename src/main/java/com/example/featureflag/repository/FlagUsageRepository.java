@@ -0,0 +1,26 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.FlagUsage;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Flushed per-flag evaluation totals, kept apart from the flags so counter writes never
+ * race flag updates or resurrect deleted flags.
+ * <p>
+ * Backends follow {@code flags.storage.backend}: {@link DynamoDbFlagUsageRepository} or a
+ * {@link LocalFlagUsageRepository} in memory or in a memory-mapped log.
+ */
+public interface FlagUsageRepository {
+    
+    /**
+     * Add evaluation deltas to a flag's totals atomically
+     */
+    void addUsage(String flagName, long enabledDelta, long disabledDelta, Instant evaluatedAt);
+    
+    /**
+     * Flushed totals of a flag, empty if it was never flushed
+     */
+    Optional<FlagUsage> findByFlagName(String flagName);
+}
@@ -0,0 +1,39 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.ExposureEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent exposure events, held in process memory for the {@code memory} storage
+ * backend; older events are dropped once {@code capacity} is reached
+ */
+public class InMemoryExposureEventRepository implements ExposureEventRepository {
+    
+    private final int capacity;
+    private final ArrayDeque<ExposureEvent> events;
+    
+    public InMemoryExposureEventRepository(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.events = new ArrayDeque<>(Math.min(this.capacity, 1024));
+    }
+    
+    @Override
+    public synchronized void writeBatch(List<ExposureEvent> batch) {
+        for (ExposureEvent event : batch) {
+            if (events.size() == capacity) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+        }
+    }
+    
+    /**
+     * Retained events, oldest first
+     */
+    public synchronized List<ExposureEvent> events() {
+        return new ArrayList<>(events);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.featureflag.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flags held in process memory and lost on restart; for tests, local runs and load tests
+ */
+public class InMemoryFeatureFlagRepository extends LocalFeatureFlagRepository {
+    
+    private final Map<String, byte[]> items = new ConcurrentHashMap<>();
+    
+    @Override
+    protected byte[] read(String flagName) {
+        return items.get(flagName);
+    }
+    
+    @Override
+    protected List<byte[]> readAll() {
+        return new ArrayList<>(items.values());
+    }
+    
+    @Override
+    protected void write(String flagName, byte[] item) {
+        items.put(flagName, item);
+    }
+    
+    @Override
+    protected void remove(String flagName) {
+        items.remove(flagName);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.featureflag.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Items held in process memory and lost on restart
+ */
+class InMemoryItemStore implements ItemStore {
+    
+    private final Map<String, byte[]> items = new ConcurrentHashMap<>();
+    
+    @Override
+    public byte[] get(String key) {
+        return items.get(key);
+    }
+    
+    @Override
+    public List<byte[]> values() {
+        return new ArrayList<>(items.values());
+    }
+    
+    @Override
+    public void put(String key, byte[] item) {
+        items.put(key, item);
+    }
+    
+    @Override
+    public void remove(String key) {
+        items.remove(key);
+    }
+    
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.featureflag.repository;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Encoded items keyed by string, under the local stores of segments and usage totals.
+ * Callers serialize writes; reads take no lock.
+ */
+interface ItemStore extends Closeable {
+    
+    /**
+     * Encoded item, or null
+     */
+    byte[] get(String key);
+    
+    /**
+     * Every encoded item
+     */
+    List<byte[]> values();
+    
+    void put(String key, byte[] item);
+    
+    void remove(String key);
+}
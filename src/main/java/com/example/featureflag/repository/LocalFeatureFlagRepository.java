@@ -0,0 +1,229 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.FlagAlreadyExistsException;
+import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.exception.FlagVersionConflictException;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.service.BinaryFlagCodec;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conditional writes, tombstones and revisions of the backends that keep flags in the
+ * service process, on top of a store of encoded items keyed by flag name.
+ * <p>
+ * Items are held in the binary cache encoding and decoded on every read, so callers
+ * never share instances. Writes are serialized on the repository; reads take no lock.
+ */
+abstract class LocalFeatureFlagRepository implements FeatureFlagRepository {
+    
+    private static final BinaryFlagCodec CODEC = new BinaryFlagCodec();
+    
+    private final AtomicLong revision = new AtomicLong();
+    private final AtomicLong purgedThrough = new AtomicLong();
+    
+    /**
+     * Encoded flag or tombstone, or null
+     */
+    protected abstract byte[] read(String flagName);
+    
+    /**
+     * Every encoded flag and tombstone
+     */
+    protected abstract List<byte[]> readAll();
+    
+    protected abstract void write(String flagName, byte[] item);
+    
+    protected abstract void remove(String flagName);
+    
+    /**
+     * Called before a purge removes tombstones; persistent stores record the counters, as
+     * the tombstones may have been the only record of the latest revision
+     */
+    protected void countersChanged(long revision, long purgedThrough) {
+    }
+    
+    /**
+     * Counters recovered by a persistent store when it opens
+     */
+    protected void restoreCounters(long revision, long purgedThrough) {
+        this.revision.set(revision);
+        this.purgedThrough.set(purgedThrough);
+    }
+    
+    @Override
+    public FeatureFlag save(FeatureFlag featureFlag) {
+        write(featureFlag.getFlagName(), encode(featureFlag));
+        return featureFlag;
+    }
+    
+    @Override
+    public synchronized FeatureFlag create(FeatureFlag featureFlag) {
+        FeatureFlag existing = decode(read(featureFlag.getFlagName()));
+        if (isLive(existing)) {
+            throw new FlagAlreadyExistsException(featureFlag.getFlagName());
+        }
+        return writeAtNextRevision(featureFlag);
+    }
+    
+    @Override
+    public synchronized FeatureFlag update(String flagName, FeatureFlag changes, Integer expectedVersion) {
+        FeatureFlag flag = decode(read(flagName));
+        if (!isLive(flag)) {
+            throw new FlagNotFoundException(flagName);
+        }
+        if (expectedVersion != null && !expectedVersion.equals(flag.getVersion())) {
+            throw new FlagVersionConflictException(flagName, expectedVersion, flag.getVersion());
+        }
+        applyChanges(flag, changes);
+        flag.setVersion(flag.getVersion() != null ? flag.getVersion() + 1 : 1);
+        return writeAtNextRevision(flag);
+    }
+    
+    @Override
+    public Optional<FeatureFlag> findByFlagName(String flagName) {
+        return Optional.ofNullable(decode(read(flagName))).filter(LocalFeatureFlagRepository::isLive);
+    }
+    
+    @Override
+    public List<FeatureFlag> findByFlagNames(Collection<String> flagNames) {
+        List<FeatureFlag> flags = new ArrayList<>(flagNames.size());
+        for (String flagName : flagNames) {
+            findByFlagName(flagName).ifPresent(flags::add);
+        }
+        return flags;
+    }
+    
+    @Override
+    public List<FeatureFlag> findAll() {
+        List<FeatureFlag> flags = new ArrayList<>();
+        for (byte[] item : readAll()) {
+            FeatureFlag flag = decode(item);
+            if (isLive(flag)) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+    
+    @Override
+    public List<FeatureFlag> findChangedSince(long revision) {
+        List<FeatureFlag> flags = new ArrayList<>();
+        for (byte[] item : readAll()) {
+            FeatureFlag flag = decode(item);
+            if (FeatureFlagRepository.revisionOf(flag) > revision) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+    
+    @Override
+    public synchronized FeatureFlag deleteByFlagName(String flagName) {
+        FeatureFlag flag = decode(read(flagName));
+        if (!isLive(flag)) {
+            throw new FlagNotFoundException(flagName);
+        }
+        return writeAtNextRevision(FeatureFlag.builder()
+                .flagName(flagName)
+                .deleted(true)
+                .updatedAt(Instant.now())
+                .build());
+    }
+    
+    @Override
+    public synchronized int purgeTombstones(Instant deletedBefore) {
+        long purgedRevision = 0;
+        List<String> purged = new ArrayList<>();
+        for (byte[] item : readAll()) {
+            FeatureFlag flag = decode(item);
+            if (Boolean.TRUE.equals(flag.getDeleted())
+                    && flag.getUpdatedAt() != null && flag.getUpdatedAt().isBefore(deletedBefore)) {
+                purgedRevision = Math.max(purgedRevision, FeatureFlagRepository.revisionOf(flag));
+                purged.add(flag.getFlagName());
+            }
+        }
+        if (!purged.isEmpty()) {
+            // Counters first: the removed tombstones may hold the latest revision
+            countersChanged(revision.get(), purgedThrough.accumulateAndGet(purgedRevision, Math::max));
+            purged.forEach(this::remove);
+        }
+        return purged.size();
+    }
+    
+    @Override
+    public RevisionCounter currentRevision() {
+        return new RevisionCounter(revision.get(), purgedThrough.get());
+    }
+    
+    /**
+     * Write the item at the next revision and only then publish that revision, so it is
+     * never seen before its write. The item carries its revision, which is how persistent
+     * stores recover the counter.
+     */
+    private FeatureFlag writeAtNextRevision(FeatureFlag item) {
+        item.setRevision(revision.get() + 1);
+        write(item.getFlagName(), encode(item));
+        revision.set(item.getRevision());
+        return item;
+    }
+    
+    static byte[] encode(FeatureFlag flag) {
+        return CODEC.encode(flag, 0);
+    }
+    
+    static FeatureFlag decode(byte[] item) {
+        if (item == null) {
+            return null;
+        }
+        try {
+            return CODEC.decode(item).flag();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode stored feature flag", e);
+        }
+    }
+    
+    private static boolean isLive(FeatureFlag flag) {
+        return flag != null && !Boolean.TRUE.equals(flag.getDeleted());
+    }
+    
+    /**
+     * The attributes DynamoDbFeatureFlagRepository#update takes from the changes: every
+     * non-null field except the name, version, revision, creation time and deleted marker
+     */
+    private static void applyChanges(FeatureFlag flag, FeatureFlag changes) {
+        if (changes.getEnabled() != null) {
+            flag.setEnabled(changes.getEnabled());
+        }
+        if (changes.getRolloutPercentage() != null) {
+            flag.setRolloutPercentage(changes.getRolloutPercentage());
+        }
+        if (changes.getRolloutBasisPoints() != null) {
+            flag.setRolloutBasisPoints(changes.getRolloutBasisPoints());
+        }
+        if (changes.getDescription() != null) {
+            flag.setDescription(changes.getDescription());
+        }
+        if (changes.getUpdatedAt() != null) {
+            flag.setUpdatedAt(changes.getUpdatedAt());
+        }
+        if (changes.getRules() != null) {
+            flag.setRules(changes.getRules());
+        }
+        if (changes.getVariants() != null) {
+            flag.setVariants(changes.getVariants());
+        }
+        if (changes.getPrerequisites() != null) {
+            flag.setPrerequisites(changes.getPrerequisites());
+        }
+        if (changes.getRolloutSchedule() != null) {
+            flag.setRolloutSchedule(changes.getRolloutSchedule());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.FlagUsage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Usage totals kept by the service process for the {@code memory} and {@code mmap}
+ * storage backends, one encoded item per flag. Additions are serialized on the repository.
+ */
+public class LocalFlagUsageRepository implements FlagUsageRepository, Closeable {
+    
+    private final ItemStore items;
+    
+    private LocalFlagUsageRepository(ItemStore items) {
+        this.items = items;
+    }
+    
+    /**
+     * Totals held in process memory and lost on restart
+     */
+    public static LocalFlagUsageRepository inMemory() {
+        return new LocalFlagUsageRepository(new InMemoryItemStore());
+    }
+    
+    /**
+     * Totals persisted in a memory-mapped log in {@code directory}
+     */
+    public static LocalFlagUsageRepository mapped(Path directory, double compactionGarbageRatio) throws IOException {
+        return new LocalFlagUsageRepository(new MappedItemStore(directory.resolve("usage.log"), compactionGarbageRatio));
+    }
+    
+    @Override
+    public synchronized void addUsage(String flagName, long enabledDelta, long disabledDelta, Instant evaluatedAt) {
+        FlagUsage total = findByFlagName(flagName).orElse(FlagUsage.none(flagName));
+        items.put(flagName, encode(new FlagUsage(flagName,
+                total.enabledCount() + enabledDelta,
+                total.disabledCount() + disabledDelta,
+                evaluatedAt)));
+    }
+    
+    @Override
+    public Optional<FlagUsage> findByFlagName(String flagName) {
+        byte[] item = items.get(flagName);
+        return item != null ? Optional.of(decode(flagName, item)) : Optional.empty();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        items.close();
+    }
+    
+    private static byte[] encode(FlagUsage usage) {
+        Instant at = usage.lastEvaluatedAt();
+        ByteBuffer item = ByteBuffer.allocate(at != null ? 29 : 17)
+                .putLong(usage.enabledCount())
+                .putLong(usage.disabledCount())
+                .put((byte) (at != null ? 1 : 0));
+        if (at != null) {
+            item.putLong(at.getEpochSecond()).putInt(at.getNano());
+        }
+        return item.array();
+    }
+    
+    private static FlagUsage decode(String flagName, byte[] bytes) {
+        ByteBuffer item = ByteBuffer.wrap(bytes);
+        long enabledCount = item.getLong();
+        long disabledCount = item.getLong();
+        Instant lastEvaluatedAt = item.get() != 0 ? Instant.ofEpochSecond(item.getLong(), item.getInt()) : null;
+        return new FlagUsage(flagName, enabledCount, disabledCount, lastEvaluatedAt);
+    }
+}
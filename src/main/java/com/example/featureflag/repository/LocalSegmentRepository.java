@@ -0,0 +1,191 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.SegmentConflictException;
+import com.example.featureflag.model.Segment;
+import com.example.featureflag.model.SegmentKeyType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Segments kept by the service process for the {@code memory} and {@code mmap} storage
+ * backends: one metadata item per segment, and the chunks of each upload as one item
+ * under its {@code chunkKey}. Writes are serialized on the repository; reads take no lock.
+ */
+public class LocalSegmentRepository implements SegmentRepository, Closeable {
+    
+    private final ItemStore segments;
+    private final ItemStore chunks;
+    
+    private LocalSegmentRepository(ItemStore segments, ItemStore chunks) {
+        this.segments = segments;
+        this.chunks = chunks;
+    }
+    
+    /**
+     * Segments held in process memory and lost on restart
+     */
+    public static LocalSegmentRepository inMemory() {
+        return new LocalSegmentRepository(new InMemoryItemStore(), new InMemoryItemStore());
+    }
+    
+    /**
+     * Segments persisted in two memory-mapped logs in {@code directory}
+     */
+    public static LocalSegmentRepository mapped(Path directory, double compactionGarbageRatio) throws IOException {
+        MappedItemStore segments = new MappedItemStore(directory.resolve("segments.log"), compactionGarbageRatio);
+        try {
+            return new LocalSegmentRepository(segments,
+                    new MappedItemStore(directory.resolve("segment-chunks.log"), compactionGarbageRatio));
+        } catch (IOException | RuntimeException e) {
+            segments.close();
+            throw e;
+        }
+    }
+    
+    @Override
+    public synchronized void save(Segment segment, List<byte[]> chunkList, int previousVersion) {
+        int storedVersion = findBySegmentName(segment.segmentName()).map(Segment::version).orElse(0);
+        if (storedVersion != previousVersion) {
+            throw new SegmentConflictException(segment.segmentName());
+        }
+        chunks.put(segment.chunkKey(), encodeChunks(chunkList));
+        segments.put(segment.segmentName(), encode(segment));
+    }
+    
+    @Override
+    public Optional<Segment> findBySegmentName(String segmentName) {
+        byte[] item = segments.get(segmentName);
+        return item != null ? Optional.of(decode(item)) : Optional.empty();
+    }
+    
+    @Override
+    public List<Segment> findAll() {
+        List<Segment> all = new ArrayList<>();
+        for (byte[] item : segments.values()) {
+            all.add(decode(item));
+        }
+        return all;
+    }
+    
+    @Override
+    public List<byte[]> findChunks(Segment segment) {
+        byte[] item = chunks.get(segment.chunkKey());
+        List<byte[]> found = item != null ? decodeChunks(item) : List.of();
+        if (found.size() != segment.chunkCount()) {
+            throw new IllegalStateException("Segment " + segment.segmentName() + " has " + found.size()
+                    + " of " + segment.chunkCount() + " chunks");
+        }
+        return found;
+    }
+    
+    @Override
+    public synchronized Optional<Segment> deleteBySegmentName(String segmentName) {
+        Optional<Segment> deleted = findBySegmentName(segmentName);
+        deleted.ifPresent(segment -> {
+            segments.remove(segmentName);
+            chunks.remove(segment.chunkKey());
+        });
+        return deleted;
+    }
+    
+    @Override
+    public synchronized void deleteChunks(String chunkKey) {
+        chunks.remove(chunkKey);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            segments.close();
+        } finally {
+            chunks.close();
+        }
+    }
+    
+    private static byte[] encodeChunks(List<byte[]> chunkList) {
+        int bytes = 4;
+        for (byte[] chunk : chunkList) {
+            bytes += 4 + chunk.length;
+        }
+        ByteBuffer item = ByteBuffer.allocate(bytes).putInt(chunkList.size());
+        for (byte[] chunk : chunkList) {
+            item.putInt(chunk.length).put(chunk);
+        }
+        return item.array();
+    }
+    
+    private static List<byte[]> decodeChunks(byte[] bytes) {
+        ByteBuffer item = ByteBuffer.wrap(bytes);
+        List<byte[]> chunkList = new ArrayList<>(item.getInt());
+        while (item.hasRemaining()) {
+            byte[] chunk = new byte[item.getInt()];
+            item.get(chunk);
+            chunkList.add(chunk);
+        }
+        return chunkList;
+    }
+    
+    private static byte[] encode(Segment segment) {
+        byte[] name = utf8(segment.segmentName());
+        byte[] description = segment.description() != null ? utf8(segment.description()) : null;
+        byte[] keyType = utf8(segment.keyType().name());
+        byte[] chunkKey = utf8(segment.chunkKey());
+        ByteBuffer item = ByteBuffer.allocate(4 * 4 + name.length + (description != null ? description.length : 0)
+                + keyType.length + chunkKey.length + 8 + 4 + 4 + 8 + 4);
+        putString(item, name);
+        putString(item, description);
+        putString(item, keyType);
+        item.putLong(segment.size()).putInt(segment.chunkCount());
+        putString(item, chunkKey);
+        item.putInt(segment.version())
+                .putLong(segment.updatedAt().getEpochSecond())
+                .putInt(segment.updatedAt().getNano());
+        return item.array();
+    }
+    
+    private static Segment decode(byte[] bytes) {
+        ByteBuffer item = ByteBuffer.wrap(bytes);
+        String name = getString(item);
+        String description = getString(item);
+        SegmentKeyType keyType = SegmentKeyType.valueOf(getString(item));
+        long size = item.getLong();
+        int chunkCount = item.getInt();
+        String chunkKey = getString(item);
+        int version = item.getInt();
+        Instant updatedAt = Instant.ofEpochSecond(item.getLong(), item.getInt());
+        return new Segment(name, description, keyType, size, chunkCount, chunkKey, version, updatedAt);
+    }
+    
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Length, or -1 for null, then the bytes
+     */
+    private static void putString(ByteBuffer item, byte[] value) {
+        if (value == null) {
+            item.putInt(-1);
+        } else {
+            item.putInt(value.length).put(value);
+        }
+    }
+    
+    private static String getString(ByteBuffer item) {
+        int length = item.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        item.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.featureflag.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Items persisted in a memory-mapped, append-only log file, with the record layout of
+ * {@link MappedLogFeatureFlagRepository}: length, CRC32 and type, then a payload of the
+ * key length, the key in UTF-8 and, for a put, the item. Every write is forced to disk
+ * before it returns. On open the log is replayed up to the first torn or corrupt record,
+ * and the rest is cut off.
+ * <p>
+ * Once superseded records make up {@code compactionGarbageRatio} of a log of at least
+ * 1 MB, the write that got it there rewrites it with only the latest items, through a
+ * temporary file that then replaces it atomically. Only one process may open a log at
+ * a time.
+ */
+@Slf4j
+final class MappedItemStore implements ItemStore {
+    
+    private static final int MAGIC = 0x46464954;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    
+    /**
+     * Length of type and payload, CRC32 of type and payload, type
+     */
+    private static final int RECORD_HEADER_BYTES = 9;
+    
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    
+    /**
+     * Logs smaller than this are never compacted
+     */
+    private static final int MIN_COMPACTION_BYTES = 1 << 20;
+    
+    private final Path file;
+    private final Path compactionFile;
+    private final double compactionGarbageRatio;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private volatile Mapping mapping;
+    
+    MappedItemStore(Path file, double compactionGarbageRatio) throws IOException {
+        this.file = file;
+        this.compactionFile = file.resolveSibling(file.getFileName() + ".compacting");
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Item log " + file + " is open in another process");
+        }
+        // A compaction interrupted before its rename never replaced anything
+        Files.deleteIfExists(compactionFile);
+        mapping = replay(Mapping.open(file));
+        log.info("Opened item log {}: {} items in {} bytes", file, mapping.index.size(), mapping.end);
+    }
+    
+    @Override
+    public byte[] get(String key) {
+        Mapping current = mapping;
+        Integer offset = current.index.get(key);
+        return offset != null ? current.item(offset) : null;
+    }
+    
+    @Override
+    public List<byte[]> values() {
+        Mapping current = mapping;
+        List<byte[]> items = new ArrayList<>(current.index.size());
+        for (int offset : current.index.values()) {
+            items.add(current.item(offset));
+        }
+        return items;
+    }
+    
+    @Override
+    public synchronized void put(String key, byte[] item) {
+        Mapping current = mapping;
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int offset = current.append(PUT, ByteBuffer.allocate(4 + keyBytes.length + item.length)
+                .putInt(keyBytes.length).put(keyBytes).put(item).array());
+        current.force(offset);
+        Integer previous = current.index.put(key, offset);
+        if (previous != null) {
+            current.garbage += current.recordBytes(previous);
+        }
+        compactIfNeeded();
+    }
+    
+    @Override
+    public synchronized void remove(String key) {
+        Mapping current = mapping;
+        if (!current.index.containsKey(key)) {
+            return;
+        }
+        int offset = current.append(REMOVE, key.getBytes(StandardCharsets.UTF_8));
+        current.force(offset);
+        int previous = current.index.remove(key);
+        // The removal record itself is dropped by the next compaction
+        current.garbage += current.recordBytes(offset) + current.recordBytes(previous);
+        compactIfNeeded();
+    }
+    
+    /**
+     * Rewrite the log with only the latest record of each item
+     */
+    synchronized void compact() {
+        Mapping old = mapping;
+        try {
+            Files.deleteIfExists(compactionFile);
+            Mapping compacted = Mapping.open(compactionFile);
+            for (Map.Entry<String, Integer> entry : old.index.entrySet()) {
+                compacted.index.put(entry.getKey(), compacted.append(PUT, old.payload(entry.getValue())));
+            }
+            compacted.buffer.force();
+            Files.move(compactionFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            mapping = compacted;
+            // Readers still holding the old log keep a valid mapping after the channel closes
+            old.channel.close();
+            log.info("Compacted item log {} from {} to {} bytes", file, old.end, compacted.end);
+        } catch (IOException e) {
+            log.error("Error compacting item log {}", file, e);
+            throw new RuntimeException("Failed to compact item log", e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        mapping.channel.close();
+        lock.release();
+        lockChannel.close();
+    }
+    
+    private void compactIfNeeded() {
+        Mapping current = mapping;
+        if (current.end >= MIN_COMPACTION_BYTES && current.garbage >= current.end * compactionGarbageRatio) {
+            compact();
+        }
+    }
+    
+    /**
+     * Rebuild the index from the log, cutting it off at the first bad record
+     */
+    private static Mapping replay(Mapping opened) throws IOException {
+        MappedByteBuffer buffer = opened.buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an item log: " + opened.file);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported item log format version " + buffer.getInt(4));
+        }
+        
+        int offset = FILE_HEADER_BYTES;
+        int limit = opened.end;
+        opened.end = offset;
+        while (offset + RECORD_HEADER_BYTES <= limit) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 1 || offset + 8L + length > limit || !opened.checksumMatches(offset)) {
+                log.warn("Item log {} has a torn or corrupt record at byte {}; discarding the rest",
+                        opened.file, offset);
+                for (int i = offset; i < limit; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+                break;
+            }
+            switch (opened.type(offset)) {
+                case PUT -> {
+                    Integer previous = opened.index.put(opened.key(offset), offset);
+                    if (previous != null) {
+                        opened.garbage += opened.recordBytes(previous);
+                    }
+                }
+                case REMOVE -> {
+                    Integer previous = opened.index.remove(new String(opened.payload(offset), StandardCharsets.UTF_8));
+                    opened.garbage += opened.recordBytes(offset) + (previous != null ? opened.recordBytes(previous) : 0);
+                }
+                default -> throw new IOException("Unknown record type " + opened.type(offset) + " in " + opened.file);
+            }
+            offset += opened.recordBytes(offset);
+            opened.end = offset;
+        }
+        return opened;
+    }
+    
+    /**
+     * One log file and its index. Appends happen under the store lock and are not durable
+     * until forced. The mapping is replaced before a record in a grown region is
+     * published, so readers never see an offset past their mapping.
+     */
+    private static final class Mapping {
+        
+        final Path file;
+        final FileChannel channel;
+        final Map<String, Integer> index = new ConcurrentHashMap<>();
+        volatile MappedByteBuffer buffer;
+        int end;
+        long garbage;
+        
+        private Mapping(Path file, FileChannel channel, MappedByteBuffer buffer, int end) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.end = end;
+        }
+        
+        /**
+         * Map the file, writing the header if it is new. For an existing file {@code end}
+         * starts at its size, which replay then narrows down.
+         */
+        static Mapping open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Item log " + file + " is larger than 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            if (size == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT_VERSION);
+                buffer.force(0, FILE_HEADER_BYTES);
+                size = FILE_HEADER_BYTES;
+            }
+            return new Mapping(file, channel, buffer, (int) size);
+        }
+        
+        int append(byte type, byte[] payload) {
+            int recordBytes = RECORD_HEADER_BYTES + payload.length;
+            ensureCapacity(recordBytes);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            
+            MappedByteBuffer target = buffer;
+            int offset = end;
+            target.put(offset + RECORD_HEADER_BYTES, payload);
+            target.put(offset + 8, type);
+            target.putInt(offset + 4, (int) crc.getValue());
+            target.putInt(offset, payload.length + 1);
+            end = offset + recordBytes;
+            return offset;
+        }
+        
+        /**
+         * Flush one appended record to disk
+         */
+        void force(int offset) {
+            buffer.force(offset, recordBytes(offset));
+        }
+        
+        byte type(int offset) {
+            return buffer.get(offset + 8);
+        }
+        
+        byte[] payload(int offset) {
+            MappedByteBuffer source = buffer;
+            byte[] payload = new byte[source.getInt(offset) - 1];
+            source.get(offset + RECORD_HEADER_BYTES, payload);
+            return payload;
+        }
+        
+        /**
+         * Key of a put record
+         */
+        String key(int offset) {
+            MappedByteBuffer source = buffer;
+            byte[] key = new byte[source.getInt(offset + RECORD_HEADER_BYTES)];
+            source.get(offset + RECORD_HEADER_BYTES + 4, key);
+            return new String(key, StandardCharsets.UTF_8);
+        }
+        
+        /**
+         * Item of a put record
+         */
+        byte[] item(int offset) {
+            MappedByteBuffer source = buffer;
+            int keyLength = source.getInt(offset + RECORD_HEADER_BYTES);
+            byte[] item = new byte[source.getInt(offset) - 1 - 4 - keyLength];
+            source.get(offset + RECORD_HEADER_BYTES + 4 + keyLength, item);
+            return item;
+        }
+        
+        int recordBytes(int offset) {
+            return 8 + buffer.getInt(offset);
+        }
+        
+        boolean checksumMatches(int offset) {
+            CRC32 crc = new CRC32();
+            crc.update(type(offset));
+            crc.update(payload(offset));
+            return (int) crc.getValue() == buffer.getInt(offset + 4);
+        }
+        
+        private void ensureCapacity(int recordBytes) {
+            long required = (long) end + recordBytes;
+            if (required <= buffer.capacity()) {
+                return;
+            }
+            if (required > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Item log " + file + " is full");
+            }
+            long capacity = Math.min(Math.max(2L * buffer.capacity(), required), Integer.MAX_VALUE);
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to grow item log " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.FeatureFlag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Flags persisted in a memory-mapped, append-only log file on local disk.
+ * <p>
+ * Every write appends a record: a flag or tombstone in the binary cache encoding, the
+ * removal of a purged tombstone, or the revision counters. Flags carry their revision, so
+ * the counter is the highest revision replayed; counter records only keep it and the purge
+ * horizon across purges and compactions. An in-memory index points each
+ * flag name at its latest record, so a read is one hash lookup and one decode straight
+ * from the mapping, with no system call. Records are forced to disk before a write
+ * returns and carry a CRC32. On open the log is replayed up to the first torn or corrupt
+ * record, and the rest is cut off.
+ * <p>
+ * Superseded records stay in the log until compaction rewrites it with only the latest
+ * ones. The new log is written to a temporary file that then replaces the old one
+ * atomically. Only one process may open a directory at a time.
+ */
+@Slf4j
+public class MappedLogFeatureFlagRepository extends LocalFeatureFlagRepository implements Closeable {
+    
+    static final String LOG_FILE = "flags.log";
+    private static final String COMPACTION_FILE = "flags.log.compacting";
+    private static final String LOCK_FILE = "flags.lock";
+    
+    private static final int MAGIC = 0x46464C47;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    
+    /**
+     * Length of type and payload, CRC32 of type and payload, type
+     */
+    private static final int RECORD_HEADER_BYTES = 9;
+    
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte COUNTERS = 3;
+    
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    
+    /**
+     * Logs smaller than this are never compacted
+     */
+    private static final int MIN_COMPACTION_BYTES = 1 << 20;
+    
+    private final Path directory;
+    private final double compactionGarbageRatio;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private volatile Segment segment;
+    
+    /**
+     * Open or create the log in {@code directory}. Compaction runs once superseded records
+     * make up at least {@code compactionGarbageRatio} of it.
+     */
+    public MappedLogFeatureFlagRepository(Path directory, double compactionGarbageRatio) throws IOException {
+        this.directory = directory;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Flag log " + directory + " is open in another process");
+        }
+        // A compaction interrupted before its rename never replaced anything
+        Files.deleteIfExists(directory.resolve(COMPACTION_FILE));
+        segment = replay(Segment.open(directory.resolve(LOG_FILE)));
+        log.info("Opened flag log {}: {} flags in {} bytes", directory.resolve(LOG_FILE), segment.index.size(), segment.end);
+    }
+    
+    @Override
+    protected byte[] read(String flagName) {
+        Segment current = segment;
+        Integer offset = current.index.get(flagName);
+        return offset != null ? current.payload(offset) : null;
+    }
+    
+    @Override
+    protected List<byte[]> readAll() {
+        Segment current = segment;
+        List<byte[]> items = new ArrayList<>(current.index.size());
+        for (int offset : current.index.values()) {
+            items.add(current.payload(offset));
+        }
+        return items;
+    }
+    
+    @Override
+    protected synchronized void write(String flagName, byte[] item) {
+        Segment current = segment;
+        int offset = current.append(PUT, item);
+        current.force(offset);
+        Integer previous = current.index.put(flagName, offset);
+        if (previous != null) {
+            current.garbage += current.recordBytes(previous);
+        }
+    }
+    
+    @Override
+    protected synchronized void remove(String flagName) {
+        Segment current = segment;
+        int offset = current.append(REMOVE, flagName.getBytes(StandardCharsets.UTF_8));
+        current.force(offset);
+        Integer previous = current.index.remove(flagName);
+        // The removal record itself is dropped by the next compaction
+        current.garbage += current.recordBytes(offset) + (previous != null ? current.recordBytes(previous) : 0);
+    }
+    
+    @Override
+    protected synchronized void countersChanged(long revision, long purgedThrough) {
+        segment.appendCounters(revision, purgedThrough);
+        segment.force(segment.counters);
+    }
+    
+    /**
+     * Compact once enough of the log is superseded records
+     */
+    @Scheduled(fixedDelayString = "${flags.storage.mmap.compaction-interval-ms:60000}")
+    public synchronized void compactIfNeeded() {
+        Segment current = segment;
+        if (current.end >= MIN_COMPACTION_BYTES && current.garbage >= current.end * compactionGarbageRatio) {
+            compact();
+        }
+    }
+    
+    /**
+     * Rewrite the log with only the latest record of each flag and the current counters
+     */
+    public synchronized void compact() {
+        Segment old = segment;
+        Path target = directory.resolve(LOG_FILE);
+        Path temporary = directory.resolve(COMPACTION_FILE);
+        try {
+            Segment compacted = Segment.open(temporary);
+            for (Map.Entry<String, Integer> entry : old.index.entrySet()) {
+                compacted.index.put(entry.getKey(), compacted.append(PUT, old.payload(entry.getValue())));
+            }
+            RevisionCounter counters = currentRevision();
+            compacted.appendCounters(counters.revision(), counters.purgedThrough());
+            compacted.buffer.force();
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            segment = compacted;
+            // Readers still holding the old log keep a valid mapping after the channel closes
+            old.channel.close();
+            log.info("Compacted flag log {} from {} to {} bytes", target, old.end, compacted.end);
+        } catch (IOException e) {
+            log.error("Error compacting flag log {}", target, e);
+            throw new RuntimeException("Failed to compact flag log", e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        segment.channel.close();
+        lock.release();
+        lockChannel.close();
+    }
+    
+    /**
+     * Rebuild the index and counters from the log, cutting it off at the first bad record
+     */
+    private Segment replay(Segment opened) throws IOException {
+        MappedByteBuffer buffer = opened.buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a flag log: " + opened.file);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported flag log format version " + buffer.getInt(4));
+        }
+        
+        long revision = 0;
+        long purgedThrough = 0;
+        int counters = -1;
+        int offset = FILE_HEADER_BYTES;
+        int limit = opened.end;
+        opened.end = offset;
+        while (offset + RECORD_HEADER_BYTES <= limit) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 1 || offset + 8L + length > limit || !opened.checksumMatches(offset)) {
+                log.warn("Flag log {} has a torn or corrupt record at byte {}; discarding the rest",
+                        opened.file, offset);
+                for (int i = offset; i < limit; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+                break;
+            }
+            byte[] payload = opened.payload(offset);
+            switch (opened.type(offset)) {
+                case PUT -> {
+                    FeatureFlag flag = decode(payload);
+                    revision = Math.max(revision, FeatureFlagRepository.revisionOf(flag));
+                    Integer previous = opened.index.put(flag.getFlagName(), offset);
+                    if (previous != null) {
+                        opened.garbage += opened.recordBytes(previous);
+                    }
+                }
+                case REMOVE -> {
+                    Integer previous = opened.index.remove(new String(payload, StandardCharsets.UTF_8));
+                    opened.garbage += opened.recordBytes(offset) + (previous != null ? opened.recordBytes(previous) : 0);
+                }
+                case COUNTERS -> {
+                    ByteBuffer values = ByteBuffer.wrap(payload);
+                    revision = Math.max(revision, values.getLong());
+                    purgedThrough = Math.max(purgedThrough, values.getLong());
+                    if (counters >= 0) {
+                        opened.garbage += opened.recordBytes(counters);
+                    }
+                    counters = offset;
+                }
+                default -> throw new IOException("Unknown record type " + opened.type(offset) + " in " + opened.file);
+            }
+            offset += opened.recordBytes(offset);
+            opened.end = offset;
+        }
+        opened.counters = counters;
+        restoreCounters(revision, purgedThrough);
+        return opened;
+    }
+    
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename is still atomic there
+            log.debug("Could not sync directory {}", directory, e);
+        }
+    }
+    
+    /**
+     * One log file and its index. Appends happen under the repository lock and are not
+     * durable until forced. The mapping is replaced before a record in a grown region is
+     * published, so readers never see an offset past their mapping.
+     */
+    private static final class Segment {
+        
+        final Path file;
+        final FileChannel channel;
+        final Map<String, Integer> index = new ConcurrentHashMap<>();
+        volatile MappedByteBuffer buffer;
+        int end;
+        long garbage;
+        int counters = -1;
+        
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer, int end) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.end = end;
+        }
+        
+        /**
+         * Map the file, writing the header if it is new. For an existing file {@code end}
+         * starts at its size, which replay then narrows down.
+         */
+        static Segment open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Flag log " + file + " is larger than 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            if (size == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT_VERSION);
+                buffer.force(0, FILE_HEADER_BYTES);
+                size = FILE_HEADER_BYTES;
+            }
+            return new Segment(file, channel, buffer, (int) size);
+        }
+        
+        int append(byte type, byte[] payload) {
+            int recordBytes = RECORD_HEADER_BYTES + payload.length;
+            ensureCapacity(recordBytes);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            
+            MappedByteBuffer target = buffer;
+            int offset = end;
+            target.put(offset + RECORD_HEADER_BYTES, payload);
+            target.put(offset + 8, type);
+            target.putInt(offset + 4, (int) crc.getValue());
+            target.putInt(offset, payload.length + 1);
+            end = offset + recordBytes;
+            return offset;
+        }
+        
+        /**
+         * Flush one appended record to disk
+         */
+        void force(int offset) {
+            buffer.force(offset, recordBytes(offset));
+        }
+        
+        void appendCounters(long revision, long purgedThrough) {
+            int offset = append(COUNTERS, ByteBuffer.allocate(16).putLong(revision).putLong(purgedThrough).array());
+            if (counters >= 0) {
+                garbage += recordBytes(counters);
+            }
+            counters = offset;
+        }
+        
+        byte type(int offset) {
+            return buffer.get(offset + 8);
+        }
+        
+        byte[] payload(int offset) {
+            MappedByteBuffer source = buffer;
+            byte[] payload = new byte[source.getInt(offset) - 1];
+            source.get(offset + RECORD_HEADER_BYTES, payload);
+            return payload;
+        }
+        
+        int recordBytes(int offset) {
+            return 8 + buffer.getInt(offset);
+        }
+        
+        boolean checksumMatches(int offset) {
+            CRC32 crc = new CRC32();
+            crc.update(type(offset));
+            crc.update(payload(offset));
+            return (int) crc.getValue() == buffer.getInt(offset + 4);
+        }
+        
+        private void ensureCapacity(int recordBytes) {
+            long required = (long) end + recordBytes;
+            if (required <= buffer.capacity()) {
+                return;
+            }
+            if (required > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Flag log " + file + " is full");
+            }
+            long capacity = Math.min(Math.max(2L * buffer.capacity(), required), Integer.MAX_VALUE);
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to grow flag log " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.SegmentConflictException;
+import com.example.featureflag.model.Segment;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * User segments: one metadata entry per segment and member chunks stored under a
+ * {@code chunkKey} unique per upload. An upload writes all of its chunks before the
+ * metadata points at them, so readers never see a partial segment.
+ * <p>
+ * Backends follow {@code flags.storage.backend}: {@link DynamoDbSegmentRepository} or a
+ * {@link LocalSegmentRepository} in memory or in memory-mapped logs.
+ */
+public interface SegmentRepository {
+    
+    /**
+     * Write a segment's chunks, then point its metadata at them. Fails with
+     * {@link SegmentConflictException} unless the stored segment is still at
+     * {@code previousVersion} (0 for a new segment).
+     */
+    void save(Segment segment, List<byte[]> chunks, int previousVersion);
+    
+    Optional<Segment> findBySegmentName(String segmentName);
+    
+    /**
+     * Metadata of every segment; members are not read
+     */
+    List<Segment> findAll();
+    
+    /**
+     * Member chunks of a segment in upload order
+     */
+    List<byte[]> findChunks(Segment segment);
+    
+    /**
+     * Delete a segment and its chunks; returns the deleted metadata
+     */
+    Optional<Segment> deleteBySegmentName(String segmentName);
+    
+    /**
+     * Remove the chunks of an upload that is no longer referenced
+     */
+    void deleteChunks(String chunkKey);
+}
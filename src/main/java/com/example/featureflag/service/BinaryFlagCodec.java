@@ -0,0 +1,503 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.BucketRange;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of flags.
+ * <p>
+ * Layout: magic byte, format version, varint soft expiry, flag name, a varint bitmask of
+ * the fields present (booleans are carried in the mask itself), then each present field
+ * in declaration order. Integers are zigzag varints, strings are length-prefixed UTF-8 and
+ * instants are epoch millis plus a sub-millisecond nanos varint, so nothing is lost against
+ * the JSON encoding. Decoded flag names are interned so hot flags share one instance.
+ * <p>
+ * Targeting rules follow the revision as a count of rules, each with its own field mask
+ * and conditions; operators are written by name so reordering the enum is safe. Variants
+ * follow, each with a field mask and its bucket ranges as start/end pairs. Prerequisites
+ * follow as a count of flag names, interned like the flag's own name. The rollout
+ * schedule comes last, each step with a field mask that also carries its ramp boolean.
+ */
+public final class BinaryFlagCodec implements FlagCodec {
+    
+    /**
+     * First byte of every binary value; never valid as the start of a JSON value
+     */
+    static final byte MAGIC = (byte) 0xB1;
+    
+    static final int FORMAT_VERSION = 1;
+    
+    private static final int ENABLED_PRESENT = 1;
+    private static final int ENABLED_TRUE = 1 << 1;
+    private static final int DELETED_PRESENT = 1 << 2;
+    private static final int DELETED_TRUE = 1 << 3;
+    private static final int ROLLOUT_PERCENTAGE = 1 << 4;
+    private static final int ROLLOUT_BASIS_POINTS = 1 << 5;
+    private static final int DESCRIPTION = 1 << 6;
+    private static final int VERSION = 1 << 7;
+    private static final int CREATED_AT = 1 << 8;
+    private static final int UPDATED_AT = 1 << 9;
+    private static final int REVISION = 1 << 10;
+    private static final int RULES = 1 << 11;
+    private static final int VARIANTS = 1 << 12;
+    private static final int PREREQUISITES = 1 << 13;
+    private static final int ROLLOUT_SCHEDULE = 1 << 14;
+    
+    private static final int RULE_DESCRIPTION = 1;
+    private static final int RULE_ROLLOUT = 1 << 1;
+    private static final int RULE_CONDITIONS = 1 << 2;
+    
+    private static final int CONDITION_ATTRIBUTE = 1;
+    private static final int CONDITION_OPERATOR = 1 << 1;
+    private static final int CONDITION_VALUES = 1 << 2;
+    
+    private static final int VARIANT_KEY = 1;
+    private static final int VARIANT_VALUE = 1 << 1;
+    private static final int VARIANT_WEIGHT = 1 << 2;
+    private static final int VARIANT_BUCKETS = 1 << 3;
+    
+    private static final int STEP_AT = 1;
+    private static final int STEP_ROLLOUT = 1 << 1;
+    private static final int STEP_RAMP_PRESENT = 1 << 2;
+    private static final int STEP_RAMP_TRUE = 1 << 3;
+    
+    private static final Interner<String> FLAG_NAMES = Interners.newWeakInterner();
+    
+    @Override
+    public byte[] encode(FeatureFlag flag, long softExpiryMillis) {
+        Writer out = new Writer();
+        out.writeByte(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarLong(softExpiryMillis);
+        out.writeString(flag.getFlagName());
+        out.writeVarLong(fieldMask(flag));
+        if (flag.getRolloutPercentage() != null) {
+            out.writeZigZag(flag.getRolloutPercentage());
+        }
+        if (flag.getRolloutBasisPoints() != null) {
+            out.writeZigZag(flag.getRolloutBasisPoints());
+        }
+        if (flag.getDescription() != null) {
+            out.writeString(flag.getDescription());
+        }
+        if (flag.getVersion() != null) {
+            out.writeZigZag(flag.getVersion());
+        }
+        if (flag.getCreatedAt() != null) {
+            out.writeInstant(flag.getCreatedAt());
+        }
+        if (flag.getUpdatedAt() != null) {
+            out.writeInstant(flag.getUpdatedAt());
+        }
+        if (flag.getRevision() != null) {
+            out.writeZigZag(flag.getRevision());
+        }
+        if (flag.getRules() != null) {
+            writeRules(out, flag.getRules());
+        }
+        if (flag.getVariants() != null) {
+            writeVariants(out, flag.getVariants());
+        }
+        if (flag.getPrerequisites() != null) {
+            out.writeVarLong(flag.getPrerequisites().size());
+            flag.getPrerequisites().forEach(out::writeString);
+        }
+        if (flag.getRolloutSchedule() != null) {
+            writeSchedule(out, flag.getRolloutSchedule());
+        }
+        return out.toByteArray();
+    }
+    
+    @Override
+    public boolean canDecode(byte[] value) {
+        return value[0] == MAGIC;
+    }
+    
+    @Override
+    public CachedFlag decode(byte[] value) throws IOException {
+        Reader in = new Reader(value);
+        in.readByte(); // magic
+        int formatVersion = in.readByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary flag format version " + formatVersion);
+        }
+        long softExpiry = in.readVarLong();
+        FeatureFlag flag = new FeatureFlag();
+        flag.setFlagName(FLAG_NAMES.intern(in.readString()));
+        long mask = in.readVarLong();
+        if ((mask & ENABLED_PRESENT) != 0) {
+            flag.setEnabled((mask & ENABLED_TRUE) != 0);
+        }
+        if ((mask & DELETED_PRESENT) != 0) {
+            flag.setDeleted((mask & DELETED_TRUE) != 0);
+        }
+        if ((mask & ROLLOUT_PERCENTAGE) != 0) {
+            flag.setRolloutPercentage((int) in.readZigZag());
+        }
+        if ((mask & ROLLOUT_BASIS_POINTS) != 0) {
+            flag.setRolloutBasisPoints((int) in.readZigZag());
+        }
+        if ((mask & DESCRIPTION) != 0) {
+            flag.setDescription(in.readString());
+        }
+        if ((mask & VERSION) != 0) {
+            flag.setVersion((int) in.readZigZag());
+        }
+        if ((mask & CREATED_AT) != 0) {
+            flag.setCreatedAt(in.readInstant());
+        }
+        if ((mask & UPDATED_AT) != 0) {
+            flag.setUpdatedAt(in.readInstant());
+        }
+        if ((mask & REVISION) != 0) {
+            flag.setRevision(in.readZigZag());
+        }
+        if ((mask & RULES) != 0) {
+            flag.setRules(readRules(in));
+        }
+        if ((mask & VARIANTS) != 0) {
+            flag.setVariants(readVariants(in));
+        }
+        if ((mask & PREREQUISITES) != 0) {
+            int count = in.readCount();
+            List<String> prerequisites = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                prerequisites.add(FLAG_NAMES.intern(in.readString()));
+            }
+            flag.setPrerequisites(prerequisites);
+        }
+        if ((mask & ROLLOUT_SCHEDULE) != 0) {
+            flag.setRolloutSchedule(readSchedule(in));
+        }
+        return new CachedFlag(flag, softExpiry);
+    }
+    
+    private static long fieldMask(FeatureFlag flag) {
+        long mask = 0;
+        if (flag.getEnabled() != null) {
+            mask |= ENABLED_PRESENT | (flag.getEnabled() ? ENABLED_TRUE : 0);
+        }
+        if (flag.getDeleted() != null) {
+            mask |= DELETED_PRESENT | (flag.getDeleted() ? DELETED_TRUE : 0);
+        }
+        mask |= flag.getRolloutPercentage() != null ? ROLLOUT_PERCENTAGE : 0;
+        mask |= flag.getRolloutBasisPoints() != null ? ROLLOUT_BASIS_POINTS : 0;
+        mask |= flag.getDescription() != null ? DESCRIPTION : 0;
+        mask |= flag.getVersion() != null ? VERSION : 0;
+        mask |= flag.getCreatedAt() != null ? CREATED_AT : 0;
+        mask |= flag.getUpdatedAt() != null ? UPDATED_AT : 0;
+        mask |= flag.getRevision() != null ? REVISION : 0;
+        mask |= flag.getRules() != null ? RULES : 0;
+        mask |= flag.getVariants() != null ? VARIANTS : 0;
+        mask |= flag.getPrerequisites() != null ? PREREQUISITES : 0;
+        mask |= flag.getRolloutSchedule() != null ? ROLLOUT_SCHEDULE : 0;
+        return mask;
+    }
+    
+    private static void writeRules(Writer out, List<TargetingRule> rules) {
+        out.writeVarLong(rules.size());
+        for (TargetingRule rule : rules) {
+            int ruleMask = (rule.getDescription() != null ? RULE_DESCRIPTION : 0)
+                    | (rule.getRolloutBasisPoints() != null ? RULE_ROLLOUT : 0)
+                    | (rule.getConditions() != null ? RULE_CONDITIONS : 0);
+            out.writeVarLong(ruleMask);
+            if (rule.getDescription() != null) {
+                out.writeString(rule.getDescription());
+            }
+            if (rule.getRolloutBasisPoints() != null) {
+                out.writeZigZag(rule.getRolloutBasisPoints());
+            }
+            if (rule.getConditions() != null) {
+                out.writeVarLong(rule.getConditions().size());
+                for (TargetingCondition condition : rule.getConditions()) {
+                    writeCondition(out, condition);
+                }
+            }
+        }
+    }
+    
+    private static void writeCondition(Writer out, TargetingCondition condition) {
+        int conditionMask = (condition.getAttribute() != null ? CONDITION_ATTRIBUTE : 0)
+                | (condition.getOperator() != null ? CONDITION_OPERATOR : 0)
+                | (condition.getValues() != null ? CONDITION_VALUES : 0);
+        out.writeVarLong(conditionMask);
+        if (condition.getAttribute() != null) {
+            out.writeString(condition.getAttribute());
+        }
+        if (condition.getOperator() != null) {
+            out.writeString(condition.getOperator().name());
+        }
+        if (condition.getValues() != null) {
+            out.writeVarLong(condition.getValues().size());
+            for (String value : condition.getValues()) {
+                out.writeString(value);
+            }
+        }
+    }
+    
+    private static List<TargetingRule> readRules(Reader in) throws IOException {
+        int count = in.readCount();
+        List<TargetingRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TargetingRule rule = new TargetingRule();
+            long ruleMask = in.readVarLong();
+            if ((ruleMask & RULE_DESCRIPTION) != 0) {
+                rule.setDescription(in.readString());
+            }
+            if ((ruleMask & RULE_ROLLOUT) != 0) {
+                rule.setRolloutBasisPoints((int) in.readZigZag());
+            }
+            if ((ruleMask & RULE_CONDITIONS) != 0) {
+                int conditionCount = in.readCount();
+                List<TargetingCondition> conditions = new ArrayList<>(conditionCount);
+                for (int c = 0; c < conditionCount; c++) {
+                    conditions.add(readCondition(in));
+                }
+                rule.setConditions(conditions);
+            }
+            rules.add(rule);
+        }
+        return rules;
+    }
+    
+    private static TargetingCondition readCondition(Reader in) throws IOException {
+        TargetingCondition condition = new TargetingCondition();
+        long conditionMask = in.readVarLong();
+        if ((conditionMask & CONDITION_ATTRIBUTE) != 0) {
+            condition.setAttribute(in.readString());
+        }
+        if ((conditionMask & CONDITION_OPERATOR) != 0) {
+            String operator = in.readString();
+            try {
+                condition.setOperator(TargetingOperator.valueOf(operator));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown targeting operator " + operator);
+            }
+        }
+        if ((conditionMask & CONDITION_VALUES) != 0) {
+            int valueCount = in.readCount();
+            List<String> values = new ArrayList<>(valueCount);
+            for (int v = 0; v < valueCount; v++) {
+                values.add(in.readString());
+            }
+            condition.setValues(values);
+        }
+        return condition;
+    }
+    
+    private static void writeVariants(Writer out, List<FlagVariant> variants) {
+        out.writeVarLong(variants.size());
+        for (FlagVariant variant : variants) {
+            int variantMask = (variant.getKey() != null ? VARIANT_KEY : 0)
+                    | (variant.getValue() != null ? VARIANT_VALUE : 0)
+                    | (variant.getWeight() != null ? VARIANT_WEIGHT : 0)
+                    | (variant.getBuckets() != null ? VARIANT_BUCKETS : 0);
+            out.writeVarLong(variantMask);
+            if (variant.getKey() != null) {
+                out.writeString(variant.getKey());
+            }
+            if (variant.getValue() != null) {
+                out.writeString(variant.getValue());
+            }
+            if (variant.getWeight() != null) {
+                out.writeZigZag(variant.getWeight());
+            }
+            if (variant.getBuckets() != null) {
+                out.writeVarLong(variant.getBuckets().size());
+                for (BucketRange range : variant.getBuckets()) {
+                    // -1 stands in for a missing bound, which no valid range has
+                    out.writeZigZag(range.getStart() != null ? range.getStart() : -1);
+                    out.writeZigZag(range.getEnd() != null ? range.getEnd() : -1);
+                }
+            }
+        }
+    }
+    
+    private static List<FlagVariant> readVariants(Reader in) throws IOException {
+        int count = in.readCount();
+        List<FlagVariant> variants = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            FlagVariant variant = new FlagVariant();
+            long variantMask = in.readVarLong();
+            if ((variantMask & VARIANT_KEY) != 0) {
+                variant.setKey(in.readString());
+            }
+            if ((variantMask & VARIANT_VALUE) != 0) {
+                variant.setValue(in.readString());
+            }
+            if ((variantMask & VARIANT_WEIGHT) != 0) {
+                variant.setWeight((int) in.readZigZag());
+            }
+            if ((variantMask & VARIANT_BUCKETS) != 0) {
+                int rangeCount = in.readCount();
+                List<BucketRange> buckets = new ArrayList<>(rangeCount);
+                for (int r = 0; r < rangeCount; r++) {
+                    int start = (int) in.readZigZag();
+                    int end = (int) in.readZigZag();
+                    buckets.add(new BucketRange(start >= 0 ? start : null, end >= 0 ? end : null));
+                }
+                variant.setBuckets(buckets);
+            }
+            variants.add(variant);
+        }
+        return variants;
+    }
+    
+    private static void writeSchedule(Writer out, List<RolloutStep> schedule) {
+        out.writeVarLong(schedule.size());
+        for (RolloutStep step : schedule) {
+            int stepMask = (step.getAt() != null ? STEP_AT : 0)
+                    | (step.getRolloutBasisPoints() != null ? STEP_ROLLOUT : 0);
+            if (step.getRamp() != null) {
+                stepMask |= STEP_RAMP_PRESENT | (step.getRamp() ? STEP_RAMP_TRUE : 0);
+            }
+            out.writeVarLong(stepMask);
+            if (step.getAt() != null) {
+                out.writeInstant(step.getAt());
+            }
+            if (step.getRolloutBasisPoints() != null) {
+                out.writeZigZag(step.getRolloutBasisPoints());
+            }
+        }
+    }
+    
+    private static List<RolloutStep> readSchedule(Reader in) throws IOException {
+        int count = in.readCount();
+        List<RolloutStep> schedule = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RolloutStep step = new RolloutStep();
+            long stepMask = in.readVarLong();
+            if ((stepMask & STEP_AT) != 0) {
+                step.setAt(in.readInstant());
+            }
+            if ((stepMask & STEP_ROLLOUT) != 0) {
+                step.setRolloutBasisPoints((int) in.readZigZag());
+            }
+            if ((stepMask & STEP_RAMP_PRESENT) != 0) {
+                step.setRamp((stepMask & STEP_RAMP_TRUE) != 0);
+            }
+            schedule.add(step);
+        }
+        return schedule;
+    }
+    
+    private static final class Writer {
+        
+        private byte[] buffer = new byte[128];
+        private int size;
+        
+        void writeByte(int b) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+        
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+        
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+        
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            if (size + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes.length));
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+        
+        void writeInstant(Instant instant) {
+            writeZigZag(instant.toEpochMilli());
+            writeVarLong(instant.getNano() % 1_000_000);
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+    
+    private static final class Reader {
+        
+        private final byte[] buffer;
+        private int position;
+        
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+        
+        int readByte() throws EOFException {
+            if (position >= buffer.length) {
+                throw new EOFException("Truncated binary flag value");
+            }
+            return buffer[position++] & 0xFF;
+        }
+        
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in binary flag value");
+        }
+        
+        /**
+         * Element count of a list, bounded by the bytes left since every element takes at least one
+         */
+        int readCount() throws IOException {
+            long count = readVarLong();
+            if (count < 0 || count > buffer.length - position) {
+                throw new EOFException("Truncated binary flag value");
+            }
+            return (int) count;
+        }
+        
+        long readZigZag() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        String readString() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > buffer.length - position) {
+                throw new EOFException("Truncated binary flag value");
+            }
+            String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+        
+        Instant readInstant() throws IOException {
+            long epochMilli = readZigZag();
+            long nanos = readVarLong();
+            return Instant.ofEpochMilli(epochMilli).plusNanos(nanos);
+        }
+    }
+}
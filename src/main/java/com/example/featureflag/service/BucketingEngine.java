@@ -0,0 +1,282 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deterministic user bucketing for percentage rollouts.
+ * <p>
+ * Buckets are expressed in basis points (0-9999). All per-flag hashing state is
+ * precomputed once into a {@link Seed} (held by {@link FlagSnapshot}), and user IDs are hashed char by char into
+ * primitive longs, so evaluating a warmed-up flag allocates nothing.
+ * <p>
+ * Two modes are supported via {@code flags.bucketing.mode}:
+ * <ul>
+ *   <li>{@code LEGACY} (default) - the coarse bucket is the historical
+ *   {@code abs(murmur3_128(flagName + ":" + userId) % 100)}, so every user keeps the
+ *   assignment they had at whole-percent rollouts. The basis-point remainder comes
+ *   from the uniform hash, which only refines assignments between two whole percents.</li>
+ *   <li>{@code UNIFORM} - a single unbiased 0-9999 bucket from the seeded hash. Switching
+ *   to this mode reshuffles users once, so only flip it for new flags or after a rollout
+ *   has reached 0% or 100%.</li>
+ * </ul>
+ */
+@Component
+public class BucketingEngine {
+    
+    public static final int MAX_BASIS_POINTS = 10_000;
+    
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    
+    public enum Mode {
+        LEGACY,
+        UNIFORM
+    }
+    
+    /**
+     * Precomputed per-flag hashing state: the uniform seed plus the murmur3_128
+     * state after absorbing the legacy {@code flagName + ":"} prefix
+     */
+    public record Seed(long uniformSeed, long h1, long h2, long tailLo, long tailHi,
+                       int tailLength, int prefixLength) {
+    }
+    
+    @Value("${flags.bucketing.mode:LEGACY}")
+    private Mode mode = Mode.LEGACY;
+    
+    /**
+     * Check whether a user falls inside a rollout using an already computed seed
+     * and the configured mode
+     */
+    public boolean isInRollout(Seed seed, String userId, int rolloutBasisPoints) {
+        if (rolloutBasisPoints >= MAX_BASIS_POINTS) {
+            return true;
+        }
+        if (rolloutBasisPoints <= 0) {
+            return false;
+        }
+        return isInRollout(seed, userId, rolloutBasisPoints, mode);
+    }
+    
+    /**
+     * Check whether a user falls inside a rollout using an already computed seed
+     */
+    public static boolean isInRollout(Seed seed, String userId, int rolloutBasisPoints, Mode mode) {
+        if (mode == Mode.LEGACY) {
+            int legacyBucket = legacyBucket(seed, userId);
+            if (rolloutBasisPoints % 100 == 0) {
+                // Whole percent: identical to the historical 0-99 check
+                return legacyBucket * 100 < rolloutBasisPoints;
+            }
+            return legacyBucket * 100 + (int) Long.remainderUnsigned(uniformHash(seed, userId), 100) < rolloutBasisPoints;
+        }
+        return uniformBucket(seed, userId) < rolloutBasisPoints;
+    }
+    
+    /**
+     * Effective rollout of a flag in basis points; flags stored before basis points
+     * existed only carry a percentage
+     */
+    public static int rolloutBasisPoints(FeatureFlag flag) {
+        if (flag.getRolloutBasisPoints() != null) {
+            return flag.getRolloutBasisPoints();
+        }
+        return flag.getRolloutPercentage() != null ? flag.getRolloutPercentage() * 100 : 0;
+    }
+    
+    public Mode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Precompute the hashing state for a flag
+     */
+    public static Seed computeSeed(String flagName) {
+        long uniformSeed = Hashing.murmur3_128().hashString(flagName, StandardCharsets.UTF_8).asLong();
+        
+        byte[] prefix = (flagName + ":").getBytes(StandardCharsets.UTF_8);
+        long h1 = 0;
+        long h2 = 0;
+        int offset = 0;
+        for (; offset + 16 <= prefix.length; offset += 16) {
+            long k1 = littleEndianLong(prefix, offset, 8);
+            long k2 = littleEndianLong(prefix, offset + 8, 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tailLength = prefix.length - offset;
+        long tailLo = littleEndianLong(prefix, offset, Math.min(tailLength, 8));
+        long tailHi = tailLength > 8 ? littleEndianLong(prefix, offset + 8, tailLength - 8) : 0;
+        
+        return new Seed(uniformSeed, h1, h2, tailLo, tailHi, tailLength, prefix.length);
+    }
+    
+    /**
+     * Unbiased bucket in [0, 10000) from the seeded hash of the user ID
+     */
+    public static int uniformBucket(Seed seed, String userId) {
+        // Multiply-shift range reduction avoids the modulo bias of hash % n
+        return (int) (((uniformHash(seed, userId) >>> 32) * MAX_BASIS_POINTS) >>> 32);
+    }
+    
+    /**
+     * Variant bucket in [0, 10000) from the low half of the seeded hash, so a user's variant
+     * is independent of whether they fall inside the rollout (which uses the high half, or
+     * the legacy hash)
+     */
+    public static int variantBucket(Seed seed, String userId) {
+        return (int) (((uniformHash(seed, userId) & 0xFFFFFFFFL) * MAX_BASIS_POINTS) >>> 32);
+    }
+    
+    /**
+     * Historical bucket in [0, 100): {@code abs((int) (murmur3_128(flagName:userId) % 100))}
+     */
+    public static int legacyBucket(Seed seed, String userId) {
+        return Math.abs((int) (legacyHash(seed, userId) % 100));
+    }
+    
+    /**
+     * Seeded 64-bit hash over the UTF-16 code units of the user ID, four chars per block
+     */
+    static long uniformHash(Seed seed, String userId) {
+        long h = seed.uniformSeed();
+        int length = userId.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long k = userId.charAt(i)
+                    | (long) userId.charAt(i + 1) << 16
+                    | (long) userId.charAt(i + 2) << 32
+                    | (long) userId.charAt(i + 3) << 48;
+            h ^= mixK1(k);
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        long k = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            k |= (long) userId.charAt(i) << shift;
+        }
+        h ^= mixK2(k);
+        return fmix64(h ^ length);
+    }
+    
+    /**
+     * Streaming murmur3_128 (seed 0) of {@code flagName + ":" + userId} encoded as UTF-8,
+     * resumed from the precomputed prefix state. Returns the first 64 bits, matching
+     * Guava's {@code HashCode.asLong()}.
+     */
+    static long legacyHash(Seed seed, String userId) {
+        long h1 = seed.h1();
+        long h2 = seed.h2();
+        long lo = seed.tailLo();
+        long hi = seed.tailHi();
+        int buffered = seed.tailLength();
+        long total = seed.prefixLength();
+        
+        int length = userId.length();
+        for (int i = 0; i < length; i++) {
+            char c = userId.charAt(i);
+            int encoded;
+            int encodedLength;
+            if (c < 0x80) {
+                encoded = c;
+                encodedLength = 1;
+            } else if (c < 0x800) {
+                encoded = (0xc0 | c >>> 6) | (0x80 | c & 0x3f) << 8;
+                encodedLength = 2;
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < length ? userId.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    encoded = (0xf0 | codePoint >>> 18)
+                            | (0x80 | codePoint >>> 12 & 0x3f) << 8
+                            | (0x80 | codePoint >>> 6 & 0x3f) << 16
+                            | (0x80 | codePoint & 0x3f) << 24;
+                    encodedLength = 4;
+                    i++;
+                } else {
+                    // String.getBytes(UTF_8) replaces unpaired surrogates with '?'
+                    encoded = '?';
+                    encodedLength = 1;
+                }
+            } else {
+                encoded = (0xe0 | c >>> 12) | (0x80 | c >>> 6 & 0x3f) << 8 | (0x80 | c & 0x3f) << 16;
+                encodedLength = 3;
+            }
+            
+            for (int b = 0; b < encodedLength; b++) {
+                long value = (encoded >>> (b << 3)) & 0xffL;
+                if (buffered < 8) {
+                    lo |= value << (buffered << 3);
+                } else {
+                    hi |= value << ((buffered - 8) << 3);
+                }
+                total++;
+                if (++buffered == 16) {
+                    h1 ^= mixK1(lo);
+                    h1 = Long.rotateLeft(h1, 27);
+                    h1 += h2;
+                    h1 = h1 * 5 + 0x52dce729;
+                    h2 ^= mixK2(hi);
+                    h2 = Long.rotateLeft(h2, 31);
+                    h2 += h1;
+                    h2 = h2 * 5 + 0x38495ab5;
+                    lo = 0;
+                    hi = 0;
+                    buffered = 0;
+                }
+            }
+        }
+        
+        h1 ^= mixK1(lo);
+        h2 ^= mixK2(hi);
+        h1 ^= total;
+        h2 ^= total;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+    
+    private static long littleEndianLong(byte[] bytes, int offset, int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value |= (bytes[offset + i] & 0xffL) << (i << 3);
+        }
+        return value;
+    }
+    
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+    
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+    
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
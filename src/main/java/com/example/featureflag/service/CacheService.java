@@ -1,37 +1,186 @@
 package com.example.featureflag.service;
 
 import com.example.featureflag.model.FeatureFlag;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.example.featureflag.repository.FeatureFlagRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
- * Redis cache service for feature flags
+ * Two-tier cache service for feature flags.
+ * <p>
+ * Reads are served from a bounded in-JVM cache (L1) first and fall back to Redis (L2).
+ * Writes on any node are broadcast over Redis pub/sub so every node drops its stale
+ * L1 entry; the L1 TTL only acts as a safety net for missed messages.
+ * <p>
+ * Flags known not to exist are cached too, as an empty Redis value and a separate L1
+ * set, with their own short TTL ({@code cache.negative.ttl.seconds}).
+ * <p>
+ * Redis TTLs are jittered so entries written together do not expire together. In
+ * refresh-ahead mode each Redis value also carries a soft expiry; past it, lookups
+ * still return the value but flag it as stale so the caller can reload it in the
+ * background.
+ * <p>
+ * Values are written with the {@link FlagCodec} named by {@code cache.codec} and read
+ * with whichever codec recognises them, so nodes can switch codecs one at a time.
+ * <p>
+ * Every Redis command goes through a {@link RedisCircuitBreaker}. While it is open,
+ * reads behave as misses and writes are skipped without touching the pool, so a Redis
+ * brownout degrades to the local tier and DynamoDB instead of stalling each request.
+ * <p>
+ * Meters: {@code cache.lookups} by {@code tier} and {@code result}, {@code cache.redis}
+ * latency by {@code operation} and {@code outcome} (including {@code rejected} while the
+ * breaker is open), {@code cache.redis.circuit.state}, and {@code cache.redis.pool.*}
+ * connection gauges.
  */
 @Slf4j
 @Service
 public class CacheService {
     
+    /**
+     * Version sent for deletions; forces an unconditional L1 invalidation.
+     */
+    static final int DELETED_VERSION = 0;
+    
+    private static final long RESUBSCRIBE_BACKOFF_MS = 5000;
+    
+    /**
+     * Redis value marking a flag known not to exist; real entries are never empty
+     */
+    private static final byte[] NOT_FOUND_MARKER = new byte[0];
+    
+    /**
+     * Fallback for Redis reads that could not run; compared by identity
+     */
+    private static final byte[] UNAVAILABLE = new byte[0];
+    
+    private static final List<String> REDIS_OPERATIONS =
+            List.of("get", "mget", "put", "put_batch", "put_not_found", "evict", "publish");
+    
     @Value("${spring.redis.host:localhost}")
     private String redisHost;
     
     @Value("${spring.redis.port:6379}")
     private int redisPort;
     
+    @Value("${spring.redis.timeout:2000ms}")
+    private Duration redisTimeout;
+    
+    @Value("${cache.redis.pool.max-wait-ms:100}")
+    private long poolMaxWaitMs;
+    
     @Value("${cache.ttl.seconds:300}")
     private int cacheTtlSeconds;
     
+    @Value("${cache.local.max-size:10000}")
+    private long localMaxSize;
+    
+    @Value("${cache.local.ttl.seconds:60}")
+    private long localTtlSeconds;
+    
+    @Value("${cache.invalidation.channel:flag-invalidations}")
+    private String invalidationChannel;
+    
+    @Value("${cache.ttl.jitter:0.1}")
+    private double ttlJitter;
+    
+    @Value("${cache.refresh-ahead.enabled:true}")
+    private boolean refreshAheadEnabled;
+    
+    @Value("${cache.refresh-ahead.factor:0.8}")
+    private double refreshAheadFactor;
+    
+    @Value("${cache.negative.ttl.seconds:30}")
+    private int negativeTtlSeconds;
+    
+    @Value("${cache.negative.max-size:10000}")
+    private long negativeMaxSize;
+    
+    @Value("${cache.codec:binary}")
+    private String codecName;
+    
+    @Value("${cache.circuit-breaker.enabled:true}")
+    private boolean circuitBreakerEnabled;
+    
+    @Value("${cache.circuit-breaker.failure-rate-threshold:0.5}")
+    private double circuitBreakerFailureRate;
+    
+    @Value("${cache.circuit-breaker.slow-call-ms:250}")
+    private long circuitBreakerSlowCallMs;
+    
+    @Value("${cache.circuit-breaker.window-size:20}")
+    private int circuitBreakerWindowSize;
+    
+    @Value("${cache.circuit-breaker.open-duration-ms:5000}")
+    private long circuitBreakerOpenMs;
+    
     private JedisPool jedisPool;
-    private ObjectMapper objectMapper;
+    private RedisCircuitBreaker circuitBreaker;
+    private FlagCodec writeCodec;
+    private List<FlagCodec> readCodecs;
+    private Cache<String, FeatureFlag> localCache;
+    private Cache<String, Boolean> localNotFound;
+    
+    private final List<InvalidationListener> invalidationListeners = new CopyOnWriteArrayList<>();
+    
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RedisMeters> redisMeters = new HashMap<>();
+    private final Counter localHits;
+    private final Counter localNotFoundHits;
+    private final Counter redisHits;
+    private final Counter redisStaleHits;
+    private final Counter redisNotFoundHits;
+    private final Counter redisMisses;
+    private final Counter redisErrors;
+    
+    private volatile boolean running;
+    private volatile JedisPubSub invalidationSubscriber;
+    private Thread subscriberThread;
+    
+    public CacheService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.localHits = lookupCounter("local", "hit");
+        this.localNotFoundHits = lookupCounter("local", "not_found");
+        this.redisHits = lookupCounter("redis", "hit");
+        this.redisStaleHits = lookupCounter("redis", "stale");
+        this.redisNotFoundHits = lookupCounter("redis", "not_found");
+        this.redisMisses = lookupCounter("redis", "miss");
+        this.redisErrors = lookupCounter("redis", "error");
+        for (String operation : REDIS_OPERATIONS) {
+            redisMeters.put(operation, new RedisMeters(
+                    redisTimer(operation, "success"),
+                    redisTimer(operation, "error"),
+                    redisTimer(operation, "rejected")));
+        }
+    }
     
     @PostConstruct
     public void init() {
@@ -39,18 +188,59 @@ public class CacheService {
         poolConfig.setMaxTotal(20);
         poolConfig.setMaxIdle(10);
         poolConfig.setMinIdle(5);
-        poolConfig.setTestOnBorrow(true);
-        poolConfig.setTestOnReturn(true);
+        poolConfig.setMaxWait(Duration.ofMillis(poolMaxWaitMs));
+        // Validate idle connections in the background rather than with a PING per borrow
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestOnReturn(false);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRuns(Duration.ofSeconds(30));
+        poolConfig.setMinEvictableIdleDuration(Duration.ofSeconds(60));
+        poolConfig.setNumTestsPerEvictionRun(-1);
         
-        this.jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.jedisPool = new JedisPool(poolConfig, redisHost, redisPort, (int) redisTimeout.toMillis());
+        this.circuitBreaker = new RedisCircuitBreaker(circuitBreakerEnabled, circuitBreakerFailureRate,
+                circuitBreakerSlowCallMs, circuitBreakerWindowSize, circuitBreakerOpenMs);
+        registerGauges();
+        FlagCodec binaryCodec = new BinaryFlagCodec();
+        FlagCodec jsonCodec = new JsonFlagCodec();
+        this.readCodecs = List.of(binaryCodec, jsonCodec);
+        this.writeCodec = switch (codecName) {
+            case "binary" -> binaryCodec;
+            case "json" -> jsonCodec;
+            default -> throw new IllegalStateException("Unknown cache.codec: " + codecName);
+        };
+        this.localCache = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.localNotFound = CacheBuilder.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(Math.min(negativeTtlSeconds, localTtlSeconds), TimeUnit.SECONDS)
+                .build();
         
-        log.info("Initialized Redis cache at {}:{}", redisHost, redisPort);
+        this.running = true;
+        this.subscriberThread = new Thread(this::runInvalidationSubscriber, "flag-invalidation-subscriber");
+        this.subscriberThread.setDaemon(true);
+        this.subscriberThread.start();
+        
+        log.info("Initialized Redis cache at {}:{} with local cache size {} and {} codec",
+                redisHost, redisPort, localMaxSize, codecName);
     }
     
     @PreDestroy
     public void destroy() {
+        running = false;
+        JedisPubSub subscriber = invalidationSubscriber;
+        if (subscriber != null && subscriber.isSubscribed()) {
+            try {
+                subscriber.unsubscribe();
+            } catch (JedisException e) {
+                log.debug("Could not unsubscribe from {}: {}", invalidationChannel, e.getMessage());
+            }
+        }
+        if (subscriberThread != null) {
+            subscriberThread.interrupt();
+        }
         if (jedisPool != null && !jedisPool.isClosed()) {
             jedisPool.close();
             log.info("Closed Redis connection pool");
@@ -58,39 +248,153 @@ public class CacheService {
     }
     
     /**
-     * Get a feature flag from cache
+     * Get a feature flag from cache; null on a miss and for flags cached as not found
      */
     public FeatureFlag getFlag(String flagName) {
-        try (var jedis = jedisPool.getResource()) {
-            String key = getCacheKey(flagName);
-            String value = jedis.get(key);
-            
-            if (value == null) {
-                log.debug("Cache miss for flag: {}", flagName);
-                return null;
+        return lookup(flagName).flag();
+    }
+    
+    /**
+     * Look a flag up in both tiers, telling a plain miss from a cached "not found"
+     */
+    public Lookup lookup(String flagName) {
+        FeatureFlag localFlag = localCache.getIfPresent(flagName);
+        if (localFlag != null) {
+            localHits.increment();
+            return Lookup.found(localFlag);
+        }
+        if (localNotFound.getIfPresent(flagName) != null) {
+            localNotFoundHits.increment();
+            return Lookup.NOT_FOUND;
+        }
+        
+        byte[] value = withRedis("get", flagName, jedis -> jedis.get(getCacheKey(flagName)), UNAVAILABLE);
+        if (value == UNAVAILABLE) {
+            redisErrors.increment();
+            return Lookup.MISS; // Graceful degradation
+        }
+        return decodeCounted(flagName, value);
+    }
+    
+    /**
+     * Get several feature flags from cache with a single MGET for local misses.
+     * Flags missing from both tiers, or cached as not found, are absent from the result.
+     */
+    public Map<String, FeatureFlag> getFlags(Collection<String> flagNames) {
+        Map<String, FeatureFlag> flags = new HashMap<>();
+        lookupAll(flagNames).forEach((flagName, lookup) -> {
+            if (lookup.flag() != null) {
+                flags.put(flagName, lookup.flag());
             }
-            
-            log.debug("Cache hit for flag: {}", flagName);
-            return objectMapper.readValue(value, FeatureFlag.class);
-        } catch (JedisException | JsonProcessingException e) {
-            log.warn("Error reading from cache for flag: {}", flagName, e);
-            return null; // Graceful degradation
+        });
+        return flags;
+    }
+    
+    /**
+     * Look several flags up with a single MGET for local misses.
+     * Names missing from both tiers are absent from the result.
+     */
+    public Map<String, Lookup> lookupAll(Collection<String> flagNames) {
+        Map<String, Lookup> lookups = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String flagName : flagNames) {
+            FeatureFlag localFlag = localCache.getIfPresent(flagName);
+            if (localFlag != null) {
+                localHits.increment();
+                lookups.put(flagName, Lookup.found(localFlag));
+            } else if (localNotFound.getIfPresent(flagName) != null) {
+                localNotFoundHits.increment();
+                lookups.put(flagName, Lookup.NOT_FOUND);
+            } else {
+                misses.add(flagName);
+            }
+        }
+        
+        if (misses.isEmpty()) {
+            return lookups;
         }
+        
+        byte[][] keys = misses.stream().map(this::getCacheKey).toArray(byte[][]::new);
+        List<byte[]> values = withRedis("mget", misses.size() + " flags", jedis -> jedis.mget(keys), null);
+        if (values == null) {
+            redisErrors.increment(misses.size());
+            return lookups;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            Lookup lookup = decodeCounted(misses.get(i), values.get(i));
+            if (!lookup.isMiss()) {
+                lookups.put(misses.get(i), lookup);
+            }
+        }
+        log.debug("Batch cache lookup: {} requested, {} found", flagNames.size(), lookups.size());
+        return lookups;
     }
     
     /**
      * Put a feature flag into cache
      */
     public void putFlag(FeatureFlag flag) {
-        try (var jedis = jedisPool.getResource()) {
-            String key = getCacheKey(flag.getFlagName());
-            String value = objectMapper.writeValueAsString(flag);
-            
-            jedis.setex(key, cacheTtlSeconds, value);
-            log.debug("Cached flag: {} with TTL: {}s", flag.getFlagName(), cacheTtlSeconds);
-        } catch (JedisException | JsonProcessingException e) {
-            log.warn("Error writing to cache for flag: {}", flag.getFlagName(), e);
-            // Don't throw - caching is optional
+        putLocal(flag);
+        
+        long ttlSeconds = jitteredTtl(cacheTtlSeconds);
+        byte[] value;
+        try {
+            value = encode(flag, ttlSeconds);
+        } catch (IOException e) {
+            log.warn("Error encoding flag for cache: {}", flag.getFlagName(), e);
+            return; // Don't throw - caching is optional
+        }
+        if (withRedis("put", flag.getFlagName(),
+                jedis -> jedis.setex(getCacheKey(flag.getFlagName()), ttlSeconds, value), null) != null) {
+            log.debug("Cached flag: {} with TTL: {}s", flag.getFlagName(), ttlSeconds);
+        }
+    }
+    
+    /**
+     * Put several feature flags into cache in one pipelined round trip
+     */
+    public void putFlags(Collection<FeatureFlag> flags) {
+        if (flags.isEmpty()) {
+            return;
+        }
+        flags.forEach(this::putLocal);
+        
+        record Write(byte[] key, long ttlSeconds, byte[] value) {
+        }
+        List<Write> writes = new ArrayList<>(flags.size());
+        for (FeatureFlag flag : flags) {
+            long ttlSeconds = jitteredTtl(cacheTtlSeconds);
+            try {
+                writes.add(new Write(getCacheKey(flag.getFlagName()), ttlSeconds, encode(flag, ttlSeconds)));
+            } catch (IOException e) {
+                log.warn("Error encoding flag for cache: {}", flag.getFlagName(), e);
+            }
+        }
+        boolean written = withRedis("put_batch", flags.size() + " flags", jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            writes.forEach(write -> pipeline.setex(write.key(), write.ttlSeconds(), write.value()));
+            pipeline.sync();
+            return true;
+        }, false);
+        if (written) {
+            log.debug("Cached {} flags with TTL: {}s", writes.size(), cacheTtlSeconds);
+        }
+    }
+    
+    /**
+     * Remember that a flag does not exist, in both tiers.
+     * Redis is written with NX so a flag cached by a concurrent create is never masked.
+     */
+    public void putNotFound(String flagName) {
+        localNotFound.put(flagName, Boolean.TRUE);
+        
+        boolean written = withRedis("put_not_found", flagName, jedis -> jedis.set(getCacheKey(flagName),
+                NOT_FOUND_MARKER, SetParams.setParams().nx().ex(jitteredTtl(negativeTtlSeconds))) != null, true);
+        if (!written) {
+            // Lost to a concurrent write of the real flag
+            localNotFound.invalidate(flagName);
+        } else {
+            log.debug("Cached not-found flag: {} with TTL: {}s", flagName, negativeTtlSeconds);
         }
     }
     
@@ -98,16 +402,281 @@ public class CacheService {
      * Evict a feature flag from cache
      */
     public void evictFlag(String flagName) {
-        try (var jedis = jedisPool.getResource()) {
-            String key = getCacheKey(flagName);
-            jedis.del(key);
+        localCache.invalidate(flagName);
+        localNotFound.invalidate(flagName);
+        
+        if (withRedis("evict", flagName, jedis -> jedis.del(getCacheKey(flagName)), null) != null) {
             log.debug("Evicted flag from cache: {}", flagName);
+        }
+    }
+    
+    /**
+     * Broadcast a flag change so that every node invalidates its local copy.
+     * A null version marks a deletion; the revision is the one the write was given.
+     */
+    public void publishInvalidation(String flagName, Integer version, long revision) {
+        int messageVersion = version != null ? version : DELETED_VERSION;
+        if (withRedis("publish", flagName, jedis -> jedis.publish(invalidationChannel,
+                messageVersion + ":" + revision + ":" + flagName), null) != null) {
+            log.debug("Published invalidation for flag: {} version: {} revision: {}", flagName, messageVersion, revision);
+        }
+    }
+    
+    /**
+     * Register a callback for invalidations received from the pub/sub channel,
+     * including the ones this node published itself
+     */
+    public void addInvalidationListener(InvalidationListener listener) {
+        invalidationListeners.add(listener);
+    }
+    
+    /**
+     * The breaker guarding Redis, for health reporting
+     */
+    public RedisCircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    /**
+     * Drop the local copy of a flag unless it is already at or beyond the given revision
+     */
+    void invalidateLocal(String flagName, int version, long revision) {
+        localNotFound.invalidate(flagName);
+        localCache.asMap().computeIfPresent(flagName, (name, cached) ->
+                version != DELETED_VERSION && !isOlder(cached, revision, version) ? cached : null);
+    }
+    
+    /**
+     * Run a Redis command through the circuit breaker, returning {@code fallback} when the
+     * breaker rejects it or the command fails
+     */
+    private <T> T withRedis(String operation, String subject, Function<Jedis, T> command, T fallback) {
+        RedisMeters meters = redisMeters.get(operation);
+        if (!circuitBreaker.tryAcquire()) {
+            meters.rejected().record(0, TimeUnit.NANOSECONDS);
+            log.debug("Redis circuit open, skipping {} for {}", operation, subject);
+            return fallback;
+        }
+        long start = System.nanoTime();
+        try (var jedis = jedisPool.getResource()) {
+            T result = command.apply(jedis);
+            long elapsed = System.nanoTime() - start;
+            circuitBreaker.onSuccess(elapsed);
+            meters.success().record(elapsed, TimeUnit.NANOSECONDS);
+            return result;
         } catch (JedisException e) {
-            log.warn("Error evicting from cache for flag: {}", flagName, e);
+            long elapsed = System.nanoTime() - start;
+            circuitBreaker.onFailure(elapsed);
+            meters.error().record(elapsed, TimeUnit.NANOSECONDS);
+            log.warn("Redis {} failed for {}: {}", operation, subject, e.getMessage());
+            return fallback;
+        }
+    }
+    
+    /**
+     * Decode a Redis value (null on a miss), counting the outcome under {@code tier=redis}
+     */
+    private Lookup decodeCounted(String flagName, byte[] value) {
+        if (value == null) {
+            log.debug("Cache miss for flag: {}", flagName);
+            redisMisses.increment();
+            return Lookup.MISS;
+        }
+        try {
+            Lookup lookup = decode(flagName, value);
+            (lookup.notFound() ? redisNotFoundHits : lookup.stale() ? redisStaleHits : redisHits).increment();
+            log.debug("Cache hit for flag: {}", flagName);
+            return lookup;
+        } catch (IOException e) {
+            log.warn("Error decoding cached flag: {}", flagName, e);
+            redisErrors.increment();
+            return Lookup.MISS;
+        }
+    }
+    
+    private Lookup decode(String flagName, byte[] value) throws IOException {
+        if (value.length == 0) {
+            localNotFound.put(flagName, Boolean.TRUE);
+            return Lookup.NOT_FOUND;
+        }
+        FlagCodec.CachedFlag cached = codecFor(value).decode(value);
+        putLocal(cached.flag());
+        // Values written without refresh-ahead carry no soft expiry and never go stale
+        if (cached.softExpiryMillis() > 0 && System.currentTimeMillis() >= cached.softExpiryMillis()) {
+            return Lookup.stale(cached.flag());
+        }
+        return Lookup.found(cached.flag());
+    }
+    
+    private FlagCodec codecFor(byte[] value) throws IOException {
+        for (FlagCodec codec : readCodecs) {
+            if (codec.canDecode(value)) {
+                return codec;
+            }
+        }
+        throw new IOException("Unrecognised cache value format");
+    }
+    
+    private byte[] encode(FeatureFlag flag, long ttlSeconds) throws IOException {
+        long softExpiry = refreshAheadEnabled
+                ? System.currentTimeMillis() + (long) (ttlSeconds * 1000 * refreshAheadFactor)
+                : 0;
+        return writeCodec.encode(flag, softExpiry);
+    }
+    
+    /**
+     * Spread a TTL by up to {@code cache.ttl.jitter} either way so bulk writes expire apart
+     */
+    long jitteredTtl(long ttlSeconds) {
+        double spread = ttlJitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(1, Math.round(ttlSeconds * (1 + spread)));
+    }
+    
+    private void registerGauges() {
+        Gauge.builder("cache.redis.pool.active", jedisPool, JedisPool::getNumActive)
+                .description("Redis connections borrowed from the pool")
+                .register(meterRegistry);
+        Gauge.builder("cache.redis.pool.idle", jedisPool, JedisPool::getNumIdle)
+                .description("Idle Redis connections in the pool")
+                .register(meterRegistry);
+        Gauge.builder("cache.redis.pool.waiters", jedisPool, JedisPool::getNumWaiters)
+                .description("Threads blocked waiting for a Redis connection")
+                .register(meterRegistry);
+        Gauge.builder("cache.redis.pool.borrow.wait.max", jedisPool,
+                        pool -> pool.getMaxBorrowWaitDuration().toMillis())
+                .description("Longest wait for a Redis connection")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        for (RedisCircuitBreaker.State state : RedisCircuitBreaker.State.values()) {
+            Gauge.builder("cache.redis.circuit.state", circuitBreaker, breaker -> breaker.state() == state ? 1 : 0)
+                    .description("1 for the current Redis circuit breaker state")
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+    
+    private Counter lookupCounter(String tier, String result) {
+        return Counter.builder("cache.lookups")
+                .description("Cache lookups by tier and result")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    private Timer redisTimer(String operation, String outcome) {
+        return Timer.builder("cache.redis")
+                .description("Redis command latency")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    private void putLocal(FeatureFlag flag) {
+        localNotFound.invalidate(flag.getFlagName());
+        localCache.asMap().merge(flag.getFlagName(), flag, (cached, incoming) ->
+                isOlder(incoming, FeatureFlagRepository.revisionOf(cached), versionOf(cached)) ? cached : incoming);
+    }
+    
+    private void runInvalidationSubscriber() {
+        while (running) {
+            try (var jedis = jedisPool.getResource()) {
+                invalidationSubscriber = new InvalidationSubscriber();
+                jedis.subscribe(invalidationSubscriber, invalidationChannel);
+            } catch (JedisException e) {
+                if (running) {
+                    log.warn("Invalidation subscription to {} lost, retrying in {}ms: {}",
+                            invalidationChannel, RESUBSCRIBE_BACKOFF_MS, e.getMessage());
+                    sleepQuietly(RESUBSCRIBE_BACKOFF_MS);
+                }
+            }
         }
     }
     
-    private String getCacheKey(String flagName) {
-        return "flag:" + flagName;
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    private static int versionOf(FeatureFlag flag) {
+        return flag.getVersion() != null ? flag.getVersion() : 0;
+    }
+    
+    private static boolean isOlder(FeatureFlag flag, long revision, int version) {
+        return FlagSnapshot.isOlder(FeatureFlagRepository.revisionOf(flag), versionOf(flag), revision, version);
+    }
+    
+    private byte[] getCacheKey(String flagName) {
+        return ("flag:" + flagName).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private class InvalidationSubscriber extends JedisPubSub {
+        
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            // Messages may have been missed while disconnected
+            localCache.invalidateAll();
+            localNotFound.invalidateAll();
+            log.info("Subscribed to flag invalidations on {}", channel);
+        }
+        
+        @Override
+        public void onMessage(String channel, String message) {
+            int separator = message.indexOf(':');
+            int nameSeparator = separator > 0 ? message.indexOf(':', separator + 1) : -1;
+            if (nameSeparator <= separator + 1) {
+                log.warn("Ignoring malformed invalidation message: {}", message);
+                return;
+            }
+            try {
+                int version = Integer.parseInt(message.substring(0, separator));
+                long revision = Long.parseLong(message.substring(separator + 1, nameSeparator));
+                String flagName = message.substring(nameSeparator + 1);
+                invalidateLocal(flagName, version, revision);
+                for (InvalidationListener listener : invalidationListeners) {
+                    listener.onInvalidation(flagName, version, revision);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed invalidation message: {}", message);
+            }
+        }
+    }
+    
+    private record RedisMeters(Timer success, Timer error, Timer rejected) {
+    }
+    
+    /**
+     * Result of a cache lookup: a (possibly stale) flag, a cached "not found", or a plain miss
+     */
+    public record Lookup(FeatureFlag flag, boolean notFound, boolean stale) {
+        
+        public static final Lookup MISS = new Lookup(null, false, false);
+        public static final Lookup NOT_FOUND = new Lookup(null, true, false);
+        
+        public static Lookup found(FeatureFlag flag) {
+            return new Lookup(flag, false, false);
+        }
+        
+        /**
+         * Still usable, but past its soft expiry and due for a background reload
+         */
+        public static Lookup stale(FeatureFlag flag) {
+            return new Lookup(flag, false, true);
+        }
+        
+        public boolean isMiss() {
+            return flag == null && !notFound;
+        }
+    }
+    
+    /**
+     * Callback for flag invalidations; a version of 0 marks a deletion
+     */
+    @FunctionalInterface
+    public interface InvalidationListener {
+        void onInvalidation(String flagName, int version, long revision);
     }
 }
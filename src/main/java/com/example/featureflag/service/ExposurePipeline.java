@@ -0,0 +1,221 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.ExposureEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous exposure log.
+ * <p>
+ * {@link #record} only offers the event to a lock-free ring buffer and never blocks: when
+ * the buffer is full the event is dropped and counted. A single drainer thread removes
+ * repeated exposures and hands batches of up to {@code flags.exposure.batch-size} events to
+ * the {@link ExposureSink}, at least every {@code flags.exposure.flush-interval-ms}. A slow
+ * sink therefore only fills the buffer; it never reaches request threads.
+ * <p>
+ * Deduplication keeps two generations of written (flag, user, result, variant, version) keys,
+ * rotated every {@code flags.exposure.dedup-window-ms} or once the newer one holds
+ * {@code flags.exposure.dedup-max-size} keys, so a repeat is suppressed for one to two
+ * windows. Only the drainer touches them, so they are plain hash sets.
+ * <p>
+ * Outcomes are counted in {@code flags.exposures} tagged with
+ * {@code result=accepted|dropped|deduplicated|written|failed}.
+ */
+@Slf4j
+@Component
+public class ExposurePipeline {
+    
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    
+    private final ExposureSink sink;
+    private final MeterRegistry meterRegistry;
+    private final Counter accepted;
+    private final LongAdder dropped = new LongAdder();
+    private final Counter deduplicated;
+    private final Counter written;
+    private final Counter failed;
+    
+    @Value("${flags.exposure.enabled:false}")
+    private boolean enabled = false;
+    
+    @Value("${flags.exposure.buffer-size:65536}")
+    private int bufferSize = 65536;
+    
+    @Value("${flags.exposure.batch-size:500}")
+    private int batchSize = 500;
+    
+    @Value("${flags.exposure.flush-interval-ms:1000}")
+    private long flushIntervalMs = 1000;
+    
+    @Value("${flags.exposure.dedup-window-ms:60000}")
+    private long dedupWindowMs = 60000;
+    
+    @Value("${flags.exposure.dedup-max-size:100000}")
+    private long dedupMaxSize = 100000;
+    
+    private ExposureRingBuffer buffer;
+    private Set<DedupKey> currentWindow = new HashSet<>();
+    private Set<DedupKey> previousWindow = new HashSet<>();
+    private long windowStartNanos;
+    private volatile boolean running;
+    private Thread drainer;
+    private long droppedSinceLastFlush;
+    
+    public ExposurePipeline(ExposureSink sink, MeterRegistry meterRegistry) {
+        this.sink = sink;
+        this.meterRegistry = meterRegistry;
+        this.accepted = exposureCounter(meterRegistry, "accepted");
+        FunctionCounter.builder("flags.exposures", dropped, LongAdder::sum)
+                .description("Exposure events by outcome")
+                .tag("result", "dropped")
+                .register(meterRegistry);
+        this.deduplicated = exposureCounter(meterRegistry, "deduplicated");
+        this.written = exposureCounter(meterRegistry, "written");
+        this.failed = exposureCounter(meterRegistry, "failed");
+    }
+    
+    @PostConstruct
+    public void start() {
+        buffer = new ExposureRingBuffer(bufferSize);
+        Gauge.builder("flags.exposures.buffered", buffer, ExposureRingBuffer::size)
+                .description("Exposure events waiting for the drainer")
+                .register(meterRegistry);
+        if (!enabled) {
+            log.info("Exposure logging disabled");
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drainLoop, "exposure-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        log.info("Started exposure pipeline with buffer {} and batch size {}", buffer.capacity(), batchSize);
+    }
+    
+    /**
+     * Drain what is buffered into the sink and close it
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    
+    /**
+     * Log one exposure without blocking; false when disabled or dropped on overflow
+     */
+    public boolean record(String flagName, String userId, boolean enabledResult, String variant, int version) {
+        if (!running) {
+            return false;
+        }
+        if (buffer.offer(new ExposureEvent(flagName, userId, enabledResult, variant, version,
+                System.currentTimeMillis()))) {
+            accepted.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+    
+    /**
+     * Events lost because the buffer was full
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+    
+    private void drainLoop() {
+        List<ExposureEvent> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        long lastFlush = System.nanoTime();
+        windowStartNanos = lastFlush;
+        while (running) {
+            int drained = buffer.drain(event -> collect(event, batch), batchSize - batch.size());
+            boolean due = System.nanoTime() - lastFlush >= flushIntervalNanos;
+            if (batch.size() >= batchSize || (due && !batch.isEmpty())) {
+                flush(batch);
+                lastFlush = System.nanoTime();
+            } else if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        
+        while (buffer.drain(event -> collect(event, batch), batchSize - batch.size()) > 0 || !batch.isEmpty()) {
+            flush(batch);
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            log.warn("Error closing exposure sink: {}", e.getMessage());
+        }
+    }
+    
+    private void collect(ExposureEvent event, List<ExposureEvent> batch) {
+        if (dedupWindowMs > 0 && isRepeat(new DedupKey(event.flagName(), event.userId(), event.enabled(),
+                event.variant(), event.version()))) {
+            deduplicated.increment();
+            return;
+        }
+        batch.add(event);
+    }
+    
+    private boolean isRepeat(DedupKey key) {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= TimeUnit.MILLISECONDS.toNanos(dedupWindowMs)
+                || currentWindow.size() >= dedupMaxSize) {
+            previousWindow = currentWindow;
+            currentWindow = new HashSet<>();
+            windowStartNanos = now;
+        }
+        return previousWindow.contains(key) || !currentWindow.add(key);
+    }
+    
+    private void flush(List<ExposureEvent> batch) {
+        long droppedTotal = dropped.sum();
+        if (droppedTotal > droppedSinceLastFlush) {
+            log.warn("Dropped {} exposure events: buffer of {} full", droppedTotal - droppedSinceLastFlush,
+                    buffer.capacity());
+            droppedSinceLastFlush = droppedTotal;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sink.write(List.copyOf(batch));
+            written.increment(batch.size());
+        } catch (IOException | RuntimeException e) {
+            failed.increment(batch.size());
+            log.warn("Failed to write {} exposure events: {}", batch.size(), e.getMessage());
+        }
+        batch.clear();
+    }
+    
+    private static Counter exposureCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("flags.exposures")
+                .description("Exposure events by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    private record DedupKey(String flagName, String userId, boolean enabled, String variant, int version) {
+    }
+}
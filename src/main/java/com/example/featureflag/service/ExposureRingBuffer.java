@@ -0,0 +1,73 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.ExposureEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer.
+ * <p>
+ * Producers claim a slot by CAS on the tail and never wait: when the buffer is full
+ * {@link #offer} fails immediately. The single consumer clears each slot before moving
+ * the head past it, so a claimed slot is always empty.
+ */
+class ExposureRingBuffer {
+    
+    private final AtomicReferenceArray<ExposureEvent> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    
+    ExposureRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Enqueue without blocking; false when the buffer is full
+     */
+    boolean offer(ExposureEvent event) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.lazySet((int) (claimed & mask), event);
+        return true;
+    }
+    
+    /**
+     * Hand up to {@code limit} events to {@code consumer}, in order. Only one thread may drain.
+     */
+    int drain(Consumer<ExposureEvent> consumer, int limit) {
+        long position = head;
+        int drained = 0;
+        while (drained < limit) {
+            int index = (int) (position & mask);
+            ExposureEvent event = slots.get(index);
+            if (event == null) {
+                // Empty, or claimed by a producer that has not published yet
+                break;
+            }
+            slots.lazySet(index, null);
+            position++;
+            drained++;
+            consumer.accept(event);
+        }
+        head = position;
+        return drained;
+    }
+    
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+    
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.ExposureEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination for batches of exposure events, called from the exposure drainer thread only
+ */
+@FunctionalInterface
+public interface ExposureSink {
+    
+    void write(List<ExposureEvent> events) throws IOException;
+    
+    /**
+     * Release resources once the pipeline has flushed its last batch
+     */
+    default void close() throws IOException {
+    }
+}
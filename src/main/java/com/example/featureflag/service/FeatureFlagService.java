@@ -1,20 +1,44 @@
 package com.example.featureflag.service;
 
+import com.example.featureflag.dto.BatchEvaluationResponse;
 import com.example.featureflag.dto.CreateFeatureFlagRequest;
 import com.example.featureflag.dto.FeatureFlagResponse;
+import com.example.featureflag.dto.FlagChangeEvent;
 import com.example.featureflag.dto.FlagEvaluationResponse;
+import com.example.featureflag.dto.FlagSnapshotResponse;
+import com.example.featureflag.dto.FlagUsageResponse;
 import com.example.featureflag.dto.UpdateFeatureFlagRequest;
 import com.example.featureflag.exception.FlagAlreadyExistsException;
 import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.exception.FlagVersionConflictException;
+import com.example.featureflag.exception.InvalidPrerequisiteException;
 import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.FlagUsage;
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingRule;
 import com.example.featureflag.repository.FeatureFlagRepository;
-import com.google.common.hash.Hashing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.nio.charset.StandardCharsets;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
 
 /**
  * Service for managing feature flags
@@ -24,8 +48,34 @@ import java.time.Instant;
 @RequiredArgsConstructor
 public class FeatureFlagService {
     
+    /**
+     * Attempts at re-reading the flag when a concurrent write lands between reading its
+     * variant buckets and writing the new ones
+     */
+    private static final int VARIANT_UPDATE_ATTEMPTS = 3;
+    
     private final FeatureFlagRepository repository;
     private final CacheService cacheService;
+    private final BucketingEngine bucketingEngine;
+    private final FlagSnapshotManager snapshotManager;
+    private final FlagChangeBroadcaster changeBroadcaster;
+    private final FlagLoader flagLoader;
+    private final FlagEvaluationMetrics evaluationMetrics;
+    private final ExposurePipeline exposurePipeline;
+    private final FlagUsageCounters usageCounters;
+    
+    @Value("${flags.revision.tombstone-retention-hours:168}")
+    private long tombstoneRetentionHours = 168;
+    
+    /**
+     * Wall clock rollout schedules are evaluated against, in epoch millis
+     */
+    private LongSupplier wallClock = System::currentTimeMillis;
+    
+    @PostConstruct
+    public void init() {
+        cacheService.addInvalidationListener(this::onRemoteChange);
+    }
     
     /**
      * Create a new feature flag
@@ -33,22 +83,37 @@ public class FeatureFlagService {
     public FeatureFlagResponse createFlag(CreateFeatureFlagRequest request) {
         log.info("Creating feature flag: {}", request.getFlagName());
         
-        if (repository.existsByFlagName(request.getFlagName())) {
+        if (FeatureFlagRepository.REVISION_COUNTER_KEY.equals(request.getFlagName())) {
             throw new FlagAlreadyExistsException(request.getFlagName());
         }
         
+        int rolloutBasisPoints = request.getRolloutBasisPoints() != null
+                ? request.getRolloutBasisPoints()
+                : request.getRolloutPercentage() * 100;
+        
         FeatureFlag flag = FeatureFlag.builder()
                 .flagName(request.getFlagName())
                 .enabled(request.getEnabled())
-                .rolloutPercentage(request.getRolloutPercentage())
+                .rolloutPercentage(rolloutBasisPoints / 100)
+                .rolloutBasisPoints(rolloutBasisPoints)
                 .description(request.getDescription())
+                .rules(validatedRules(request.getRules()))
+                .variants(request.getVariants() != null
+                        ? FlagVariants.allocate(request.getFlagName(), null, request.getVariants())
+                        : null)
+                .prerequisites(validatedPrerequisites(request.getFlagName(), request.getPrerequisites()))
+                .rolloutSchedule(validatedSchedule(request.getRolloutSchedule()))
                 .version(1)
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
                 .build();
         
-        FeatureFlag savedFlag = repository.save(flag);
+        FeatureFlag savedFlag = repository.create(flag);
         cacheService.putFlag(savedFlag);
+        cacheService.publishInvalidation(savedFlag.getFlagName(), savedFlag.getVersion(),
+                FeatureFlagRepository.revisionOf(savedFlag));
+        snapshotManager.apply(savedFlag);
+        changeBroadcaster.publish(changeEvent(FlagChangeEvent.ChangeType.CREATED, savedFlag));
         
         return mapToResponse(savedFlag);
     }
@@ -59,19 +124,26 @@ public class FeatureFlagService {
     public FeatureFlagResponse getFlag(String flagName) {
         log.debug("Getting feature flag: {}", flagName);
         
-        // Try cache first
-        FeatureFlag cachedFlag = cacheService.getFlag(flagName);
-        if (cachedFlag != null) {
-            log.debug("Flag found in cache: {}", flagName);
-            return mapToResponse(cachedFlag);
-        }
-        
-        // Fallback to database
-        FeatureFlag flag = repository.findByFlagName(flagName)
-                .orElseThrow(() -> new FlagNotFoundException(flagName));
-        
-        cacheService.putFlag(flag);
-        return mapToResponse(flag);
+        // Cache first, then a single coalesced database read per flag
+        return mapToResponse(flagLoader.load(flagName));
+    }
+    
+    /**
+     * List all feature flags, ordered by name
+     */
+    public List<FeatureFlagResponse> listFlags() {
+        log.debug("Listing all feature flags");
+        return repository.findAll().stream()
+                .sorted(Comparator.comparing(FeatureFlag::getFlagName))
+                .map(this::mapToResponse)
+                .toList();
+    }
+    
+    /**
+     * Bucketing mode clients must use to reproduce server-side evaluation
+     */
+    public BucketingEngine.Mode getBucketingMode() {
+        return bucketingEngine.getMode();
     }
     
     /**
@@ -80,50 +152,178 @@ public class FeatureFlagService {
     public FeatureFlagResponse updateFlag(String flagName, UpdateFeatureFlagRequest request) {
         log.info("Updating feature flag: {}", flagName);
         
-        FeatureFlag flag = repository.findByFlagName(flagName)
-                .orElseThrow(() -> new FlagNotFoundException(flagName));
-        
-        boolean updated = false;
-        
-        if (request.getEnabled() != null) {
-            flag.setEnabled(request.getEnabled());
-            updated = true;
-        }
-        
-        if (request.getRolloutPercentage() != null) {
-            flag.setRolloutPercentage(request.getRolloutPercentage());
-            updated = true;
+        FeatureFlag changes = new FeatureFlag();
+        changes.setEnabled(request.getEnabled());
+        changes.setDescription(request.getDescription());
+        changes.setRules(validatedRules(request.getRules()));
+        changes.setPrerequisites(validatedPrerequisites(flagName, request.getPrerequisites()));
+        changes.setRolloutSchedule(validatedSchedule(request.getRolloutSchedule()));
+        if (request.getRolloutBasisPoints() != null) {
+            changes.setRolloutBasisPoints(request.getRolloutBasisPoints());
+            changes.setRolloutPercentage(request.getRolloutBasisPoints() / 100);
+        } else if (request.getRolloutPercentage() != null) {
+            changes.setRolloutBasisPoints(request.getRolloutPercentage() * 100);
+            changes.setRolloutPercentage(request.getRolloutPercentage());
         }
         
-        if (request.getDescription() != null) {
-            flag.setDescription(request.getDescription());
-            updated = true;
+        if (changes.getEnabled() == null && changes.getDescription() == null && changes.getRolloutBasisPoints() == null
+                && changes.getRules() == null && request.getVariants() == null
+                && changes.getPrerequisites() == null && changes.getRolloutSchedule() == null) {
+            FeatureFlag flag = repository.findByFlagName(flagName)
+                    .orElseThrow(() -> new FlagNotFoundException(flagName));
+            if (request.getExpectedVersion() != null && !request.getExpectedVersion().equals(flag.getVersion())) {
+                throw new FlagVersionConflictException(flagName, request.getExpectedVersion(), flag.getVersion());
+            }
+            return mapToResponse(flag);
         }
         
-        if (updated) {
-            flag.setVersion(flag.getVersion() + 1);
-            flag.setUpdatedAt(Instant.now());
-        }
+        changes.setUpdatedAt(Instant.now());
         
-        FeatureFlag savedFlag = repository.save(flag);
+        FeatureFlag savedFlag = request.getVariants() != null
+                ? updateVariants(flagName, changes, request.getVariants(), request.getExpectedVersion())
+                : repository.update(currentFlag(flagName), changes, request.getExpectedVersion());
         cacheService.evictFlag(flagName);
         cacheService.putFlag(savedFlag);
+        cacheService.publishInvalidation(flagName, savedFlag.getVersion(), FeatureFlagRepository.revisionOf(savedFlag));
+        snapshotManager.apply(savedFlag);
+        changeBroadcaster.publish(changeEvent(FlagChangeEvent.ChangeType.UPDATED, savedFlag));
         
         return mapToResponse(savedFlag);
     }
     
+    /**
+     * Update a flag together with new variants. Buckets are reassigned from the stored
+     * variants, so the write is conditional on the version they were read at; without an
+     * expected version from the caller, a concurrent write just means reading again.
+     */
+    private FeatureFlag updateVariants(String flagName, FeatureFlag changes, List<FlagVariant> variants,
+                                      Integer expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            FeatureFlag current = repository.findByFlagName(flagName)
+                    .orElseThrow(() -> new FlagNotFoundException(flagName));
+            changes.setVariants(FlagVariants.allocate(flagName, current.getVariants(), variants));
+            try {
+                return repository.update(current, changes,
+                        expectedVersion != null ? expectedVersion : current.getVersion());
+            } catch (FlagVersionConflictException e) {
+                if (expectedVersion != null || attempt == VARIANT_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Flag {} changed while reassigning variant buckets, retrying", flagName);
+            }
+        }
+    }
+    
+    /**
+     * The flag as this node last saw it, from the cache when it holds it. A stale copy only
+     * costs the repository a retry against the stored item.
+     */
+    private FeatureFlag currentFlag(String flagName) {
+        FeatureFlag cached = cacheService.getFlag(flagName);
+        return cached != null
+                ? cached
+                : repository.findByFlagName(flagName).orElseThrow(() -> new FlagNotFoundException(flagName));
+    }
+    
     /**
      * Delete a feature flag
      */
     public void deleteFlag(String flagName) {
         log.info("Deleting feature flag: {}", flagName);
         
-        if (!repository.existsByFlagName(flagName)) {
-            throw new FlagNotFoundException(flagName);
+        FeatureFlag tombstone = repository.deleteByFlagName(flagName);
+        cacheService.evictFlag(flagName);
+        cacheService.publishInvalidation(flagName, null, FeatureFlagRepository.revisionOf(tombstone));
+        snapshotManager.remove(flagName, FeatureFlagRepository.revisionOf(tombstone));
+        evaluationMetrics.forget(flagName);
+        usageCounters.forget(flagName);
+        changeBroadcaster.publish(FlagChangeEvent.builder()
+                .type(FlagChangeEvent.ChangeType.DELETED)
+                .flagName(flagName)
+                .version(CacheService.DELETED_VERSION)
+                .revision(FeatureFlagRepository.revisionOf(tombstone))
+                .timestamp(Instant.now())
+                .build());
+    }
+    
+    /**
+     * Latest allocated global revision; cheap enough to answer If-None-Match without a scan
+     */
+    public long currentRevision() {
+        return repository.currentRevision().revision();
+    }
+    
+    /**
+     * All flags, or only what changed since {@code sinceRevision}.
+     * Falls back to a full snapshot when the client's revision predates purged tombstones
+     * or is ahead of the counter (e.g. the counter item was restored from a backup).
+     * The response reports the counter as read before the changes: a revision becomes
+     * visible together with its write, so every write up to it is included. Later writes
+     * the scan happens to see are simply sent again by the next delta.
+     */
+    public FlagSnapshotResponse getSnapshot(Long sinceRevision) {
+        FeatureFlagRepository.RevisionCounter counter = repository.currentRevision();
+        boolean full = sinceRevision == null
+                || sinceRevision < counter.purgedThrough()
+                || sinceRevision > counter.revision();
+        log.debug("Building {} flag snapshot since revision {}", full ? "full" : "delta", sinceRevision);
+        
+        List<FeatureFlagResponse> flags = new ArrayList<>();
+        List<String> deletedFlags = new ArrayList<>();
+        for (FeatureFlag flag : repository.findChangedSince(full ? -1 : sinceRevision)) {
+            if (!Boolean.TRUE.equals(flag.getDeleted())) {
+                flags.add(mapToResponse(flag));
+            } else if (!full) {
+                deletedFlags.add(flag.getFlagName());
+            }
         }
+        flags.sort(Comparator.comparing(FeatureFlagResponse::getFlagName));
+        deletedFlags.sort(Comparator.naturalOrder());
         
-        repository.deleteByFlagName(flagName);
-        cacheService.evictFlag(flagName);
+        return FlagSnapshotResponse.builder()
+                .revision(counter.revision())
+                .full(full)
+                .flags(flags)
+                .deletedFlags(deletedFlags)
+                .build();
+    }
+    
+    /**
+     * Drop tombstones once every reasonable poller has seen them
+     */
+    @Scheduled(fixedDelayString = "${flags.revision.tombstone-purge-interval-ms:3600000}")
+    public void purgeTombstones() {
+        try {
+            int purged = repository.purgeTombstones(Instant.now().minus(Duration.ofHours(tombstoneRetentionHours)));
+            if (purged > 0) {
+                log.info("Purged {} flag tombstones", purged);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Flag tombstone purge failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * How often a flag has been evaluated across the cluster, and with what result
+     */
+    public FlagUsageResponse getUsage(String flagName) {
+        log.debug("Getting usage of flag: {}", flagName);
+        flagLoader.load(flagName);
+        FlagUsage usage = usageCounters.usage(flagName);
+        return FlagUsageResponse.builder()
+                .flagName(flagName)
+                .evaluations(usage.evaluations())
+                .enabledCount(usage.enabledCount())
+                .disabledCount(usage.disabledCount())
+                .lastEvaluatedAt(usage.lastEvaluatedAt())
+                .build();
+    }
+    
+    /**
+     * Open a Server-Sent Events stream of flag changes
+     */
+    public SseEmitter streamChanges(String lastEventId) {
+        return changeBroadcaster.subscribe(lastEventId);
     }
     
     /**
@@ -131,62 +331,394 @@ public class FeatureFlagService {
      * Uses deterministic hashing to ensure consistent results
      */
     public FlagEvaluationResponse evaluateFlag(String flagName, String userId) {
+        return evaluateFlag(flagName, userId, Map.of());
+    }
+    
+    /**
+     * Evaluate a feature flag for a user with the given targeting attributes
+     */
+    public FlagEvaluationResponse evaluateFlag(String flagName, String userId, Map<String, String> attributes) {
         log.debug("Evaluating flag: {} for user: {}", flagName, userId);
+        long start = System.nanoTime();
         
-        FeatureFlag flag = cacheService.getFlag(flagName);
-        if (flag == null) {
-            flag = repository.findByFlagName(flagName)
-                    .orElseThrow(() -> new FlagNotFoundException(flagName));
-            cacheService.putFlag(flag);
+        FlagSnapshot snapshot = snapshotManager.current();
+        int position = snapshot.indexOf(flagName);
+        boolean fromSnapshot = position >= 0;
+        if (!fromSnapshot) {
+            snapshot = snapshotManager.apply(flagLoader.load(flagName));
+            position = snapshot.indexOf(flagName);
+        }
+        if (!snapshot.prerequisites(position).unknown().isEmpty()) {
+            snapshot = loadPrerequisites(snapshot, List.of(flagName));
+            position = snapshot.indexOf(flagName);
         }
         
-        boolean isEnabled = evaluateFlagForUser(flag, userId);
+        boolean isEnabled = evaluateFlagForUser(snapshot, position, userId, attributes);
+        FlagVariants variants = snapshot.variants(position);
+        int variant = isEnabled ? variants.variantFor(snapshot.seed(position), userId) : -1;
+        String variantKey = variant >= 0 ? variants.key(variant) : null;
+        exposurePipeline.record(flagName, userId, isEnabled, variantKey, snapshot.version(position));
+        usageCounters.record(flagName, isEnabled);
+        evaluationMetrics.recordEvaluation(flagName, isEnabled, fromSnapshot, start);
         
         return FlagEvaluationResponse.builder()
                 .flagName(flagName)
                 .enabled(isEnabled)
                 .userId(userId)
+                .variant(variantKey)
+                .value(variant >= 0 ? variants.value(variant) : null)
                 .build();
     }
     
     /**
-     * Evaluate flag using deterministic hashing
-     * Same user + flag always gets same result
+     * Evaluate many flags for many users in one pass.
+     * Flags missing from the snapshot are fetched once each (cache MGET, then DynamoDB
+     * BatchGetItem for the rest) and unknown flags are reported instead of failing the batch.
+     * Unknown flags are cached as not found like single lookups. Each flag is evaluated at
+     * most once per user, whether it was requested or is a prerequisite of one or more
+     * requested flags.
      */
-    private boolean evaluateFlagForUser(FeatureFlag flag, String userId) {
-        if (!flag.getEnabled()) {
-            return false;
+    public BatchEvaluationResponse evaluateFlags(List<String> flagNames, List<String> userIds) {
+        return evaluateFlags(flagNames, userIds, Map.of());
+    }
+    
+    /**
+     * Batch evaluation with targeting attributes keyed by user ID; users without an
+     * entry are evaluated with no attributes
+     */
+    public BatchEvaluationResponse evaluateFlags(List<String> flagNames, List<String> userIds,
+                                                 Map<String, Map<String, String>> attributesByUser) {
+        Set<String> uniqueFlagNames = new LinkedHashSet<>(flagNames);
+        log.debug("Batch evaluating {} flags for {} users", uniqueFlagNames.size(), userIds.size());
+        
+        FlagSnapshot snapshot = snapshotManager.current();
+        List<String> snapshotMisses = uniqueFlagNames.stream()
+                .filter(name -> snapshot.indexOf(name) < 0)
+                .toList();
+        FlagSnapshot evaluationSnapshot = loadPrerequisites(snapshotMisses.isEmpty()
+                ? snapshot
+                : snapshotManager.applyAll(loadFlags(snapshotMisses)), uniqueFlagNames);
+        
+        PrerequisiteMemo memo = new PrerequisiteMemo(evaluationSnapshot.size(), userIds.size());
+        Map<String, Map<String, Boolean>> results = new LinkedHashMap<>();
+        Map<String, Map<String, String>> variantResults = new LinkedHashMap<>();
+        List<String> missingFlags = new ArrayList<>();
+        for (String flagName : uniqueFlagNames) {
+            int position = evaluationSnapshot.indexOf(flagName);
+            if (position < 0) {
+                missingFlags.add(flagName);
+                continue;
+            }
+            Map<String, Boolean> userResults = new LinkedHashMap<>();
+            FlagVariants variants = evaluationSnapshot.variants(position);
+            Map<String, String> userVariants = variants.size() > 0 ? new LinkedHashMap<>() : null;
+            int enabledCount = 0;
+            int version = evaluationSnapshot.version(position);
+            for (int user = 0; user < userIds.size(); user++) {
+                String userId = userIds.get(user);
+                boolean enabled = evaluateFlagForUser(evaluationSnapshot, position, userId,
+                        attributesByUser.getOrDefault(userId, Map.of()), memo, user);
+                userResults.put(userId, enabled);
+                String variantKey = userVariants != null && enabled
+                        ? variants.key(variants.variantFor(evaluationSnapshot.seed(position), userId))
+                        : null;
+                if (userVariants != null) {
+                    userVariants.put(userId, variantKey);
+                }
+                exposurePipeline.record(flagName, userId, enabled, variantKey, version);
+                enabledCount += enabled ? 1 : 0;
+            }
+            results.put(flagName, userResults);
+            if (userVariants != null) {
+                variantResults.put(flagName, userVariants);
+            }
+            usageCounters.recordBatch(flagName, enabledCount, userResults.size() - enabledCount);
+            evaluationMetrics.recordBatchEvaluations(flagName, enabledCount, userResults.size() - enabledCount);
         }
         
-        if (flag.getRolloutPercentage() == 100) {
+        return BatchEvaluationResponse.builder()
+                .results(results)
+                .variants(variantResults)
+                .missingFlags(missingFlags)
+                .build();
+    }
+    
+    /**
+     * Evaluate a compiled flag using deterministic hashing
+     * Same user + flag always gets same result
+     */
+    boolean evaluateFlagForUser(FlagSnapshot snapshot, int position, String userId) {
+        return evaluateFlagForUser(snapshot, position, userId, Map.of());
+    }
+    
+    /**
+     * Evaluate a compiled flag: the first matching targeting rule picks the rollout,
+     * otherwise the flag's own rollout applies
+     */
+    boolean evaluateFlagForUser(FlagSnapshot snapshot, int position, String userId, Map<String, String> attributes) {
+        return evaluateFlagForUser(snapshot, position, userId, attributes, null, 0);
+    }
+    
+    /**
+     * Evaluate a compiled flag after its prerequisites, consulting and filling the memo
+     * of a batch evaluation when one is given
+     */
+    private boolean evaluateFlagForUser(FlagSnapshot snapshot, int position, String userId,
+                                        Map<String, String> attributes, PrerequisiteMemo memo, int user) {
+        int known = memo != null ? memo.get(position, user) : PrerequisiteMemo.UNKNOWN;
+        if (known != PrerequisiteMemo.UNKNOWN) {
+            return known == PrerequisiteMemo.ON;
+        }
+        boolean enabled = snapshot.enabled(position)
+                && prerequisitesMet(snapshot, snapshot.prerequisites(position), userId, attributes, memo, user)
+                && isInRollout(snapshot, position, userId, attributes);
+        if (memo != null) {
+            memo.put(position, user, enabled);
+        }
+        return enabled;
+    }
+    
+    /**
+     * Walk the flag's prerequisites in topological order, so each is evaluated once
+     * however many paths lead to it; bit i of {@code on} holds the i-th result
+     */
+    private boolean prerequisitesMet(FlagSnapshot snapshot, PrerequisitePlan plan, String userId,
+                                     Map<String, String> attributes, PrerequisiteMemo memo, int user) {
+        if (plan == PrerequisitePlan.NONE) {
             return true;
         }
-        
-        if (flag.getRolloutPercentage() == 0) {
+        if (!plan.evaluable()) {
             return false;
         }
+        long on = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            int prerequisite = plan.prerequisite(i);
+            int known = memo != null ? memo.get(prerequisite, user) : PrerequisiteMemo.UNKNOWN;
+            boolean met;
+            if (known != PrerequisiteMemo.UNKNOWN) {
+                met = known == PrerequisiteMemo.ON;
+            } else {
+                met = snapshot.enabled(prerequisite) && plan.requirementsMet(on, i)
+                        && isInRollout(snapshot, prerequisite, userId, attributes);
+                if (memo != null) {
+                    memo.put(prerequisite, user, met);
+                }
+            }
+            if (met) {
+                on |= 1L << i;
+            }
+        }
+        return plan.rootRequirementsMet(on);
+    }
+    
+    /**
+     * The first matching targeting rule picks the rollout, otherwise the flag's own rollout
+     * applies, as its schedule sets it at this moment
+     */
+    private boolean isInRollout(FlagSnapshot snapshot, int position, String userId, Map<String, String> attributes) {
+        int flagRollout = snapshot.schedule(position).rolloutBasisPoints(wallClock, snapshot.rolloutBasisPoints(position));
+        int rolloutBasisPoints = snapshot.rules(position).rolloutBasisPoints(userId, attributes, flagRollout);
+        return bucketingEngine.isInRollout(snapshot.seed(position), userId, rolloutBasisPoints);
+    }
+    
+    /**
+     * Reject rules that would not compile, before they are stored
+     */
+    private static List<TargetingRule> validatedRules(List<TargetingRule> rules) {
+        TargetingRules.validate(rules);
+        return rules;
+    }
+    
+    /**
+     * Reject rollout schedules that would not compile, before they are stored
+     */
+    private static List<RolloutStep> validatedSchedule(List<RolloutStep> schedule) {
+        RolloutSchedule.compile(schedule);
+        return schedule;
+    }
+    
+    /**
+     * Reject prerequisites that name the flag itself, a flag that does not exist or that
+     * would close a cycle, before they are stored. Prerequisites missing from the snapshot
+     * are loaded one batch per level of the chain.
+     */
+    private List<String> validatedPrerequisites(String flagName, List<String> prerequisites) {
+        if (prerequisites == null) {
+            return null;
+        }
+        Set<String> unique = new HashSet<>();
+        for (String prerequisite : prerequisites) {
+            if (prerequisite == null || prerequisite.isBlank()) {
+                throw new InvalidPrerequisiteException(flagName, "prerequisite names must not be blank");
+            }
+            if (!unique.add(prerequisite)) {
+                throw new InvalidPrerequisiteException(flagName, "duplicate prerequisite " + prerequisite);
+            }
+        }
         
-        // Deterministic hash: same user + flag = same result
-        String input = flag.getFlagName() + ":" + userId;
-        long hash = Hashing.murmur3_128()
-                .hashString(input, StandardCharsets.UTF_8)
-                .asLong();
-        
-        // Convert to percentage (0-99)
-        int userBucket = Math.abs((int) (hash % 100));
+        FeatureFlag candidate = FeatureFlag.builder()
+                .flagName(flagName)
+                .prerequisites(prerequisites)
+                .build();
+        FlagSnapshot snapshot = snapshotManager.current();
+        Set<String> attempted = new HashSet<>();
+        while (true) {
+            FlagSnapshot withCandidate = snapshot.with(candidate);
+            PrerequisitePlan plan = withCandidate.prerequisites(withCandidate.indexOf(flagName));
+            List<String> missing = plan.unknown().stream().filter(attempted::add).toList();
+            if (missing.isEmpty()) {
+                if (!plan.evaluable()) {
+                    throw new InvalidPrerequisiteException(flagName, plan.error());
+                }
+                return prerequisites;
+            }
+            snapshot = snapshotManager.applyAll(loadFlags(missing));
+        }
+    }
+    
+    /**
+     * Load prerequisites of the given flags that are missing from the snapshot, one
+     * batched fetch per level of the chain; flags that do not exist stay unknown and their
+     * dependents evaluate to off
+     */
+    private FlagSnapshot loadPrerequisites(FlagSnapshot snapshot, Collection<String> flagNames) {
+        Set<String> attempted = new HashSet<>();
+        while (true) {
+            List<String> missing = new ArrayList<>();
+            for (String flagName : flagNames) {
+                int position = snapshot.indexOf(flagName);
+                if (position >= 0) {
+                    snapshot.prerequisites(position).unknown().stream()
+                            .filter(attempted::add)
+                            .forEach(missing::add);
+                }
+            }
+            if (missing.isEmpty()) {
+                return snapshot;
+            }
+            log.debug("Loading {} prerequisite flags missing from the snapshot", missing.size());
+            snapshot = snapshotManager.applyAll(loadFlags(missing));
+        }
+    }
+    
+    private List<FeatureFlag> loadFlags(List<String> flagNames) {
+        Map<String, FeatureFlag> flags = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        Map<String, CacheService.Lookup> lookups = cacheService.lookupAll(flagNames);
+        for (String flagName : flagNames) {
+            CacheService.Lookup lookup = lookups.getOrDefault(flagName, CacheService.Lookup.MISS);
+            if (lookup.flag() != null) {
+                flags.put(flagName, lookup.flag());
+                if (lookup.stale()) {
+                    flagLoader.refreshAsync(flagName);
+                }
+            } else if (lookup.isMiss()) {
+                misses.add(flagName);
+            }
+        }
         
-        return userBucket < flag.getRolloutPercentage();
+        if (!misses.isEmpty()) {
+            List<FeatureFlag> loaded = repository.findByFlagNames(misses);
+            loaded.forEach(flag -> flags.put(flag.getFlagName(), flag));
+            cacheService.putFlags(loaded);
+            misses.stream()
+                    .filter(name -> !flags.containsKey(name))
+                    .forEach(cacheService::putNotFound);
+        }
+        return new ArrayList<>(flags.values());
+    }
+    
+    /**
+     * Forward a change made on another node to this node's stream subscribers
+     */
+    void onRemoteChange(String flagName, int version, long revision) {
+        if (!changeBroadcaster.isNewer(flagName, revision, version)) {
+            return;
+        }
+        try {
+            if (version == CacheService.DELETED_VERSION) {
+                changeBroadcaster.publish(FlagChangeEvent.builder()
+                        .type(FlagChangeEvent.ChangeType.DELETED)
+                        .flagName(flagName)
+                        .version(CacheService.DELETED_VERSION)
+                        .revision(revision)
+                        .timestamp(Instant.now())
+                        .build());
+                return;
+            }
+            
+            FeatureFlag flag = cacheService.getFlag(flagName);
+            if (flag == null) {
+                flag = repository.findByFlagName(flagName).orElse(null);
+            }
+            if (flag != null) {
+                FlagChangeEvent.ChangeType type = flag.getVersion() != null && flag.getVersion() == 1
+                        ? FlagChangeEvent.ChangeType.CREATED
+                        : FlagChangeEvent.ChangeType.UPDATED;
+                changeBroadcaster.publish(changeEvent(type, flag));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to forward remote change for flag: {}", flagName, e);
+        }
+    }
+    
+    private FlagChangeEvent changeEvent(FlagChangeEvent.ChangeType type, FeatureFlag flag) {
+        return FlagChangeEvent.builder()
+                .type(type)
+                .flagName(flag.getFlagName())
+                .version(flag.getVersion())
+                .revision(FeatureFlagRepository.revisionOf(flag))
+                .flag(mapToResponse(flag))
+                .timestamp(flag.getUpdatedAt() != null ? flag.getUpdatedAt() : Instant.now())
+                .build();
     }
     
-    private FeatureFlagResponse mapToResponse(FeatureFlag flag) {
+    FeatureFlagResponse mapToResponse(FeatureFlag flag) {
         return FeatureFlagResponse.builder()
                 .flagName(flag.getFlagName())
                 .enabled(flag.getEnabled())
                 .rolloutPercentage(flag.getRolloutPercentage())
+                .rolloutBasisPoints(BucketingEngine.rolloutBasisPoints(flag))
                 .description(flag.getDescription())
+                .rules(flag.getRules())
+                .variants(flag.getVariants())
+                .prerequisites(flag.getPrerequisites())
+                .rolloutSchedule(flag.getRolloutSchedule())
                 .version(flag.getVersion())
                 .createdAt(flag.getCreatedAt())
                 .updatedAt(flag.getUpdatedAt())
+                .revision(flag.getRevision())
                 .build();
     }
+    
+    /**
+     * Results of one batch evaluation per flag position and user, so a flag required by
+     * several requested flags is evaluated once per user; rows are allocated on first use
+     */
+    private static final class PrerequisiteMemo {
+        
+        static final int UNKNOWN = 0;
+        static final int OFF = 1;
+        static final int ON = 2;
+        
+        private final byte[][] results;
+        private final int users;
+        
+        PrerequisiteMemo(int flags, int users) {
+            this.results = new byte[flags][];
+            this.users = users;
+        }
+        
+        int get(int position, int user) {
+            byte[] row = results[position];
+            return row != null ? row[user] : UNKNOWN;
+        }
+        
+        void put(int position, int user, boolean on) {
+            if (results[position] == null) {
+                results[position] = new byte[users];
+            }
+            results[position][user] = (byte) (on ? ON : OFF);
+        }
+    }
 }
@@ -0,0 +1,145 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.ExposureEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Appends exposure events to rolling local files, starting a new file once the current one
+ * reaches {@code maxFileBytes}. Files are named {@code exposures-<epochMillis>-<seq>} with an
+ * {@code .ndjson} or {@code .bin} extension; on each roll the oldest are deleted so at most
+ * {@code maxFiles} remain.
+ * <p>
+ * NDJSON writes one JSON object per line. The binary format starts with the
+ * {@link #BINARY_MAGIC} header, followed by records of {@code flagName} and {@code userId}
+ * (modified UTF-8, as {@link DataOutputStream#writeUTF}), {@code enabled} (byte),
+ * {@code variant} (a presence byte, then the key when present), {@code version} (int) and
+ * {@code timestamp} (long, epoch millis).
+ */
+@Slf4j
+public class FileExposureSink implements ExposureSink {
+    
+    static final byte[] BINARY_MAGIC = {'F', 'F', 'E', 'X', 2};
+    
+    /**
+     * Start time and sequence of a file this sink wrote
+     */
+    private static final Pattern FILE_NAME = Pattern.compile("exposures-(\\d+)-(\\d+)\\.(ndjson|bin)");
+    
+    public enum Format {
+        NDJSON, BINARY
+    }
+    
+    private final Path directory;
+    private final Format format;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private FileChannel channel;
+    private Path currentFile;
+    private int sequence;
+    
+    public FileExposureSink(Path directory, Format format, long maxFileBytes, int maxFiles) {
+        this.directory = directory;
+        this.format = format;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+    
+    @Override
+    public synchronized void write(List<ExposureEvent> events) throws IOException {
+        if (channel == null || channel.size() >= maxFileBytes) {
+            roll();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(events.size() * 96);
+        if (format == Format.NDJSON) {
+            for (ExposureEvent event : events) {
+                objectMapper.writeValue(bytes, event);
+                bytes.write('\n');
+            }
+        } else {
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (ExposureEvent event : events) {
+                out.writeUTF(event.flagName());
+                out.writeUTF(event.userId());
+                out.writeBoolean(event.enabled());
+                out.writeBoolean(event.variant() != null);
+                if (event.variant() != null) {
+                    out.writeUTF(event.variant());
+                }
+                out.writeInt(event.version());
+                out.writeLong(event.timestamp());
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+    
+    synchronized Path currentFile() {
+        return currentFile;
+    }
+    
+    private void roll() throws IOException {
+        close();
+        Files.createDirectories(directory);
+        String extension = format == Format.NDJSON ? ".ndjson" : ".bin";
+        currentFile = directory.resolve("exposures-" + System.currentTimeMillis() + "-" + sequence++ + extension);
+        channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (format == Format.BINARY) {
+            channel.write(ByteBuffer.wrap(BINARY_MAGIC));
+        }
+        log.info("Writing exposure events to {}", currentFile);
+        deleteOldFiles();
+    }
+    
+    private void deleteOldFiles() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = new ArrayList<>(listing
+                    .filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches())
+                    .toList());
+        }
+        if (files.size() <= maxFiles) {
+            return;
+        }
+        files.sort(Comparator.comparingLong((Path file) -> nameNumber(file, 1))
+                .thenComparingLong(file -> nameNumber(file, 2)));
+        for (Path file : files.subList(0, files.size() - maxFiles)) {
+            if (!file.equals(currentFile) && Files.deleteIfExists(file)) {
+                log.info("Deleted old exposure file {}", file);
+            }
+        }
+    }
+    
+    private static long nameNumber(Path file, int group) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(group)) : 0;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.FlagChangeEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans flag changes out to Server-Sent Events subscribers.
+ * <p>
+ * Connections are async servlet requests, so an idle subscriber holds a socket but no
+ * thread. Each subscriber has its own bounded queue, drained by at most one of a small
+ * pool of sender threads at a time, which keeps its events in order. Publishing only
+ * enqueues, so a slow client delays nobody else; one whose queue overflows has its stream
+ * closed and resumes from the replay buffer when it reconnects. The last {@code flags.stream.replay-buffer-size} events are kept so a
+ * reconnecting client can resume from its {@code Last-Event-ID}. Event ids are
+ * {@code <epoch>-<sequence>}, where the epoch identifies this process. An id from another
+ * process, or one that has fallen out of the buffer, gets a {@value #RESET_EVENT} event
+ * telling the client to resync with {@code GET /flags}.
+ */
+@Slf4j
+@Component
+public class FlagChangeBroadcaster {
+    
+    static final String CONNECTED_EVENT = "connected";
+    static final String CHANGE_EVENT = "flag-change";
+    static final String RESET_EVENT = "reset";
+    
+    @Value("${flags.stream.replay-buffer-size:1000}")
+    private int replayBufferSize = 1000;
+    
+    @Value("${flags.stream.timeout-ms:1800000}")
+    private long timeoutMs = 1_800_000;
+    
+    /**
+     * Frames a subscriber may fall behind by before its stream is closed
+     */
+    @Value("${flags.stream.subscriber-queue-size:256}")
+    private int subscriberQueueSize = 256;
+    
+    /**
+     * Most subscribers written to at once; a client stuck in a write holds one until it fails
+     */
+    @Value("${flags.stream.sender-threads:4}")
+    private int senderThreads = 4;
+    
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger senderCount = new AtomicInteger();
+    private final ThreadPoolExecutor senders = new ThreadPoolExecutor(senderThreads, senderThreads,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "flag-stream-sender-" + senderCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    
+    // Guarded by this
+    private final ArrayDeque<StreamEvent> replayBuffer = new ArrayDeque<>();
+    private final Map<String, PublishedChange> publishedChanges = new HashMap<>();
+    private long sequence;
+    
+    @PostConstruct
+    public void init() {
+        senders.allowCoreThreadTimeOut(true);
+        if (senderThreads > senders.getMaximumPoolSize()) {
+            senders.setMaximumPoolSize(senderThreads);
+            senders.setCorePoolSize(senderThreads);
+        } else {
+            senders.setCorePoolSize(senderThreads);
+            senders.setMaximumPoolSize(senderThreads);
+        }
+    }
+    
+    /**
+     * Open a stream, replaying anything after {@code lastEventId} when it is still buffered
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(timeoutMs));
+    }
+    
+    SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+        synchronized (this) {
+            Optional<List<StreamEvent>> replay = lastEventId == null
+                    ? Optional.of(List.of())
+                    : eventsAfter(lastEventId);
+            String cursor = eventId(sequence);
+            // Room for the replay on top of the usual backlog
+            Subscriber subscriber = new Subscriber(emitter, subscriberQueueSize + 1 + replay.map(List::size).orElse(0));
+            emitter.onCompletion(() -> subscribers.remove(subscriber));
+            emitter.onTimeout(() -> subscribers.remove(subscriber));
+            emitter.onError(e -> subscribers.remove(subscriber));
+            subscribers.add(subscriber);
+            if (replay.isEmpty()) {
+                subscriber.enqueue(SseEmitter.event().id(cursor).name(RESET_EVENT).data(cursor));
+            } else {
+                subscriber.enqueue(SseEmitter.event().id(cursor).name(CONNECTED_EVENT).data(cursor));
+                for (StreamEvent event : replay.get()) {
+                    subscriber.enqueue(toSse(event));
+                }
+            }
+        }
+        log.debug("Flag stream subscriber connected, {} open", subscribers.size());
+        return emitter;
+    }
+    
+    /**
+     * Push a change to every subscriber unless a same-or-newer change for the flag was
+     * already published. Returns whether the event was sent.
+     */
+    public synchronized boolean publish(FlagChangeEvent event) {
+        long revision = event.getRevision() != null ? event.getRevision() : 0;
+        int version = event.getVersion() != null ? event.getVersion() : CacheService.DELETED_VERSION;
+        if (!isNewer(event.getFlagName(), revision, version)) {
+            return false;
+        }
+        publishedChanges.put(event.getFlagName(), new PublishedChange(revision, version));
+        
+        StreamEvent streamEvent = new StreamEvent(++sequence, event);
+        replayBuffer.addLast(streamEvent);
+        if (replayBuffer.size() > replayBufferSize) {
+            replayBuffer.removeFirst();
+        }
+        
+        if (!subscribers.isEmpty()) {
+            SseEmitter.SseEventBuilder frame = toSse(streamEvent);
+            subscribers.forEach(subscriber -> subscriber.enqueue(frame));
+        }
+        return true;
+    }
+    
+    /**
+     * Whether a change at this revision and version has not been published yet. Changes are
+     * ordered like the snapshot orders flags: revision first, then version.
+     */
+    public synchronized boolean isNewer(String flagName, long revision, int version) {
+        PublishedChange published = publishedChanges.get(flagName);
+        return published == null || FlagSnapshot.isOlder(published.revision(), published.version(), revision, version);
+    }
+    
+    /**
+     * Comment frames keep proxies from closing idle streams and surface dead connections;
+     * they also count against a stalled subscriber's queue
+     */
+    @Scheduled(fixedDelayString = "${flags.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        SseEmitter.SseEventBuilder frame = SseEmitter.event().comment("keepalive");
+        subscribers.forEach(subscriber -> subscriber.enqueue(frame));
+    }
+    
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+    
+    /**
+     * Buffered events after the given id, or empty when the client must resync
+     */
+    synchronized Optional<List<StreamEvent>> eventsAfter(String lastEventId) {
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return Optional.empty();
+        }
+        long lastSequence;
+        try {
+            lastSequence = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        
+        long oldestBuffered = replayBuffer.isEmpty() ? sequence + 1 : replayBuffer.peekFirst().sequence();
+        if (lastSequence > sequence || lastSequence < oldestBuffered - 1) {
+            return Optional.empty();
+        }
+        return Optional.of(replayBuffer.stream()
+                .filter(event -> event.sequence() > lastSequence)
+                .toList());
+    }
+    
+    String eventId(long eventSequence) {
+        return epoch + "-" + eventSequence;
+    }
+    
+    private SseEmitter.SseEventBuilder toSse(StreamEvent event) {
+        return SseEmitter.event()
+                .id(eventId(event.sequence()))
+                .name(CHANGE_EVENT)
+                .data(event.event(), MediaType.APPLICATION_JSON);
+    }
+    
+    record StreamEvent(long sequence, FlagChangeEvent event) {
+    }
+    
+    /**
+     * One stream and the frames not yet written to it. At most one sender drains the queue
+     * at a time; enqueueing never blocks.
+     */
+    private final class Subscriber implements Runnable {
+        
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean overflowed;
+        
+        // Only touched by the sender draining the queue
+        private boolean completed;
+        
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+        
+        void enqueue(SseEmitter.SseEventBuilder frame) {
+            if (overflowed) {
+                return;
+            }
+            if (!queue.offer(frame)) {
+                // Completed by the sender, which may be blocked writing to this client right now
+                overflowed = true;
+                subscribers.remove(this);
+                queue.clear();
+                log.debug("Flag stream subscriber fell {} frames behind, closing it", subscriberQueueSize);
+            }
+            schedule();
+        }
+        
+        @Override
+        public void run() {
+            try {
+                SseEmitter.SseEventBuilder frame;
+                while (!overflowed && (frame = queue.poll()) != null) {
+                    emitter.send(frame);
+                }
+                if (overflowed) {
+                    if (!completed) {
+                        completed = true;
+                        emitter.complete();
+                    }
+                    return;
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The container completes the request itself once the connection has failed
+                overflowed = true;
+                subscribers.remove(this);
+                queue.clear();
+                log.debug("Dropped flag stream subscriber: {}", e.getMessage());
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Frames, or an overflow, that arrived while the drain was finishing
+            if (overflowed || !queue.isEmpty()) {
+                schedule();
+            }
+        }
+        
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                    log.debug("Flag stream senders are shut down");
+                }
+            }
+        }
+    }
+    
+    private record PublishedChange(long revision, int version) {
+    }
+}
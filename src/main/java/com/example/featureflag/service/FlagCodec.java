@@ -0,0 +1,32 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+
+import java.io.IOException;
+
+/**
+ * Serialization of flags stored in Redis.
+ * <p>
+ * Each codec tags its own values so that {@link CacheService} can read entries written by
+ * any codec, whichever one it is configured to write with.
+ */
+public interface FlagCodec {
+    
+    /**
+     * Encode a flag together with its refresh-ahead soft expiry; 0 means none
+     */
+    byte[] encode(FeatureFlag flag, long softExpiryMillis) throws IOException;
+    
+    /**
+     * Whether a non-empty Redis value was written by this codec
+     */
+    boolean canDecode(byte[] value);
+    
+    CachedFlag decode(byte[] value) throws IOException;
+    
+    /**
+     * A decoded cache value; a soft expiry of 0 never goes stale
+     */
+    record CachedFlag(FeatureFlag flag, long softExpiryMillis) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.featureflag.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation meters: {@code flags.evaluate} latency tagged with the tier that served the
+ * flag ({@code source=snapshot|loaded}), and {@code flags.evaluations} counted per flag and
+ * result. Per-flag counters are capped at {@code flags.metrics.max-tagged-flags}; later
+ * flags share the {@value #OTHER_FLAGS} tag so arbitrary flag names cannot grow the
+ * registry without bound.
+ * <p>
+ * Recording a histogram costs about as much as a snapshot evaluation itself, so only one
+ * in {@code flags.metrics.snapshot-timer-sample} snapshot evaluations is timed; the
+ * latency distribution is unaffected and exact counts come from {@code flags.evaluations}.
+ */
+@Component
+public class FlagEvaluationMetrics {
+    
+    static final String OTHER_FLAGS = "_other";
+    
+    private final MeterRegistry meterRegistry;
+    private final Timer snapshotEvaluations;
+    private final Timer loadedEvaluations;
+    private final ConcurrentMap<String, Counter[]> flagCounters = new ConcurrentHashMap<>();
+    private final Counter[] otherFlagCounters;
+    
+    @Value("${flags.metrics.max-tagged-flags:1000}")
+    private int maxTaggedFlags = 1000;
+    
+    @Value("${flags.metrics.snapshot-timer-sample:16}")
+    private int snapshotTimerSample = 16;
+    
+    public FlagEvaluationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.snapshotEvaluations = evaluateTimer(meterRegistry, "snapshot");
+        this.loadedEvaluations = evaluateTimer(meterRegistry, "loaded");
+        this.otherFlagCounters = evaluationCounters(OTHER_FLAGS);
+    }
+    
+    /**
+     * Record one evaluation that started at {@code startNanos} ({@link System#nanoTime()})
+     */
+    public void recordEvaluation(String flagName, boolean enabled, boolean fromSnapshot, long startNanos) {
+        if (!fromSnapshot) {
+            loadedEvaluations.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        } else if (ThreadLocalRandom.current().nextInt(snapshotTimerSample) == 0) {
+            snapshotEvaluations.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+        countersFor(flagName)[enabled ? 1 : 0].increment();
+    }
+    
+    /**
+     * Count evaluations of one flag for a whole batch of users
+     */
+    public void recordBatchEvaluations(String flagName, int enabledCount, int disabledCount) {
+        Counter[] counters = countersFor(flagName);
+        counters[1].increment(enabledCount);
+        counters[0].increment(disabledCount);
+    }
+    
+    /**
+     * Drop a deleted flag's counters and free its slot under the cap
+     */
+    public void forget(String flagName) {
+        Counter[] counters = flagCounters.remove(flagName);
+        if (counters != null) {
+            meterRegistry.remove(counters[0]);
+            meterRegistry.remove(counters[1]);
+        }
+    }
+    
+    int taggedFlagCount() {
+        return flagCounters.size();
+    }
+    
+    private Counter[] countersFor(String flagName) {
+        Counter[] counters = flagCounters.get(flagName);
+        if (counters != null) {
+            return counters;
+        }
+        if (flagCounters.size() >= maxTaggedFlags) {
+            return otherFlagCounters;
+        }
+        return flagCounters.computeIfAbsent(flagName, this::evaluationCounters);
+    }
+    
+    private Counter[] evaluationCounters(String flagName) {
+        return new Counter[]{
+                Counter.builder("flags.evaluations")
+                        .description("Flag evaluations by flag and result")
+                        .tag("flag", flagName)
+                        .tag("result", "disabled")
+                        .register(meterRegistry),
+                Counter.builder("flags.evaluations")
+                        .description("Flag evaluations by flag and result")
+                        .tag("flag", flagName)
+                        .tag("result", "enabled")
+                        .register(meterRegistry)
+        };
+    }
+    
+    private static Timer evaluateTimer(MeterRegistry meterRegistry, String source) {
+        return Timer.builder("flags.evaluate")
+                .description("Single flag evaluation latency by serving tier")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
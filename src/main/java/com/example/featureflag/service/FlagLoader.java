@@ -0,0 +1,200 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.FlagLoadTimeoutException;
+import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.repository.FeatureFlagRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads single flags through the cache, collapsing concurrent misses for the same flag
+ * into one DynamoDB read and one cache write.
+ * <p>
+ * The first caller to miss becomes the leader and loads on its own thread; callers that
+ * miss while the load is in flight wait on the leader's result for at most
+ * {@code flags.load.coalesce-timeout-ms}. Flags DynamoDB does not have are cached as
+ * not found, so unknown names stop reaching the database. A stale cache hit (past its
+ * refresh-ahead soft expiry) is returned as is and reloaded once in the background,
+ * sharing the in-flight slot with any foreground load of the same flag. Outcomes are
+ * counted in {@code flags.load} tagged with
+ * {@code result=hit|stale|negative_hit|coalesced|loaded|not_found|timeout}.
+ */
+@Slf4j
+@Component
+public class FlagLoader {
+    
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_CAPACITY = 1000;
+    
+    private final FeatureFlagRepository repository;
+    private final CacheService cacheService;
+    private final ConcurrentMap<String, CompletableFuture<FeatureFlag>> inFlightLoads = new ConcurrentHashMap<>();
+    
+    private final ExecutorService refreshExecutor = new ThreadPoolExecutor(
+            REFRESH_THREADS, REFRESH_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "flag-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+    
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter negativeHits;
+    private final Counter coalesced;
+    private final Counter loaded;
+    private final Counter notFound;
+    private final Counter timeouts;
+    
+    @Value("${flags.load.coalesce-timeout-ms:2000}")
+    private long coalesceTimeoutMs = 2000;
+    
+    public FlagLoader(FeatureFlagRepository repository, CacheService cacheService, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.cacheService = cacheService;
+        this.hits = loadCounter(meterRegistry, "hit");
+        this.staleHits = loadCounter(meterRegistry, "stale");
+        this.negativeHits = loadCounter(meterRegistry, "negative_hit");
+        this.coalesced = loadCounter(meterRegistry, "coalesced");
+        this.loaded = loadCounter(meterRegistry, "loaded");
+        this.notFound = loadCounter(meterRegistry, "not_found");
+        this.timeouts = loadCounter(meterRegistry, "timeout");
+    }
+    
+    /**
+     * Get a flag from the cache, or load it from DynamoDB and cache it.
+     * Throws {@link FlagNotFoundException} for unknown flags, cached or not.
+     */
+    public FeatureFlag load(String flagName) {
+        CacheService.Lookup cached = cacheService.lookup(flagName);
+        if (cached.stale()) {
+            staleHits.increment();
+            refreshAsync(flagName);
+            return cached.flag();
+        }
+        if (cached.flag() != null) {
+            hits.increment();
+            return cached.flag();
+        }
+        if (cached.notFound()) {
+            negativeHits.increment();
+            throw new FlagNotFoundException(flagName);
+        }
+        
+        CompletableFuture<FeatureFlag> ownLoad = new CompletableFuture<>();
+        CompletableFuture<FeatureFlag> inFlight = inFlightLoads.putIfAbsent(flagName, ownLoad);
+        FeatureFlag flag = inFlight != null
+                ? awaitLoad(flagName, inFlight)
+                : loadAsLeader(flagName, ownLoad, false);
+        if (flag == null) {
+            throw new FlagNotFoundException(flagName);
+        }
+        return flag;
+    }
+    
+    /**
+     * Reload a flag into the cache in the background unless a load is already in flight
+     */
+    public void refreshAsync(String flagName) {
+        CompletableFuture<FeatureFlag> ownLoad = new CompletableFuture<>();
+        if (inFlightLoads.putIfAbsent(flagName, ownLoad) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(flagName, ownLoad));
+        } catch (RejectedExecutionException e) {
+            // Refresh queue is full; the entry stays usable until its hard TTL
+            inFlightLoads.remove(flagName, ownLoad);
+            ownLoad.cancel(false);
+            log.debug("Skipped background refresh of flag: {}", flagName);
+        }
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+    
+    /**
+     * Loads currently in flight; for tests and diagnostics
+     */
+    int inFlightCount() {
+        return inFlightLoads.size();
+    }
+    
+    private FeatureFlag loadAsLeader(String flagName, CompletableFuture<FeatureFlag> ownLoad, boolean replacingStale) {
+        loaded.increment();
+        try {
+            FeatureFlag flag = repository.findByFlagName(flagName).orElse(null);
+            if (flag != null) {
+                cacheService.putFlag(flag);
+            } else {
+                notFound.increment();
+                if (replacingStale) {
+                    // The not-found marker is only written over an empty key
+                    cacheService.evictFlag(flagName);
+                }
+                cacheService.putNotFound(flagName);
+            }
+            ownLoad.complete(flag);
+            return flag;
+        } catch (RuntimeException e) {
+            ownLoad.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(flagName, ownLoad);
+        }
+    }
+    
+    private void refresh(String flagName, CompletableFuture<FeatureFlag> ownLoad) {
+        try {
+            loadAsLeader(flagName, ownLoad, true);
+        } catch (RuntimeException e) {
+            log.warn("Background refresh failed for flag: {}", flagName, e);
+        }
+    }
+    
+    private FeatureFlag awaitLoad(String flagName, CompletableFuture<FeatureFlag> inFlight) {
+        coalesced.increment();
+        try {
+            return inFlight.get(coalesceTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("Timed out waiting for in-flight load of flag: {}", flagName);
+            throw new FlagLoadTimeoutException(flagName, coalesceTimeoutMs);
+        } catch (ExecutionException e) {
+            // Followers see the leader's failure as-is
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Failed to load feature flag", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading feature flag", e);
+        }
+    }
+    
+    private static Counter loadCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("flags.load")
+                .description("Single-flag loads by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
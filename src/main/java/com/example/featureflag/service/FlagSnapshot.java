@@ -0,0 +1,309 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled view of all known flags.
+ * <p>
+ * Flags are addressed by index into parallel primitive arrays, so evaluation reads no
+ * boxed values and takes no locks. Instances are never modified; changes produce a new
+ * snapshot that {@link FlagSnapshotManager} swaps in wholesale. A change copies the flat
+ * arrays but keeps every compiled entry it does not touch, including the prerequisite
+ * plans of flags whose prerequisites it leaves alone.
+ */
+public final class FlagSnapshot {
+    
+    private static final String[] NO_PREREQUISITES = new String[0];
+    
+    private final SegmentHandles segments;
+    private final Map<String, Integer> index;
+    private final String[] names;
+    private final boolean[] enabled;
+    private final int[] rolloutBasisPoints;
+    private final RolloutSchedule[] schedules;
+    private final TargetingRules[] rules;
+    private final FlagVariants[] variants;
+    private final String[][] prerequisiteNames;
+    private final PrerequisitePlan[] prerequisites;
+    private final BucketingEngine.Seed[] seeds;
+    private final int[] versions;
+    private final long[] revisions;
+    
+    private FlagSnapshot(SegmentHandles segments, Map<String, Integer> index, String[] names, boolean[] enabled,
+                         int[] rolloutBasisPoints, RolloutSchedule[] schedules, TargetingRules[] rules, FlagVariants[] variants,
+                         String[][] prerequisiteNames, PrerequisitePlan[] prerequisites, BucketingEngine.Seed[] seeds,
+                         int[] versions, long[] revisions) {
+        this.segments = segments;
+        this.index = index;
+        this.names = names;
+        this.enabled = enabled;
+        this.rolloutBasisPoints = rolloutBasisPoints;
+        this.schedules = schedules;
+        this.rules = rules;
+        this.variants = variants;
+        this.prerequisiteNames = prerequisiteNames;
+        this.prerequisites = prerequisites;
+        this.seeds = seeds;
+        this.versions = versions;
+        this.revisions = revisions;
+    }
+    
+    /**
+     * A snapshot without flags whose segment conditions read through {@code segments}
+     */
+    public static FlagSnapshot empty(SegmentHandles segments) {
+        return new FlagSnapshot(segments, Collections.emptyMap(), new String[0], new boolean[0], new int[0],
+                new RolloutSchedule[0], new TargetingRules[0], new FlagVariants[0], new String[0][],
+                new PrerequisitePlan[0], new BucketingEngine.Seed[0], new int[0], new long[0]);
+    }
+    
+    /**
+     * Compile a snapshot from a full set of flags
+     */
+    public static FlagSnapshot of(Collection<FeatureFlag> flags, SegmentHandles segments) {
+        return empty(segments).withAll(flags);
+    }
+    
+    /**
+     * Index of a flag, or -1 when the snapshot does not contain it
+     */
+    public int indexOf(String flagName) {
+        Integer position = index.get(flagName);
+        return position != null ? position : -1;
+    }
+    
+    public int size() {
+        return names.length;
+    }
+    
+    public String name(int position) {
+        return names[position];
+    }
+    
+    public boolean enabled(int position) {
+        return enabled[position];
+    }
+    
+    public int rolloutBasisPoints(int position) {
+        return rolloutBasisPoints[position];
+    }
+    
+    /**
+     * Compiled rollout schedule, {@link RolloutSchedule#NONE} for a flag without one
+     */
+    public RolloutSchedule schedule(int position) {
+        return schedules[position];
+    }
+    
+    /**
+     * Compiled targeting rules, {@link TargetingRules#NONE} for a flag without rules
+     */
+    public TargetingRules rules(int position) {
+        return rules[position];
+    }
+    
+    /**
+     * Compiled variant table, {@link FlagVariants#NONE} for a boolean flag
+     */
+    public FlagVariants variants(int position) {
+        return variants[position];
+    }
+    
+    /**
+     * Compiled prerequisites, {@link PrerequisitePlan#NONE} for a flag without any
+     */
+    public PrerequisitePlan prerequisites(int position) {
+        return prerequisites[position];
+    }
+    
+    public BucketingEngine.Seed seed(int position) {
+        return seeds[position];
+    }
+    
+    public int version(int position) {
+        return versions[position];
+    }
+    
+    /**
+     * Global revision of the write that produced this entry, 0 for items written before revisions
+     */
+    public long revision(int position) {
+        return revisions[position];
+    }
+    
+    /**
+     * Whether a write at this revision and version replaces the entry at the position.
+     * Versions restart when a flag is deleted and recreated, so the global revision
+     * decides; the version only breaks ties between items that predate revisions.
+     */
+    public boolean isOlderThan(int position, long revision, int version) {
+        return isOlder(revisions[position], versions[position], revision, version);
+    }
+    
+    /**
+     * Copy of this snapshot with the given flag added or replaced
+     */
+    public FlagSnapshot with(FeatureFlag flag) {
+        return withAll(List.of(flag));
+    }
+    
+    /**
+     * Copy of this snapshot with the given flags added or replaced
+     */
+    public FlagSnapshot withAll(Collection<FeatureFlag> flags) {
+        int capacity = names.length + flags.size();
+        Map<String, Integer> newIndex = new HashMap<>(index);
+        String[] newNames = Arrays.copyOf(names, capacity);
+        boolean[] newEnabled = Arrays.copyOf(enabled, capacity);
+        int[] newRollouts = Arrays.copyOf(rolloutBasisPoints, capacity);
+        RolloutSchedule[] newSchedules = Arrays.copyOf(schedules, capacity);
+        TargetingRules[] newRules = Arrays.copyOf(rules, capacity);
+        FlagVariants[] newVariants = Arrays.copyOf(variants, capacity);
+        String[][] newPrerequisites = Arrays.copyOf(prerequisiteNames, capacity);
+        PrerequisitePlan[] newPlans = Arrays.copyOf(prerequisites, capacity);
+        BucketingEngine.Seed[] newSeeds = Arrays.copyOf(seeds, capacity);
+        int[] newVersions = Arrays.copyOf(versions, capacity);
+        long[] newRevisions = Arrays.copyOf(revisions, capacity);
+        BitSet invalidated = new BitSet();
+        
+        int size = names.length;
+        for (FeatureFlag flag : flags) {
+            Integer existing = newIndex.get(flag.getFlagName());
+            int position;
+            if (existing != null) {
+                position = existing;
+            } else {
+                position = size++;
+                newIndex.put(flag.getFlagName(), position);
+                newNames[position] = flag.getFlagName();
+                newSeeds[position] = BucketingEngine.computeSeed(flag.getFlagName());
+            }
+            newEnabled[position] = Boolean.TRUE.equals(flag.getEnabled());
+            newRollouts[position] = BucketingEngine.rolloutBasisPoints(flag);
+            newSchedules[position] = RolloutSchedule.compileStored(flag.getFlagName(), flag.getRolloutSchedule());
+            newRules[position] = TargetingRules.compileStored(flag.getFlagName(), flag.getRules(), segments);
+            newVariants[position] = FlagVariants.compileStored(flag.getFlagName(), flag.getVariants());
+            String[] prerequisiteNames = flag.getPrerequisites() != null
+                    ? flag.getPrerequisites().toArray(String[]::new)
+                    : NO_PREREQUISITES;
+            if (existing == null || !Arrays.equals(newPrerequisites[position], prerequisiteNames)) {
+                newPrerequisites[position] = prerequisiteNames;
+                newPlans[position] = null;
+                invalidated.set(position);
+            }
+            newVersions[position] = flag.getVersion() != null ? flag.getVersion() : 0;
+            newRevisions[position] = flag.getRevision() != null ? flag.getRevision() : 0;
+        }
+        
+        String[] finalNames = Arrays.copyOf(newNames, size);
+        String[][] finalPrerequisites = Arrays.copyOf(newPrerequisites, size);
+        PrerequisitePlan[] plans = PrerequisitePlan.recompile(newIndex, finalNames, finalPrerequisites,
+                Arrays.copyOf(newPlans, size), invalidated);
+        return new FlagSnapshot(segments, newIndex, finalNames, Arrays.copyOf(newEnabled, size),
+                Arrays.copyOf(newRollouts, size), Arrays.copyOf(newSchedules, size), Arrays.copyOf(newRules, size),
+                Arrays.copyOf(newVariants, size), finalPrerequisites, plans, Arrays.copyOf(newSeeds, size),
+                Arrays.copyOf(newVersions, size), Arrays.copyOf(newRevisions, size));
+    }
+    
+    /**
+     * Adopt a freshly scanned snapshot, keeping this snapshot's entry wherever it holds
+     * a newer revision (a write that landed while the scan was running)
+     */
+    public FlagSnapshot reconcile(FlagSnapshot scanned) {
+        boolean[] newEnabled = scanned.enabled.clone();
+        int[] newRollouts = scanned.rolloutBasisPoints.clone();
+        RolloutSchedule[] newSchedules = scanned.schedules.clone();
+        TargetingRules[] newRules = scanned.rules.clone();
+        FlagVariants[] newVariants = scanned.variants.clone();
+        String[][] newPrerequisites = scanned.prerequisiteNames.clone();
+        PrerequisitePlan[] newPlans = scanned.prerequisites.clone();
+        int[] newVersions = scanned.versions.clone();
+        long[] newRevisions = scanned.revisions.clone();
+        BitSet invalidated = new BitSet();
+        
+        for (int position = 0; position < scanned.names.length; position++) {
+            int current = indexOf(scanned.names[position]);
+            if (current >= 0 && scanned.isOlderThan(position, revisions[current], versions[current])) {
+                newEnabled[position] = enabled[current];
+                newRollouts[position] = rolloutBasisPoints[current];
+                newSchedules[position] = schedules[current];
+                newRules[position] = rules[current];
+                newVariants[position] = variants[current];
+                if (!Arrays.equals(newPrerequisites[position], prerequisiteNames[current])) {
+                    newPrerequisites[position] = prerequisiteNames[current];
+                    newPlans[position] = null;
+                    invalidated.set(position);
+                }
+                newVersions[position] = versions[current];
+                newRevisions[position] = revisions[current];
+            }
+        }
+        
+        PrerequisitePlan.recompile(scanned.index, scanned.names, newPrerequisites, newPlans, invalidated);
+        return new FlagSnapshot(segments, scanned.index, scanned.names, newEnabled, newRollouts, newSchedules, newRules,
+                newVariants, newPrerequisites, newPlans, scanned.seeds, newVersions, newRevisions);
+    }
+    
+    /**
+     * Copy of this snapshot without the given flag. The last entry moves into the freed
+     * position, so only plans that walked through either position are rebuilt.
+     */
+    public FlagSnapshot without(String flagName) {
+        int removed = indexOf(flagName);
+        if (removed < 0) {
+            return this;
+        }
+        
+        int size = names.length - 1;
+        Map<String, Integer> newIndex = new HashMap<>(index);
+        newIndex.remove(flagName);
+        String[] newNames = Arrays.copyOf(names, size);
+        boolean[] newEnabled = Arrays.copyOf(enabled, size);
+        int[] newRollouts = Arrays.copyOf(rolloutBasisPoints, size);
+        RolloutSchedule[] newSchedules = Arrays.copyOf(schedules, size);
+        TargetingRules[] newRules = Arrays.copyOf(rules, size);
+        FlagVariants[] newVariants = Arrays.copyOf(variants, size);
+        String[][] newPrerequisites = Arrays.copyOf(prerequisiteNames, size);
+        PrerequisitePlan[] newPlans = Arrays.copyOf(prerequisites, size);
+        BucketingEngine.Seed[] newSeeds = Arrays.copyOf(seeds, size);
+        int[] newVersions = Arrays.copyOf(versions, size);
+        long[] newRevisions = Arrays.copyOf(revisions, size);
+        
+        if (removed != size) {
+            newIndex.put(names[size], removed);
+            newNames[removed] = names[size];
+            newEnabled[removed] = enabled[size];
+            newRollouts[removed] = rolloutBasisPoints[size];
+            newSchedules[removed] = schedules[size];
+            newRules[removed] = rules[size];
+            newVariants[removed] = variants[size];
+            newPrerequisites[removed] = prerequisiteNames[size];
+            newPlans[removed] = prerequisites[size];
+            newSeeds[removed] = seeds[size];
+            newVersions[removed] = versions[size];
+            newRevisions[removed] = revisions[size];
+        }
+        
+        BitSet invalidated = new BitSet();
+        invalidated.set(removed);
+        invalidated.set(size);
+        PrerequisitePlan.recompile(newIndex, newNames, newPrerequisites, newPlans, invalidated);
+        return new FlagSnapshot(segments, newIndex, newNames, newEnabled, newRollouts, newSchedules, newRules, newVariants,
+                newPrerequisites, newPlans, newSeeds, newVersions, newRevisions);
+    }
+    
+    /**
+     * Recency order of flag writes shared with the local cache: revision first, then version
+     */
+    static boolean isOlder(long revision, int version, long otherRevision, int otherVersion) {
+        return revision != otherRevision ? revision < otherRevision : version < otherVersion;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Last known good copy of every flag on local disk, so a restarted node can serve
+ * evaluations before DynamoDB or Redis answer.
+ * <p>
+ * Layout: magic, format version, write time in epoch millis, flag count and a CRC32 of
+ * the body, then each flag as a length-prefixed {@link BinaryFlagCodec} value in name
+ * order. A new file is written beside the old one, forced and renamed over it, so
+ * readers see either the previous snapshot or the next one. A file that fails any check
+ * is rejected whole rather than partly served.
+ */
+@Slf4j
+final class FlagSnapshotFile {
+    
+    private static final int MAGIC = 0x46465350;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    
+    /**
+     * Per-flag limit when reading; far above any real flag, so only corruption hits it
+     */
+    private static final int MAX_FLAG_BYTES = 16 << 20;
+    
+    private static final BinaryFlagCodec CODEC = new BinaryFlagCodec();
+    
+    private final Path file;
+    private final Path temporary;
+    
+    /**
+     * Checksum of the body last read or written, to skip rewriting an unchanged snapshot
+     */
+    private long lastChecksum = -1;
+    
+    FlagSnapshotFile(Path file) {
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    }
+    
+    Path path() {
+        return file;
+    }
+    
+    /**
+     * Flags in the file, or an empty list when there is none yet
+     */
+    List<FeatureFlag> read() throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Flag snapshot " + file + " has an invalid size of " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Flag snapshot " + file + " has an unknown format");
+            }
+            Instant writtenAt = Instant.ofEpochMilli(buffer.getLong());
+            int count = buffer.getInt();
+            long checksum = Integer.toUnsignedLong(buffer.getInt());
+            
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("Flag snapshot " + file + " failed its checksum");
+            }
+            
+            List<FeatureFlag> flags = new ArrayList<>(Math.min(count, buffer.remaining() / 4));
+            for (int i = 0; i < count; i++) {
+                int length = buffer.remaining() >= 4 ? buffer.getInt() : -1;
+                if (length <= 0 || length > MAX_FLAG_BYTES || length > buffer.remaining()) {
+                    throw new IOException("Flag snapshot " + file + " is truncated at flag " + i + " of " + count);
+                }
+                byte[] value = new byte[length];
+                buffer.get(value);
+                flags.add(CODEC.decode(value).flag());
+            }
+            lastChecksum = checksum;
+            log.info("Read {} flags from snapshot {} written at {}", flags.size(), file, writtenAt);
+            return flags;
+        }
+    }
+    
+    /**
+     * Atomically replace the file with these flags; false when they match the last
+     * snapshot read or written
+     */
+    boolean write(Collection<FeatureFlag> flags) throws IOException {
+        List<FeatureFlag> ordered = new ArrayList<>(flags);
+        ordered.sort(Comparator.comparing(FeatureFlag::getFlagName));
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, ordered.size() * 128));
+        DataOutputStream body = new DataOutputStream(bytes);
+        for (FeatureFlag flag : ordered) {
+            byte[] value = CODEC.encode(flag, 0);
+            body.writeInt(value.length);
+            body.write(value);
+        }
+        byte[] encoded = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(encoded);
+        if (crc.getValue() == lastChecksum) {
+            return false;
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(System.currentTimeMillis())
+                .putInt(ordered.size())
+                .putInt((int) crc.getValue())
+                .flip();
+        
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer payload = ByteBuffer.wrap(encoded);
+            while (header.hasRemaining() || payload.hasRemaining()) {
+                channel.write(new ByteBuffer[]{header, payload});
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(directory);
+        lastChecksum = crc.getValue();
+        return true;
+    }
+    
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename is still atomic there
+            log.debug("Could not sync directory {}", directory, e);
+        }
+    }
+}
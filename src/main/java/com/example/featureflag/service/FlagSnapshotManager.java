@@ -0,0 +1,234 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.repository.FeatureFlagRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns the current {@link FlagSnapshot}.
+ * <p>
+ * Readers get the snapshot through a single volatile read. Writers are serialized and
+ * always publish a fresh snapshot: local writes are applied directly, remote writes
+ * (seen as cache invalidations) drop the flag so the next evaluation reloads it, and a
+ * periodic full scan reconciles anything that was missed. Deletes are remembered until a
+ * scan agrees with them, so neither a scan nor a load that started before a delete can
+ * put the flag back.
+ * <p>
+ * When {@code flags.snapshot.file} is set, each scan is also persisted there and the
+ * file is read back on startup, so a restarted node serves its last known flags at once
+ * and keeps serving them while the backends are down.
+ */
+@Slf4j
+@Component
+public class FlagSnapshotManager {
+    
+    private final FeatureFlagRepository repository;
+    private final CacheService cacheService;
+    private final SegmentHandles segmentHandles;
+    
+    /**
+     * Last known good snapshot on local disk; empty disables it
+     */
+    @Value("${flags.snapshot.file:}")
+    private String snapshotFilePath = "";
+    
+    private volatile FlagSnapshot snapshot;
+    
+    private FlagSnapshotFile snapshotFile;
+    
+    /**
+     * Snapshot read from the file at startup, until the first scan completes
+     */
+    private FlagSnapshot restored;
+    
+    /**
+     * Revision of each delete applied since the last scan that agreed with it; guarded by this
+     */
+    private final Map<String, Long> tombstones = new HashMap<>();
+    
+    public FlagSnapshotManager(FeatureFlagRepository repository, CacheService cacheService,
+                               SegmentHandles segmentHandles) {
+        this.repository = repository;
+        this.cacheService = cacheService;
+        this.segmentHandles = segmentHandles;
+        this.snapshot = FlagSnapshot.empty(segmentHandles);
+    }
+    
+    @PostConstruct
+    public void init() {
+        cacheService.addInvalidationListener(this::onInvalidation);
+        if (!snapshotFilePath.isEmpty()) {
+            snapshotFile = new FlagSnapshotFile(Path.of(snapshotFilePath));
+            restore();
+        }
+    }
+    
+    /**
+     * Current snapshot; never null
+     */
+    public FlagSnapshot current() {
+        return snapshot;
+    }
+    
+    /**
+     * Add or replace a flag unless the snapshot already holds the same or a newer revision
+     */
+    public synchronized FlagSnapshot apply(FeatureFlag flag) {
+        FlagSnapshot current = snapshot;
+        int position = current.indexOf(flag.getFlagName());
+        if ((position >= 0 && !isOlder(current, position, flag)) || isDeleted(flag)) {
+            return current;
+        }
+        snapshot = current.with(flag);
+        return snapshot;
+    }
+    
+    /**
+     * Add or replace several flags in a single swap, skipping stale revisions
+     */
+    public synchronized FlagSnapshot applyAll(Collection<FeatureFlag> flags) {
+        FlagSnapshot current = snapshot;
+        List<FeatureFlag> newer = flags.stream()
+                .filter(flag -> {
+                    int position = current.indexOf(flag.getFlagName());
+                    return (position < 0 || isOlder(current, position, flag)) && !isDeleted(flag);
+                })
+                .toList();
+        if (!newer.isEmpty()) {
+            snapshot = current.withAll(newer);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Remove a flag deleted at this revision, unless the snapshot already holds a newer
+     * re-creation. Until a scan agrees, writes at or below the revision are ignored.
+     */
+    public synchronized void remove(String flagName, long revision) {
+        int position = snapshot.indexOf(flagName);
+        if (position >= 0 && revision > 0 && snapshot.revision(position) > revision) {
+            return;
+        }
+        snapshot = snapshot.without(flagName);
+        if (revision > 0) {
+            tombstones.merge(flagName, revision, Math::max);
+        }
+    }
+    
+    /**
+     * Rebuild the snapshot from a full repository scan
+     */
+    @Scheduled(fixedDelayString = "${flags.snapshot.refresh-interval-ms:60000}")
+    public void refresh() {
+        List<FeatureFlag> flags;
+        try {
+            flags = repository.findAll();
+        } catch (RuntimeException e) {
+            log.warn("Flag snapshot refresh failed, keeping {} flags: {}", snapshot.size(), e.getMessage());
+            return;
+        }
+        
+        FlagSnapshot scanned = FlagSnapshot.of(flags, segmentHandles);
+        FlagSnapshot adopted;
+        synchronized (this) {
+            adopted = withoutDeleted(scanned);
+            // A backend that keeps its counters in memory restarts them, so a restored entry cannot win on revision
+            snapshot = snapshot == restored ? adopted : snapshot.reconcile(adopted);
+            restored = null;
+        }
+        log.debug("Refreshed flag snapshot with {} flags", adopted.size());
+        persist(adopted == scanned
+                ? flags
+                : flags.stream().filter(flag -> adopted.indexOf(flag.getFlagName()) >= 0).toList());
+    }
+    
+    /**
+     * Drop scanned flags at or below a delete already applied here (the scan started before
+     * the delete), and forget the deletes the scan agrees with
+     */
+    private FlagSnapshot withoutDeleted(FlagSnapshot scanned) {
+        FlagSnapshot adopted = scanned;
+        for (Iterator<Map.Entry<String, Long>> it = tombstones.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Long> tombstone = it.next();
+            int position = scanned.indexOf(tombstone.getKey());
+            if (position >= 0 && scanned.revision(position) <= tombstone.getValue()) {
+                adopted = adopted.without(tombstone.getKey());
+            } else {
+                it.remove();
+            }
+        }
+        return adopted;
+    }
+    
+    /**
+     * Serve the flags in the snapshot file until the first scan completes
+     */
+    void restore() {
+        try {
+            List<FeatureFlag> flags = snapshotFile.read();
+            if (!flags.isEmpty()) {
+                synchronized (this) {
+                    snapshot = FlagSnapshot.of(flags, segmentHandles);
+                    restored = snapshot;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring flag snapshot {}: {}", snapshotFile.path(), e.getMessage());
+        }
+    }
+    
+    private void persist(List<FeatureFlag> flags) {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            if (snapshotFile.write(flags)) {
+                log.debug("Wrote {} flags to snapshot {}", flags.size(), snapshotFile.path());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write flag snapshot {}: {}", snapshotFile.path(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Remote change: drop the flag so the next evaluation reloads it through the caches
+     */
+    void onInvalidation(String flagName, int version, long revision) {
+        if (version == CacheService.DELETED_VERSION) {
+            remove(flagName, revision);
+            return;
+        }
+        FlagSnapshot current = snapshot;
+        int position = current.indexOf(flagName);
+        if (position >= 0 && current.isOlderThan(position, revision, version)) {
+            synchronized (this) {
+                snapshot = snapshot.without(flagName);
+            }
+        }
+    }
+    
+    /**
+     * Whether the flag is at or below a delete this node applied; called with the lock held
+     */
+    private boolean isDeleted(FeatureFlag flag) {
+        Long deletedAt = tombstones.get(flag.getFlagName());
+        return deletedAt != null && FeatureFlagRepository.revisionOf(flag) <= deletedAt;
+    }
+    
+    private static boolean isOlder(FlagSnapshot snapshot, int position, FeatureFlag flag) {
+        return snapshot.isOlderThan(position, FeatureFlagRepository.revisionOf(flag),
+                flag.getVersion() != null ? flag.getVersion() : 0);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FlagUsage;
+import com.example.featureflag.repository.FlagUsageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory evaluation counts per flag, flushed to DynamoDB as deltas.
+ * <p>
+ * Evaluations only increment striped {@link LongAdder}s, so counting never contends or
+ * does I/O on the request thread. Every {@code flags.usage.flush-interval-ms} each flag
+ * evaluated since the last flush gets one atomic {@code ADD} of its deltas; a failed
+ * flush keeps the delta for the next one. {@code lastEvaluatedAt} is the time of the
+ * flush that first saw an evaluation, so it is accurate to one flush interval.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlagUsageCounters {
+    
+    private final FlagUsageRepository repository;
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+    
+    /**
+     * Count one evaluation
+     */
+    public void record(String flagName, boolean enabled) {
+        countersFor(flagName).add(enabled ? 1 : 0, enabled ? 0 : 1);
+    }
+    
+    /**
+     * Count evaluations of one flag for a whole batch of users
+     */
+    public void recordBatch(String flagName, int enabledCount, int disabledCount) {
+        countersFor(flagName).add(enabledCount, disabledCount);
+    }
+    
+    /**
+     * Flushed totals plus what this node has counted since its last flush
+     */
+    public FlagUsage usage(String flagName) {
+        FlagUsage flushed = repository.findByFlagName(flagName).orElse(FlagUsage.none(flagName));
+        Counters local = counters.get(flagName);
+        if (local == null || local.pendingEnabled() + local.pendingDisabled() == 0) {
+            return flushed;
+        }
+        return new FlagUsage(flagName,
+                flushed.enabledCount() + local.pendingEnabled(),
+                flushed.disabledCount() + local.pendingDisabled(),
+                Instant.now());
+    }
+    
+    /**
+     * Drop a deleted flag's counters, unflushed counts included
+     */
+    public void forget(String flagName) {
+        counters.remove(flagName);
+    }
+    
+    /**
+     * Write each flag's deltas since the last successful flush
+     */
+    @Scheduled(fixedDelayString = "${flags.usage.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        Instant now = Instant.now();
+        int flushed = 0;
+        int failed = 0;
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            Counters flag = entry.getValue();
+            long enabled = flag.enabled.sum();
+            long disabled = flag.disabled.sum();
+            long enabledDelta = enabled - flag.flushedEnabled;
+            long disabledDelta = disabled - flag.flushedDisabled;
+            if (enabledDelta == 0 && disabledDelta == 0) {
+                continue;
+            }
+            try {
+                repository.addUsage(entry.getKey(), enabledDelta, disabledDelta, now);
+                flag.flushedEnabled = enabled;
+                flag.flushedDisabled = disabled;
+                flushed++;
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            log.warn("Flushed usage of {} flags; {} failed and will be retried", flushed, failed);
+        } else if (flushed > 0) {
+            log.debug("Flushed usage of {} flags", flushed);
+        }
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+    
+    private Counters countersFor(String flagName) {
+        Counters flag = counters.get(flagName);
+        return flag != null ? flag : counters.computeIfAbsent(flagName, name -> new Counters());
+    }
+    
+    private static final class Counters {
+        
+        final LongAdder enabled = new LongAdder();
+        final LongAdder disabled = new LongAdder();
+        
+        // Written only by flush(), read by usage()
+        volatile long flushedEnabled;
+        volatile long flushedDisabled;
+        
+        void add(long enabledCount, long disabledCount) {
+            if (enabledCount != 0) {
+                enabled.add(enabledCount);
+            }
+            if (disabledCount != 0) {
+                disabled.add(disabledCount);
+            }
+        }
+        
+        long pendingEnabled() {
+            return enabled.sum() - flushedEnabled;
+        }
+        
+        long pendingDisabled() {
+            return disabled.sum() - flushedDisabled;
+        }
+    }
+}
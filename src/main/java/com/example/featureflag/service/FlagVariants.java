@@ -0,0 +1,229 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.InvalidVariantException;
+import com.example.featureflag.model.BucketRange;
+import com.example.featureflag.model.FlagVariant;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled variants of a multivariate flag: a cumulative table over the 0-9999 variant
+ * buckets.
+ * <p>
+ * Every variant owns one or more bucket ranges. Compiling sorts all ranges by start into
+ * two parallel arrays, so picking a user's variant is one hash
+ * ({@link BucketingEngine#variantBucket}) and a binary search, with no allocation.
+ * <p>
+ * Ranges are assigned on write by {@link #allocate}, starting from the flag's previous
+ * assignment: variants whose weight shrank give up buckets from their top end, and only
+ * variants whose weight grew take buckets over. Users therefore only ever move out of a
+ * shrinking variant into a growing one; everyone else keeps their variant.
+ */
+@Slf4j
+public final class FlagVariants {
+    
+    public static final FlagVariants NONE = new FlagVariants(new String[0], new String[0], new int[0], new int[0]);
+    
+    private final String[] keys;
+    private final String[] values;
+    private final int[] starts;
+    private final int[] owners;
+    
+    private FlagVariants(String[] keys, String[] values, int[] starts, int[] owners) {
+        this.keys = keys;
+        this.values = values;
+        this.starts = starts;
+        this.owners = owners;
+    }
+    
+    /**
+     * Compile variants with their bucket ranges; null or empty yields {@link #NONE}
+     *
+     * @throws InvalidVariantException if the weights or ranges do not cover every bucket exactly once
+     */
+    public static FlagVariants compile(List<FlagVariant> variants) {
+        if (variants == null || variants.isEmpty()) {
+            return NONE;
+        }
+        validateWeights(variants);
+        
+        String[] keys = new String[variants.size()];
+        String[] values = new String[variants.size()];
+        List<int[]> ranges = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            FlagVariant variant = variants.get(i);
+            keys[i] = variant.getKey();
+            values[i] = variant.getValue();
+            int owned = 0;
+            for (BucketRange range : variant.getBuckets() != null ? variant.getBuckets() : List.<BucketRange>of()) {
+                if (range == null || range.getStart() == null || range.getEnd() == null
+                        || range.getStart() < 0 || range.getStart() >= range.getEnd()
+                        || range.getEnd() > BucketingEngine.MAX_BASIS_POINTS) {
+                    throw new InvalidVariantException("variant " + keys[i] + " has an invalid bucket range");
+                }
+                ranges.add(new int[]{range.getStart(), range.getEnd(), i});
+                owned += range.getEnd() - range.getStart();
+            }
+            if (owned != variant.getWeight()) {
+                throw new InvalidVariantException("variant " + keys[i] + " owns " + owned
+                        + " buckets but weighs " + variant.getWeight());
+            }
+        }
+        
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] starts = new int[ranges.size()];
+        int[] owners = new int[ranges.size()];
+        int count = 0;
+        int end = 0;
+        for (int[] range : ranges) {
+            if (range[0] != end) {
+                throw new InvalidVariantException("bucket ranges overlap or leave a gap at " + end);
+            }
+            if (count == 0 || owners[count - 1] != range[2]) {
+                starts[count] = range[0];
+                owners[count++] = range[2];
+            }
+            end = range[1];
+        }
+        return new FlagVariants(keys, values, Arrays.copyOf(starts, count), Arrays.copyOf(owners, count));
+    }
+    
+    /**
+     * Compile variants read from storage or the cache. Variants that no longer compile
+     * are logged and dropped, so the flag still evaluates but serves no variant.
+     */
+    static FlagVariants compileStored(String flagName, List<FlagVariant> variants) {
+        try {
+            return compile(variants);
+        } catch (InvalidVariantException e) {
+            log.error("Flag {} has invalid variants and serves none: {}", flagName, e.getMessage());
+            return NONE;
+        }
+    }
+    
+    /**
+     * Assign bucket ranges to the requested variants, moving as few buckets as possible
+     * away from the previous assignment. Variants are matched by key; ranges sent by the
+     * caller are ignored. An empty request removes all variants.
+     *
+     * @throws InvalidVariantException if the keys or weights are invalid
+     */
+    public static List<FlagVariant> allocate(String flagName, List<FlagVariant> previous,
+                                             List<FlagVariant> requested) {
+        if (requested.isEmpty()) {
+            return List.of();
+        }
+        validateWeights(requested);
+        
+        Map<String, Integer> indexByKey = new HashMap<>();
+        for (int i = 0; i < requested.size(); i++) {
+            indexByKey.put(requested.get(i).getKey(), i);
+        }
+        int[] bucketOwners = new int[BucketingEngine.MAX_BASIS_POINTS];
+        Arrays.fill(bucketOwners, -1);
+        int[] owned = new int[requested.size()];
+        FlagVariants current = compileStored(flagName, previous);
+        for (int range = 0; range < current.starts.length; range++) {
+            Integer owner = indexByKey.get(current.keys[current.owners[range]]);
+            if (owner == null) {
+                continue;
+            }
+            int end = range + 1 < current.starts.length ? current.starts[range + 1] : BucketingEngine.MAX_BASIS_POINTS;
+            Arrays.fill(bucketOwners, current.starts[range], end, owner);
+            owned[owner] += end - current.starts[range];
+        }
+        
+        // Shrinking variants release their highest buckets...
+        for (int bucket = bucketOwners.length - 1; bucket >= 0; bucket--) {
+            int owner = bucketOwners[bucket];
+            if (owner >= 0 && owned[owner] > requested.get(owner).getWeight()) {
+                bucketOwners[bucket] = -1;
+                owned[owner]--;
+            }
+        }
+        // ...and growing ones take the lowest free buckets, in request order
+        int free = 0;
+        for (int i = 0; i < requested.size(); i++) {
+            while (owned[i] < requested.get(i).getWeight()) {
+                while (bucketOwners[free] >= 0) {
+                    free++;
+                }
+                bucketOwners[free] = i;
+                owned[i]++;
+            }
+        }
+        
+        List<List<BucketRange>> buckets = new ArrayList<>();
+        requested.forEach(variant -> buckets.add(new ArrayList<>()));
+        for (int start = 0, end; start < bucketOwners.length; start = end) {
+            end = start + 1;
+            while (end < bucketOwners.length && bucketOwners[end] == bucketOwners[start]) {
+                end++;
+            }
+            buckets.get(bucketOwners[start]).add(new BucketRange(start, end));
+        }
+        
+        List<FlagVariant> allocated = new ArrayList<>(requested.size());
+        for (int i = 0; i < requested.size(); i++) {
+            FlagVariant variant = requested.get(i);
+            allocated.add(FlagVariant.builder()
+                    .key(variant.getKey())
+                    .value(variant.getValue())
+                    .weight(variant.getWeight())
+                    .buckets(buckets.get(i))
+                    .build());
+        }
+        return allocated;
+    }
+    
+    public int size() {
+        return keys.length;
+    }
+    
+    public String key(int variant) {
+        return keys[variant];
+    }
+    
+    public String value(int variant) {
+        return values[variant];
+    }
+    
+    /**
+     * Index of the user's variant, or -1 for a flag without variants
+     */
+    public int variantFor(BucketingEngine.Seed seed, String userId) {
+        if (owners.length == 0) {
+            return -1;
+        }
+        int range = Arrays.binarySearch(starts, BucketingEngine.variantBucket(seed, userId));
+        return owners[range >= 0 ? range : -range - 2];
+    }
+    
+    private static void validateWeights(List<FlagVariant> variants) {
+        int total = 0;
+        for (int i = 0; i < variants.size(); i++) {
+            FlagVariant variant = variants.get(i);
+            if (variant == null || variant.getKey() == null || variant.getKey().isBlank()) {
+                throw new InvalidVariantException("variant " + (i + 1) + " needs a key");
+            }
+            for (int j = 0; j < i; j++) {
+                if (variants.get(j).getKey().equals(variant.getKey())) {
+                    throw new InvalidVariantException("duplicate key " + variant.getKey());
+                }
+            }
+            if (variant.getWeight() == null || variant.getWeight() < 0
+                    || variant.getWeight() > BucketingEngine.MAX_BASIS_POINTS) {
+                throw new InvalidVariantException("variant " + variant.getKey() + " needs a weight between 0 and 10000");
+            }
+            total += variant.getWeight();
+        }
+        if (total != BucketingEngine.MAX_BASIS_POINTS) {
+            throw new InvalidVariantException("weights add up to " + total + " instead of 10000");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Jackson JSON values, optionally prefixed with {@code <softExpiryMillis>:}.
+ * This is the format written before the binary codec existed.
+ */
+public final class JsonFlagCodec implements FlagCodec {
+    
+    private final ObjectMapper objectMapper;
+    
+    public JsonFlagCodec() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+    }
+    
+    @Override
+    public byte[] encode(FeatureFlag flag, long softExpiryMillis) throws IOException {
+        String json = objectMapper.writeValueAsString(flag);
+        return (softExpiryMillis > 0 ? softExpiryMillis + ":" + json : json).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public boolean canDecode(byte[] value) {
+        return value[0] == '{' || (value[0] >= '0' && value[0] <= '9');
+    }
+    
+    @Override
+    public CachedFlag decode(byte[] value) throws IOException {
+        if (value[0] == '{') {
+            return new CachedFlag(objectMapper.readValue(value, FeatureFlag.class), 0);
+        }
+        long softExpiry = 0;
+        int i = 0;
+        for (; i < value.length && value[i] != ':'; i++) {
+            if (value[i] < '0' || value[i] > '9') {
+                throw new IOException("Malformed soft expiry prefix");
+            }
+            softExpiry = softExpiry * 10 + (value[i] - '0');
+        }
+        if (i == value.length) {
+            throw new IOException("Missing soft expiry separator");
+        }
+        FeatureFlag flag = objectMapper.readValue(value, i + 1, value.length - i - 1, FeatureFlag.class);
+        return new CachedFlag(flag, softExpiry);
+    }
+}
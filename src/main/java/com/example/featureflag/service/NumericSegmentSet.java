@@ -0,0 +1,147 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.SegmentKeyType;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of numeric user IDs, laid out like a Roaring bitmap.
+ * <p>
+ * IDs are split into the high 48 bits, kept in a sorted key array, and the low 16 bits,
+ * kept per key in a container: a sorted {@code char[]} while the key has at most
+ * {@value #ARRAY_CONTAINER_MAX} members, otherwise a fixed 8 KiB bitset. Dense ranges
+ * cost one bit per ID and sparse ones two bytes. A lookup parses the ID without
+ * allocating, binary searches the keys and probes one container.
+ */
+public final class NumericSegmentSet implements SegmentMembership {
+    
+    /**
+     * Above this many members a bitset (8192 bytes) is smaller than a sorted array
+     */
+    static final int ARRAY_CONTAINER_MAX = 4096;
+    
+    private static final int BITSET_WORDS = 1 << 16 >>> 6;
+    
+    private final long[] keys;
+    private final char[][] arrays;
+    private final long[][] bitsets;
+    private final long size;
+    
+    private NumericSegmentSet(long[] keys, char[][] arrays, long[][] bitsets, long size) {
+        this.keys = keys;
+        this.arrays = arrays;
+        this.bitsets = bitsets;
+        this.size = size;
+    }
+    
+    /**
+     * Build from IDs in any order; duplicates are dropped. The array is sorted in place.
+     */
+    public static NumericSegmentSet of(long[] ids, int count) {
+        Arrays.sort(ids, 0, count);
+        int keyCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || ids[i] >>> 16 != ids[i - 1] >>> 16) {
+                keyCount++;
+            }
+        }
+        long[] keys = new long[keyCount];
+        char[][] arrays = new char[keyCount][];
+        long[][] bitsets = new long[keyCount][];
+        long size = 0;
+        int key = 0;
+        for (int start = 0; start < count; key++) {
+            long high = ids[start] >>> 16;
+            int end = start;
+            int distinct = 0;
+            while (end < count && ids[end] >>> 16 == high) {
+                if (end == start || ids[end] != ids[end - 1]) {
+                    distinct++;
+                }
+                end++;
+            }
+            keys[key] = high;
+            if (distinct <= ARRAY_CONTAINER_MAX) {
+                char[] values = new char[distinct];
+                for (int i = start, v = 0; i < end; i++) {
+                    if (i == start || ids[i] != ids[i - 1]) {
+                        values[v++] = (char) ids[i];
+                    }
+                }
+                arrays[key] = values;
+            } else {
+                long[] bits = new long[BITSET_WORDS];
+                for (int i = start; i < end; i++) {
+                    int low = (int) (ids[i] & 0xFFFF);
+                    bits[low >>> 6] |= 1L << low;
+                }
+                bitsets[key] = bits;
+            }
+            size += distinct;
+            start = end;
+        }
+        return new NumericSegmentSet(keys, arrays, bitsets, size);
+    }
+    
+    @Override
+    public boolean contains(String userId) {
+        long id = parseId(userId);
+        return id >= 0 && contains(id);
+    }
+    
+    public boolean contains(long id) {
+        int key = Arrays.binarySearch(keys, id >>> 16);
+        if (key < 0) {
+            return false;
+        }
+        int low = (int) (id & 0xFFFF);
+        long[] bits = bitsets[key];
+        if (bits != null) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(arrays[key], (char) low) >= 0;
+    }
+    
+    @Override
+    public long size() {
+        return size;
+    }
+    
+    @Override
+    public long memoryBytes() {
+        // Array headers are 16 bytes and references 4 with compressed oops
+        long bytes = 16 + 8L * keys.length + 2 * (16 + 4L * keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            bytes += bitsets[i] != null ? 16 + 8L * BITSET_WORDS : 16 + 2L * arrays[i].length;
+        }
+        return bytes;
+    }
+    
+    @Override
+    public SegmentKeyType keyType() {
+        return SegmentKeyType.NUMERIC;
+    }
+    
+    /**
+     * Canonical non-negative decimal ID, or -1 for anything else (including leading zeros,
+     * so {@code "042"} is not user 42)
+     */
+    static long parseId(String userId) {
+        int length = userId.length();
+        if (length == 0 || length > 19 || (length > 1 && userId.charAt(0) == '0')) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < length; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+            if (id < 0) {
+                return -1;
+            }
+        }
+        return id;
+    }
+}
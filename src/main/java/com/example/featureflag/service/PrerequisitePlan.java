@@ -0,0 +1,215 @@
+package com.example.featureflag.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled prerequisites of one flag within a {@link FlagSnapshot}.
+ * <p>
+ * The flag's transitive prerequisites are listed in topological order, each after its
+ * own prerequisites and each once however many paths lead to it. Evaluating them in
+ * that order with a bitmask of results needs no recursion, no lookups by name and no
+ * allocation: a prerequisite is on when its own bits in {@code requireMasks} are set
+ * and it passes its own targeting. A plan is rebuilt whenever a flag it walks through
+ * changes its prerequisites, moves or disappears, so it always reflects the prerequisites
+ * of the flags it points at.
+ * <p>
+ * A flag whose prerequisites form a cycle, name a flag the snapshot does not hold or
+ * exceed {@value #MAX_PREREQUISITES} is not evaluable and evaluates to off.
+ */
+public final class PrerequisitePlan {
+    
+    /**
+     * Transitive prerequisites per flag; keeps the results in one long
+     */
+    public static final int MAX_PREREQUISITES = 64;
+    
+    public static final PrerequisitePlan NONE = new PrerequisitePlan(new int[0], new long[0], 0, List.of(), null);
+    
+    private final int[] order;
+    private final long[] requireMasks;
+    private final long rootMask;
+    private final List<String> unknown;
+    private final String error;
+    
+    private PrerequisitePlan(int[] order, long[] requireMasks, long rootMask, List<String> unknown, String error) {
+        this.order = order;
+        this.requireMasks = requireMasks;
+        this.rootMask = rootMask;
+        this.unknown = unknown;
+        this.error = error;
+    }
+    
+    /**
+     * Complete the plans of a snapshot derived from an earlier one, in place. {@code plans}
+     * holds the earlier plan of each flag, null where the flag is new or its prerequisites
+     * changed; {@code invalidated} marks earlier positions that no longer hold the same flag
+     * with the same prerequisites. Missing plans are compiled, and kept ones are compiled
+     * again only when they walk through an invalidated position or were not evaluable, so a
+     * write that leaves prerequisites alone walks nothing.
+     */
+    static PrerequisitePlan[] recompile(Map<String, Integer> index, String[] names, String[][] prerequisites,
+                                        PrerequisitePlan[] plans, BitSet invalidated) {
+        boolean structureChanged = !invalidated.isEmpty();
+        Walker walker = null;
+        for (int position = 0; position < names.length; position++) {
+            PrerequisitePlan plan = plans[position];
+            if (prerequisites[position].length == 0) {
+                plans[position] = NONE;
+                continue;
+            }
+            if (plan != null && !(structureChanged && (!plan.evaluable() || plan.walksThrough(invalidated)))) {
+                continue;
+            }
+            if (walker == null) {
+                walker = new Walker(index, names, prerequisites);
+            }
+            plans[position] = walker.plan(position);
+        }
+        return plans;
+    }
+    
+    /**
+     * False when the flag must evaluate to off; {@link #error()} says why
+     */
+    public boolean evaluable() {
+        return error == null;
+    }
+    
+    public String error() {
+        return error;
+    }
+    
+    /**
+     * Prerequisites (at any depth) missing from the snapshot
+     */
+    public List<String> unknown() {
+        return unknown;
+    }
+    
+    public int size() {
+        return order.length;
+    }
+    
+    /**
+     * Snapshot position of the i-th prerequisite in evaluation order
+     */
+    public int prerequisite(int i) {
+        return order[i];
+    }
+    
+    /**
+     * Whether the i-th prerequisite's own prerequisites are on, given the results so far
+     * (bit j set when the j-th prerequisite is on)
+     */
+    public boolean requirementsMet(long on, int i) {
+        return (on & requireMasks[i]) == requireMasks[i];
+    }
+    
+    /**
+     * Whether the flag's direct prerequisites are on
+     */
+    public boolean rootRequirementsMet(long on) {
+        return (on & rootMask) == rootMask;
+    }
+    
+    private boolean walksThrough(BitSet positions) {
+        for (int position : order) {
+            if (positions.get(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Depth-first walk that emits prerequisites in post-order; marks are stamped per root
+     * so the arrays are shared across all flags of a snapshot
+     */
+    private static final class Walker {
+        
+        private final Map<String, Integer> index;
+        private final String[] names;
+        private final String[][] prerequisites;
+        private final int[] visited;
+        private final boolean[] onPath;
+        private final int[] local;
+        private int stamp;
+        private List<Integer> order;
+        private Set<String> unknown;
+        private String error;
+        
+        Walker(Map<String, Integer> index, String[] names, String[][] prerequisites) {
+            this.index = index;
+            this.names = names;
+            this.prerequisites = prerequisites;
+            this.visited = new int[names.length];
+            this.onPath = new boolean[names.length];
+            this.local = new int[names.length];
+        }
+        
+        PrerequisitePlan plan(int root) {
+            stamp++;
+            order = new ArrayList<>();
+            unknown = new LinkedHashSet<>();
+            error = null;
+            visit(root, root, 0);
+            
+            if (!unknown.isEmpty()) {
+                return new PrerequisitePlan(new int[0], new long[0], 0, List.copyOf(unknown),
+                        "unknown prerequisite " + unknown.iterator().next());
+            }
+            if (error != null) {
+                return new PrerequisitePlan(new int[0], new long[0], 0, List.of(), error);
+            }
+            
+            int[] positions = new int[order.size()];
+            long[] requireMasks = new long[order.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = order.get(i);
+                requireMasks[i] = mask(positions[i]);
+            }
+            return new PrerequisitePlan(positions, requireMasks, mask(root), List.of(), null);
+        }
+        
+        private void visit(int position, int root, int depth) {
+            visited[position] = stamp;
+            onPath[position] = true;
+            for (String name : prerequisites[position]) {
+                Integer prerequisite = index.get(name);
+                if (prerequisite == null) {
+                    unknown.add(name);
+                } else if (onPath[prerequisite]) {
+                    error = "cycle through " + name;
+                } else if (visited[prerequisite] != stamp) {
+                    if (depth == MAX_PREREQUISITES) {
+                        error = "more than " + MAX_PREREQUISITES + " prerequisites";
+                    } else {
+                        visit(prerequisite, root, depth + 1);
+                    }
+                }
+            }
+            onPath[position] = false;
+            if (position != root) {
+                if (order.size() == MAX_PREREQUISITES) {
+                    error = "more than " + MAX_PREREQUISITES + " prerequisites";
+                    return;
+                }
+                local[position] = order.size();
+                order.add(position);
+            }
+        }
+        
+        private long mask(int position) {
+            long mask = 0;
+            for (String name : prerequisites[position]) {
+                mask |= 1L << local[index.get(name)];
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.featureflag.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker guarding Redis calls.
+ * <p>
+ * While closed it records the outcome of the last {@code windowSize} calls, counting calls
+ * slower than the slow-call threshold as failures. Once the window is full and the failure
+ * rate reaches the threshold it opens, and {@link #tryAcquire()} rejects every call without
+ * touching Redis. After the open duration a few probe calls are let through (half-open):
+ * if all of them succeed it closes again, otherwise it reopens.
+ */
+@Slf4j
+public class RedisCircuitBreaker {
+    
+    static final int HALF_OPEN_PROBES = 3;
+    
+    private final boolean enabled;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openDurationNanos;
+    private final LongSupplier nanoClock;
+    
+    /**
+     * Ring buffer of recent outcomes; true marks a failed or slow call
+     */
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    
+    private volatile State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesIssued;
+    private int probesSucceeded;
+    private final Map<State, Long> transitions = new EnumMap<>(State.class);
+    private Instant lastTransitionAt;
+    
+    public RedisCircuitBreaker(boolean enabled, double failureRateThreshold, long slowCallMs,
+                               int windowSize, long openDurationMs) {
+        this(enabled, failureRateThreshold, slowCallMs, windowSize, openDurationMs, System::nanoTime);
+    }
+    
+    RedisCircuitBreaker(boolean enabled, double failureRateThreshold, long slowCallMs,
+                        int windowSize, long openDurationMs, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.nanoClock = nanoClock;
+    }
+    
+    /**
+     * Whether a Redis call may go ahead; every permitted call must be reported back
+     * through {@link #onSuccess} or {@link #onFailure}
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAtNanos < openDurationNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesIssued >= HALF_OPEN_PROBES) {
+                    return false;
+                }
+                probesIssued++;
+            }
+            return true;
+        }
+    }
+    
+    public void onSuccess(long elapsedNanos) {
+        record(elapsedNanos >= slowCallNanos);
+    }
+    
+    public void onFailure(long elapsedNanos) {
+        record(true);
+    }
+    
+    public State state() {
+        return state;
+    }
+    
+    /**
+     * Point-in-time view for health reporting
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(state, enabled, recorded, failureRate(), Map.copyOf(transitions), lastTransitionAt);
+    }
+    
+    private synchronized void record(boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        switch (state) {
+            case CLOSED -> {
+                if (recorded == outcomes.length) {
+                    failures -= outcomes[next] ? 1 : 0;
+                } else {
+                    recorded++;
+                }
+                outcomes[next] = failed;
+                failures += failed ? 1 : 0;
+                next = (next + 1) % outcomes.length;
+                if (recorded == outcomes.length && failureRate() >= failureRateThreshold) {
+                    transitionTo(State.OPEN);
+                }
+            }
+            case HALF_OPEN -> {
+                if (failed) {
+                    transitionTo(State.OPEN);
+                } else if (++probesSucceeded >= HALF_OPEN_PROBES) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case OPEN -> {
+                // Late result of a call admitted before the breaker opened
+            }
+        }
+    }
+    
+    private double failureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+    
+    private void transitionTo(State target) {
+        State previous = state;
+        switch (target) {
+            case OPEN -> openedAtNanos = nanoClock.getAsLong();
+            case HALF_OPEN -> {
+                probesIssued = 0;
+                probesSucceeded = 0;
+            }
+            case CLOSED -> {
+                recorded = 0;
+                next = 0;
+                failures = 0;
+            }
+        }
+        transitions.merge(target, 1L, Long::sum);
+        lastTransitionAt = Instant.now();
+        state = target;
+        if (target == State.OPEN) {
+            log.warn("Redis circuit breaker {} -> OPEN; bypassing Redis for {}ms",
+                    previous, TimeUnit.NANOSECONDS.toMillis(openDurationNanos));
+        } else {
+            log.info("Redis circuit breaker {} -> {}", previous, target);
+        }
+    }
+    
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    /**
+     * Breaker state, the failure rate over the current window and transition counts per target state
+     */
+    public record Snapshot(State state, boolean enabled, int windowCalls, double failureRate,
+                           Map<State, Long> transitions, Instant lastTransitionAt) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.featureflag.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the Redis circuit breaker under {@code /actuator/health/redisCircuitBreaker}.
+ * <p>
+ * Always UP: with the breaker open the service keeps serving from the local cache and
+ * DynamoDB, so an open circuit should alert rather than take the instance out of rotation.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisCircuitBreakerHealthIndicator implements HealthIndicator {
+    
+    private final CacheService cacheService;
+    
+    @Override
+    public Health health() {
+        RedisCircuitBreaker.Snapshot snapshot = cacheService.circuitBreaker().snapshot();
+        return Health.up()
+                .withDetail("state", snapshot.state())
+                .withDetail("enabled", snapshot.enabled())
+                .withDetail("windowCalls", snapshot.windowCalls())
+                .withDetail("failureRate", snapshot.failureRate())
+                .withDetail("transitions", snapshot.transitions())
+                .withDetail("lastTransitionAt", snapshot.lastTransitionAt() != null
+                        ? snapshot.lastTransitionAt().toString() : "never")
+                .build();
+    }
+}
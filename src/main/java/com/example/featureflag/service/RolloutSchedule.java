@@ -0,0 +1,107 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.InvalidRolloutScheduleException;
+import com.example.featureflag.model.RolloutStep;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Compiled rollout schedule of a flag: step start times and rollouts in two parallel
+ * arrays.
+ * <p>
+ * The effective rollout is computed from the clock at evaluation time, so a ramp from 1%
+ * to 100% needs no writes, version bumps or cache invalidations once it is stored. Before
+ * the first step the flag's own rollout applies; after the last step, the last step's.
+ * Bucketing does not change with the rollout, so while it rises every user who was in
+ * stays in.
+ */
+@Slf4j
+public final class RolloutSchedule {
+    
+    public static final RolloutSchedule NONE = new RolloutSchedule(new long[0], new int[0], new boolean[0]);
+    
+    private final long[] startMillis;
+    private final int[] basisPoints;
+    private final boolean[] ramps;
+    
+    private RolloutSchedule(long[] startMillis, int[] basisPoints, boolean[] ramps) {
+        this.startMillis = startMillis;
+        this.basisPoints = basisPoints;
+        this.ramps = ramps;
+    }
+    
+    /**
+     * Compile a schedule; null or empty yields {@link #NONE}
+     *
+     * @throws InvalidRolloutScheduleException if a step is incomplete, out of range or out of order
+     */
+    public static RolloutSchedule compile(List<RolloutStep> steps) {
+        if (steps == null || steps.isEmpty()) {
+            return NONE;
+        }
+        long[] startMillis = new long[steps.size()];
+        int[] basisPoints = new int[steps.size()];
+        boolean[] ramps = new boolean[steps.size()];
+        for (int i = 0; i < startMillis.length; i++) {
+            RolloutStep step = steps.get(i);
+            if (step == null || step.getAt() == null) {
+                throw new InvalidRolloutScheduleException("step " + (i + 1) + " needs a start time");
+            }
+            if (step.getRolloutBasisPoints() == null || step.getRolloutBasisPoints() < 0
+                    || step.getRolloutBasisPoints() > BucketingEngine.MAX_BASIS_POINTS) {
+                throw new InvalidRolloutScheduleException("step " + (i + 1) + " needs a rollout between 0 and 10000");
+            }
+            startMillis[i] = step.getAt().toEpochMilli();
+            basisPoints[i] = step.getRolloutBasisPoints();
+            ramps[i] = Boolean.TRUE.equals(step.getRamp());
+            if (i > 0 && startMillis[i] <= startMillis[i - 1]) {
+                throw new InvalidRolloutScheduleException("step " + (i + 1) + " does not start after step " + i);
+            }
+        }
+        if (ramps[0]) {
+            throw new InvalidRolloutScheduleException("the first step has no previous step to ramp from");
+        }
+        return new RolloutSchedule(startMillis, basisPoints, ramps);
+    }
+    
+    /**
+     * Compile a schedule read from storage or the cache. A schedule that no longer
+     * compiles is logged and dropped, so the flag keeps its own rollout.
+     */
+    static RolloutSchedule compileStored(String flagName, List<RolloutStep> steps) {
+        try {
+            return compile(steps);
+        } catch (InvalidRolloutScheduleException e) {
+            log.error("Flag {} has an invalid rollout schedule and ignores it: {}", flagName, e.getMessage());
+            return NONE;
+        }
+    }
+    
+    /**
+     * Rollout in effect now; {@code flagRollout} before the first step. The clock is
+     * only read for flags with a schedule.
+     */
+    public int rolloutBasisPoints(LongSupplier clock, int flagRollout) {
+        if (startMillis.length == 0) {
+            return flagRollout;
+        }
+        long now = clock.getAsLong();
+        // Last step started at or before now; -1 before the first
+        int step = Arrays.binarySearch(startMillis, now);
+        if (step < 0) {
+            step = -step - 2;
+        }
+        if (step < 0) {
+            return flagRollout;
+        }
+        int next = step + 1;
+        if (next < startMillis.length && ramps[next]) {
+            return basisPoints[step] + (int) ((basisPoints[next] - basisPoints[step]) * (now - startMillis[step])
+                    / (startMillis[next] - startMillis[step]));
+        }
+        return basisPoints[step];
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.SegmentKeyType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage encoding of segment members, split into chunks that each fit in one DynamoDB
+ * item. Numeric chunks hold sorted IDs as varint deltas (one or two bytes per member for
+ * dense ranges); string chunks hold length-prefixed UTF-8 IDs. Every chunk decodes on its
+ * own, so a chunk boundary never splits a member.
+ */
+public final class SegmentChunks {
+    
+    private SegmentChunks() {
+    }
+    
+    /**
+     * Encode sorted, distinct numeric IDs
+     */
+    public static List<byte[]> encodeNumeric(long[] sortedIds, int count, int maxChunkBytes) {
+        List<byte[]> chunks = new ArrayList<>();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (chunk.size() + 10 > maxChunkBytes) {
+                chunks.add(chunk.toByteArray());
+                chunk.reset();
+                previous = 0;
+            }
+            writeVarLong(chunk, sortedIds[i] - previous);
+            previous = sortedIds[i];
+        }
+        if (chunk.size() > 0) {
+            chunks.add(chunk.toByteArray());
+        }
+        return chunks;
+    }
+    
+    public static List<byte[]> encodeStrings(List<String> ids, int maxChunkBytes) {
+        List<byte[]> chunks = new ArrayList<>();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        for (String id : ids) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            if (chunk.size() > 0 && chunk.size() + 5 + bytes.length > maxChunkBytes) {
+                chunks.add(chunk.toByteArray());
+                chunk.reset();
+            }
+            writeVarLong(chunk, bytes.length);
+            chunk.writeBytes(bytes);
+        }
+        if (chunk.size() > 0) {
+            chunks.add(chunk.toByteArray());
+        }
+        return chunks;
+    }
+    
+    /**
+     * Decode every chunk of a segment straight into its in-memory form
+     */
+    public static SegmentMembership decode(SegmentKeyType keyType, List<byte[]> chunks) throws IOException {
+        if (keyType == SegmentKeyType.NUMERIC) {
+            long[] ids = new long[1024];
+            int count = 0;
+            for (byte[] chunk : chunks) {
+                Reader in = new Reader(chunk);
+                long previous = 0;
+                while (in.hasRemaining()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    previous += in.readVarLong();
+                    ids[count++] = previous;
+                }
+            }
+            return NumericSegmentSet.of(ids, count);
+        }
+        List<String> ids = new ArrayList<>();
+        for (byte[] chunk : chunks) {
+            Reader in = new Reader(chunk);
+            while (in.hasRemaining()) {
+                ids.add(in.readString());
+            }
+        }
+        return StringSegmentSet.of(ids);
+    }
+    
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static final class Reader {
+        
+        private final byte[] chunk;
+        private int position;
+        
+        Reader(byte[] chunk) {
+            this.chunk = chunk;
+        }
+        
+        boolean hasRemaining() {
+            return position < chunk.length;
+        }
+        
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= chunk.length) {
+                    throw new EOFException("Truncated segment chunk");
+                }
+                int b = chunk[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in segment chunk");
+        }
+        
+        String readString() throws IOException {
+            long length = readVarLong();
+            if (length > chunk.length - position) {
+                throw new EOFException("Truncated segment chunk");
+            }
+            String value = new String(chunk, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
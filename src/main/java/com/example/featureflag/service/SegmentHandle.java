@@ -0,0 +1,34 @@
+package com.example.featureflag.service;
+
+/**
+ * Stable reference to the current members of one segment.
+ * <p>
+ * Compiled targeting rules hold handles rather than member sets, so uploading new members
+ * swaps one volatile field instead of recompiling every flag that names the segment, and
+ * a rule can name a segment this node has not loaded yet. Handles are handed out by
+ * {@link SegmentHandles}, one per name.
+ */
+public final class SegmentHandle {
+    
+    private final String segmentName;
+    private volatile SegmentMembership membership;
+    
+    SegmentHandle(String segmentName) {
+        this.segmentName = segmentName;
+    }
+    
+    public String segmentName() {
+        return segmentName;
+    }
+    
+    /**
+     * Current members, or null while the segment is unknown to this node
+     */
+    public SegmentMembership membership() {
+        return membership;
+    }
+    
+    void install(SegmentMembership membership) {
+        this.membership = membership;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.featureflag.service;
+
+import com.google.common.collect.MapMaker;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link SegmentHandle}s of one application context, one per segment name.
+ * <p>
+ * Handles of loaded segments are held here; any other handle lives only as long as a
+ * compiled rule still names it. Releasing a deleted segment therefore drops its handle
+ * once no flag refers to it, while a rule that outlives the delete keeps the same handle
+ * and sees the members of a segment re-uploaded under that name.
+ */
+@Component
+public class SegmentHandles {
+    
+    private final ConcurrentMap<String, SegmentHandle> handles = new MapMaker().weakValues().makeMap();
+    
+    private final ConcurrentMap<String, SegmentHandle> loaded = new ConcurrentHashMap<>();
+    
+    /**
+     * The handle for a segment name, created on first use
+     */
+    public SegmentHandle named(String segmentName) {
+        SegmentHandle handle = handles.get(segmentName);
+        return handle != null ? handle : handles.computeIfAbsent(segmentName, SegmentHandle::new);
+    }
+    
+    /**
+     * Publish a segment's members and keep its handle while they are loaded
+     */
+    SegmentHandle install(String segmentName, SegmentMembership membership) {
+        SegmentHandle handle = named(segmentName);
+        handle.install(membership);
+        loaded.put(segmentName, handle);
+        return handle;
+    }
+    
+    /**
+     * Drop a segment's members; rules naming it stop matching until it is loaded again
+     */
+    void release(String segmentName) {
+        loaded.remove(segmentName);
+        SegmentHandle handle = handles.get(segmentName);
+        if (handle != null) {
+            handle.install(null);
+        }
+    }
+}
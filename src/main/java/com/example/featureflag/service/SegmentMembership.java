@@ -0,0 +1,24 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.SegmentKeyType;
+
+/**
+ * Immutable in-memory member set of one segment. Lookups take the user ID as passed
+ * to evaluation and never allocate.
+ */
+public interface SegmentMembership {
+    
+    boolean contains(String userId);
+    
+    /**
+     * Number of distinct members
+     */
+    long size();
+    
+    /**
+     * Approximate heap held by the member set
+     */
+    long memoryBytes();
+    
+    SegmentKeyType keyType();
+}
@@ -0,0 +1,275 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.SegmentResponse;
+import com.example.featureflag.exception.InvalidSegmentException;
+import com.example.featureflag.exception.SegmentNotFoundException;
+import com.example.featureflag.model.Segment;
+import com.example.featureflag.model.SegmentKeyType;
+import com.example.featureflag.repository.SegmentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Uploads user segments and keeps every segment's members in memory.
+ * <p>
+ * Uploads are parsed once into their in-memory form and stored as chunks; the uploading
+ * node installs the new members immediately and other nodes pick them up on their next
+ * {@code flags.segments.refresh-interval-ms} scan, which reads only metadata unless a
+ * segment's version changed. Each loaded segment's heap is published as the
+ * {@code flags.segment.memory} gauge.
+ */
+@Slf4j
+@Service
+public class SegmentService {
+    
+    static final String MEMORY_GAUGE = "flags.segment.memory";
+    
+    private final SegmentRepository repository;
+    private final SegmentHandles segmentHandles;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Segment> loaded = new ConcurrentHashMap<>();
+    
+    @Value("${flags.segments.max-members:10000000}")
+    private int maxMembers = 10_000_000;
+    
+    @Value("${flags.segments.chunk-bytes:262144}")
+    private int chunkBytes = 262_144;
+    
+    public SegmentService(SegmentRepository repository, SegmentHandles segmentHandles, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.segmentHandles = segmentHandles;
+        this.meterRegistry = meterRegistry;
+    }
+    
+    /**
+     * Replace a segment's members with one ID per line. Without a key type, all-numeric
+     * uploads become NUMERIC segments and anything else STRING.
+     */
+    public SegmentResponse uploadSegment(String segmentName, String description, SegmentKeyType keyType, Reader members) {
+        log.info("Uploading segment: {}", segmentName);
+        
+        List<String> ids = readIds(segmentName, members);
+        if (ids.isEmpty()) {
+            throw new InvalidSegmentException(segmentName, "at least one member is required");
+        }
+        SegmentKeyType type = keyType != null ? keyType : detectKeyType(ids);
+        
+        SegmentMembership membership;
+        List<byte[]> chunks;
+        if (type == SegmentKeyType.NUMERIC) {
+            long[] sorted = parseNumericIds(segmentName, ids);
+            chunks = SegmentChunks.encodeNumeric(sorted, sorted.length, chunkBytes);
+            membership = NumericSegmentSet.of(sorted, sorted.length);
+        } else {
+            List<String> distinct = ids.stream().distinct().toList();
+            chunks = SegmentChunks.encodeStrings(distinct, chunkBytes);
+            membership = StringSegmentSet.of(distinct);
+        }
+        
+        Optional<Segment> previous = repository.findBySegmentName(segmentName);
+        int previousVersion = previous.map(Segment::version).orElse(0);
+        Segment segment = new Segment(segmentName,
+                description != null ? description : previous.map(Segment::description).orElse(null),
+                type, membership.size(), chunks.size(), segmentName + "#" + UUID.randomUUID(),
+                previousVersion + 1, Instant.now());
+        repository.save(segment, chunks, previousVersion);
+        install(segment, membership);
+        previous.ifPresent(this::deleteChunksQuietly);
+        
+        log.info("Segment {} v{}: {} members, {} chunks, {} bytes in memory", segmentName, segment.version(),
+                membership.size(), chunks.size(), membership.memoryBytes());
+        return mapToResponse(segment);
+    }
+    
+    public SegmentResponse getSegment(String segmentName) {
+        return repository.findBySegmentName(segmentName)
+                .map(this::mapToResponse)
+                .orElseThrow(() -> new SegmentNotFoundException(segmentName));
+    }
+    
+    /**
+     * All segments, ordered by name
+     */
+    public List<SegmentResponse> listSegments() {
+        return repository.findAll().stream()
+                .sorted(Comparator.comparing(Segment::segmentName))
+                .map(this::mapToResponse)
+                .toList();
+    }
+    
+    public void deleteSegment(String segmentName) {
+        log.info("Deleting segment: {}", segmentName);
+        repository.deleteBySegmentName(segmentName)
+                .orElseThrow(() -> new SegmentNotFoundException(segmentName));
+        unload(segmentName);
+    }
+    
+    /**
+     * Load segments whose version changed and drop deleted ones
+     */
+    @Scheduled(fixedDelayString = "${flags.segments.refresh-interval-ms:60000}")
+    public void refresh() {
+        Instant scanStarted = Instant.now();
+        List<Segment> segments;
+        try {
+            segments = repository.findAll();
+        } catch (RuntimeException e) {
+            log.warn("Segment refresh failed, keeping {} segments: {}", loaded.size(), e.getMessage());
+            return;
+        }
+        
+        Set<String> names = new HashSet<>();
+        for (Segment segment : segments) {
+            names.add(segment.segmentName());
+            Segment current = loaded.get(segment.segmentName());
+            if (current == null || current.version() < segment.version()) {
+                load(segment);
+            }
+        }
+        for (Segment segment : loaded.values()) {
+            // Segments uploaded here after the scan started are simply not in it yet
+            if (!names.contains(segment.segmentName()) && segment.updatedAt().isBefore(scanStarted)) {
+                unload(segment.segmentName());
+            }
+        }
+    }
+    
+    private void load(Segment segment) {
+        try {
+            SegmentMembership membership = SegmentChunks.decode(segment.keyType(), repository.findChunks(segment));
+            install(segment, membership);
+            log.info("Loaded segment {} v{}: {} members, {} bytes in memory", segment.segmentName(),
+                    segment.version(), membership.size(), membership.memoryBytes());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load segment {} v{}, will retry: {}", segment.segmentName(), segment.version(),
+                    e.getMessage());
+        }
+    }
+    
+    /**
+     * Publish members unless a newer version was installed while they were loading
+     */
+    private synchronized void install(Segment segment, SegmentMembership membership) {
+        Segment current = loaded.get(segment.segmentName());
+        if (current != null && current.version() >= segment.version()) {
+            return;
+        }
+        SegmentHandle handle = segmentHandles.install(segment.segmentName(), membership);
+        loaded.put(segment.segmentName(), segment);
+        Gauge.builder(MEMORY_GAUGE, handle, SegmentService::memoryBytes)
+                .tag("segment", segment.segmentName())
+                .baseUnit("bytes")
+                .description("Heap held by a segment's in-memory members")
+                .register(meterRegistry);
+    }
+    
+    private synchronized void unload(String segmentName) {
+        loaded.remove(segmentName);
+        segmentHandles.release(segmentName);
+        Meter gauge = meterRegistry.find(MEMORY_GAUGE).tag("segment", segmentName).meter();
+        if (gauge != null) {
+            meterRegistry.remove(gauge);
+        }
+    }
+    
+    private void deleteChunksQuietly(Segment replaced) {
+        try {
+            repository.deleteChunks(replaced.chunkKey());
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete replaced chunks of segment {}: {}", replaced.segmentName(), e.getMessage());
+        }
+    }
+    
+    private List<String> readIds(String segmentName, Reader members) {
+        List<String> ids = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(members)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String id = line.strip();
+                if (id.isEmpty()) {
+                    continue;
+                }
+                if (ids.size() == maxMembers) {
+                    throw new InvalidSegmentException(segmentName, "more than " + maxMembers + " members");
+                }
+                ids.add(id);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read segment members", e);
+        }
+        return ids;
+    }
+    
+    private static SegmentKeyType detectKeyType(List<String> ids) {
+        for (String id : ids) {
+            if (NumericSegmentSet.parseId(id) < 0) {
+                return SegmentKeyType.STRING;
+            }
+        }
+        return SegmentKeyType.NUMERIC;
+    }
+    
+    /**
+     * Sorted, distinct numeric IDs
+     */
+    private static long[] parseNumericIds(String segmentName, List<String> ids) {
+        long[] parsed = new long[ids.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = NumericSegmentSet.parseId(ids.get(i));
+            if (parsed[i] < 0) {
+                throw new InvalidSegmentException(segmentName, "not a numeric ID: " + ids.get(i));
+            }
+        }
+        Arrays.sort(parsed);
+        int distinct = 0;
+        for (int i = 0; i < parsed.length; i++) {
+            if (i == 0 || parsed[i] != parsed[i - 1]) {
+                parsed[distinct++] = parsed[i];
+            }
+        }
+        return Arrays.copyOf(parsed, distinct);
+    }
+    
+    private static double memoryBytes(SegmentHandle handle) {
+        SegmentMembership membership = handle.membership();
+        return membership != null ? membership.memoryBytes() : 0;
+    }
+    
+    SegmentResponse mapToResponse(Segment segment) {
+        Segment current = loaded.get(segment.segmentName());
+        SegmentMembership membership = segmentHandles.named(segment.segmentName()).membership();
+        boolean loadedHere = current != null && current.version() == segment.version() && membership != null;
+        return SegmentResponse.builder()
+                .segmentName(segment.segmentName())
+                .description(segment.description())
+                .keyType(segment.keyType())
+                .size(segment.size())
+                .chunkCount(segment.chunkCount())
+                .version(segment.version())
+                .updatedAt(segment.updatedAt())
+                .loaded(loadedHere)
+                .memoryBytes(loadedHere ? membership.memoryBytes() : null)
+                .build();
+    }
+}
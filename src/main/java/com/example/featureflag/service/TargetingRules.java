@@ -0,0 +1,339 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.InvalidTargetingRuleException;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A flag's targeting rules compiled for evaluation.
+ * <p>
+ * Rules are compiled once, when a flag enters the {@link FlagSnapshot}: attribute keys are
+ * interned and operands are parsed up front into sets, patterns and numeric version
+ * components, leaving a rule → condition → predicate tree that evaluation walks without
+ * parsing or, except for {@code MATCHES}, allocating. Rules are tried in order and each
+ * costs one attribute lookup and one predicate test per condition until a condition fails.
+ * <p>
+ * The attribute {@value #USER_ID_ATTRIBUTE} resolves to the evaluated user ID unless the
+ * caller passes it explicitly.
+ */
+@Slf4j
+public final class TargetingRules {
+    
+    public static final String USER_ID_ATTRIBUTE = "userId";
+    
+    public static final TargetingRules NONE = new TargetingRules(new Rule[0]);
+    
+    /**
+     * Stand-in for stored rules that no longer compile: the flag is off for everyone
+     */
+    static final TargetingRules INVALID = new TargetingRules(null);
+    
+    static final int UNPARSABLE = Integer.MIN_VALUE;
+    
+    private static final int MAX_VERSION_PARTS = 8;
+    
+    private static final Interner<String> ATTRIBUTES = Interners.newWeakInterner();
+    
+    private final Rule[] rules;
+    
+    private TargetingRules(Rule[] rules) {
+        this.rules = rules;
+    }
+    
+    /**
+     * Compile rules, rejecting anything that cannot be evaluated; segment conditions read
+     * their members through {@code segments}
+     */
+    public static TargetingRules compile(List<TargetingRule> rules, SegmentHandles segments) {
+        if (rules == null || rules.isEmpty()) {
+            return NONE;
+        }
+        Rule[] compiled = new Rule[rules.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compileRule(i + 1, rules.get(i), segments);
+        }
+        return new TargetingRules(compiled);
+    }
+    
+    /**
+     * Reject rules that cannot be evaluated, without keeping anything compiled
+     */
+    public static void validate(List<TargetingRule> rules) {
+        compile(rules, new SegmentHandles());
+    }
+    
+    /**
+     * Compile rules read from storage; rules that were valid when written but no longer
+     * compile turn the flag off rather than failing the load
+     */
+    static TargetingRules compileStored(String flagName, List<TargetingRule> rules, SegmentHandles segments) {
+        try {
+            return compile(rules, segments);
+        } catch (InvalidTargetingRuleException e) {
+            log.error("Flag {} has invalid targeting rules and evaluates to off: {}", flagName, e.getMessage());
+            return INVALID;
+        }
+    }
+    
+    public int size() {
+        return rules != null ? rules.length : 0;
+    }
+    
+    /**
+     * Rollout in basis points for this user: the first matching rule's, or
+     * {@code defaultRollout} when no rule matches
+     */
+    public int rolloutBasisPoints(String userId, Map<String, String> attributes, int defaultRollout) {
+        if (rules == null) {
+            return 0;
+        }
+        for (Rule rule : rules) {
+            if (rule.matches(userId, attributes)) {
+                return rule.rolloutBasisPoints;
+            }
+        }
+        return defaultRollout;
+    }
+    
+    private static Rule compileRule(int number, TargetingRule rule, SegmentHandles segments) {
+        if (rule == null || rule.getConditions() == null || rule.getConditions().isEmpty()) {
+            throw new InvalidTargetingRuleException(number, "at least one condition is required");
+        }
+        Integer rollout = rule.getRolloutBasisPoints();
+        if (rollout != null && (rollout < 0 || rollout > BucketingEngine.MAX_BASIS_POINTS)) {
+            throw new InvalidTargetingRuleException(number, "rolloutBasisPoints must be between 0 and 10000");
+        }
+        Condition[] conditions = new Condition[rule.getConditions().size()];
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = compileCondition(number, rule.getConditions().get(i), segments);
+        }
+        return new Rule(conditions, rollout != null ? rollout : BucketingEngine.MAX_BASIS_POINTS);
+    }
+    
+    private static Condition compileCondition(int number, TargetingCondition condition, SegmentHandles segments) {
+        if (condition == null || condition.getAttribute() == null || condition.getAttribute().isBlank()) {
+            throw new InvalidTargetingRuleException(number, "every condition needs an attribute");
+        }
+        if (condition.getOperator() == null) {
+            throw new InvalidTargetingRuleException(number, "condition on " + condition.getAttribute() + " needs an operator");
+        }
+        List<String> values = condition.getValues();
+        if (values == null || values.isEmpty() || values.stream().anyMatch(Objects::isNull)) {
+            throw new InvalidTargetingRuleException(number, condition.getOperator() + " on "
+                    + condition.getAttribute() + " needs at least one non-null value");
+        }
+        String attribute = ATTRIBUTES.intern(condition.getAttribute());
+        return new Condition(attribute, USER_ID_ATTRIBUTE.equals(attribute),
+                predicate(number, condition.getOperator(), values, segments));
+    }
+    
+    private static Predicate<String> predicate(int number, TargetingOperator operator, List<String> values,
+                                               SegmentHandles segments) {
+        return switch (operator) {
+            case IN -> membership(values);
+            case NOT_IN -> membership(values).negate();
+            case STARTS_WITH -> anyOf(values, operand -> value -> value.startsWith(operand));
+            case ENDS_WITH -> anyOf(values, operand -> value -> value.endsWith(operand));
+            case CONTAINS -> anyOf(values, operand -> value -> value.contains(operand));
+            case MATCHES -> anyOf(values, operand -> {
+                Pattern pattern = compilePattern(number, operand);
+                return value -> pattern.matcher(value).matches();
+            });
+            case SEMVER_EQ -> semver(number, operator, values, comparison -> comparison == 0);
+            case SEMVER_GT -> semver(number, operator, values, comparison -> comparison > 0);
+            case SEMVER_GTE -> semver(number, operator, values, comparison -> comparison >= 0);
+            case SEMVER_LT -> semver(number, operator, values, comparison -> comparison < 0);
+            case SEMVER_LTE -> semver(number, operator, values, comparison -> comparison <= 0);
+            case IN_SEGMENT -> inSegment(values, segments);
+            case NOT_IN_SEGMENT -> notInSegment(values, segments);
+        };
+    }
+    
+    private static Predicate<String> membership(List<String> values) {
+        if (values.size() == 1) {
+            String operand = values.get(0);
+            return operand::equals;
+        }
+        Set<String> operands = Set.copyOf(values);
+        return operands::contains;
+    }
+    
+    private static Predicate<String> anyOf(List<String> values, Function<String, Predicate<String>> compiler) {
+        if (values.size() == 1) {
+            return compiler.apply(values.get(0));
+        }
+        @SuppressWarnings("unchecked")
+        Predicate<String>[] predicates = values.stream().map(compiler).toArray(Predicate[]::new);
+        return value -> {
+            for (Predicate<String> predicate : predicates) {
+                if (predicate.test(value)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+    
+    private static Predicate<String> inSegment(List<String> segmentNames, SegmentHandles segments) {
+        SegmentHandle[] handles = segmentNames.stream().map(segments::named).toArray(SegmentHandle[]::new);
+        return value -> {
+            for (SegmentHandle handle : handles) {
+                SegmentMembership membership = handle.membership();
+                if (membership != null && membership.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+    
+    /**
+     * Matches only when every named segment is loaded, so an unknown segment never
+     * widens a rule to everyone
+     */
+    private static Predicate<String> notInSegment(List<String> segmentNames, SegmentHandles segments) {
+        SegmentHandle[] handles = segmentNames.stream().map(segments::named).toArray(SegmentHandle[]::new);
+        return value -> {
+            for (SegmentHandle handle : handles) {
+                SegmentMembership membership = handle.membership();
+                if (membership == null || membership.contains(value)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+    
+    private static Pattern compilePattern(int number, String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new InvalidTargetingRuleException(number, "invalid pattern " + regex + ": " + e.getDescription());
+        }
+    }
+    
+    private static Predicate<String> semver(int number, TargetingOperator operator, List<String> values,
+                                            IntPredicate accept) {
+        if (values.size() != 1) {
+            throw new InvalidTargetingRuleException(number, operator + " takes exactly one version");
+        }
+        int[] operand = parseVersion(values.get(0));
+        if (operand == null) {
+            throw new InvalidTargetingRuleException(number, "invalid version " + values.get(0));
+        }
+        return value -> {
+            int comparison = compareVersion(value, operand);
+            return comparison != UNPARSABLE && accept.test(comparison);
+        };
+    }
+    
+    /**
+     * Numeric components of a version such as {@code 5.2} or {@code v5.2.1-beta}, or null
+     */
+    static int[] parseVersion(String version) {
+        int[] parts = new int[MAX_VERSION_PARTS];
+        int count = 0;
+        int i = version.startsWith("v") ? 1 : 0;
+        int length = version.length();
+        while (true) {
+            if (count == MAX_VERSION_PARTS) {
+                return null;
+            }
+            long part = 0;
+            int start = i;
+            for (; i < length && Character.isDigit(version.charAt(i)); i++) {
+                part = part * 10 + (version.charAt(i) - '0');
+                if (part > Integer.MAX_VALUE) {
+                    return null;
+                }
+            }
+            if (i == start) {
+                return null;
+            }
+            parts[count++] = (int) part;
+            if (i == length || version.charAt(i) == '-' || version.charAt(i) == '+') {
+                return Arrays.copyOf(parts, count);
+            }
+            if (version.charAt(i++) != '.') {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Compare a version string against parsed components without allocating; missing
+     * components count as zero. Returns {@link #UNPARSABLE} for anything that is not a version.
+     */
+    static int compareVersion(String version, int[] operand) {
+        int i = version.startsWith("v") ? 1 : 0;
+        int length = version.length();
+        for (int index = 0; ; index++) {
+            long part = 0;
+            int start = i;
+            for (; i < length && Character.isDigit(version.charAt(i)); i++) {
+                part = part * 10 + (version.charAt(i) - '0');
+                if (part > Integer.MAX_VALUE) {
+                    return UNPARSABLE;
+                }
+            }
+            if (i == start) {
+                return UNPARSABLE;
+            }
+            int expected = index < operand.length ? operand[index] : 0;
+            boolean last = i == length || version.charAt(i) == '-' || version.charAt(i) == '+';
+            if (!last && version.charAt(i) != '.') {
+                return UNPARSABLE;
+            }
+            if (part != expected) {
+                return part < expected ? -1 : 1;
+            }
+            if (last) {
+                for (int rest = index + 1; rest < operand.length; rest++) {
+                    if (operand[rest] != 0) {
+                        return -1;
+                    }
+                }
+                return 0;
+            }
+            i++;
+        }
+    }
+    
+    private record Rule(Condition[] conditions, int rolloutBasisPoints) {
+        
+        boolean matches(String userId, Map<String, String> attributes) {
+            for (Condition condition : conditions) {
+                if (!condition.matches(userId, attributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private record Condition(String attribute, boolean userIdAttribute, Predicate<String> predicate) {
+        
+        boolean matches(String userId, Map<String, String> attributes) {
+            String value = attributes.get(attribute);
+            if (value == null && userIdAttribute) {
+                value = userId;
+            }
+            return value != null && predicate.test(value);
+        }
+    }
+}
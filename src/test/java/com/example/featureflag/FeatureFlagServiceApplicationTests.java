@@ -1,11 +1,28 @@
 package com.example.featureflag;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 @SpringBootTest
 class FeatureFlagServiceApplicationTests {
 
+	@TempDir
+	static Path workDirectory;
+
+	/**
+	 * Keep the files the service writes out of the source tree
+	 */
+	@DynamicPropertySource
+	static void localFiles(DynamicPropertyRegistry registry) {
+		registry.add("flags.exposure.file.directory", () -> workDirectory.resolve("exposures").toString());
+		registry.add("flags.snapshot.file", () -> workDirectory.resolve("flag-snapshot.bin").toString());
+	}
+
 	@Test
 	void contextLoads() {
 	}
@@ -0,0 +1,53 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.ExposureEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoDbExposureEventRepositoryTest {
+    
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+    
+    @Captor
+    private ArgumentCaptor<Consumer<BatchWriteItemRequest.Builder>> batch;
+    
+    @Test
+    void sameUserInTheSameMillisecondGetsDistinctKeys() {
+        DynamoDbExposureEventRepository repository = new DynamoDbExposureEventRepository(dynamoDbClient);
+        ReflectionTestUtils.setField(repository, "tableName", "feature-flag-exposures");
+        when(dynamoDbClient.batchWriteItem(any(Consumer.class)))
+                .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(Collections.emptyMap()).build());
+        ExposureEvent event = new ExposureEvent("checkout", "user1", true, "treatment", 3, 1_700_000_000_000L);
+        
+        repository.writeBatch(List.of(event, event, event));
+        
+        verify(dynamoDbClient).batchWriteItem(batch.capture());
+        BatchWriteItemRequest.Builder request = BatchWriteItemRequest.builder();
+        batch.getValue().accept(request);
+        Set<String> keys = request.build().requestItems().get("feature-flag-exposures").stream()
+                .map(write -> write.putRequest().item().get("exposureKey").s())
+                .collect(Collectors.toSet());
+        assertEquals(3, keys.size());
+        assertTrue(keys.stream().allMatch(key -> key.startsWith("1700000000000#user1#")), keys.toString());
+    }
+}
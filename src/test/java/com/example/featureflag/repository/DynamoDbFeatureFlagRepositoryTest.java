@@ -0,0 +1,128 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.model.FeatureFlag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoDbFeatureFlagRepositoryTest {
+    
+    @Mock
+    private DynamoDbEnhancedClient enhancedClient;
+    
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+    
+    @Captor
+    private ArgumentCaptor<TransactWriteItemsRequest> transaction;
+    
+    private DynamoDbFeatureFlagRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        repository = new DynamoDbFeatureFlagRepository(enhancedClient, dynamoDbClient);
+        ReflectionTestUtils.setField(repository, "tableName", "feature-flags");
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+                .item(Map.of("flagName", AttributeValue.fromS(FeatureFlagRepository.REVISION_COUNTER_KEY),
+                        "revision", AttributeValue.fromN("7")))
+                .build());
+    }
+    
+    @Test
+    void updateIsOneTransactionAgainstTheCallersCopy() {
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenReturn(TransactWriteItemsResponse.builder().build());
+        
+        FeatureFlag updated = repository.update(flag(2, 5L, 50), FeatureFlag.builder().enabled(false).build(), null);
+        FeatureFlag again = repository.update(updated, FeatureFlag.builder().rolloutPercentage(60).build(), 3);
+        
+        assertFalse(updated.getEnabled());
+        assertEquals(50, updated.getRolloutPercentage());
+        assertEquals(3, updated.getVersion());
+        assertEquals(8L, updated.getRevision());
+        assertEquals(4, again.getVersion());
+        assertEquals(9L, again.getRevision());
+        
+        verify(dynamoDbClient, times(2)).transactWriteItems(transaction.capture());
+        Update item = transaction.getAllValues().get(0).transactItems().get(1).update();
+        assertTrue(item.updateExpression().endsWith("ADD #version :one"), item.updateExpression());
+        assertEquals("5", item.expressionAttributeValues().get(":baseRevision").n());
+        // Only the counter is read, once per process; the flag never is
+        verify(dynamoDbClient, times(1)).getItem(any(GetItemRequest.class));
+    }
+    
+    @Test
+    void aStaleCopyIsRetriedAgainstTheItemTheFailedTransactionReturned() {
+        Map<String, AttributeValue> stored = Map.of(
+                "flagName", AttributeValue.fromS("checkout"),
+                "enabled", AttributeValue.fromBool(true),
+                "rolloutPercentage", AttributeValue.fromN("80"),
+                "version", AttributeValue.fromN("4"),
+                "revision", AttributeValue.fromN("9"));
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(TransactionCanceledException.builder()
+                        .cancellationReasons(
+                                CancellationReason.builder().code("ConditionalCheckFailed")
+                                        .item(Map.of("revision", AttributeValue.fromN("9"))).build(),
+                                CancellationReason.builder().code("ConditionalCheckFailed").item(stored).build())
+                        .build())
+                .thenReturn(TransactWriteItemsResponse.builder().build());
+        
+        FeatureFlag updated = repository.update(flag(2, 5L, 50), FeatureFlag.builder().enabled(false).build(), null);
+        
+        assertFalse(updated.getEnabled());
+        assertEquals(80, updated.getRolloutPercentage());
+        assertEquals(5, updated.getVersion());
+        assertEquals(10L, updated.getRevision());
+        verify(dynamoDbClient, times(1)).getItem(any(GetItemRequest.class));
+    }
+    
+    @Test
+    void aDeletedFlagIsNotFound() {
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(TransactionCanceledException.builder()
+                        .cancellationReasons(
+                                CancellationReason.builder().code("None").build(),
+                                CancellationReason.builder().code("ConditionalCheckFailed").item(Map.of(
+                                        "flagName", AttributeValue.fromS("checkout"),
+                                        "deleted", AttributeValue.fromBool(true),
+                                        "revision", AttributeValue.fromN("6"))).build())
+                        .build());
+        
+        assertThrows(FlagNotFoundException.class,
+                () -> repository.update(flag(2, 5L, 50), FeatureFlag.builder().enabled(false).build(), null));
+    }
+    
+    private static FeatureFlag flag(int version, Long revision, int rolloutPercentage) {
+        return FeatureFlag.builder()
+                .flagName("checkout")
+                .enabled(true)
+                .rolloutPercentage(rolloutPercentage)
+                .version(version)
+                .revision(revision)
+                .build();
+    }
+}
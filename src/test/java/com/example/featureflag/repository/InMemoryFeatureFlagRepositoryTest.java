@@ -0,0 +1,112 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.FlagAlreadyExistsException;
+import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.exception.FlagVersionConflictException;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryFeatureFlagRepositoryTest {
+    
+    private final InMemoryFeatureFlagRepository repository = new InMemoryFeatureFlagRepository();
+    
+    @Test
+    void createRejectsLiveFlagsButReplacesTombstones() {
+        repository.create(flag("checkout", 1));
+        
+        assertThrows(FlagAlreadyExistsException.class, () -> repository.create(flag("checkout", 1)));
+        
+        repository.deleteByFlagName("checkout");
+        repository.create(flag("checkout", 7));
+        assertEquals(7, repository.findByFlagName("checkout").orElseThrow().getVersion());
+    }
+    
+    @Test
+    void updateMergesNonNullFieldsAndIncrementsTheVersion() {
+        repository.create(flag("checkout", 3));
+        TargetingRule rule = TargetingRule.builder()
+                .conditions(List.of(new TargetingCondition("plan", TargetingOperator.IN, List.of("enterprise"))))
+                .rolloutBasisPoints(10000)
+                .build();
+        
+        FeatureFlag updated = repository.update("checkout",
+                FeatureFlag.builder().enabled(false).rules(List.of(rule)).version(99).build(), 3);
+        
+        assertEquals(4, updated.getVersion());
+        assertEquals(2L, updated.getRevision());
+        assertFalse(updated.getEnabled());
+        assertEquals(List.of(rule), updated.getRules());
+        assertEquals("Checkout flow", updated.getDescription());
+        assertEquals(updated, repository.findByFlagName("checkout").orElseThrow());
+    }
+    
+    @Test
+    void updateChecksTheExpectedVersionAndLiveness() {
+        repository.create(flag("checkout", 3));
+        
+        FlagVersionConflictException conflict = assertThrows(FlagVersionConflictException.class,
+                () -> repository.update("checkout", FeatureFlag.builder().enabled(false).build(), 2));
+        assertTrue(conflict.getMessage().contains("version 3"));
+        
+        repository.deleteByFlagName("checkout");
+        assertThrows(FlagNotFoundException.class,
+                () -> repository.update("checkout", FeatureFlag.builder().enabled(false).build(), null));
+        assertThrows(FlagNotFoundException.class, () -> repository.deleteByFlagName("checkout"));
+        assertEquals(2, repository.currentRevision().revision());
+    }
+    
+    @Test
+    void tombstonesAreChangesUntilPurged() {
+        FeatureFlag kept = repository.create(flag("kept", 1));
+        repository.create(flag("deleted", 1));
+        FeatureFlag tombstone = repository.deleteByFlagName("deleted");
+        long deletedAt = tombstone.getRevision();
+        
+        assertEquals(1L, kept.getRevision());
+        assertEquals(3L, deletedAt);
+        assertTrue(tombstone.getDeleted());
+        assertEquals(List.of("kept"), names(repository.findAll()));
+        assertEquals(List.of("deleted"), names(repository.findChangedSince(1)));
+        assertTrue(repository.findByFlagNames(List.of("kept", "deleted", "unknown")).stream()
+                .allMatch(flag -> flag.getFlagName().equals("kept")));
+        
+        assertEquals(0, repository.purgeTombstones(Instant.now().minusSeconds(60)));
+        assertEquals(1, repository.purgeTombstones(Instant.now().plusSeconds(60)));
+        
+        assertEquals(List.of(), repository.findChangedSince(1));
+        assertEquals(new FeatureFlagRepository.RevisionCounter(deletedAt, deletedAt), repository.currentRevision());
+    }
+    
+    @Test
+    void readsReturnCopies() {
+        repository.save(flag("checkout", 1));
+        
+        repository.findByFlagName("checkout").orElseThrow().setEnabled(false);
+        
+        assertTrue(repository.findByFlagName("checkout").orElseThrow().getEnabled());
+    }
+    
+    private static List<String> names(List<FeatureFlag> flags) {
+        return flags.stream().map(FeatureFlag::getFlagName).sorted().toList();
+    }
+    
+    static FeatureFlag flag(String name, int version) {
+        return FeatureFlag.builder()
+                .flagName(name)
+                .enabled(true)
+                .rolloutPercentage(50)
+                .description("Checkout flow")
+                .version(version)
+                .createdAt(Instant.parse("2026-10-01T12:00:00Z"))
+                .updatedAt(Instant.parse("2026-10-01T12:00:00Z"))
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.exception.SegmentConflictException;
+import com.example.featureflag.model.FlagUsage;
+import com.example.featureflag.model.Segment;
+import com.example.featureflag.model.SegmentKeyType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The local segment and usage stores, which share their encoding and item logs
+ */
+class LocalSegmentRepositoryTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void uploadsReplaceAtTheExpectedVersionOnly() {
+        LocalSegmentRepository repository = LocalSegmentRepository.inMemory();
+        Segment first = segment("beta", 1, "beta#1", null);
+        repository.save(first, List.of(new byte[]{1}, new byte[]{2}), 0);
+        
+        assertThrows(SegmentConflictException.class,
+                () -> repository.save(segment("beta", 2, "beta#2", null), List.of(new byte[]{3}, new byte[]{4}), 0));
+        repository.save(segment("beta", 2, "beta#2", "Beta"), List.of(new byte[]{3}, new byte[]{4}), 1);
+        repository.deleteChunks(first.chunkKey());
+        
+        Segment stored = repository.findBySegmentName("beta").orElseThrow();
+        assertEquals("Beta", stored.description());
+        assertArrayEquals(new byte[]{4}, repository.findChunks(stored).get(1));
+        assertThrows(IllegalStateException.class, () -> repository.findChunks(first));
+        assertEquals(Optional.of(stored), repository.deleteBySegmentName("beta"));
+        assertTrue(repository.findAll().isEmpty());
+        assertTrue(repository.deleteBySegmentName("beta").isEmpty());
+    }
+    
+    @Test
+    void mappedSegmentsSurviveAReopen() throws IOException {
+        Segment segment = segment("beta", 1, "beta#1", "Beta testers");
+        try (LocalSegmentRepository repository = LocalSegmentRepository.mapped(directory, 0.5)) {
+            repository.save(segment, List.of(new byte[]{7, 8, 9}, new byte[]{10}), 0);
+        }
+        
+        try (LocalSegmentRepository repository = LocalSegmentRepository.mapped(directory, 0.5)) {
+            assertEquals(List.of(segment), repository.findAll());
+            assertArrayEquals(new byte[]{7, 8, 9}, repository.findChunks(segment).get(0));
+        }
+    }
+    
+    @Test
+    void mappedUsageTotalsAddUpAcrossAReopen() throws IOException {
+        Instant first = Instant.parse("2026-01-01T00:00:00.123456789Z");
+        Instant second = first.plusSeconds(60);
+        try (LocalFlagUsageRepository repository = LocalFlagUsageRepository.mapped(directory, 0.5)) {
+            assertTrue(repository.findByFlagName("checkout").isEmpty());
+            repository.addUsage("checkout", 3, 1, first);
+        }
+        
+        try (LocalFlagUsageRepository repository = LocalFlagUsageRepository.mapped(directory, 0.5)) {
+            repository.addUsage("checkout", 2, 0, second);
+            
+            assertEquals(new FlagUsage("checkout", 5, 1, second), repository.findByFlagName("checkout").orElseThrow());
+        }
+    }
+    
+    private static Segment segment(String name, int version, String chunkKey, String description) {
+        return new Segment(name, description, SegmentKeyType.NUMERIC, 2, 2, chunkKey, version,
+                Instant.parse("2026-01-01T00:00:00.5Z"));
+    }
+}
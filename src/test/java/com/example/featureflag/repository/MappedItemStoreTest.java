@@ -0,0 +1,108 @@
+package com.example.featureflag.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedItemStoreTest {
+    
+    @TempDir
+    Path directory;
+    
+    private Path file;
+    
+    private MappedItemStore store;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        file = directory.resolve("items.log");
+        store = new MappedItemStore(file, 0.5);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+    
+    @Test
+    void putsAndRemovesSurviveAReopen() throws IOException {
+        store.put("kept", bytes("v1"));
+        store.put("kept", bytes("v2"));
+        store.put("removed", bytes("v1"));
+        store.remove("removed");
+        
+        reopen();
+        
+        assertEquals("v2", string(store.get("kept")));
+        assertNull(store.get("removed"));
+        assertEquals(List.of("v2"), store.values().stream().map(MappedItemStoreTest::string).toList());
+    }
+    
+    @Test
+    void aTornTailIsDiscardedOnOpen() throws IOException {
+        store.put("complete", bytes("v1"));
+        store.put("torn", bytes("v1"));
+        store.close();
+        
+        // Flip one byte of the second key, as if the write had been cut short
+        int tornRecord = 8 + 9 + 4 + "complete".length() + 2;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, tornRecord + 13);
+            value.put(0, (byte) (value.get(0) ^ 0xFF)).rewind();
+            channel.write(value, tornRecord + 13);
+        }
+        store = new MappedItemStore(file, 0.5);
+        
+        assertEquals("v1", string(store.get("complete")));
+        assertNull(store.get("torn"));
+        store.put("after", bytes("v1"));
+        reopen();
+        assertEquals(2, store.values().size());
+    }
+    
+    @Test
+    void compactionKeepsOnlyTheLatestItems() throws IOException {
+        byte[] item = new byte[1024];
+        for (int i = 0; i < 4096; i++) {
+            store.put("hot", item);
+        }
+        store.put("cold", bytes("kept"));
+        
+        assertTrue(Files.size(file) < 4096 * 1024, "log was never compacted");
+        assertFalse(Files.exists(directory.resolve("items.log.compacting")));
+        reopen();
+        assertEquals(1024, store.get("hot").length);
+        assertEquals("kept", string(store.get("cold")));
+    }
+    
+    @Test
+    void aLogIsOpenInOneStoreAtATime() {
+        assertThrows(IllegalStateException.class, () -> new MappedItemStore(file, 0.5));
+    }
+    
+    private void reopen() throws IOException {
+        store.close();
+        store = new MappedItemStore(file, 0.5);
+    }
+    
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static String string(byte[] item) {
+        return new String(item, StandardCharsets.UTF_8);
+    }
+}
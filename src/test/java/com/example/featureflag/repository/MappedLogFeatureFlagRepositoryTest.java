@@ -0,0 +1,133 @@
+package com.example.featureflag.repository;
+
+import com.example.featureflag.model.FeatureFlag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import static com.example.featureflag.repository.InMemoryFeatureFlagRepositoryTest.flag;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLogFeatureFlagRepositoryTest {
+    
+    @TempDir
+    Path directory;
+    
+    private MappedLogFeatureFlagRepository repository;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = new MappedLogFeatureFlagRepository(directory, 0.5);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        repository.close();
+    }
+    
+    @Test
+    void flagsTombstonesAndCountersSurviveAReopen() throws IOException {
+        repository.create(flag("kept", 1));
+        repository.update("kept", FeatureFlag.builder().rolloutPercentage(75).build(), 1);
+        repository.create(flag("deleted", 1));
+        repository.deleteByFlagName("deleted");
+        repository.create(flag("purged", 1));
+        long purgedAt = repository.deleteByFlagName("purged").getRevision();
+        repository.purgeTombstones(Instant.now().plusSeconds(60));
+        // Only the flag record holds this revision; reopening recovers the counter from it
+        long recreatedAt = repository.create(flag("deleted", 5)).getRevision();
+        
+        reopen();
+        
+        assertEquals(75, repository.findByFlagName("kept").orElseThrow().getRolloutPercentage());
+        assertEquals(2, repository.findByFlagName("kept").orElseThrow().getVersion());
+        assertEquals(5, repository.findByFlagName("deleted").orElseThrow().getVersion());
+        assertTrue(repository.findByFlagName("purged").isEmpty());
+        assertEquals(new FeatureFlagRepository.RevisionCounter(recreatedAt, purgedAt), repository.currentRevision());
+        assertEquals(recreatedAt + 1, repository.create(flag("next", 1)).getRevision());
+    }
+    
+    @Test
+    void aTornTailIsDiscardedOnOpen() throws IOException {
+        repository.create(flag("complete", 1));
+        repository.create(flag("torn", 1));
+        repository.close();
+        
+        // Flip one byte of the last record, as if the write had been cut short
+        int tornRecord = lastRecordOffset();
+        try (FileChannel channel = FileChannel.open(directory.resolve(MappedLogFeatureFlagRepository.LOG_FILE),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, tornRecord + 12);
+            value.put(0, (byte) (value.get(0) ^ 0xFF)).rewind();
+            channel.write(value, tornRecord + 12);
+        }
+        repository = new MappedLogFeatureFlagRepository(directory, 0.5);
+        
+        assertTrue(repository.findByFlagName("complete").isPresent());
+        assertTrue(repository.findByFlagName("torn").isEmpty());
+        repository.create(flag("after", 1));
+        reopen();
+        assertEquals(List.of("after", "complete"), names(repository.findAll()));
+    }
+    
+    @Test
+    void compactionKeepsOnlyTheLatestRecords() throws IOException {
+        repository.create(flag("checkout", 1));
+        for (int version = 1; version <= 20_000; version++) {
+            repository.update("checkout", FeatureFlag.builder().rolloutPercentage(version % 101).build(), version);
+        }
+        repository.create(flag("search", 1));
+        repository.deleteByFlagName("search");
+        long before = Files.size(directory.resolve(MappedLogFeatureFlagRepository.LOG_FILE));
+        
+        repository.compactIfNeeded();
+        
+        assertTrue(Files.size(directory.resolve(MappedLogFeatureFlagRepository.LOG_FILE)) < before);
+        assertFalse(Files.exists(directory.resolve("flags.log.compacting")));
+        FeatureFlag checkout = repository.findByFlagName("checkout").orElseThrow();
+        assertEquals(20_001, checkout.getVersion());
+        reopen();
+        assertEquals(checkout, repository.findByFlagName("checkout").orElseThrow());
+        assertEquals(List.of("search"), names(repository.findChangedSince(checkout.getRevision())));
+        assertEquals(checkout.getRevision() + 2, repository.currentRevision().revision());
+    }
+    
+    @Test
+    void aDirectoryIsOpenInOneRepositoryAtATime() {
+        assertThrows(IllegalStateException.class, () -> new MappedLogFeatureFlagRepository(directory, 0.5));
+    }
+    
+    private void reopen() throws IOException {
+        repository.close();
+        repository = new MappedLogFeatureFlagRepository(directory, 0.5);
+    }
+    
+    /**
+     * Walks the record lengths from the file header to the last record
+     */
+    private int lastRecordOffset() throws IOException {
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(MappedLogFeatureFlagRepository.LOG_FILE)));
+        int offset = 8;
+        int last = offset;
+        while (log.getInt(offset) != 0) {
+            last = offset;
+            offset += 8 + log.getInt(offset);
+        }
+        return last;
+    }
+    
+    private static List<String> names(List<FeatureFlag> flags) {
+        return flags.stream().map(FeatureFlag::getFlagName).sorted().toList();
+    }
+}
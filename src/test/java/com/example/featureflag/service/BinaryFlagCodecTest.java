@@ -0,0 +1,155 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.BucketRange;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFlagCodecTest {
+    
+    private final BinaryFlagCodec codec = new BinaryFlagCodec();
+    
+    @Test
+    void roundTripsEveryField() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder()
+                .flagName("checkout_redesign")
+                .enabled(true)
+                .rolloutPercentage(50)
+                .rolloutBasisPoints(5025)
+                .description("Ünïcode description")
+                .version(7)
+                .createdAt(Instant.parse("2024-01-01T00:00:00.123456789Z"))
+                .updatedAt(Instant.parse("1969-12-31T23:59:59.999Z"))
+                .revision(1L << 40)
+                .deleted(false)
+                .build();
+        
+        FlagCodec.CachedFlag decoded = codec.decode(codec.encode(flag, 1_700_000_000_000L));
+        
+        assertEquals(flag, decoded.flag());
+        assertEquals(1_700_000_000_000L, decoded.softExpiryMillis());
+    }
+    
+    @Test
+    void keepsNullFieldsNull() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder().flagName("sparse").enabled(false).build();
+        
+        FlagCodec.CachedFlag decoded = codec.decode(codec.encode(flag, 0));
+        
+        assertEquals(flag, decoded.flag());
+        assertEquals(0, decoded.softExpiryMillis());
+    }
+    
+    @Test
+    void roundTripsTargetingRules() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder()
+                .flagName("checkout_redesign")
+                .rules(List.of(
+                        TargetingRule.builder()
+                                .description("Beta testers in Germany")
+                                .conditions(List.of(
+                                        new TargetingCondition("country", TargetingOperator.IN, List.of("DE", "AT")),
+                                        new TargetingCondition("appVersion", TargetingOperator.SEMVER_GTE, List.of("5.2"))))
+                                .rolloutBasisPoints(2500)
+                                .build(),
+                        TargetingRule.builder()
+                                .conditions(List.of(new TargetingCondition("email", null, List.of())))
+                                .build()))
+                .build();
+        
+        assertEquals(flag, codec.decode(codec.encode(flag, 0)).flag());
+    }
+    
+    @Test
+    void roundTripsVariants() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder()
+                .flagName("checkout_experiment")
+                .variants(List.of(
+                        FlagVariant.builder()
+                                .key("control")
+                                .weight(5000)
+                                .buckets(List.of(new BucketRange(0, 2500), new BucketRange(7500, 10000)))
+                                .build(),
+                        FlagVariant.builder()
+                                .key("treatment")
+                                .value("{\"color\":\"green\"}")
+                                .weight(5000)
+                                .buckets(List.of(new BucketRange(2500, 7500), new BucketRange(null, null)))
+                                .build(),
+                        new FlagVariant()))
+                .build();
+        
+        assertEquals(flag, codec.decode(codec.encode(flag, 0)).flag());
+    }
+    
+    @Test
+    void roundTripsPrerequisites() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder()
+                .flagName("new_checkout")
+                .prerequisites(List.of("payments_v2", "address_autocomplete"))
+                .build();
+        FeatureFlag empty = FeatureFlag.builder().flagName("standalone").prerequisites(List.of()).build();
+        
+        assertEquals(flag, codec.decode(codec.encode(flag, 0)).flag());
+        assertEquals(empty, codec.decode(codec.encode(empty, 0)).flag());
+    }
+    
+    @Test
+    void roundTripsRolloutSchedules() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder()
+                .flagName("ramped_flag")
+                .rolloutSchedule(List.of(
+                        new RolloutStep(Instant.parse("2026-11-02T09:00:00.123456789Z"), 100, null),
+                        new RolloutStep(Instant.parse("2026-11-03T09:00:00Z"), 10000, true),
+                        new RolloutStep(null, null, false)))
+                .build();
+        
+        assertEquals(flag, codec.decode(codec.encode(flag, 0)).flag());
+    }
+    
+    @Test
+    void internsFlagNames() throws IOException {
+        byte[] value = codec.encode(FeatureFlag.builder().flagName("shared_name").build(), 0);
+        
+        assertSame(codec.decode(value).flag().getFlagName(), codec.decode(value).flag().getFlagName());
+    }
+    
+    @Test
+    void isSmallerThanJson() throws IOException {
+        FeatureFlag flag = FeatureFlag.builder()
+                .flagName("checkout_redesign")
+                .enabled(true)
+                .rolloutPercentage(50)
+                .version(7)
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .revision(42L)
+                .build();
+        
+        int binary = codec.encode(flag, System.currentTimeMillis()).length;
+        int json = new JsonFlagCodec().encode(flag, System.currentTimeMillis()).length;
+        
+        assertTrue(binary * 3 < json, binary + " vs " + json);
+    }
+    
+    @Test
+    void rejectsTruncatedAndUnknownValues() throws IOException {
+        byte[] value = codec.encode(FeatureFlag.builder().flagName("flag").version(3).build(), 0);
+        
+        assertThrows(IOException.class, () -> codec.decode(Arrays.copyOf(value, value.length - 1)));
+        
+        value[1] = (byte) (BinaryFlagCodec.FORMAT_VERSION + 1);
+        assertThrows(IOException.class, () -> codec.decode(value));
+    }
+}
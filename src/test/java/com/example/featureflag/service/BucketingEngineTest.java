@@ -0,0 +1,165 @@
+package com.example.featureflag.service;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BucketingEngineTest {
+    
+    private static final List<String> FLAG_NAMES = List.of(
+            "f", "new_checkout", "a_flag_name_that_is_exactly_31b", "a_flag_name_that_is_exactly_32by",
+            "ümlaut_flag", "very_long_flag_name_spanning_several_murmur_blocks_of_sixteen_bytes");
+    
+    @Test
+    void legacyBucket_MatchesHistoricalGuavaHash() {
+        Random random = new Random(42);
+        for (String flagName : FLAG_NAMES) {
+            BucketingEngine.Seed seed = BucketingEngine.computeSeed(flagName);
+            for (int i = 0; i < 2000; i++) {
+                String userId = randomUserId(random);
+                long expected = Hashing.murmur3_128()
+                        .hashString(flagName + ":" + userId, StandardCharsets.UTF_8)
+                        .asLong();
+                
+                assertEquals(expected, BucketingEngine.legacyHash(seed, userId), () -> flagName + "/" + userId);
+                assertEquals(Math.abs((int) (expected % 100)), BucketingEngine.legacyBucket(seed, userId));
+            }
+        }
+    }
+    
+    @Test
+    void matchesSdkParityVectors() throws IOException {
+        // The same file drives the SDK parity suite; regenerate both sides together
+        int[] basisPoints = {1, 2550, 5000, 9999};
+        try (var reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/bucketing/parity-vectors.tsv"), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().filter(line -> !line.startsWith("#")).toList();
+            assertFalse(lines.isEmpty());
+            for (String line : lines) {
+                String[] columns = line.split("\t", -1);
+                BucketingEngine.Seed seed = BucketingEngine.computeSeed(unescape(columns[0]));
+                String userId = unescape(columns[1]);
+                
+                assertEquals(Long.parseUnsignedLong(columns[2], 16), BucketingEngine.legacyHash(seed, userId), line);
+                assertEquals(Long.parseUnsignedLong(columns[3], 16), BucketingEngine.uniformHash(seed, userId), line);
+                for (int i = 0; i < basisPoints.length; i++) {
+                    assertEquals(columns[4].charAt(i) == '1',
+                            BucketingEngine.isInRollout(seed, userId, basisPoints[i], BucketingEngine.Mode.LEGACY), line);
+                    assertEquals(columns[5].charAt(i) == '1',
+                            BucketingEngine.isInRollout(seed, userId, basisPoints[i], BucketingEngine.Mode.UNIFORM), line);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void legacyMode_WholePercentRolloutsKeepAssignments() {
+        BucketingEngine engine = new BucketingEngine();
+        BucketingEngine.Seed seed = BucketingEngine.computeSeed("new_checkout");
+        
+        for (int i = 0; i < 5000; i++) {
+            String userId = "user" + i;
+            int legacyBucket = BucketingEngine.legacyBucket(seed, userId);
+            for (int percentage = 0; percentage <= 100; percentage += 10) {
+                assertEquals(legacyBucket < percentage, engine.isInRollout(seed, userId, percentage * 100));
+            }
+        }
+    }
+    
+    @Test
+    void isInRollout_MonotonicInBasisPoints() {
+        for (BucketingEngine.Mode mode : BucketingEngine.Mode.values()) {
+            BucketingEngine.Seed seed = BucketingEngine.computeSeed("new_checkout");
+            for (int i = 0; i < 2000; i++) {
+                String userId = "user" + i;
+                boolean previous = false;
+                for (int basisPoints = 0; basisPoints <= 10000; basisPoints += 37) {
+                    boolean current = BucketingEngine.isInRollout(seed, userId, basisPoints, mode);
+                    assertTrue(current || !previous, "user left rollout as it grew: " + userId);
+                    previous = current;
+                }
+            }
+        }
+    }
+    
+    @Test
+    void uniformBucket_IsEvenlyDistributed() {
+        BucketingEngine.Seed seed = BucketingEngine.computeSeed("new_checkout");
+        int[] counts = new int[100];
+        int users = 200_000;
+        for (int i = 0; i < users; i++) {
+            int bucket = BucketingEngine.uniformBucket(seed, "user" + i);
+            assertTrue(bucket >= 0 && bucket < BucketingEngine.MAX_BASIS_POINTS);
+            counts[bucket / 100]++;
+        }
+        for (int count : counts) {
+            assertEquals(users / 100.0, count, users / 100.0 * 0.1);
+        }
+    }
+    
+    @Test
+    void isInRollout_DoesNotAllocateOnceWarm() {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        BucketingEngine.Seed seed = BucketingEngine.computeSeed("new_checkout");
+        String[] userIds = new String[1000];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = "user-" + i + "-ü";
+        }
+        
+        for (BucketingEngine.Mode mode : BucketingEngine.Mode.values()) {
+            int enabled = 0;
+            for (String userId : userIds) {
+                enabled += BucketingEngine.isInRollout(seed, userId, 2550, mode) ? 1 : 0;
+            }
+            
+            long threadId = Thread.currentThread().getId();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int round = 0; round < 100; round++) {
+                for (String userId : userIds) {
+                    enabled += BucketingEngine.isInRollout(seed, userId, 2550, mode) ? 1 : 0;
+                }
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+            
+            assertTrue(enabled > 0);
+            assertTrue(allocated < 64 * 1024, mode + " allocated " + allocated + " bytes for 100k evaluations");
+        }
+    }
+    
+    private static String unescape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            if (value.startsWith("\\u", i)) {
+                builder.append((char) Integer.parseInt(value.substring(i + 2, i + 6), 16));
+                i += 5;
+            } else {
+                builder.append(value.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+    
+    private static String randomUserId(Random random) {
+        int length = random.nextInt(40);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(5)) {
+                case 0 -> builder.append((char) ('a' + random.nextInt(26)));
+                case 1 -> builder.append((char) (0x80 + random.nextInt(0x780)));
+                case 2 -> builder.append((char) (0x800 + random.nextInt(0xd000)));
+                case 3 -> builder.appendCodePoint(0x10000 + random.nextInt(0xfffff));
+                default -> builder.append((char) (0xd800 + random.nextInt(0x800)));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheServiceTest {
+    
+    private RedisServer redisServer;
+    private SimpleMeterRegistry meterRegistry;
+    private CacheService cacheService;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        redisServer = RedisServer.newRedisServer().start();
+        meterRegistry = new SimpleMeterRegistry();
+        cacheService = newCacheService();
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        cacheService.destroy();
+        redisServer.stop();
+    }
+    
+    @Test
+    void getFlag_ServedFromLocalCacheAfterRedisLoss() {
+        cacheService.putFlag(flag("test_flag", 1));
+        
+        try (Jedis jedis = new Jedis(redisServer.getHost(), redisServer.getBindPort())) {
+            jedis.del("flag:test_flag");
+        }
+        
+        FeatureFlag cached = cacheService.getFlag("test_flag");
+        assertNotNull(cached);
+        assertEquals(1, cached.getVersion());
+    }
+    
+    @Test
+    void getFlag_PopulatesLocalCacheFromRedis() {
+        CacheService otherNode = newCacheService();
+        try {
+            otherNode.putFlag(flag("test_flag", 3));
+            
+            assertEquals(3, cacheService.getFlag("test_flag").getVersion());
+        } finally {
+            otherNode.destroy();
+        }
+    }
+    
+    @Test
+    void invalidateLocal_KeepsNewerEntries() {
+        cacheService.putFlag(flag("test_flag", 2));
+        evictRedisOnly("test_flag");
+        
+        cacheService.invalidateLocal("test_flag", 1, 0);
+        assertNotNull(cacheService.getFlag("test_flag"));
+        
+        cacheService.invalidateLocal("test_flag", 3, 0);
+        assertNull(cacheService.getFlag("test_flag"));
+    }
+    
+    @Test
+    void invalidateLocal_RecreatedFlagReplacesHigherVersion() {
+        FeatureFlag stale = flag("test_flag", 5);
+        stale.setRevision(10L);
+        cacheService.putFlag(stale);
+        evictRedisOnly("test_flag");
+        
+        // Deleted and recreated elsewhere: the version restarts, the revision does not
+        cacheService.invalidateLocal("test_flag", 1, 12);
+        
+        assertNull(cacheService.getFlag("test_flag"));
+    }
+    
+    @Test
+    void invalidateLocal_DeletionAlwaysInvalidates() {
+        cacheService.putFlag(flag("test_flag", 5));
+        evictRedisOnly("test_flag");
+        
+        cacheService.invalidateLocal("test_flag", 0, 0);
+        
+        assertNull(cacheService.getFlag("test_flag"));
+    }
+    
+    @Test
+    void putNotFound_SharedAcrossNodesAsCompactMarker() {
+        CacheService otherNode = newCacheService();
+        try {
+            otherNode.putNotFound("gone_flag");
+            
+            assertTrue(cacheService.lookup("gone_flag").notFound());
+            assertNull(cacheService.getFlag("gone_flag"));
+            assertTrue(cacheService.getFlags(List.of("gone_flag")).isEmpty());
+            try (Jedis jedis = new Jedis(redisServer.getHost(), redisServer.getBindPort())) {
+                assertEquals("", jedis.get("flag:gone_flag"));
+                assertTrue(jedis.ttl("flag:gone_flag") <= 33);
+            }
+        } finally {
+            otherNode.destroy();
+        }
+    }
+    
+    @Test
+    void lookup_CountsOutcomesByTier() {
+        CacheService otherNode = newCacheService();
+        try {
+            otherNode.putFlag(flag("test_flag", 1));
+            
+            cacheService.lookup("test_flag");
+            cacheService.lookup("test_flag");
+            cacheService.lookup("missing_flag");
+            
+            assertEquals(1, lookups("redis", "hit"));
+            assertEquals(1, lookups("local", "hit"));
+            assertEquals(1, lookups("redis", "miss"));
+            assertEquals(1, meterRegistry.get("cache.redis").tag("operation", "put").tag("outcome", "success")
+                    .timer().count());
+        } finally {
+            otherNode.destroy();
+        }
+    }
+    
+    @Test
+    void putNotFound_NeverMasksCachedFlag() {
+        cacheService.putFlag(flag("test_flag", 1));
+        
+        cacheService.putNotFound("test_flag");
+        
+        assertNotNull(cacheService.getFlag("test_flag"));
+        try (Jedis jedis = new Jedis(redisServer.getHost(), redisServer.getBindPort())) {
+            assertNotEquals("", jedis.get("flag:test_flag"));
+        }
+    }
+    
+    @Test
+    void createInvalidationClearsNotFoundOnOtherNodes() throws InterruptedException {
+        CacheService otherNode = newCacheService();
+        try {
+            cacheService.putNotFound("new_flag");
+            assertTrue(cacheService.lookup("new_flag").notFound());
+            
+            // What createFlag does on another node
+            otherNode.putFlag(flag("new_flag", 1));
+            otherNode.publishInvalidation("new_flag", 1, 1);
+            
+            long deadline = System.currentTimeMillis() + 2000;
+            while (cacheService.getFlag("new_flag") == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, cacheService.getFlag("new_flag").getVersion());
+        } finally {
+            otherNode.destroy();
+        }
+    }
+    
+    @Test
+    void lookup_FlagsEntriesPastSoftExpiryAsStale() {
+        CacheService writer = newCacheService();
+        try {
+            writer.putFlag(flag("fresh_flag", 1));
+            ReflectionTestUtils.setField(writer, "refreshAheadFactor", 0.0);
+            writer.putFlag(flag("stale_flag", 1));
+            
+            assertFalse(cacheService.lookup("fresh_flag").stale());
+            CacheService.Lookup stale = cacheService.lookup("stale_flag");
+            assertTrue(stale.stale());
+            assertEquals(1, stale.flag().getVersion());
+        } finally {
+            writer.destroy();
+        }
+    }
+    
+    @Test
+    void lookup_ReadsValuesWrittenWithoutSoftExpiry() {
+        try (Jedis jedis = new Jedis(redisServer.getHost(), redisServer.getBindPort())) {
+            jedis.setex("flag:legacy_flag", 300, "{\"flagName\":\"legacy_flag\",\"enabled\":true,\"version\":4}");
+        }
+        
+        CacheService.Lookup lookup = cacheService.lookup("legacy_flag");
+        
+        assertFalse(lookup.stale());
+        assertEquals(4, lookup.flag().getVersion());
+    }
+    
+    @Test
+    void lookup_ReadsValuesFromNodesOnEitherCodec() {
+        CacheService jsonNode = newCacheService("json");
+        try {
+            jsonNode.putFlag(flag("json_flag", 2));
+            cacheService.putFlag(flag("binary_flag", 3));
+            try (Jedis jedis = new Jedis(redisServer.getHost(), redisServer.getBindPort())) {
+                assertTrue(jedis.get("flag:json_flag").contains("\"flagName\":\"json_flag\""));
+                assertEquals(BinaryFlagCodec.MAGIC, jedis.get("flag:binary_flag".getBytes())[0]);
+            }
+            
+            assertEquals(2, cacheService.lookup("json_flag").flag().getVersion());
+            assertEquals(3, jsonNode.lookup("binary_flag").flag().getVersion());
+        } finally {
+            jsonNode.destroy();
+        }
+    }
+    
+    @Test
+    void redisOutage_OpensCircuitAndBypassesRedis() throws IOException {
+        cacheService.putFlag(flag("local_flag", 1));
+        redisServer.stop();
+        
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cacheService.lookup("missing_" + i).isMiss());
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, cacheService.circuitBreaker().state());
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(cacheService.lookup("missing_" + i).isMiss());
+            cacheService.putNotFound("missing_" + i);
+        }
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+        assertTrue(cacheService.lookup("missing_999").notFound());
+        assertEquals(1, cacheService.getFlag("local_flag").getVersion());
+        assertTrue(meterRegistry.get("cache.redis").tag("operation", "get").tag("outcome", "rejected")
+                .timer().count() >= 1000);
+        assertEquals(1, meterRegistry.get("cache.redis.circuit.state").tag("state", "open").gauge().value());
+        
+        redisServer.start();
+    }
+    
+    @Test
+    void jitteredTtl_SpreadsWithinBounds() {
+        Set<Long> ttls = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long ttl = cacheService.jitteredTtl(300);
+            assertTrue(ttl >= 270 && ttl <= 330, "ttl " + ttl);
+            ttls.add(ttl);
+        }
+        assertTrue(ttls.size() > 10);
+    }
+    
+    @Test
+    void publishInvalidation_InvalidatesOtherNodes() throws InterruptedException {
+        CacheService otherNode = newCacheService();
+        try {
+            cacheService.putFlag(flag("test_flag", 1));
+            evictRedisOnly("test_flag");
+            
+            otherNode.publishInvalidation("test_flag", 2, 2);
+            
+            long deadline = System.currentTimeMillis() + 2000;
+            while (cacheService.getFlag("test_flag") != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertNull(cacheService.getFlag("test_flag"));
+        } finally {
+            otherNode.destroy();
+        }
+    }
+    
+    private CacheService newCacheService() {
+        return newCacheService("binary");
+    }
+    
+    private CacheService newCacheService(String codec) {
+        CacheService service = new CacheService(meterRegistry);
+        ReflectionTestUtils.setField(service, "redisHost", redisServer.getHost());
+        ReflectionTestUtils.setField(service, "redisPort", redisServer.getBindPort());
+        ReflectionTestUtils.setField(service, "cacheTtlSeconds", 300);
+        ReflectionTestUtils.setField(service, "localMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "localTtlSeconds", 60L);
+        ReflectionTestUtils.setField(service, "invalidationChannel", "flag-invalidations");
+        ReflectionTestUtils.setField(service, "ttlJitter", 0.1);
+        ReflectionTestUtils.setField(service, "refreshAheadEnabled", true);
+        ReflectionTestUtils.setField(service, "refreshAheadFactor", 0.8);
+        ReflectionTestUtils.setField(service, "negativeTtlSeconds", 30);
+        ReflectionTestUtils.setField(service, "negativeMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "codecName", codec);
+        ReflectionTestUtils.setField(service, "redisTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(service, "poolMaxWaitMs", 100L);
+        ReflectionTestUtils.setField(service, "circuitBreakerEnabled", true);
+        ReflectionTestUtils.setField(service, "circuitBreakerFailureRate", 0.5);
+        ReflectionTestUtils.setField(service, "circuitBreakerSlowCallMs", 250L);
+        ReflectionTestUtils.setField(service, "circuitBreakerWindowSize", 10);
+        ReflectionTestUtils.setField(service, "circuitBreakerOpenMs", 60000L);
+        service.init();
+        awaitSubscribed(service);
+        return service;
+    }
+    
+    private static void awaitSubscribed(CacheService service) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < deadline) {
+            JedisPubSub subscriber = (JedisPubSub) ReflectionTestUtils.getField(service, "invalidationSubscriber");
+            if (subscriber != null && subscriber.isSubscribed()) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        fail("Invalidation subscriber did not attach");
+    }
+    
+    private double lookups(String tier, String result) {
+        return meterRegistry.get("cache.lookups").tag("tier", tier).tag("result", result).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+    
+    private void evictRedisOnly(String flagName) {
+        try (Jedis jedis = new Jedis(redisServer.getHost(), redisServer.getBindPort())) {
+            jedis.del("flag:" + flagName);
+        }
+    }
+    
+    private static FeatureFlag flag(String name, int version) {
+        return FeatureFlag.builder()
+                .flagName(name)
+                .enabled(true)
+                .rolloutPercentage(50)
+                .version(version)
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.ExposureEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExposurePipelineTest {
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<ExposureEvent>> batches = new CopyOnWriteArrayList<>();
+    private ExposurePipeline pipeline;
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+    
+    @Test
+    void eventsAreWrittenInBatchesOnStop() throws InterruptedException {
+        pipeline = pipeline(batches::add, 1024, 4);
+        
+        for (int i = 0; i < 10; i++) {
+            assertTrue(pipeline.record("test_flag", "user" + i, true, null, 1));
+        }
+        pipeline.stop();
+        
+        assertEquals(10, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 4));
+        assertEquals(10, exposures("written"));
+        assertFalse(pipeline.record("test_flag", "late_user", true, null, 1));
+    }
+    
+    @Test
+    void repeatedExposuresWithinTheWindowAreWrittenOnce() throws InterruptedException {
+        pipeline = pipeline(batches::add, 1024, 500);
+        
+        pipeline.record("test_flag", "user1", true, null, 1);
+        pipeline.record("test_flag", "user1", true, null, 1);
+        pipeline.record("test_flag", "user1", true, null, 2);
+        pipeline.record("test_flag", "user2", true, null, 1);
+        pipeline.stop();
+        
+        List<ExposureEvent> written = batches.stream().flatMap(List::stream).toList();
+        assertEquals(3, written.size());
+        assertEquals(1, exposures("deduplicated"));
+    }
+    
+    @Test
+    void blockedSinkDropsOverflowWithoutBlockingRecord() throws InterruptedException {
+        CountDownLatch sinkEntered = new CountDownLatch(1);
+        CountDownLatch releaseSink = new CountDownLatch(1);
+        pipeline = pipeline(events -> {
+            sinkEntered.countDown();
+            try {
+                releaseSink.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(events);
+        }, 8, 1);
+        
+        pipeline.record("test_flag", "first_user", true, null, 1);
+        assertTrue(sinkEntered.await(5, TimeUnit.SECONDS));
+        
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (pipeline.record("test_flag", "user" + i, true, null, 1)) {
+                accepted++;
+            }
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertEquals(8, accepted);
+        assertEquals(92, pipeline.droppedCount());
+        assertEquals(92, meterRegistry.get("flags.exposures").tag("result", "dropped").functionCounter().count());
+        assertTrue(elapsedMs < 1000, "record blocked for " + elapsedMs + "ms");
+        
+        releaseSink.countDown();
+        pipeline.stop();
+        assertEquals(9, batches.stream().mapToInt(List::size).sum());
+    }
+    
+    @Test
+    void failedWritesAreCountedAndTheDrainerKeepsRunning() throws InterruptedException {
+        pipeline = pipeline(events -> {
+            throw new IOException("disk full");
+        }, 1024, 2);
+        
+        for (int i = 0; i < 4; i++) {
+            pipeline.record("test_flag", "user" + i, false, null, 1);
+        }
+        pipeline.stop();
+        
+        assertEquals(4, exposures("failed"));
+        assertEquals(0, exposures("written"));
+    }
+    
+    @Test
+    void ringBufferLosesNothingUnderConcurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        ExposureRingBuffer buffer = new ExposureRingBuffer(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                String userId = "producer" + p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        ExposureEvent event = new ExposureEvent("test_flag", userId, true, null, i, i);
+                        while (!buffer.offer(event)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+            
+            Set<String> seen = new HashSet<>();
+            int[] nextVersion = new int[producers];
+            while (seen.size() < producers * perProducer) {
+                buffer.drain(event -> {
+                    assertTrue(seen.add(event.userId() + "#" + event.version()), "duplicate " + event);
+                    int producer = Integer.parseInt(event.userId().substring("producer".length()));
+                    assertEquals(nextVersion[producer]++, event.version(), "out of order for " + event.userId());
+                }, 256);
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(0, buffer.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private ExposurePipeline pipeline(ExposureSink sink, int bufferSize, int batchSize) {
+        ExposurePipeline exposurePipeline = new ExposurePipeline(sink, meterRegistry);
+        ReflectionTestUtils.setField(exposurePipeline, "enabled", true);
+        ReflectionTestUtils.setField(exposurePipeline, "bufferSize", bufferSize);
+        ReflectionTestUtils.setField(exposurePipeline, "batchSize", batchSize);
+        ReflectionTestUtils.setField(exposurePipeline, "flushIntervalMs", 50L);
+        exposurePipeline.start();
+        return exposurePipeline;
+    }
+    
+    private double exposures(String result) {
+        return meterRegistry.get("flags.exposures").tag("result", result).counter().count();
+    }
+}
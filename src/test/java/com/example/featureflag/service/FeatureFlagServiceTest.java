@@ -1,26 +1,55 @@
 package com.example.featureflag.service;
 
+import com.example.featureflag.dto.BatchEvaluationResponse;
 import com.example.featureflag.dto.CreateFeatureFlagRequest;
 import com.example.featureflag.dto.FeatureFlagResponse;
+import com.example.featureflag.dto.FlagChangeEvent;
 import com.example.featureflag.dto.FlagEvaluationResponse;
+import com.example.featureflag.dto.FlagSnapshotResponse;
+import com.example.featureflag.dto.FlagUsageResponse;
 import com.example.featureflag.dto.UpdateFeatureFlagRequest;
 import com.example.featureflag.exception.FlagAlreadyExistsException;
 import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.exception.FlagVersionConflictException;
+import com.example.featureflag.exception.InvalidPrerequisiteException;
+import com.example.featureflag.exception.InvalidRolloutScheduleException;
+import com.example.featureflag.exception.InvalidTargetingRuleException;
+import com.example.featureflag.exception.InvalidVariantException;
+import com.example.featureflag.model.BucketRange;
+import com.example.featureflag.model.ExposureEvent;
 import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.FlagUsage;
+import com.example.featureflag.model.FlagVariant;
+import com.example.featureflag.model.RolloutStep;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
 import com.example.featureflag.repository.FeatureFlagRepository;
+import com.example.featureflag.repository.FlagUsageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,13 +61,30 @@ class FeatureFlagServiceTest {
     @Mock
     private CacheService cacheService;
     
-    @InjectMocks
+    @Mock
+    private FlagUsageRepository usageRepository;
+    
+    private FlagSnapshotManager snapshotManager;
+    
+    private FlagChangeBroadcaster changeBroadcaster;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
     private FeatureFlagService service;
     
     private FeatureFlag testFlag;
     
     @BeforeEach
     void setUp() {
+        snapshotManager = new FlagSnapshotManager(repository, cacheService, new SegmentHandles());
+        changeBroadcaster = new FlagChangeBroadcaster();
+        meterRegistry = new SimpleMeterRegistry();
+        FlagEvaluationMetrics evaluationMetrics = new FlagEvaluationMetrics(meterRegistry);
+        ReflectionTestUtils.setField(evaluationMetrics, "snapshotTimerSample", 1);
+        service = new FeatureFlagService(repository, cacheService, new BucketingEngine(), snapshotManager, changeBroadcaster,
+                new FlagLoader(repository, cacheService, meterRegistry), evaluationMetrics,
+                new ExposurePipeline(events -> { }, meterRegistry), new FlagUsageCounters(usageRepository));
+        
         testFlag = FeatureFlag.builder()
                 .flagName("test_flag")
                 .enabled(true)
@@ -59,8 +105,7 @@ class FeatureFlagServiceTest {
                 .description("Test flag")
                 .build();
         
-        when(repository.existsByFlagName(anyString())).thenReturn(false);
-        when(repository.save(any(FeatureFlag.class))).thenReturn(testFlag);
+        when(repository.create(any(FeatureFlag.class))).thenReturn(testFlag);
         
         FeatureFlagResponse response = service.createFlag(request);
         
@@ -69,7 +114,8 @@ class FeatureFlagServiceTest {
         assertEquals(true, response.getEnabled());
         assertEquals(50, response.getRolloutPercentage());
         
-        verify(repository).save(any(FeatureFlag.class));
+        verify(repository).create(any(FeatureFlag.class));
+        verify(repository, never()).existsByFlagName(anyString());
         verify(cacheService).putFlag(any(FeatureFlag.class));
     }
     
@@ -81,15 +127,15 @@ class FeatureFlagServiceTest {
                 .rolloutPercentage(50)
                 .build();
         
-        when(repository.existsByFlagName("test_flag")).thenReturn(true);
+        when(repository.create(any(FeatureFlag.class))).thenThrow(new FlagAlreadyExistsException("test_flag"));
         
         assertThrows(FlagAlreadyExistsException.class, () -> service.createFlag(request));
-        verify(repository, never()).save(any());
+        verify(cacheService, never()).putFlag(any());
     }
     
     @Test
     void getFlag_FromCache() {
-        when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
         
         FeatureFlagResponse response = service.getFlag("test_flag");
         
@@ -100,7 +146,7 @@ class FeatureFlagServiceTest {
     
     @Test
     void getFlag_FromDatabase() {
-        when(cacheService.getFlag("test_flag")).thenReturn(null);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.MISS);
         when(repository.findByFlagName("test_flag")).thenReturn(Optional.of(testFlag));
         
         FeatureFlagResponse response = service.getFlag("test_flag");
@@ -113,7 +159,7 @@ class FeatureFlagServiceTest {
     
     @Test
     void getFlag_NotFound() {
-        when(cacheService.getFlag("test_flag")).thenReturn(null);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.MISS);
         when(repository.findByFlagName("test_flag")).thenReturn(Optional.empty());
         
         assertThrows(FlagNotFoundException.class, () -> service.getFlag("test_flag"));
@@ -126,39 +172,67 @@ class FeatureFlagServiceTest {
                 .rolloutPercentage(75)
                 .build();
         
-        when(repository.findByFlagName("test_flag")).thenReturn(Optional.of(testFlag));
-        when(repository.save(any(FeatureFlag.class))).thenReturn(testFlag);
+        stubConditionalUpdate();
         
         FeatureFlagResponse response = service.updateFlag("test_flag", request);
         
         assertNotNull(response);
-        verify(repository).save(any(FeatureFlag.class));
+        assertEquals(false, response.getEnabled());
+        assertEquals(7500, response.getRolloutBasisPoints());
+        assertEquals(2, response.getVersion());
+        verify(repository, never()).findByFlagName(anyString());
         verify(cacheService).evictFlag("test_flag");
         verify(cacheService).putFlag(any(FeatureFlag.class));
+        verify(cacheService).publishInvalidation(eq("test_flag"), eq(2), anyLong());
+    }
+    
+    @Test
+    void updateFlag_PassesExpectedVersionThrough() {
+        when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(repository.update(flagNamed("test_flag"), any(FeatureFlag.class), eq(4)))
+                .thenThrow(new FlagVersionConflictException("test_flag", 4, 5));
+        UpdateFeatureFlagRequest request = UpdateFeatureFlagRequest.builder()
+                .enabled(false)
+                .expectedVersion(4)
+                .build();
+        
+        assertThrows(FlagVersionConflictException.class, () -> service.updateFlag("test_flag", request));
+        verify(cacheService, never()).publishInvalidation(anyString(), any(), anyLong());
+    }
+    
+    @Test
+    void updateFlag_NoChangesIsReadOnly() {
+        when(repository.findByFlagName("test_flag")).thenReturn(Optional.of(testFlag));
+        
+        FeatureFlagResponse response = service.updateFlag("test_flag", new UpdateFeatureFlagRequest());
+        
+        assertEquals(1, response.getVersion());
+        verify(repository, never()).update(any(FeatureFlag.class), any(), any());
     }
     
     @Test
     void deleteFlag_Success() {
-        when(repository.existsByFlagName("test_flag")).thenReturn(true);
+        when(repository.deleteByFlagName("test_flag")).thenReturn(tombstone("test_flag", 8L));
         
         service.deleteFlag("test_flag");
         
         verify(repository).deleteByFlagName("test_flag");
         verify(cacheService).evictFlag("test_flag");
+        verify(cacheService).publishInvalidation(eq("test_flag"), isNull(), eq(8L));
     }
     
     @Test
     void deleteFlag_NotFound() {
-        when(repository.existsByFlagName("test_flag")).thenReturn(false);
+        when(repository.deleteByFlagName("test_flag")).thenThrow(new FlagNotFoundException("test_flag"));
         
         assertThrows(FlagNotFoundException.class, () -> service.deleteFlag("test_flag"));
-        verify(repository, never()).deleteByFlagName(anyString());
+        verify(cacheService, never()).evictFlag(anyString());
     }
     
     @Test
     void evaluateFlag_DisabledFlag() {
         testFlag.setEnabled(false);
-        when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
         
         FlagEvaluationResponse response = service.evaluateFlag("test_flag", "user123");
         
@@ -169,7 +243,7 @@ class FeatureFlagServiceTest {
     @Test
     void evaluateFlag_100PercentRollout() {
         testFlag.setRolloutPercentage(100);
-        when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
         
         FlagEvaluationResponse response = service.evaluateFlag("test_flag", "user123");
         
@@ -180,7 +254,7 @@ class FeatureFlagServiceTest {
     @Test
     void evaluateFlag_0PercentRollout() {
         testFlag.setRolloutPercentage(0);
-        when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
         
         FlagEvaluationResponse response = service.evaluateFlag("test_flag", "user123");
         
@@ -191,7 +265,7 @@ class FeatureFlagServiceTest {
     @Test
     void evaluateFlag_DeterministicHashing() {
         testFlag.setRolloutPercentage(50);
-        when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
         
         // Same user should always get same result
         FlagEvaluationResponse response1 = service.evaluateFlag("test_flag", "user123");
@@ -199,4 +273,645 @@ class FeatureFlagServiceTest {
         
         assertEquals(response1.getEnabled(), response2.getEnabled());
     }
+    
+    @Test
+    void evaluateFlag_ServedFromSnapshotAfterFirstLoad() {
+        testFlag.setRolloutPercentage(100);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        service.evaluateFlag("test_flag", "user1");
+        FlagEvaluationResponse response = service.evaluateFlag("test_flag", "user2");
+        
+        assertTrue(response.getEnabled());
+        verify(cacheService, times(1)).lookup("test_flag");
+    }
+    
+    @Test
+    void evaluateFlag_RecordsLatencyBySourceAndCountsPerFlag() {
+        testFlag.setRolloutPercentage(100);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        service.evaluateFlag("test_flag", "user1");
+        service.evaluateFlag("test_flag", "user2");
+        service.evaluateFlags(List.of("test_flag"), List.of("user3", "user4", "user5"));
+        
+        assertEquals(1, meterRegistry.get("flags.evaluate").tag("source", "loaded").timer().count());
+        assertEquals(1, meterRegistry.get("flags.evaluate").tag("source", "snapshot").timer().count());
+        assertEquals(5, meterRegistry.get("flags.evaluations")
+                .tag("flag", "test_flag").tag("result", "enabled").counter().count());
+    }
+    
+    @Test
+    void getUsage_AddsUnflushedCountsToStoredTotals() {
+        testFlag.setRolloutPercentage(100);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        when(usageRepository.findByFlagName("test_flag"))
+                .thenReturn(Optional.of(new FlagUsage("test_flag", 10, 4, Instant.EPOCH)));
+        
+        service.evaluateFlag("test_flag", "user1");
+        service.evaluateFlags(List.of("test_flag"), List.of("user2", "user3"));
+        FlagUsageResponse usage = service.getUsage("test_flag");
+        
+        assertEquals(17, usage.getEvaluations());
+        assertEquals(13, usage.getEnabledCount());
+        assertEquals(4, usage.getDisabledCount());
+        assertNotNull(usage.getLastEvaluatedAt());
+    }
+    
+    @Test
+    void getUsage_UnknownFlag() {
+        when(cacheService.lookup("unknown_flag")).thenReturn(CacheService.Lookup.MISS);
+        when(repository.findByFlagName("unknown_flag")).thenReturn(Optional.empty());
+        
+        assertThrows(FlagNotFoundException.class, () -> service.getUsage("unknown_flag"));
+        verifyNoInteractions(usageRepository);
+    }
+    
+    @Test
+    void evaluateFlag_UpdateSwapsSnapshot() {
+        testFlag.setRolloutPercentage(100);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        stubConditionalUpdate();
+        
+        assertTrue(service.evaluateFlag("test_flag", "user1").getEnabled());
+        service.updateFlag("test_flag", UpdateFeatureFlagRequest.builder().enabled(false).build());
+        
+        assertFalse(service.evaluateFlag("test_flag", "user1").getEnabled());
+        assertEquals(2, snapshotManager.current().version(snapshotManager.current().indexOf("test_flag")));
+    }
+    
+    @Test
+    void evaluateFlag_RemoteInvalidationDropsSnapshotEntry() {
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        service.evaluateFlag("test_flag", "user1");
+        
+        snapshotManager.onInvalidation("test_flag", 1, 0);
+        assertTrue(snapshotManager.current().indexOf("test_flag") >= 0);
+        
+        snapshotManager.onInvalidation("test_flag", 2, 0);
+        assertEquals(-1, snapshotManager.current().indexOf("test_flag"));
+    }
+    
+    @Test
+    void evaluateFlag_RemoteRecreateDropsHigherStaleVersion() {
+        testFlag.setVersion(5);
+        testFlag.setRevision(10L);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        service.evaluateFlag("test_flag", "user1");
+        
+        snapshotManager.onInvalidation("test_flag", 1, 12);
+        
+        assertEquals(-1, snapshotManager.current().indexOf("test_flag"));
+    }
+    
+    @Test
+    void writesPublishTheRevisionsTheRepositoryWrote() {
+        testFlag.setRevision(6L);
+        stubConditionalUpdate();
+        when(repository.deleteByFlagName("test_flag")).thenReturn(tombstone("test_flag", 8L));
+        
+        FeatureFlagResponse response = service.updateFlag("test_flag", UpdateFeatureFlagRequest.builder().enabled(false).build());
+        service.deleteFlag("test_flag");
+        
+        assertEquals(7L, response.getRevision());
+        verify(cacheService).publishInvalidation("test_flag", 2, 7L);
+        verify(cacheService).publishInvalidation(eq("test_flag"), isNull(), eq(8L));
+    }
+    
+    @Test
+    void getSnapshot_DeltaReportsChangesAndDeletions() {
+        when(repository.currentRevision()).thenReturn(new FeatureFlagRepository.RevisionCounter(12, 3));
+        testFlag.setRevision(11L);
+        FeatureFlag tombstone = FeatureFlag.builder().flagName("old_flag").deleted(true).revision(12L).build();
+        when(repository.findChangedSince(10)).thenReturn(List.of(testFlag, tombstone));
+        
+        FlagSnapshotResponse snapshot = service.getSnapshot(10L);
+        
+        assertFalse(snapshot.getFull());
+        assertEquals(12L, snapshot.getRevision());
+        assertEquals(List.of("test_flag"), snapshot.getFlags().stream().map(FeatureFlagResponse::getFlagName).toList());
+        assertEquals(List.of("old_flag"), snapshot.getDeletedFlags());
+    }
+    
+    @Test
+    void getSnapshot_UnchangedDeltaKeepsRevision() {
+        when(repository.currentRevision()).thenReturn(new FeatureFlagRepository.RevisionCounter(12, 0));
+        when(repository.findChangedSince(12)).thenReturn(List.of());
+        
+        FlagSnapshotResponse snapshot = service.getSnapshot(12L);
+        
+        assertFalse(snapshot.getFull());
+        assertEquals(12L, snapshot.getRevision());
+        assertTrue(snapshot.getFlags().isEmpty());
+    }
+    
+    @Test
+    void getSnapshot_FallsBackToFullWhenDeltaIsUnsafe() {
+        when(repository.currentRevision()).thenReturn(new FeatureFlagRepository.RevisionCounter(12, 5));
+        FeatureFlag tombstone = FeatureFlag.builder().flagName("old_flag").deleted(true).revision(12L).build();
+        when(repository.findChangedSince(-1)).thenReturn(List.of(testFlag, tombstone));
+        
+        for (Long sinceRevision : new Long[] {null, 4L, 13L}) {
+            FlagSnapshotResponse snapshot = service.getSnapshot(sinceRevision);
+            
+            assertTrue(snapshot.getFull());
+            assertEquals(12L, snapshot.getRevision());
+            assertEquals(1, snapshot.getFlags().size());
+            assertTrue(snapshot.getDeletedFlags().isEmpty());
+        }
+    }
+    
+    @Test
+    void writesArePublishedToChangeStream() {
+        stubConditionalUpdate();
+        when(repository.deleteByFlagName("test_flag")).thenReturn(tombstone("test_flag", 8L));
+        
+        service.updateFlag("test_flag", UpdateFeatureFlagRequest.builder().enabled(false).build());
+        service.deleteFlag("test_flag");
+        
+        List<FlagChangeBroadcaster.StreamEvent> events = changeBroadcaster.eventsAfter(changeBroadcaster.eventId(0)).orElseThrow();
+        assertEquals(2, events.size());
+        assertEquals(FlagChangeEvent.ChangeType.UPDATED, events.get(0).event().getType());
+        assertEquals(2, events.get(0).event().getVersion());
+        assertEquals(false, events.get(0).event().getFlag().getEnabled());
+        assertEquals(FlagChangeEvent.ChangeType.DELETED, events.get(1).event().getType());
+        assertNull(events.get(1).event().getFlag());
+    }
+    
+    @Test
+    void remoteChangesArePublishedOnce() {
+        stubConditionalUpdate();
+        
+        service.updateFlag("test_flag", UpdateFeatureFlagRequest.builder().enabled(false).build());
+        // Our own pub/sub echo must not produce a second event or another cache read
+        service.onRemoteChange("test_flag", 2, 1);
+        verify(cacheService, times(1)).getFlag("test_flag");
+        
+        FeatureFlag remote = FeatureFlag.builder().flagName("test_flag").enabled(true).rolloutPercentage(10).version(3).revision(2L).build();
+        when(cacheService.getFlag("test_flag")).thenReturn(remote);
+        service.onRemoteChange("test_flag", 3, 2);
+        service.onRemoteChange("test_flag", CacheService.DELETED_VERSION, 3);
+        service.onRemoteChange("test_flag", CacheService.DELETED_VERSION, 3);
+        
+        List<FlagChangeBroadcaster.StreamEvent> events = changeBroadcaster.eventsAfter(changeBroadcaster.eventId(0)).orElseThrow();
+        assertEquals(3, events.size());
+        assertEquals(3, events.get(1).event().getVersion());
+        assertEquals(2L, events.get(1).event().getRevision());
+        assertEquals(10, events.get(1).event().getFlag().getRolloutPercentage());
+        assertEquals(FlagChangeEvent.ChangeType.DELETED, events.get(2).event().getType());
+        assertEquals(3L, events.get(2).event().getRevision());
+    }
+    
+    @Test
+    void remoteRecreateIsPublishedAfterAMissedDelete() {
+        FeatureFlag old = FeatureFlag.builder().flagName("test_flag").enabled(true).version(4).revision(5L).build();
+        when(cacheService.getFlag("test_flag")).thenReturn(old);
+        service.onRemoteChange("test_flag", 4, 5);
+        
+        // The delete at revision 6 never arrived; the re-created flag restarts at version 1
+        FeatureFlag recreated = FeatureFlag.builder().flagName("test_flag").enabled(false).version(1).revision(7L).build();
+        when(cacheService.getFlag("test_flag")).thenReturn(recreated);
+        service.onRemoteChange("test_flag", 1, 7);
+        
+        List<FlagChangeBroadcaster.StreamEvent> events = changeBroadcaster.eventsAfter(changeBroadcaster.eventId(0)).orElseThrow();
+        assertEquals(2, events.size());
+        assertEquals(1, events.get(1).event().getVersion());
+        assertEquals(7L, events.get(1).event().getRevision());
+        assertFalse(events.get(1).event().getFlag().getEnabled());
+    }
+    
+    @Test
+    void evaluateFlag_BasisPointRolloutTakesPrecedence() {
+        testFlag.setRolloutPercentage(0);
+        testFlag.setRolloutBasisPoints(10000);
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        FlagEvaluationResponse response = service.evaluateFlag("test_flag", "user123");
+        
+        assertTrue(response.getEnabled());
+    }
+    
+    @Test
+    void evaluateFlag_FirstMatchingRuleOverridesRollout() {
+        testFlag.setRolloutPercentage(0);
+        testFlag.setRules(List.of(TargetingRule.builder()
+                .conditions(List.of(new TargetingCondition("country", TargetingOperator.IN, List.of("DE"))))
+                .build()));
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        assertTrue(service.evaluateFlag("test_flag", "user123", Map.of("country", "DE")).getEnabled());
+        assertFalse(service.evaluateFlag("test_flag", "user123", Map.of("country", "FR")).getEnabled());
+        assertFalse(service.evaluateFlag("test_flag", "user123").getEnabled());
+    }
+    
+    @Test
+    void evaluateFlags_UsesPerUserAttributes() {
+        testFlag.setRolloutPercentage(0);
+        testFlag.setRules(List.of(TargetingRule.builder()
+                .conditions(List.of(new TargetingCondition("plan", TargetingOperator.IN, List.of("enterprise"))))
+                .build()));
+        when(cacheService.lookupAll(any())).thenReturn(Map.of("test_flag", CacheService.Lookup.found(testFlag)));
+        
+        BatchEvaluationResponse response = service.evaluateFlags(List.of("test_flag"), List.of("user1", "user2"),
+                Map.of("user1", Map.of("plan", "enterprise")));
+        
+        assertEquals(Map.of("user1", true, "user2", false), response.getResults().get("test_flag"));
+    }
+    
+    @Test
+    void createFlag_InvalidRuleRejectedBeforeWrite() {
+        CreateFeatureFlagRequest request = CreateFeatureFlagRequest.builder()
+                .flagName("test_flag")
+                .enabled(true)
+                .rolloutPercentage(0)
+                .rules(List.of(TargetingRule.builder()
+                        .conditions(List.of(new TargetingCondition("appVersion", TargetingOperator.SEMVER_GT, List.of("latest"))))
+                        .build()))
+                .build();
+        
+        InvalidTargetingRuleException e = assertThrows(InvalidTargetingRuleException.class, () -> service.createFlag(request));
+        
+        assertTrue(e.getMessage().startsWith("Targeting rule 1:"), e.getMessage());
+        verify(repository, never()).create(any());
+    }
+    
+    @Test
+    void updateFlag_RulesAloneAreAChange() {
+        stubConditionalUpdate();
+        List<TargetingRule> rules = List.of(TargetingRule.builder()
+                .conditions(List.of(new TargetingCondition("email", TargetingOperator.ENDS_WITH, List.of("@example.com"))))
+                .build());
+        
+        FeatureFlagResponse response = service.updateFlag("test_flag", UpdateFeatureFlagRequest.builder().rules(rules).build());
+        
+        assertEquals(rules, response.getRules());
+        assertTrue(service.evaluateFlag("test_flag", "user1", Map.of("email", "ann@example.com")).getEnabled());
+    }
+    
+    @Test
+    void evaluateFlag_ServesVariantOnlyInsideRollout() {
+        testFlag.setRolloutPercentage(50);
+        testFlag.setVariants(FlagVariants.allocate("test_flag", null, List.of(
+                FlagVariant.builder().key("control").weight(5000).build(),
+                FlagVariant.builder().key("treatment").value("{\"color\":\"green\"}").weight(5000).build())));
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        int[] counts = new int[3];
+        for (int i = 0; i < 2000; i++) {
+            FlagEvaluationResponse response = service.evaluateFlag("test_flag", "user" + i);
+            if (!response.getEnabled()) {
+                assertNull(response.getVariant());
+                counts[0]++;
+            } else if ("treatment".equals(response.getVariant())) {
+                assertEquals("{\"color\":\"green\"}", response.getValue());
+                counts[2]++;
+            } else {
+                assertEquals("control", response.getVariant());
+                counts[1]++;
+            }
+        }
+        
+        // Variant buckets are independent of the rollout bucket, so both halves of the rollout split evenly
+        assertEquals(1000, counts[0], 100);
+        assertEquals(500, counts[1], 75);
+        assertEquals(500, counts[2], 75);
+    }
+    
+    @Test
+    void evaluateFlags_ReportsVariantsForMultivariateFlags() {
+        testFlag.setRolloutPercentage(100);
+        testFlag.setVariants(FlagVariants.allocate("test_flag", null,
+                List.of(FlagVariant.builder().key("only").weight(10000).build())));
+        when(cacheService.lookupAll(any())).thenReturn(Map.of("test_flag", CacheService.Lookup.found(testFlag)));
+        
+        BatchEvaluationResponse response = service.evaluateFlags(List.of("test_flag"), List.of("user1", "user2"));
+        
+        assertEquals(Map.of("user1", "only", "user2", "only"), response.getVariants().get("test_flag"));
+    }
+    
+    @Test
+    void exposuresRecordTheVariantServed() throws InterruptedException {
+        List<ExposureEvent> exposures = new CopyOnWriteArrayList<>();
+        ExposurePipeline exposurePipeline = new ExposurePipeline(exposures::addAll, meterRegistry);
+        ReflectionTestUtils.setField(exposurePipeline, "enabled", true);
+        exposurePipeline.start();
+        service = new FeatureFlagService(repository, cacheService, new BucketingEngine(), snapshotManager, changeBroadcaster,
+                new FlagLoader(repository, cacheService, meterRegistry), new FlagEvaluationMetrics(meterRegistry),
+                exposurePipeline, new FlagUsageCounters(usageRepository));
+        testFlag.setRolloutPercentage(100);
+        testFlag.setVariants(FlagVariants.allocate("test_flag", null,
+                List.of(FlagVariant.builder().key("only").weight(10000).build())));
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        service.evaluateFlag("test_flag", "user1");
+        service.evaluateFlags(List.of("test_flag"), List.of("user2"));
+        exposurePipeline.stop();
+        
+        assertEquals(List.of("user1", "user2"), exposures.stream().map(ExposureEvent::userId).toList());
+        assertEquals(List.of("only", "only"), exposures.stream().map(ExposureEvent::variant).toList());
+    }
+    
+    @Test
+    void updateFlag_VariantsReassignedFromStoredBuckets() {
+        testFlag.setVariants(FlagVariants.allocate("test_flag", null, List.of(
+                FlagVariant.builder().key("a").weight(5000).build(),
+                FlagVariant.builder().key("b").weight(5000).build())));
+        when(repository.findByFlagName("test_flag")).thenReturn(Optional.of(testFlag));
+        stubConditionalUpdate();
+        
+        FeatureFlagResponse response = service.updateFlag("test_flag", UpdateFeatureFlagRequest.builder()
+                .variants(List.of(
+                        FlagVariant.builder().key("a").weight(2500).build(),
+                        FlagVariant.builder().key("b").weight(7500).build()))
+                .build());
+        
+        // "b" keeps its buckets and takes over the top of "a"'s
+        assertEquals(List.of(new BucketRange(0, 2500)),
+                response.getVariants().get(0).getBuckets());
+        assertEquals(List.of(new BucketRange(2500, 10000)),
+                response.getVariants().get(1).getBuckets());
+        verify(repository).update(flagNamed("test_flag"), any(FeatureFlag.class), eq(testFlag.getVersion()));
+    }
+    
+    @Test
+    void createFlag_InvalidVariantsRejectedBeforeWrite() {
+        CreateFeatureFlagRequest request = CreateFeatureFlagRequest.builder()
+                .flagName("test_flag")
+                .enabled(true)
+                .rolloutPercentage(100)
+                .variants(List.of(FlagVariant.builder().key("a").weight(9000).build()))
+                .build();
+        
+        assertThrows(InvalidVariantException.class, () -> service.createFlag(request));
+        verify(repository, never()).create(any());
+    }
+    
+    @Test
+    void createFlag_PercentageStoredAsBasisPoints() {
+        CreateFeatureFlagRequest request = CreateFeatureFlagRequest.builder()
+                .flagName("test_flag")
+                .enabled(true)
+                .rolloutPercentage(25)
+                .build();
+        
+        when(repository.create(any(FeatureFlag.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        FeatureFlagResponse response = service.createFlag(request);
+        
+        assertEquals(25, response.getRolloutPercentage());
+        assertEquals(2500, response.getRolloutBasisPoints());
+    }
+    
+    @Test
+    void evaluateFlags_FetchesMissesInOneBatch() {
+        FeatureFlag otherFlag = FeatureFlag.builder()
+                .flagName("other_flag")
+                .enabled(true)
+                .rolloutPercentage(100)
+                .version(1)
+                .build();
+        when(cacheService.lookupAll(any())).thenReturn(Map.of("test_flag", CacheService.Lookup.found(testFlag)));
+        when(repository.findByFlagNames(List.of("other_flag", "unknown_flag"))).thenReturn(List.of(otherFlag));
+        
+        BatchEvaluationResponse response = service.evaluateFlags(
+                List.of("test_flag", "other_flag", "unknown_flag", "test_flag"),
+                List.of("user1", "user2"));
+        
+        assertEquals(List.of("test_flag", "other_flag"), List.copyOf(response.getResults().keySet()));
+        assertEquals(Map.of("user1", true, "user2", true), response.getResults().get("other_flag"));
+        assertEquals(service.evaluateFlag("test_flag", "user1").getEnabled(),
+                response.getResults().get("test_flag").get("user1"));
+        assertEquals(List.of("unknown_flag"), response.getMissingFlags());
+        verify(repository, never()).findByFlagName(anyString());
+        verify(cacheService).putFlags(List.of(otherFlag));
+        verify(cacheService).putNotFound("unknown_flag");
+    }
+    
+    @Test
+    void evaluateFlags_CachedNotFoundSkipsRepository() {
+        when(cacheService.lookupAll(any())).thenReturn(Map.of("unknown_flag", CacheService.Lookup.NOT_FOUND));
+        
+        BatchEvaluationResponse response = service.evaluateFlags(List.of("unknown_flag"), List.of("user1"));
+        
+        assertEquals(List.of("unknown_flag"), response.getMissingFlags());
+        verifyNoInteractions(repository);
+    }
+    
+    @Test
+    void evaluateFlag_OffUnlessPrerequisitesAreOn() {
+        testFlag.setRolloutPercentage(100);
+        testFlag.setPrerequisites(List.of("payments_v2"));
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        stubCachedFlags(prerequisite("payments_v2", false));
+        
+        assertFalse(service.evaluateFlag("test_flag", "user1").getEnabled());
+        
+        FeatureFlag enabled = prerequisite("payments_v2", true);
+        enabled.setVersion(2);
+        snapshotManager.apply(enabled);
+        
+        assertTrue(service.evaluateFlag("test_flag", "user1").getEnabled());
+    }
+    
+    @Test
+    void evaluateFlag_DeepChainLoadedOneBatchPerLevel() {
+        testFlag.setRolloutPercentage(100);
+        testFlag.setPrerequisites(List.of("level1"));
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        stubCachedFlags(prerequisite("level1", true, "level2"), prerequisite("level2", true, "level3"),
+                prerequisite("level3", true));
+        
+        assertTrue(service.evaluateFlag("test_flag", "user1").getEnabled());
+        assertTrue(service.evaluateFlag("test_flag", "user2").getEnabled());
+        
+        verify(cacheService).lookupAll(List.of("level1"));
+        verify(cacheService).lookupAll(List.of("level2"));
+        verify(cacheService).lookupAll(List.of("level3"));
+        verify(cacheService, times(3)).lookupAll(any());
+        verifyNoInteractions(repository);
+    }
+    
+    @Test
+    void evaluateFlags_SharedPrerequisiteEvaluatedOncePerUser() {
+        // Count by subclassing: a Mockito spy would instrument BucketingEngine for every later test
+        AtomicInteger rolloutChecks = new AtomicInteger();
+        BucketingEngine bucketingEngine = new BucketingEngine() {
+            @Override
+            public boolean isInRollout(Seed seed, String userId, int rolloutBasisPoints) {
+                rolloutChecks.incrementAndGet();
+                return super.isInRollout(seed, userId, rolloutBasisPoints);
+            }
+        };
+        service = new FeatureFlagService(repository, cacheService, bucketingEngine, snapshotManager, changeBroadcaster,
+                new FlagLoader(repository, cacheService, meterRegistry), new FlagEvaluationMetrics(meterRegistry),
+                new ExposurePipeline(events -> { }, meterRegistry), new FlagUsageCounters(usageRepository));
+        stubCachedFlags(prerequisite("left", true, "base"), prerequisite("right", true, "base"),
+                prerequisite("base", true));
+        
+        BatchEvaluationResponse response = service.evaluateFlags(List.of("left", "right", "base"),
+                List.of("user1", "user2"));
+        
+        assertEquals(Map.of("user1", true, "user2", true), response.getResults().get("left"));
+        assertEquals(Map.of("user1", true, "user2", true), response.getResults().get("right"));
+        assertEquals(Map.of("user1", true, "user2", true), response.getResults().get("base"));
+        assertEquals(6, rolloutChecks.get());
+    }
+    
+    @Test
+    void updateFlag_CycleRejectedBeforeWrite() {
+        snapshotManager.apply(testFlag);
+        stubCachedFlags(prerequisite("payments_v2", true, "test_flag"));
+        
+        InvalidPrerequisiteException e = assertThrows(InvalidPrerequisiteException.class, () -> service.updateFlag(
+                "test_flag", UpdateFeatureFlagRequest.builder().prerequisites(List.of("payments_v2")).build()));
+        
+        assertTrue(e.getMessage().endsWith("cycle through test_flag"), e.getMessage());
+        verify(repository, never()).update(any(FeatureFlag.class), any(), any());
+    }
+    
+    @Test
+    void createFlag_UnknownPrerequisiteRejectedBeforeWrite() {
+        stubCachedFlags();
+        CreateFeatureFlagRequest request = CreateFeatureFlagRequest.builder()
+                .flagName("test_flag")
+                .enabled(true)
+                .rolloutPercentage(100)
+                .prerequisites(List.of("missing_flag"))
+                .build();
+        
+        assertThrows(InvalidPrerequisiteException.class, () -> service.createFlag(request));
+        verify(repository).findByFlagNames(List.of("missing_flag"));
+        verify(repository, never()).create(any());
+    }
+    
+    @Test
+    void updateFlag_PrerequisitesAloneAreAChange() {
+        snapshotManager.apply(testFlag);
+        snapshotManager.apply(prerequisite("payments_v2", true));
+        stubConditionalUpdate();
+        
+        FeatureFlagResponse response = service.updateFlag("test_flag",
+                UpdateFeatureFlagRequest.builder().prerequisites(List.of("payments_v2")).build());
+        
+        assertEquals(List.of("payments_v2"), response.getPrerequisites());
+        verify(cacheService, never()).lookupAll(any());
+    }
+    
+    @Test
+    void evaluateFlag_FollowsRolloutScheduleWithoutWrites() {
+        Instant rampStart = Instant.parse("2026-11-02T09:00:00Z");
+        AtomicLong now = new AtomicLong(rampStart.minusSeconds(1).toEpochMilli());
+        ReflectionTestUtils.setField(service, "wallClock", (LongSupplier) now::get);
+        testFlag.setRolloutPercentage(0);
+        testFlag.setRolloutSchedule(List.of(
+                new RolloutStep(rampStart, 0, false),
+                new RolloutStep(rampStart.plusSeconds(3600), 10000, true)));
+        when(cacheService.lookup("test_flag")).thenReturn(CacheService.Lookup.found(testFlag));
+        
+        int[] enabledCounts = new int[3];
+        for (int halfHours = 0; halfHours < 3; halfHours++) {
+            now.set(rampStart.plusSeconds(halfHours * 1800L).toEpochMilli());
+            for (int i = 0; i < 1000; i++) {
+                enabledCounts[halfHours] += service.evaluateFlag("test_flag", "user" + i).getEnabled() ? 1 : 0;
+            }
+        }
+        
+        assertEquals(0, enabledCounts[0]);
+        assertEquals(500, enabledCounts[1], 60);
+        assertEquals(1000, enabledCounts[2]);
+        verify(cacheService, times(1)).lookup("test_flag");
+        verify(cacheService, never()).evictFlag(anyString());
+        verifyNoInteractions(repository);
+    }
+    
+    @Test
+    void createFlag_InvalidScheduleRejectedBeforeWrite() {
+        CreateFeatureFlagRequest request = CreateFeatureFlagRequest.builder()
+                .flagName("test_flag")
+                .enabled(true)
+                .rolloutPercentage(1)
+                .rolloutSchedule(List.of(new RolloutStep(Instant.now(), 2000, true)))
+                .build();
+        
+        assertThrows(InvalidRolloutScheduleException.class, () -> service.createFlag(request));
+        verify(repository, never()).create(any());
+    }
+    
+    @Test
+    void updateFlag_ScheduleAloneIsAChange() {
+        stubConditionalUpdate();
+        List<RolloutStep> schedule = List.of(new RolloutStep(Instant.parse("2026-11-02T09:00:00Z"), 10000, false));
+        
+        FeatureFlagResponse response = service.updateFlag("test_flag",
+                UpdateFeatureFlagRequest.builder().rolloutSchedule(schedule).build());
+        
+        assertEquals(schedule, response.getRolloutSchedule());
+        assertEquals(50, response.getRolloutPercentage());
+    }
+    
+    /**
+     * Serve the given flags from the cache's batch lookup; anything else is a miss
+     */
+    private void stubCachedFlags(FeatureFlag... flags) {
+        Map<String, FeatureFlag> cached = new HashMap<>();
+        Arrays.stream(flags).forEach(flag -> cached.put(flag.getFlagName(), flag));
+        when(cacheService.lookupAll(any())).thenAnswer(invocation -> {
+            Map<String, CacheService.Lookup> lookups = new HashMap<>();
+            for (String flagName : invocation.<List<String>>getArgument(0)) {
+                lookups.put(flagName, cached.containsKey(flagName)
+                        ? CacheService.Lookup.found(cached.get(flagName))
+                        : CacheService.Lookup.MISS);
+            }
+            return lookups;
+        });
+    }
+    
+    private static FeatureFlag prerequisite(String name, boolean enabled, String... prerequisites) {
+        return FeatureFlag.builder()
+                .flagName(name)
+                .enabled(enabled)
+                .rolloutPercentage(100)
+                .prerequisites(List.of(prerequisites))
+                .version(1)
+                .build();
+    }
+    
+    private static FeatureFlag tombstone(String flagName, long revision) {
+        return FeatureFlag.builder().flagName(flagName).deleted(true).revision(revision).build();
+    }
+    
+    /**
+     * Mimic the repository's conditional update: apply non-null changes, bump the version and take the next revision
+     */
+    private void stubConditionalUpdate() {
+        // Updates start from the cached copy; the variant path reads the repository instead
+        lenient().when(cacheService.getFlag("test_flag")).thenReturn(testFlag);
+        when(repository.update(flagNamed("test_flag"), any(FeatureFlag.class), any())).thenAnswer(invocation -> {
+            FeatureFlag changes = invocation.getArgument(1);
+            FeatureFlag updated = FeatureFlag.builder()
+                    .flagName(testFlag.getFlagName())
+                    .enabled(testFlag.getEnabled())
+                    .rolloutPercentage(testFlag.getRolloutPercentage())
+                    .rolloutBasisPoints(testFlag.getRolloutBasisPoints())
+                    .description(testFlag.getDescription())
+                    .createdAt(testFlag.getCreatedAt())
+                    .build();
+            Optional.ofNullable(changes.getEnabled()).ifPresent(updated::setEnabled);
+            Optional.ofNullable(changes.getRolloutPercentage()).ifPresent(updated::setRolloutPercentage);
+            Optional.ofNullable(changes.getRolloutBasisPoints()).ifPresent(updated::setRolloutBasisPoints);
+            Optional.ofNullable(changes.getDescription()).ifPresent(updated::setDescription);
+            Optional.ofNullable(changes.getRules()).ifPresent(updated::setRules);
+            Optional.ofNullable(changes.getVariants()).ifPresent(updated::setVariants);
+            Optional.ofNullable(changes.getPrerequisites()).ifPresent(updated::setPrerequisites);
+            Optional.ofNullable(changes.getRolloutSchedule()).ifPresent(updated::setRolloutSchedule);
+            updated.setRevision(FeatureFlagRepository.revisionOf(testFlag) + 1);
+            updated.setUpdatedAt(changes.getUpdatedAt());
+            updated.setVersion(testFlag.getVersion() + 1);
+            return updated;
+        });
+    }
+    
+    private static FeatureFlag flagNamed(String flagName) {
+        return argThat(flag -> flag != null && flagName.equals(flag.getFlagName()));
+    }
 }
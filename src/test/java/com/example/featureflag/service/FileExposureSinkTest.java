@@ -0,0 +1,104 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.ExposureEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileExposureSinkTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void ndjsonWritesOneEventPerLine() throws IOException {
+        FileExposureSink sink = new FileExposureSink(directory, FileExposureSink.Format.NDJSON, 1024 * 1024, 16);
+        List<ExposureEvent> events = events(3);
+        
+        sink.write(events);
+        sink.close();
+        
+        List<String> lines = Files.readAllLines(sink.currentFile());
+        assertEquals(3, lines.size());
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(events.get(0), objectMapper.readValue(lines.get(0), ExposureEvent.class));
+        assertEquals(events.get(1), objectMapper.readValue(lines.get(1), ExposureEvent.class));
+    }
+    
+    @Test
+    void binaryFileStartsWithHeaderAndReadsBack() throws IOException {
+        FileExposureSink sink = new FileExposureSink(directory, FileExposureSink.Format.BINARY, 1024 * 1024, 16);
+        List<ExposureEvent> events = events(2);
+        
+        sink.write(events);
+        sink.close();
+        
+        try (InputStream in = Files.newInputStream(sink.currentFile());
+             DataInputStream data = new DataInputStream(in)) {
+            byte[] header = data.readNBytes(FileExposureSink.BINARY_MAGIC.length);
+            assertTrue(Arrays.equals(FileExposureSink.BINARY_MAGIC, header));
+            for (ExposureEvent expected : events) {
+                ExposureEvent actual = new ExposureEvent(data.readUTF(), data.readUTF(), data.readBoolean(),
+                        data.readBoolean() ? data.readUTF() : null, data.readInt(), data.readLong());
+                assertEquals(expected, actual);
+            }
+            assertEquals(-1, data.read());
+        }
+    }
+    
+    @Test
+    void rollsToANewFileOnceTheCurrentOneIsFull() throws IOException {
+        FileExposureSink sink = new FileExposureSink(directory, FileExposureSink.Format.NDJSON, 100, 16);
+        
+        sink.write(events(5));
+        Path first = sink.currentFile();
+        sink.write(events(1));
+        sink.close();
+        
+        assertNotEquals(first, sink.currentFile());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+    
+    @Test
+    void rollingDeletesTheOldestFilesBeyondTheLimit() throws IOException {
+        Path unrelated = Files.writeString(directory.resolve("notes.txt"), "keep");
+        FileExposureSink sink = new FileExposureSink(directory, FileExposureSink.Format.NDJSON, 1, 3);
+        
+        for (int i = 0; i < 6; i++) {
+            sink.write(events(1));
+        }
+        sink.close();
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> exposureFiles = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("exposures-"))
+                    .toList();
+            assertEquals(3, exposureFiles.size());
+            assertTrue(exposureFiles.contains(sink.currentFile().getFileName().toString()));
+            assertTrue(exposureFiles.stream().allMatch(name -> name.matches("exposures-\\d+-[345]\\.ndjson")),
+                    exposureFiles.toString());
+        }
+        assertTrue(Files.exists(unrelated));
+    }
+    
+    private static List<ExposureEvent> events(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new ExposureEvent("test_flag", "user" + i, i % 2 == 0, i % 2 == 0 ? "treatment" : null,
+                        3, 1_700_000_000_000L + i))
+                .toList();
+    }
+}
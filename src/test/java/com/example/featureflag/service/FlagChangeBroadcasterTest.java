@@ -0,0 +1,133 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.FlagChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlagChangeBroadcasterTest {
+    
+    private FlagChangeBroadcaster broadcaster;
+    
+    @BeforeEach
+    void setUp() {
+        broadcaster = new FlagChangeBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "replayBufferSize", 3);
+    }
+    
+    @Test
+    void replaysEventsAfterLastEventId() {
+        publish("a", 1, 1);
+        publish("b", 2, 1);
+        publish("a", 3, 2);
+        
+        List<FlagChangeBroadcaster.StreamEvent> replay = broadcaster.eventsAfter(broadcaster.eventId(1)).orElseThrow();
+        
+        assertEquals(List.of(2L, 3L), replay.stream().map(FlagChangeBroadcaster.StreamEvent::sequence).toList());
+        assertTrue(broadcaster.eventsAfter(broadcaster.eventId(3)).orElseThrow().isEmpty());
+    }
+    
+    @Test
+    void requiresResyncWhenResumePointIsUnknown() {
+        for (int version = 1; version <= 5; version++) {
+            publish("a", version, version);
+        }
+        
+        // Buffer holds 3..5, so resuming after 2 is still gap-free but after 1 is not
+        assertTrue(broadcaster.eventsAfter(broadcaster.eventId(2)).isPresent());
+        assertTrue(broadcaster.eventsAfter(broadcaster.eventId(1)).isEmpty());
+        assertTrue(broadcaster.eventsAfter(broadcaster.eventId(6)).isEmpty());
+        assertTrue(broadcaster.eventsAfter("otherprocess-4").isEmpty());
+        assertTrue(broadcaster.eventsAfter("garbage").isEmpty());
+    }
+    
+    @Test
+    void skipsChangesAlreadyPublished() {
+        assertTrue(publish("a", 5, 2));
+        assertFalse(publish("a", 5, 2));
+        assertFalse(publish("a", 4, 1));
+        assertTrue(publish("a", 6, CacheService.DELETED_VERSION));
+        assertFalse(publish("a", 6, CacheService.DELETED_VERSION));
+        assertTrue(publish("a", 7, 1));
+    }
+    
+    @Test
+    void aRecreatedFlagIsNewerThanItsOldVersionsEvenWhenTheDeleteWasMissed() {
+        assertTrue(publish("a", 5, 4));
+        // Deleted at revision 6 elsewhere and re-created at version 1 without us seeing the delete
+        assertTrue(publish("a", 7, 1));
+        assertFalse(publish("a", 6, CacheService.DELETED_VERSION));
+        assertFalse(publish("a", 5, 4));
+    }
+    
+    @Test
+    void aStalledSubscriberDelaysNobodyAndIsClosedOnOverflow() throws Exception {
+        ReflectionTestUtils.setField(broadcaster, "subscriberQueueSize", 4);
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter(unblock);
+        RecordingEmitter healthy = new RecordingEmitter(new CountDownLatch(0));
+        broadcaster.subscribe(null, stalled);
+        broadcaster.subscribe(null, healthy);
+        
+        // Each change reaches the healthy subscriber while the other is stuck in its first write
+        for (int version = 1; version <= 10; version++) {
+            publish("a", version, version);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (healthy.frames.size() < version + 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+        assertEquals(11, healthy.frames.size());
+        assertEquals(1, broadcaster.subscriberCount());
+        
+        unblock.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(stalled.frames.size() <= 1);
+    }
+    
+    private boolean publish(String flagName, long revision, int version) {
+        return broadcaster.publish(FlagChangeEvent.builder()
+                .type(version == CacheService.DELETED_VERSION ? FlagChangeEvent.ChangeType.DELETED : FlagChangeEvent.ChangeType.UPDATED)
+                .flagName(flagName)
+                .version(version)
+                .revision(revision)
+                .build());
+    }
+    
+    /**
+     * Records frames instead of writing them, each send first waiting on a latch
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        
+        private final CountDownLatch sendAllowed;
+        private final List<SseEventBuilder> frames = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        
+        RecordingEmitter(CountDownLatch sendAllowed) {
+            this.sendAllowed = sendAllowed;
+        }
+        
+        @Override
+        public void send(SseEventBuilder frame) {
+            try {
+                sendAllowed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            frames.add(frame);
+        }
+        
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.featureflag.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlagEvaluationMetricsTest {
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FlagEvaluationMetrics metrics = new FlagEvaluationMetrics(meterRegistry);
+    
+    @Test
+    void flagsBeyondTheCapShareOneTag() {
+        ReflectionTestUtils.setField(metrics, "maxTaggedFlags", 2);
+        
+        metrics.recordEvaluation("flag_a", true, true, System.nanoTime());
+        metrics.recordEvaluation("flag_b", false, true, System.nanoTime());
+        metrics.recordEvaluation("flag_c", true, true, System.nanoTime());
+        metrics.recordEvaluation("flag_d", true, false, System.nanoTime());
+        
+        assertEquals(2, metrics.taggedFlagCount());
+        assertEquals(2, evaluations(FlagEvaluationMetrics.OTHER_FLAGS, "enabled"));
+        assertNull(meterRegistry.find("flags.evaluations").tag("flag", "flag_c").counter());
+    }
+    
+    @Test
+    void forgetFreesTheFlagsSlot() {
+        ReflectionTestUtils.setField(metrics, "maxTaggedFlags", 1);
+        metrics.recordEvaluation("deleted_flag", true, true, System.nanoTime());
+        
+        metrics.forget("deleted_flag");
+        metrics.recordBatchEvaluations("new_flag", 3, 1);
+        
+        assertNull(meterRegistry.find("flags.evaluations").tag("flag", "deleted_flag").counter());
+        assertEquals(3, evaluations("new_flag", "enabled"));
+        assertEquals(1, evaluations("new_flag", "disabled"));
+    }
+    
+    private double evaluations(String flag, String result) {
+        return meterRegistry.get("flags.evaluations").tag("flag", flag).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.FlagLoadTimeoutException;
+import com.example.featureflag.exception.FlagNotFoundException;
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.repository.FeatureFlagRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlagLoaderTest {
+    
+    private static final int CALLERS = 16;
+    
+    @Mock
+    private FeatureFlagRepository repository;
+    
+    @Mock
+    private CacheService cacheService;
+    
+    private SimpleMeterRegistry meterRegistry;
+    private FlagLoader loader;
+    private ExecutorService executor;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loader = new FlagLoader(repository, cacheService, meterRegistry);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        loader.destroy();
+    }
+    
+    @Test
+    void cacheHitSkipsRepository() {
+        FeatureFlag flag = flag();
+        when(cacheService.lookup("hot_flag")).thenReturn(CacheService.Lookup.found(flag));
+        
+        assertSame(flag, loader.load("hot_flag"));
+        
+        verifyNoInteractions(repository);
+        assertEquals(1, count("hit"));
+    }
+    
+    @Test
+    void staleHitIsServedWhileOneBackgroundReloadRuns() {
+        FeatureFlag stale = flag();
+        FeatureFlag fresh = flag();
+        fresh.setVersion(2);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(cacheService.lookup("hot_flag")).thenReturn(CacheService.Lookup.stale(stale));
+        when(repository.findByFlagName("hot_flag")).thenAnswer(invocation -> {
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return Optional.of(fresh);
+        });
+        
+        for (int i = 0; i < 5; i++) {
+            assertSame(stale, loader.load("hot_flag"));
+        }
+        releaseLoad.countDown();
+        
+        verify(cacheService, timeout(5000)).putFlag(fresh);
+        verify(repository, times(1)).findByFlagName("hot_flag");
+        assertEquals(5, count("stale"));
+    }
+    
+    @Test
+    void cachedNotFoundSkipsRepository() {
+        when(cacheService.lookup("gone_flag")).thenReturn(CacheService.Lookup.NOT_FOUND);
+        
+        assertThrows(FlagNotFoundException.class, () -> loader.load("gone_flag"));
+        
+        verifyNoInteractions(repository);
+        assertEquals(1, count("negative_hit"));
+    }
+    
+    @Test
+    void unknownFlagIsCachedAsNotFound() {
+        when(cacheService.lookup("gone_flag")).thenReturn(CacheService.Lookup.MISS);
+        when(repository.findByFlagName("gone_flag")).thenReturn(Optional.empty());
+        
+        assertThrows(FlagNotFoundException.class, () -> loader.load("gone_flag"));
+        
+        verify(cacheService).putNotFound("gone_flag");
+        assertEquals(1, count("not_found"));
+    }
+    
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        when(cacheService.lookup("hot_flag")).thenReturn(CacheService.Lookup.MISS);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        FeatureFlag flag = flag();
+        when(repository.findByFlagName("hot_flag")).thenAnswer(invocation -> {
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return Optional.of(flag);
+        });
+        
+        List<Future<FeatureFlag>> results = startLoads();
+        awaitWaiters(CALLERS - 1);
+        releaseLoad.countDown();
+        
+        for (Future<FeatureFlag> result : results) {
+            assertSame(flag, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(repository, times(1)).findByFlagName("hot_flag");
+        verify(cacheService, times(1)).putFlag(flag);
+        assertEquals(1, count("loaded"));
+        assertEquals(CALLERS - 1, count("coalesced"));
+        assertEquals(0, loader.inFlightCount());
+    }
+    
+    @Test
+    void followersShareLeaderOutcome() throws Exception {
+        when(cacheService.lookup("hot_flag")).thenReturn(CacheService.Lookup.MISS);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(repository.findByFlagName("hot_flag")).thenAnswer(invocation -> {
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+        
+        List<Future<FeatureFlag>> results = startLoads();
+        awaitWaiters(CALLERS - 1);
+        releaseLoad.countDown();
+        
+        for (Future<FeatureFlag> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(FlagNotFoundException.class, e.getCause());
+        }
+        verify(repository, times(1)).findByFlagName("hot_flag");
+        verify(cacheService, never()).putFlag(any());
+        verify(cacheService, times(1)).putNotFound("hot_flag");
+    }
+    
+    @Test
+    void followersGiveUpAfterTimeout() throws Exception {
+        ReflectionTestUtils.setField(loader, "coalesceTimeoutMs", 50L);
+        when(cacheService.lookup("hot_flag")).thenReturn(CacheService.Lookup.MISS);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(repository.findByFlagName("hot_flag")).thenAnswer(invocation -> {
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return Optional.of(flag());
+        });
+        
+        Future<FeatureFlag> leader = executor.submit(() -> loader.load("hot_flag"));
+        awaitWaiters(0);
+        
+        assertThrows(FlagLoadTimeoutException.class, () -> loader.load("hot_flag"));
+        assertEquals(1, count("timeout"));
+        
+        releaseLoad.countDown();
+        assertNotNull(leader.get(5, TimeUnit.SECONDS));
+    }
+    
+    private List<Future<FeatureFlag>> startLoads() {
+        List<Future<FeatureFlag>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> loader.load("hot_flag")));
+        }
+        return results;
+    }
+    
+    /**
+     * Wait until the leader is loading and the given number of callers are coalesced on it
+     */
+    private void awaitWaiters(int waiters) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loader.inFlightCount() == 0 || count("coalesced") < waiters) {
+            assertTrue(System.nanoTime() < deadline, "callers did not coalesce");
+            Thread.sleep(5);
+        }
+    }
+    
+    private double count(String result) {
+        return meterRegistry.counter("flags.load", "result", result).count();
+    }
+    
+    private static FeatureFlag flag() {
+        return FeatureFlag.builder()
+                .flagName("hot_flag")
+                .enabled(true)
+                .rolloutPercentage(50)
+                .version(1)
+                .build();
+    }
+}
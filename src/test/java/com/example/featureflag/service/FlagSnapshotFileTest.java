@@ -0,0 +1,84 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlagSnapshotFileTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void writeThenReadRoundTripsEveryFlagInNameOrder() throws IOException {
+        FlagSnapshotFile file = new FlagSnapshotFile(directory.resolve("nested/flags.snapshot"));
+        FeatureFlag checkout = flag("checkout", 3);
+        checkout.setRules(List.of(TargetingRule.builder()
+                .conditions(List.of(new TargetingCondition("plan", TargetingOperator.IN, List.of("enterprise"))))
+                .rolloutBasisPoints(10000)
+                .build()));
+        
+        assertTrue(file.write(List.of(flag("search", 1), checkout)));
+        
+        assertEquals(List.of(checkout, flag("search", 1)), new FlagSnapshotFile(file.path()).read());
+        assertFalse(Files.exists(directory.resolve("nested/flags.snapshot.tmp")));
+    }
+    
+    @Test
+    void writeSkipsAnUnchangedSnapshot() throws IOException {
+        FlagSnapshotFile file = new FlagSnapshotFile(directory.resolve("flags.snapshot"));
+        assertTrue(file.write(List.of(flag("checkout", 1), flag("search", 1))));
+        
+        assertFalse(file.write(List.of(flag("search", 1), flag("checkout", 1))));
+        assertTrue(file.write(List.of(flag("search", 2), flag("checkout", 1))));
+        
+        FlagSnapshotFile reopened = new FlagSnapshotFile(file.path());
+        reopened.read();
+        assertFalse(reopened.write(List.of(flag("checkout", 1), flag("search", 2))));
+    }
+    
+    @Test
+    void readReturnsNothingBeforeTheFirstWrite() throws IOException {
+        assertEquals(List.of(), new FlagSnapshotFile(directory.resolve("flags.snapshot")).read());
+    }
+    
+    @Test
+    void readRejectsCorruptAndTruncatedFiles() throws IOException {
+        FlagSnapshotFile file = new FlagSnapshotFile(directory.resolve("flags.snapshot"));
+        file.write(List.of(flag("checkout", 1), flag("search", 1)));
+        byte[] valid = Files.readAllBytes(file.path());
+        
+        byte[] flipped = valid.clone();
+        flipped[flipped.length - 1] ^= 0x01;
+        Files.write(file.path(), flipped);
+        assertThrows(IOException.class, file::read);
+        
+        Files.write(file.path(), Arrays.copyOf(valid, valid.length - 5));
+        assertThrows(IOException.class, file::read);
+        
+        Files.write(file.path(), Arrays.copyOf(valid, 10));
+        assertThrows(IOException.class, file::read);
+    }
+    
+    private static FeatureFlag flag(String name, int version) {
+        return FeatureFlag.builder()
+                .flagName(name)
+                .enabled(true)
+                .rolloutPercentage(50)
+                .version(version)
+                .updatedAt(Instant.parse("2026-10-01T12:00:00Z"))
+                .build();
+    }
+}
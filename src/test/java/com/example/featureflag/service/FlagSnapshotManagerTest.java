@@ -0,0 +1,195 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import com.example.featureflag.repository.FeatureFlagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlagSnapshotManagerTest {
+    
+    @Mock
+    private FeatureFlagRepository repository;
+    
+    @Mock
+    private CacheService cacheService;
+    
+    private FlagSnapshotManager snapshotManager;
+    
+    @BeforeEach
+    void setUp() {
+        snapshotManager = new FlagSnapshotManager(repository, cacheService, new SegmentHandles());
+    }
+    
+    @Test
+    void apply_IgnoresOlderVersions() {
+        snapshotManager.apply(flag("a", true, 2));
+        FlagSnapshot before = snapshotManager.current();
+        
+        FlagSnapshot after = snapshotManager.apply(flag("a", false, 1));
+        
+        assertSame(before, after);
+        assertTrue(after.enabled(after.indexOf("a")));
+    }
+    
+    @Test
+    void refresh_ReplacesSnapshotButKeepsNewerLocalWrites() {
+        snapshotManager.apply(flag("a", false, 3));
+        snapshotManager.apply(flag("deleted", true, 1));
+        when(repository.findAll()).thenReturn(List.of(flag("a", true, 2), flag("b", true, 1)));
+        
+        snapshotManager.refresh();
+        
+        FlagSnapshot snapshot = snapshotManager.current();
+        assertEquals(2, snapshot.size());
+        assertEquals(3, snapshot.version(snapshot.indexOf("a")));
+        assertFalse(snapshot.enabled(snapshot.indexOf("a")));
+        assertTrue(snapshot.indexOf("b") >= 0);
+        assertEquals(-1, snapshot.indexOf("deleted"));
+    }
+    
+    @Test
+    void refresh_AdoptsARecreatedFlagAtALowerVersion() {
+        // This node missed the delete and still holds the old definition
+        snapshotManager.apply(flag("a", true, 5, 10));
+        when(repository.findAll()).thenReturn(List.of(flag("a", false, 1, 12)));
+        
+        snapshotManager.refresh();
+        
+        FlagSnapshot snapshot = snapshotManager.current();
+        assertEquals(1, snapshot.version(snapshot.indexOf("a")));
+        assertEquals(12, snapshot.revision(snapshot.indexOf("a")));
+        assertFalse(snapshot.enabled(snapshot.indexOf("a")));
+        
+        // A load of the old definition that was in flight across the delete changes nothing
+        assertSame(snapshot, snapshotManager.apply(flag("a", true, 5, 10)));
+        assertSame(snapshot, snapshotManager.applyAll(List.of(flag("a", true, 5, 10))));
+    }
+    
+    @Test
+    void refresh_DoesNotPutBackAFlagDeletedDuringTheScan() {
+        snapshotManager.apply(flag("a", true, 2, 5));
+        when(repository.findAll()).thenAnswer(invocation -> {
+            snapshotManager.remove("a", 6);
+            return List.of(flag("a", true, 2, 5), flag("b", true, 1, 3));
+        });
+        
+        snapshotManager.refresh();
+        
+        assertEquals(-1, snapshotManager.current().indexOf("a"));
+        assertTrue(snapshotManager.current().indexOf("b") >= 0);
+        FlagSnapshot snapshot = snapshotManager.current();
+        assertSame(snapshot, snapshotManager.apply(flag("a", true, 2, 5)));
+        
+        when(repository.findAll()).thenReturn(List.of(flag("a", false, 1, 7), flag("b", true, 1, 3)));
+        snapshotManager.refresh();
+        
+        assertEquals(7, snapshotManager.current().revision(snapshotManager.current().indexOf("a")));
+    }
+    
+    @Test
+    void remove_KeepsARecreationNewerThanTheDelete() {
+        snapshotManager.apply(flag("a", true, 1, 8));
+        
+        snapshotManager.remove("a", 6);
+        
+        assertTrue(snapshotManager.current().indexOf("a") >= 0);
+    }
+    
+    @Test
+    void refresh_KeepsSnapshotWhenScanFails() {
+        snapshotManager.apply(flag("a", true, 1));
+        when(repository.findAll()).thenThrow(new RuntimeException("DynamoDB unavailable"));
+        
+        snapshotManager.refresh();
+        
+        assertEquals(1, snapshotManager.current().size());
+    }
+    
+    @Test
+    void init_ServesTheLastPersistedScanUntilTheBackendAnswers(@TempDir Path directory) {
+        ReflectionTestUtils.setField(snapshotManager, "snapshotFilePath", directory.resolve("flags.snapshot").toString());
+        snapshotManager.init();
+        when(repository.findAll()).thenReturn(List.of(flag("a", true, 2), flag("b", false, 1)));
+        snapshotManager.refresh();
+        
+        FlagSnapshotManager restarted = new FlagSnapshotManager(repository, cacheService, new SegmentHandles());
+        ReflectionTestUtils.setField(restarted, "snapshotFilePath", directory.resolve("flags.snapshot").toString());
+        restarted.init();
+        
+        FlagSnapshot snapshot = restarted.current();
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.enabled(snapshot.indexOf("a")));
+        assertFalse(snapshot.enabled(snapshot.indexOf("b")));
+        
+        when(repository.findAll()).thenThrow(new RuntimeException("DynamoDB unavailable"));
+        restarted.refresh();
+        assertSame(snapshot, restarted.current());
+    }
+    
+    @Test
+    void refresh_ReplacesRestoredEntriesEvenAtLowerVersions(@TempDir Path directory) throws Exception {
+        FlagSnapshotFile file = new FlagSnapshotFile(directory.resolve("flags.snapshot"));
+        file.write(List.of(flag("recreated", true, 5), flag("deleted", true, 1)));
+        ReflectionTestUtils.setField(snapshotManager, "snapshotFilePath", file.path().toString());
+        snapshotManager.init();
+        when(repository.findAll()).thenReturn(List.of(flag("recreated", false, 1)));
+        
+        snapshotManager.refresh();
+        
+        FlagSnapshot snapshot = snapshotManager.current();
+        assertEquals(1, snapshot.size());
+        assertEquals(1, snapshot.version(snapshot.indexOf("recreated")));
+        assertFalse(snapshot.enabled(snapshot.indexOf("recreated")));
+    }
+    
+    @Test
+    void init_IgnoresACorruptSnapshotFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("flags.snapshot");
+        Files.write(file, new byte[]{1, 2, 3});
+        ReflectionTestUtils.setField(snapshotManager, "snapshotFilePath", file.toString());
+        
+        snapshotManager.init();
+        
+        assertEquals(0, snapshotManager.current().size());
+    }
+    
+    @Test
+    void remove_CompactsRemainingEntries() {
+        snapshotManager.applyAll(List.of(flag("a", true, 1), flag("b", false, 1), flag("c", true, 1)));
+        
+        snapshotManager.remove("b", 2);
+        
+        FlagSnapshot snapshot = snapshotManager.current();
+        assertEquals(2, snapshot.size());
+        assertEquals("c", snapshot.name(snapshot.indexOf("c")));
+        assertTrue(snapshot.enabled(snapshot.indexOf("c")));
+    }
+    
+    private static FeatureFlag flag(String name, boolean enabled, int version) {
+        return FeatureFlag.builder()
+                .flagName(name)
+                .enabled(enabled)
+                .rolloutPercentage(100)
+                .version(version)
+                .build();
+    }
+    
+    private static FeatureFlag flag(String name, boolean enabled, int version, long revision) {
+        FeatureFlag flag = flag(name, enabled, version);
+        flag.setRevision(revision);
+        return flag;
+    }
+}
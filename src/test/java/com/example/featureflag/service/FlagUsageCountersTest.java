@@ -0,0 +1,105 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FlagUsage;
+import com.example.featureflag.repository.FlagUsageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlagUsageCountersTest {
+    
+    @Mock
+    private FlagUsageRepository repository;
+    
+    @Test
+    void concurrentEvaluationsFlushAsOneDeltaPerFlag() throws Exception {
+        FlagUsageCounters counters = new FlagUsageCounters(repository);
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        counters.record("flag_a", i % 4 == 0);
+                        counters.record("flag_b", false);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        counters.flush();
+        
+        verify(repository).addUsage(eq("flag_a"), eq(20_000L), eq(60_000L), any());
+        verify(repository).addUsage(eq("flag_b"), eq(0L), eq(80_000L), any());
+        verifyNoMoreInteractions(repository);
+    }
+    
+    @Test
+    void laterFlushesWriteOnlyNewEvaluations() {
+        FlagUsageCounters counters = new FlagUsageCounters(repository);
+        counters.recordBatch("flag_a", 3, 2);
+        counters.flush();
+        
+        counters.flush();
+        counters.record("flag_a", true);
+        counters.flush();
+        
+        verify(repository).addUsage(eq("flag_a"), eq(3L), eq(2L), any());
+        verify(repository).addUsage(eq("flag_a"), eq(1L), eq(0L), any());
+        verifyNoMoreInteractions(repository);
+    }
+    
+    @Test
+    void failedFlushIsRetriedWithTheAccumulatedDelta() {
+        FlagUsageCounters counters = new FlagUsageCounters(repository);
+        doThrow(new RuntimeException("throttled")).doNothing()
+                .when(repository).addUsage(anyString(), anyLong(), anyLong(), any());
+        counters.record("flag_a", true);
+        counters.flush();
+        
+        counters.record("flag_a", false);
+        counters.flush();
+        
+        verify(repository, times(2)).addUsage(eq("flag_a"), eq(1L), anyLong(), any());
+        verify(repository).addUsage(eq("flag_a"), eq(1L), eq(1L), any());
+    }
+    
+    @Test
+    void usageIncludesCountsNotYetFlushed() {
+        FlagUsageCounters counters = new FlagUsageCounters(repository);
+        when(repository.findByFlagName("flag_a")).thenReturn(Optional.empty());
+        
+        assertEquals(FlagUsage.none("flag_a"), counters.usage("flag_a"));
+        
+        counters.recordBatch("flag_a", 2, 5);
+        FlagUsage usage = counters.usage("flag_a");
+        
+        assertEquals(7, usage.evaluations());
+        assertEquals(2, usage.enabledCount());
+        assertNotNull(usage.lastEvaluatedAt());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.InvalidVariantException;
+import com.example.featureflag.model.BucketRange;
+import com.example.featureflag.model.FlagVariant;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlagVariantsTest {
+    
+    private static final BucketingEngine.Seed SEED = BucketingEngine.computeSeed("checkout_experiment");
+    private static final int USERS = 20_000;
+    
+    @Test
+    void newVariantsGetContiguousRangesInOrder() {
+        List<FlagVariant> allocated = FlagVariants.allocate("flag", null,
+                List.of(variant("a", 3300), variant("b", 3300), variant("c", 3400)));
+        
+        assertEquals(List.of(new BucketRange(0, 3300)), allocated.get(0).getBuckets());
+        assertEquals(List.of(new BucketRange(3300, 6600)), allocated.get(1).getBuckets());
+        assertEquals(List.of(new BucketRange(6600, 10000)), allocated.get(2).getBuckets());
+    }
+    
+    @Test
+    void usersAreSplitByWeight() {
+        FlagVariants variants = FlagVariants.compile(FlagVariants.allocate("flag", null,
+                List.of(variant("a", 1000), variant("b", 2000), variant("c", 7000))));
+        
+        int[] counts = new int[variants.size()];
+        for (int i = 0; i < USERS; i++) {
+            counts[variants.variantFor(SEED, "user" + i)]++;
+        }
+        
+        assertEquals(0.1, counts[0] / (double) USERS, 0.015);
+        assertEquals(0.2, counts[1] / (double) USERS, 0.015);
+        assertEquals(0.7, counts[2] / (double) USERS, 0.015);
+    }
+    
+    @Test
+    void raisingAWeightOnlyMovesUsersIntoThatVariant() {
+        List<FlagVariant> before = FlagVariants.allocate("flag", null,
+                List.of(variant("a", 3300), variant("b", 3300), variant("c", 3400)));
+        List<FlagVariant> after = FlagVariants.allocate("flag", before,
+                List.of(variant("a", 5000), variant("b", 2500), variant("c", 2500)));
+        
+        int moved = assertOnlyMovedInto(before, after, "a");
+        
+        assertEquals(0.17, moved / (double) USERS, 0.015);
+    }
+    
+    @Test
+    void addingAndRemovingVariantsKeepsEveryoneElse() {
+        List<FlagVariant> before = FlagVariants.allocate("flag", null,
+                List.of(variant("control", 5000), variant("old", 2000), variant("treatment", 3000)));
+        List<FlagVariant> after = FlagVariants.allocate("flag", before,
+                List.of(variant("treatment", 3000), variant("control", 5000), variant("new", 2000)));
+        
+        assertOnlyMovedInto(before, after, "new");
+        FlagVariants compiled = FlagVariants.compile(after);
+        for (int i = 0; i < USERS; i++) {
+            assertNotEquals("old", compiled.key(compiled.variantFor(SEED, "user" + i)));
+        }
+    }
+    
+    @Test
+    void rejectsInvalidVariants() {
+        assertInvalid(List.of(variant("a", 5000), variant("b", 4000)));
+        assertInvalid(List.of(variant("a", 5000), variant("a", 5000)));
+        assertInvalid(List.of(variant(" ", 10000)));
+        assertInvalid(List.of(variant("a", null)));
+        assertInvalid(List.of(variant("a", 10001), variant("b", -1)));
+    }
+    
+    @Test
+    void compileRejectsRangesThatDoNotCoverEveryBucket() {
+        FlagVariant gap = FlagVariant.builder()
+                .key("a")
+                .weight(10000)
+                .buckets(List.of(new BucketRange(0, 5000), new BucketRange(5001, 10001)))
+                .build();
+        FlagVariant unallocated = variant("a", 10000);
+        
+        assertThrows(InvalidVariantException.class, () -> FlagVariants.compile(List.of(gap)));
+        assertThrows(InvalidVariantException.class, () -> FlagVariants.compile(List.of(unallocated)));
+        assertSame(FlagVariants.NONE, FlagVariants.compileStored("flag", List.of(gap)));
+        assertEquals(-1, FlagVariants.NONE.variantFor(SEED, "user1"));
+    }
+    
+    /**
+     * Every user either keeps their variant or moves into {@code growing}; returns how many moved
+     */
+    private static int assertOnlyMovedInto(List<FlagVariant> before, List<FlagVariant> after, String growing) {
+        FlagVariants oldVariants = FlagVariants.compile(before);
+        FlagVariants newVariants = FlagVariants.compile(after);
+        int moved = 0;
+        for (int i = 0; i < USERS; i++) {
+            String oldKey = oldVariants.key(oldVariants.variantFor(SEED, "user" + i));
+            String newKey = newVariants.key(newVariants.variantFor(SEED, "user" + i));
+            if (!oldKey.equals(newKey)) {
+                assertEquals(growing, newKey, "user" + i + " moved from " + oldKey);
+                moved++;
+            }
+        }
+        return moved;
+    }
+    
+    private static void assertInvalid(List<FlagVariant> variants) {
+        assertThrows(InvalidVariantException.class, () -> FlagVariants.allocate("flag", null, variants));
+    }
+    
+    private static FlagVariant variant(String key, Integer weight) {
+        return FlagVariant.builder()
+                .key(key)
+                .value("{\"layout\":\"" + key + "\"}")
+                .weight(weight)
+                .build();
+    }
+}
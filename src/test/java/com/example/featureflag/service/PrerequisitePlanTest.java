@@ -0,0 +1,130 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.FeatureFlag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrerequisitePlanTest {
+    
+    @Test
+    void chainIsOrderedDeepestFirst() {
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(List.of(
+                flag("checkout", "payments"), flag("payments", "ledger"), flag("ledger")));
+        
+        PrerequisitePlan plan = snapshot.prerequisites(snapshot.indexOf("checkout"));
+        
+        assertTrue(plan.evaluable());
+        assertEquals(2, plan.size());
+        assertEquals(snapshot.indexOf("ledger"), plan.prerequisite(0));
+        assertEquals(snapshot.indexOf("payments"), plan.prerequisite(1));
+        assertTrue(plan.requirementsMet(0, 0));
+        assertFalse(plan.requirementsMet(0, 1));
+        assertTrue(plan.requirementsMet(0b01, 1));
+        assertFalse(plan.rootRequirementsMet(0b01));
+        assertTrue(plan.rootRequirementsMet(0b10));
+        assertSame(PrerequisitePlan.NONE, snapshot.prerequisites(snapshot.indexOf("ledger")));
+    }
+    
+    @Test
+    void sharedPrerequisiteIsPlannedOnce() {
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(List.of(
+                flag("top", "left", "right"), flag("left", "base"), flag("right", "base"), flag("base")));
+        
+        PrerequisitePlan plan = snapshot.prerequisites(snapshot.indexOf("top"));
+        
+        assertEquals(3, plan.size());
+        assertEquals(snapshot.indexOf("base"), plan.prerequisite(0));
+        assertTrue(plan.rootRequirementsMet(0b110));
+        assertFalse(plan.rootRequirementsMet(0b011));
+    }
+    
+    @Test
+    void cyclesAreNotEvaluable() {
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(List.of(
+                flag("a", "b"), flag("b", "c"), flag("c", "a"), flag("outside", "a"), flag("self", "self")));
+        
+        for (String name : List.of("a", "b", "c", "outside", "self")) {
+            PrerequisitePlan plan = snapshot.prerequisites(snapshot.indexOf(name));
+            assertFalse(plan.evaluable(), name);
+            assertTrue(plan.error().startsWith("cycle through "), plan.error());
+        }
+    }
+    
+    @Test
+    void unknownPrerequisitesAreReportedAtTheFirstMissingLevel() {
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(List.of(
+                flag("checkout", "payments", "missing_a"), flag("payments", "missing_b")));
+        
+        PrerequisitePlan plan = snapshot.prerequisites(snapshot.indexOf("checkout"));
+        
+        assertFalse(plan.evaluable());
+        assertEquals(List.of("missing_b", "missing_a"), plan.unknown());
+        
+        PrerequisitePlan resolved = snapshot.withAll(List.of(flag("missing_a"), flag("missing_b")))
+                .prerequisites(snapshot.indexOf("checkout"));
+        assertTrue(resolved.evaluable());
+        assertTrue(resolved.unknown().isEmpty());
+    }
+    
+    @Test
+    void writesThatLeavePrerequisitesAloneKeepThePlans() {
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(List.of(
+                flag("checkout", "payments"), flag("payments", "ledger"), flag("ledger"), flag("other")));
+        PrerequisitePlan plan = snapshot.prerequisites(snapshot.indexOf("checkout"));
+        
+        FlagSnapshot updated = snapshot.withAll(List.of(flag("ledger"), flag("payments", "ledger"), flag("new")));
+        assertSame(plan, updated.prerequisites(updated.indexOf("checkout")));
+        
+        FlagSnapshot rewired = updated.with(flag("payments", "ledger", "other"));
+        PrerequisitePlan rebuilt = rewired.prerequisites(rewired.indexOf("checkout"));
+        assertEquals(3, rebuilt.size());
+        assertEquals(rewired.indexOf("other"), rebuilt.prerequisite(1));
+    }
+    
+    @Test
+    void removingAFlagRebuildsThePlansThatWalkedThroughIt() {
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(List.of(
+                flag("checkout", "payments"), flag("payments"), flag("search", "index"), flag("index")));
+        
+        // The last flag moves into the freed position
+        FlagSnapshot removed = snapshot.without("payments");
+        
+        assertEquals(snapshot.indexOf("payments"), removed.indexOf("index"));
+        assertEquals(List.of("payments"), removed.prerequisites(removed.indexOf("checkout")).unknown());
+        PrerequisitePlan search = removed.prerequisites(removed.indexOf("search"));
+        assertTrue(search.evaluable());
+        assertEquals(removed.indexOf("index"), search.prerequisite(0));
+    }
+    
+    @Test
+    void rejectsMoreThanSixtyFourPrerequisites() {
+        List<FeatureFlag> flags = new ArrayList<>();
+        List<String> wide = new ArrayList<>();
+        for (int i = 0; i <= PrerequisitePlan.MAX_PREREQUISITES; i++) {
+            flags.add(flag("chain" + i, "chain" + (i + 1)));
+            flags.add(flag("leaf" + i));
+            wide.add("leaf" + i);
+        }
+        flags.add(flag("chain" + (PrerequisitePlan.MAX_PREREQUISITES + 1)));
+        flags.add(flag("wide", wide.toArray(String[]::new)));
+        FlagSnapshot snapshot = FlagSnapshot.empty(new SegmentHandles()).withAll(flags);
+        
+        assertFalse(snapshot.prerequisites(snapshot.indexOf("wide")).evaluable());
+        assertFalse(snapshot.prerequisites(snapshot.indexOf("chain0")).evaluable());
+        assertTrue(snapshot.prerequisites(snapshot.indexOf("chain1")).evaluable());
+    }
+    
+    private static FeatureFlag flag(String name, String... prerequisites) {
+        return FeatureFlag.builder()
+                .flagName(name)
+                .enabled(true)
+                .rolloutBasisPoints(10000)
+                .prerequisites(List.of(prerequisites))
+                .version(1)
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.service.RedisCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTest {
+    
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+    
+    private final AtomicLong clock = new AtomicLong();
+    private final RedisCircuitBreaker breaker = new RedisCircuitBreaker(true, 0.5, 250, 4, 1000, clock::get);
+    
+    @Test
+    void opensOnceWindowFailureRateReachesThreshold() {
+        breaker.onSuccess(FAST);
+        breaker.onFailure(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(State.CLOSED, breaker.state());
+        
+        breaker.onFailure(FAST);
+        
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+    
+    @Test
+    void countsSlowCallsAsFailures() {
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(SLOW);
+        breaker.onSuccess(SLOW);
+        
+        assertEquals(State.OPEN, breaker.state());
+    }
+    
+    @Test
+    void halfOpenProbesCloseTheBreaker() {
+        trip();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        
+        for (int i = 0; i < RedisCircuitBreaker.HALF_OPEN_PROBES; i++) {
+            assertTrue(breaker.tryAcquire());
+        }
+        assertFalse(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.state());
+        
+        for (int i = 0; i < RedisCircuitBreaker.HALF_OPEN_PROBES; i++) {
+            breaker.onSuccess(FAST);
+        }
+        
+        assertEquals(State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(0, breaker.snapshot().windowCalls());
+    }
+    
+    @Test
+    void failedProbeReopens() {
+        trip();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertTrue(breaker.tryAcquire());
+        
+        breaker.onFailure(FAST);
+        
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2L, breaker.snapshot().transitions().get(State.OPEN));
+    }
+    
+    @Test
+    void disabledBreakerNeverOpens() {
+        RedisCircuitBreaker disabled = new RedisCircuitBreaker(false, 0.5, 250, 4, 1000, clock::get);
+        
+        for (int i = 0; i < 10; i++) {
+            disabled.onFailure(SLOW);
+        }
+        
+        assertEquals(State.CLOSED, disabled.state());
+        assertTrue(disabled.tryAcquire());
+    }
+    
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(FAST);
+        }
+        assertEquals(State.OPEN, breaker.state());
+    }
+}
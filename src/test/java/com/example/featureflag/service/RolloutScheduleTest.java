@@ -0,0 +1,93 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.InvalidRolloutScheduleException;
+import com.example.featureflag.model.RolloutStep;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RolloutScheduleTest {
+    
+    private static final Instant START = Instant.parse("2026-11-02T09:00:00Z");
+    private static final int FLAG_ROLLOUT = 100;
+    
+    @Test
+    void stepsApplyFromTheirStartTime() {
+        RolloutSchedule schedule = RolloutSchedule.compile(List.of(
+                step(0, 1000, false), step(3600, 5000, false), step(7200, 10000, false)));
+        
+        assertEquals(FLAG_ROLLOUT, rolloutAt(schedule, -1));
+        assertEquals(1000, rolloutAt(schedule, 0));
+        assertEquals(1000, rolloutAt(schedule, 3599));
+        assertEquals(5000, rolloutAt(schedule, 3600));
+        assertEquals(10000, rolloutAt(schedule, 7200));
+        assertEquals(10000, rolloutAt(schedule, 86400 * 365));
+    }
+    
+    @Test
+    void rampsRiseLinearlyFromThePreviousStep() {
+        RolloutSchedule schedule = RolloutSchedule.compile(List.of(
+                step(0, 100, false), step(10000, 10000, true)));
+        
+        assertEquals(100, rolloutAt(schedule, 0));
+        assertEquals(5050, rolloutAt(schedule, 5000));
+        assertEquals(9999, rolloutAt(schedule, 9999));
+        assertEquals(10000, rolloutAt(schedule, 10000));
+    }
+    
+    @Test
+    void risingRolloutKeepsEveryoneWhoWasIn() {
+        RolloutSchedule schedule = RolloutSchedule.compile(List.of(
+                step(0, 0, false), step(100, 10000, true)));
+        BucketingEngine engine = new BucketingEngine();
+        BucketingEngine.Seed seed = BucketingEngine.computeSeed("ramped_flag");
+        
+        List<String> in = new ArrayList<>();
+        for (int second = 0; second <= 100; second += 5) {
+            int rollout = rolloutAt(schedule, second);
+            List<String> nowIn = new ArrayList<>();
+            for (int user = 0; user < 2000; user++) {
+                if (engine.isInRollout(seed, "user" + user, rollout)) {
+                    nowIn.add("user" + user);
+                }
+            }
+            assertTrue(nowIn.containsAll(in), "users left the rollout at second " + second);
+            in = nowIn;
+        }
+        assertEquals(2000, in.size());
+    }
+    
+    @Test
+    void rejectsInvalidSchedules() {
+        assertInvalid(new RolloutStep(null, 1000, null));
+        assertInvalid(step(0, null, false));
+        assertInvalid(step(0, 10001, false));
+        assertInvalid(step(0, 1000, true));
+        assertInvalid(step(60, 1000, false), step(60, 2000, false));
+        assertInvalid(step(60, 1000, false), step(0, 2000, false));
+    }
+    
+    @Test
+    void storedSchedulesThatNoLongerCompileAreIgnored() {
+        RolloutSchedule schedule = RolloutSchedule.compileStored("flag", List.of(step(0, 1000, true)));
+        
+        assertSame(RolloutSchedule.NONE, schedule);
+        assertEquals(FLAG_ROLLOUT, rolloutAt(schedule, 0));
+    }
+    
+    private static int rolloutAt(RolloutSchedule schedule, long secondsAfterStart) {
+        return schedule.rolloutBasisPoints(() -> START.plusSeconds(secondsAfterStart).toEpochMilli(), FLAG_ROLLOUT);
+    }
+    
+    private static void assertInvalid(RolloutStep... steps) {
+        assertThrows(InvalidRolloutScheduleException.class, () -> RolloutSchedule.compile(List.of(steps)));
+    }
+    
+    private static RolloutStep step(long secondsAfterStart, Integer rolloutBasisPoints, boolean ramp) {
+        return new RolloutStep(START.plusSeconds(secondsAfterStart), rolloutBasisPoints, ramp);
+    }
+}
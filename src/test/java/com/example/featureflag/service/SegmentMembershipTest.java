@@ -0,0 +1,97 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.model.SegmentKeyType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentMembershipTest {
+    
+    @Test
+    void numericSetUsesArraysForSparseKeysAndBitsetsForDenseOnes() {
+        long[] ids = new long[10_000 + 3];
+        for (int i = 0; i < 10_000; i++) {
+            ids[i] = i;
+        }
+        ids[10_000] = 5_000_000_000L;
+        ids[10_001] = Long.MAX_VALUE;
+        ids[10_002] = 7;
+        
+        NumericSegmentSet set = NumericSegmentSet.of(ids, ids.length);
+        
+        assertEquals(10_002, set.size());
+        assertTrue(set.contains("0"));
+        assertTrue(set.contains("9999"));
+        assertFalse(set.contains("10000"));
+        assertTrue(set.contains("5000000000"));
+        assertFalse(set.contains("5000000001"));
+        assertTrue(set.contains(Long.toString(Long.MAX_VALUE)));
+        // One 8 KiB bitset for the dense key plus two tiny arrays
+        assertTrue(set.memoryBytes() < 8_500, "memory " + set.memoryBytes());
+    }
+    
+    @Test
+    void numericSetOnlyAcceptsCanonicalIds() {
+        NumericSegmentSet set = NumericSegmentSet.of(new long[]{42}, 1);
+        
+        assertTrue(set.contains("42"));
+        assertFalse(set.contains("042"));
+        assertFalse(set.contains("+42"));
+        assertFalse(set.contains("42a"));
+        assertFalse(set.contains(""));
+        assertFalse(set.contains("99999999999999999999"));
+    }
+    
+    @Test
+    void stringSetFindsMembersAndRejectsOthers() {
+        List<String> members = IntStream.range(0, 100_000).mapToObj(i -> "member-" + i).toList();
+        
+        StringSegmentSet set = StringSegmentSet.of(members);
+        
+        assertEquals(100_000, set.size());
+        for (String member : members) {
+            assertTrue(set.contains(member), member);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(set.contains("other-" + i));
+        }
+        // 8 bytes of fingerprint plus about 1.25-2.5 bytes of filter per member
+        assertTrue(set.memoryBytes() < 100_000 * 11, "memory " + set.memoryBytes());
+    }
+    
+    @Test
+    void chunksRoundTripAcrossChunkBoundaries() throws IOException {
+        long[] numericIds = LongStreamIds.sortedSample();
+        List<byte[]> numericChunks = SegmentChunks.encodeNumeric(numericIds, numericIds.length, 64);
+        List<String> stringIds = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            stringIds.add("user-ü-" + i);
+        }
+        List<byte[]> stringChunks = SegmentChunks.encodeStrings(stringIds, 64);
+        
+        SegmentMembership numeric = SegmentChunks.decode(SegmentKeyType.NUMERIC, numericChunks);
+        SegmentMembership strings = SegmentChunks.decode(SegmentKeyType.STRING, stringChunks);
+        
+        assertTrue(numericChunks.size() > 1);
+        assertTrue(numericChunks.stream().allMatch(chunk -> chunk.length <= 64));
+        assertEquals(numericIds.length, numeric.size());
+        for (long id : numericIds) {
+            assertTrue(numeric.contains(Long.toString(id)));
+        }
+        assertTrue(stringChunks.size() > 1);
+        assertEquals(500, strings.size());
+        assertTrue(strings.contains("user-ü-499"));
+    }
+    
+    private static final class LongStreamIds {
+        
+        static long[] sortedSample() {
+            return IntStream.range(0, 1000).mapToLong(i -> (long) i * i * 1_000_003L).toArray();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.dto.SegmentResponse;
+import com.example.featureflag.exception.InvalidSegmentException;
+import com.example.featureflag.model.Segment;
+import com.example.featureflag.model.SegmentKeyType;
+import com.example.featureflag.repository.SegmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SegmentServiceTest {
+    
+    @Mock
+    private SegmentRepository repository;
+    
+    @Captor
+    private ArgumentCaptor<Segment> savedSegment;
+    
+    @Captor
+    private ArgumentCaptor<List<byte[]>> savedChunks;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private SegmentHandles segmentHandles;
+    
+    private SegmentService service;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        segmentHandles = new SegmentHandles();
+        service = new SegmentService(repository, segmentHandles, meterRegistry);
+        ReflectionTestUtils.setField(service, "chunkBytes", 16);
+    }
+    
+    @Test
+    void uploadSegment_DetectsNumericIdsAndInstallsMembers() {
+        when(repository.findBySegmentName("upload-numeric")).thenReturn(Optional.empty());
+        
+        SegmentResponse response = service.uploadSegment("upload-numeric", "Beta testers", null,
+                new StringReader("7\n\n 3\n7\n100000000000\n"));
+        
+        verify(repository).save(savedSegment.capture(), savedChunks.capture(), eq(0));
+        assertEquals(SegmentKeyType.NUMERIC, savedSegment.getValue().keyType());
+        assertEquals(3, savedSegment.getValue().size());
+        assertEquals(1, savedSegment.getValue().version());
+        assertEquals(savedChunks.getValue().size(), savedSegment.getValue().chunkCount());
+        assertTrue(response.getLoaded());
+        assertTrue(segmentHandles.named("upload-numeric").membership().contains("100000000000"));
+        assertFalse(segmentHandles.named("upload-numeric").membership().contains("4"));
+        assertEquals(response.getMemoryBytes().doubleValue(),
+                meterRegistry.get(SegmentService.MEMORY_GAUGE).tag("segment", "upload-numeric").gauge().value());
+    }
+    
+    @Test
+    void uploadSegment_ReplacesPreviousVersionAndDeletesItsChunks() {
+        Segment previous = segment("upload-replace", SegmentKeyType.STRING, 1, "upload-replace#old");
+        when(repository.findBySegmentName("upload-replace")).thenReturn(Optional.of(previous));
+        
+        SegmentResponse response = service.uploadSegment("upload-replace", null, null, new StringReader("ann\nbob\n"));
+        
+        verify(repository).save(any(Segment.class), any(), eq(1));
+        verify(repository).deleteChunks("upload-replace#old");
+        assertEquals(SegmentKeyType.STRING, response.getKeyType());
+        assertEquals(2, response.getVersion());
+        assertEquals("Segment upload-replace", response.getDescription());
+        assertTrue(segmentHandles.named("upload-replace").membership().contains("bob"));
+    }
+    
+    @Test
+    void uploadSegment_RejectsNonNumericIdsForNumericSegments() {
+        assertThrows(InvalidSegmentException.class, () -> service.uploadSegment("upload-invalid", null,
+                SegmentKeyType.NUMERIC, new StringReader("1\nann\n")));
+        assertThrows(InvalidSegmentException.class, () -> service.uploadSegment("upload-invalid", null,
+                null, new StringReader("\n\n")));
+        
+        verify(repository, never()).save(any(), any(), anyInt());
+    }
+    
+    @Test
+    void refresh_LoadsNewVersionsAndUnloadsDeletedSegments() throws Exception {
+        Segment stored = segment("refresh-loaded", SegmentKeyType.NUMERIC, 3, "refresh-loaded#3");
+        when(repository.findAll()).thenReturn(List.of(stored));
+        when(repository.findChunks(stored)).thenReturn(SegmentChunks.encodeNumeric(new long[]{5, 6}, 2, 16));
+        
+        service.refresh();
+        service.refresh();
+        
+        verify(repository, times(1)).findChunks(any());
+        assertTrue(segmentHandles.named("refresh-loaded").membership().contains("6"));
+        assertNotNull(meterRegistry.find(SegmentService.MEMORY_GAUGE).tag("segment", "refresh-loaded").gauge());
+        
+        when(repository.findAll()).thenReturn(List.of());
+        
+        service.refresh();
+        
+        assertNull(segmentHandles.named("refresh-loaded").membership());
+        assertNull(meterRegistry.find(SegmentService.MEMORY_GAUGE).tag("segment", "refresh-loaded").gauge());
+    }
+    
+    @Test
+    void refresh_KeepsSegmentsWhenTheScanFails() {
+        when(repository.findBySegmentName(anyString())).thenReturn(Optional.empty());
+        service.uploadSegment("refresh-kept", null, null, new StringReader("1\n"));
+        when(repository.findAll()).thenThrow(new RuntimeException("throttled"));
+        
+        service.refresh();
+        
+        assertNotNull(segmentHandles.named("refresh-kept").membership());
+    }
+    
+    @Test
+    void deleteSegment_ReleasesTheHandle() {
+        when(repository.findBySegmentName(anyString())).thenReturn(Optional.empty());
+        service.uploadSegment("delete-released", null, null, new StringReader("1\n"));
+        SegmentHandle handle = segmentHandles.named("delete-released");
+        when(repository.deleteBySegmentName("delete-released"))
+                .thenReturn(Optional.of(segment("delete-released", SegmentKeyType.NUMERIC, 1, "delete-released#1")));
+        
+        service.deleteSegment("delete-released");
+        
+        assertNull(handle.membership());
+        assertNull(meterRegistry.find(SegmentService.MEMORY_GAUGE).tag("segment", "delete-released").gauge());
+        // Another context's segments never share this context's handles
+        assertNotSame(handle, new SegmentHandles().named("delete-released"));
+    }
+    
+    private static Segment segment(String name, SegmentKeyType keyType, int version, String chunkKey) {
+        return new Segment(name, "Segment " + name, keyType, 2, 1, chunkKey, version,
+                Instant.now().minusSeconds(60));
+    }
+}
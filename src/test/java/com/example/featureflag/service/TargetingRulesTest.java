@@ -0,0 +1,146 @@
+package com.example.featureflag.service;
+
+import com.example.featureflag.exception.InvalidTargetingRuleException;
+import com.example.featureflag.model.TargetingCondition;
+import com.example.featureflag.model.TargetingOperator;
+import com.example.featureflag.model.TargetingRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetingRulesTest {
+    
+    private static final int DEFAULT = 1234;
+    
+    private static final SegmentHandles SEGMENTS = new SegmentHandles();
+    
+    @Test
+    void stringOperators() {
+        assertMatches(TargetingOperator.IN, List.of("DE", "AT"), "AT", true);
+        assertMatches(TargetingOperator.IN, List.of("DE"), "de", false);
+        assertMatches(TargetingOperator.NOT_IN, List.of("DE", "AT"), "FR", true);
+        assertMatches(TargetingOperator.NOT_IN, List.of("DE"), "DE", false);
+        assertMatches(TargetingOperator.STARTS_WITH, List.of("beta-", "qa-"), "qa-7", true);
+        assertMatches(TargetingOperator.ENDS_WITH, List.of("@example.com"), "ann@example.org", false);
+        assertMatches(TargetingOperator.CONTAINS, List.of("bot"), "googlebot/2.1", true);
+        assertMatches(TargetingOperator.MATCHES, List.of("user-\\d+"), "user-42", true);
+        assertMatches(TargetingOperator.MATCHES, List.of("user-\\d+"), "user-42x", false);
+    }
+    
+    @Test
+    void semverComparesNumericComponents() {
+        assertMatches(TargetingOperator.SEMVER_GT, List.of("5.9.0"), "5.10.0", true);
+        assertMatches(TargetingOperator.SEMVER_EQ, List.of("5.2"), "5.2.0", true);
+        assertMatches(TargetingOperator.SEMVER_EQ, List.of("5.2.0"), "v5.2", true);
+        assertMatches(TargetingOperator.SEMVER_GTE, List.of("5.2.0"), "5.2.0-beta.1+build7", true);
+        assertMatches(TargetingOperator.SEMVER_LT, List.of("5.2.1"), "5.2", true);
+        assertMatches(TargetingOperator.SEMVER_LTE, List.of("5.2"), "5.2.0.1", false);
+        assertMatches(TargetingOperator.SEMVER_GT, List.of("1.0"), "not-a-version", false);
+        assertMatches(TargetingOperator.SEMVER_LT, List.of("1.0"), "1..0", false);
+    }
+    
+    @Test
+    void firstMatchingRuleWins() {
+        TargetingRules rules = compile(List.of(
+                rule(2500, condition("country", TargetingOperator.IN, "DE")),
+                rule(10000, condition("plan", TargetingOperator.IN, "enterprise"))));
+        
+        assertEquals(2500, rules.rolloutBasisPoints("u", Map.of("country", "DE", "plan", "enterprise"), DEFAULT));
+        assertEquals(10000, rules.rolloutBasisPoints("u", Map.of("country", "FR", "plan", "enterprise"), DEFAULT));
+        assertEquals(DEFAULT, rules.rolloutBasisPoints("u", Map.of("country", "FR"), DEFAULT));
+    }
+    
+    @Test
+    void conditionsWithinARuleAreAllRequired() {
+        TargetingRules rules = compile(List.of(rule(null,
+                condition("country", TargetingOperator.IN, "DE"),
+                condition("appVersion", TargetingOperator.SEMVER_GTE, "5.2"))));
+        
+        assertEquals(10000, rules.rolloutBasisPoints("u", Map.of("country", "DE", "appVersion", "5.3"), DEFAULT));
+        assertEquals(DEFAULT, rules.rolloutBasisPoints("u", Map.of("country", "DE", "appVersion", "5.1"), DEFAULT));
+    }
+    
+    @Test
+    void missingAttributeNeverMatchesEvenForNotIn() {
+        TargetingRules rules = compile(List.of(rule(0, condition("country", TargetingOperator.NOT_IN, "DE"))));
+        
+        assertEquals(DEFAULT, rules.rolloutBasisPoints("u", Map.of(), DEFAULT));
+    }
+    
+    @Test
+    void userIdAttributeFallsBackToEvaluatedUser() {
+        TargetingRules rules = compile(List.of(rule(0, condition("userId", TargetingOperator.IN, "blocked"))));
+        
+        assertEquals(0, rules.rolloutBasisPoints("blocked", Map.of(), DEFAULT));
+        assertEquals(DEFAULT, rules.rolloutBasisPoints("someone", Map.of(), DEFAULT));
+    }
+    
+    @Test
+    void rejectsRulesThatCannotBeEvaluated() {
+        assertInvalid(rule(null));
+        assertInvalid(rule(null, condition(null, TargetingOperator.IN, "x")));
+        assertInvalid(rule(null, condition("country", null, "DE")));
+        assertInvalid(rule(null, new TargetingCondition("country", TargetingOperator.IN, List.of())));
+        assertInvalid(rule(null, condition("appVersion", TargetingOperator.SEMVER_GT, "1.0", "2.0")));
+        assertInvalid(rule(null, condition("appVersion", TargetingOperator.SEMVER_GT, "latest")));
+        assertInvalid(rule(null, condition("email", TargetingOperator.MATCHES, "[unclosed")));
+        assertInvalid(rule(10001, condition("country", TargetingOperator.IN, "DE")));
+    }
+    
+    @Test
+    void storedRulesThatNoLongerCompileTurnTheFlagOff() {
+        TargetingRules rules = TargetingRules.compileStored("flag", List.of(rule(null)), SEGMENTS);
+        
+        assertEquals(0, rules.rolloutBasisPoints("u", Map.of(), DEFAULT));
+    }
+    
+    @Test
+    void segmentOperatorsFollowTheLoadedMembers() {
+        TargetingRules in = compile(List.of(
+                rule(10000, condition("userId", TargetingOperator.IN_SEGMENT, "rules-test-beta"))));
+        TargetingRules notIn = compile(List.of(
+                rule(10000, condition("userId", TargetingOperator.NOT_IN_SEGMENT, "rules-test-beta"))));
+        
+        // Unloaded segments match neither operator
+        assertEquals(DEFAULT, in.rolloutBasisPoints("42", Map.of(), DEFAULT));
+        assertEquals(DEFAULT, notIn.rolloutBasisPoints("42", Map.of(), DEFAULT));
+        
+        SEGMENTS.install("rules-test-beta", NumericSegmentSet.of(new long[]{42}, 1));
+        
+        assertEquals(10000, in.rolloutBasisPoints("42", Map.of(), DEFAULT));
+        assertEquals(DEFAULT, in.rolloutBasisPoints("43", Map.of(), DEFAULT));
+        assertEquals(DEFAULT, notIn.rolloutBasisPoints("42", Map.of(), DEFAULT));
+        assertEquals(10000, notIn.rolloutBasisPoints("43", Map.of(), DEFAULT));
+    }
+    
+    private static void assertMatches(TargetingOperator operator, List<String> values, String attribute, boolean expected) {
+        TargetingRules rules = compile(List.of(
+                rule(10000, new TargetingCondition("attribute", operator, values))));
+        
+        int rollout = rules.rolloutBasisPoints("u", Map.of("attribute", attribute), DEFAULT);
+        
+        assertEquals(expected ? 10000 : DEFAULT, rollout, operator + " " + values + " on " + attribute);
+    }
+    
+    private static void assertInvalid(TargetingRule rule) {
+        assertThrows(InvalidTargetingRuleException.class, () -> compile(List.of(rule)));
+    }
+    
+    private static TargetingRules compile(List<TargetingRule> rules) {
+        return TargetingRules.compile(rules, SEGMENTS);
+    }
+    
+    private static TargetingRule rule(Integer rolloutBasisPoints, TargetingCondition... conditions) {
+        return TargetingRule.builder()
+                .conditions(List.of(conditions))
+                .rolloutBasisPoints(rolloutBasisPoints)
+                .build();
+    }
+    
+    private static TargetingCondition condition(String attribute, TargetingOperator operator, String... values) {
+        return new TargetingCondition(attribute, operator, List.of(values));
+    }
+}